@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -91,11 +92,34 @@ import javax.annotation.Nullable;
  * as it would break parsing of the configuration property.
  * </p>
  *
+ * <p>
+ * When reading by index, the data rows for the matching index entries are read ahead with multi-gets of up to
+ * {@link co.cask.cdap.api.dataset.lib.IndexedTableDefinition#INDEX_READ_AHEAD_CONF_KEY} rows, starting from a
+ * single row and doubling the batch size with every read.
+ * </p>
+ *
+ * <p>
+ * By default, a write reads the current values of the indexed columns to remove the index entries of values that
+ * changed. If {@link co.cask.cdap.api.dataset.lib.IndexedTableDefinition#INDEX_BLIND_WRITES_CONF_KEY} is set to
+ * {@code true}, writes only add index entries for the new values without reading the data row. Index entries of
+ * old values are left in place and filtered out on read by comparing with the data row. If
+ * {@link co.cask.cdap.api.dataset.lib.IndexedTableDefinition#INDEX_CLEANUP_ON_READ_CONF_KEY} is set to
+ * {@code true}, stale index entries found by an index read are deleted when the {@link Scanner} is closed, in the
+ * same transaction, after checking that the data row still doesn't have the indexed value. Since the deletes are
+ * writes to the index table, the reading transaction can then conflict with, and fail to commit because of,
+ * concurrent transactions that write the same index entries.
+ * </p>
+ *
  * @see co.cask.cdap.api.dataset.lib.IndexedTableDefinition#INDEX_COLUMNS_CONF_KEY
  */
 public class IndexedTable extends AbstractDataset implements Table {
   private static final Logger LOG = LoggerFactory.getLogger(IndexedTable.class);
 
+  /**
+   * Default maximum number of data rows read with one multi-get when reading by index.
+   */
+  public static final int DEFAULT_INDEX_READ_AHEAD = 100;
+
   /**
    * Column key used to store the existence of a row in the secondary index.
    */
@@ -104,6 +128,9 @@ public class IndexedTable extends AbstractDataset implements Table {
   private static final byte[] KEY_DELIMITER = new byte[] { DELIMITER_BYTE };
 
   private final boolean hasColumnWithDelimiter;
+  private final int indexReadAhead;
+  private final boolean blindWrites;
+  private final boolean cleanupOnRead;
   // the two underlying tables
   private Table table, index;
   // the secondary index column
@@ -119,11 +146,46 @@ public class IndexedTable extends AbstractDataset implements Table {
    * @param columnsToIndex the names of the data columns to index
    */
   public IndexedTable(String name, Table table, Table index, byte[][] columnsToIndex) {
+    this(name, table, index, columnsToIndex, DEFAULT_INDEX_READ_AHEAD);
+  }
+
+  /**
+   * Configuration time constructor.
+   *
+   * @param name the name of the table
+   * @param table table to use as the table
+   * @param index table to use as the index
+   * @param columnsToIndex the names of the data columns to index
+   * @param indexReadAhead the maximum number of data rows to read with one multi-get when reading by index
+   */
+  public IndexedTable(String name, Table table, Table index, byte[][] columnsToIndex, int indexReadAhead) {
+    this(name, table, index, columnsToIndex, indexReadAhead, false, false);
+  }
+
+  /**
+   * Configuration time constructor.
+   *
+   * @param name the name of the table
+   * @param table table to use as the table
+   * @param index table to use as the index
+   * @param columnsToIndex the names of the data columns to index
+   * @param indexReadAhead the maximum number of data rows to read with one multi-get when reading by index
+   * @param blindWrites whether writes add index entries without reading the data row first
+   * @param cleanupOnRead whether stale index entries found by index reads are deleted, only used with blind writes
+   */
+  public IndexedTable(String name, Table table, Table index, byte[][] columnsToIndex, int indexReadAhead,
+                      boolean blindWrites, boolean cleanupOnRead) {
     super(name, table, index);
+    if (indexReadAhead <= 0) {
+      throw new IllegalArgumentException("Index read ahead must be positive: " + indexReadAhead);
+    }
     this.table = table;
     this.index = index;
     this.indexedColumns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
     this.hasColumnWithDelimiter = hasDelimiterByte(columnsToIndex);
+    this.indexReadAhead = indexReadAhead;
+    this.blindWrites = blindWrites;
+    this.cleanupOnRead = blindWrites && cleanupOnRead;
     Collections.addAll(this.indexedColumns, columnsToIndex);
   }
 
@@ -256,6 +318,15 @@ public class IndexedTable extends AbstractDataset implements Table {
       }
     }
 
+    if (blindWrites) {
+      // index entries of the previous values are removed lazily when reading by index
+      for (byte[] col : colsToIndex) {
+        index.put(createIndexKey(dataRow, col, putColumns.get(col)), IDX_COL, dataRow);
+      }
+      table.put(put);
+      return;
+    }
+
     // first read the existing indexed values to find which have changed and need to be updated
     Row existingRow = table.get(dataRow, colsToIndex.toArray(new byte[colsToIndex.size()][]));
     for (Map.Entry<byte[], byte[]> entry : existingRow.getColumns().entrySet()) {
@@ -579,14 +650,42 @@ public class IndexedTable extends AbstractDataset implements Table {
     put(put);
   }
 
+  /**
+   * Returns the table that stores the index entries. Only used by tests to inspect the index.
+   */
+  Table getIndexTable() {
+    return index;
+  }
+
   private abstract class AbstractIndexScanner implements Scanner {
     // scanner over index table
     private final Scanner baseScanner;
     private final byte[] column;
+    // data rows read ahead, together with the column values from the corresponding index entries
+    private final List<Get> gets;
+    private final List<byte[]> columnValues;
+    private final List<byte[]> indexKeys;
+    // index entries that no longer match the data row, together with the data row key and the indexed value of
+    // the entries, to be deleted on close
+    private final List<byte[]> staleIndexKeys;
+    private final List<Get> staleGets;
+    private final List<byte[]> staleColumnValues;
+    private List<Row> rows;
+    private int rowIndex;
+    private int batchSize;
+    private boolean indexExhausted;
 
     public AbstractIndexScanner(Scanner baseScanner, byte[] column) {
       this.baseScanner = baseScanner;
       this.column = column;
+      this.gets = new ArrayList<>();
+      this.columnValues = new ArrayList<>();
+      this.indexKeys = new ArrayList<>();
+      this.staleIndexKeys = new ArrayList<>();
+      this.staleGets = new ArrayList<>();
+      this.staleColumnValues = new ArrayList<>();
+      this.rows = Collections.emptyList();
+      this.batchSize = 1;
     }
 
     /**
@@ -600,9 +699,51 @@ public class IndexedTable extends AbstractDataset implements Table {
     @Nullable
     @Override
     public Row next() {
-      // TODO: retrieve results in batches to minimize RPC overhead (requires multi-get support in table)
-      // keep going until we hit a non-null, non-empty data row, or we exhaust the index
-      for (Row indexRow = baseScanner.next(); indexRow != null; indexRow = baseScanner.next()) {
+      // keep going until we hit a data row, or we exhaust the index
+      while (true) {
+        while (rowIndex < rows.size()) {
+          Row row = rows.get(rowIndex);
+          byte[] rowKey = gets.get(rowIndex).getRow();
+          byte[] columnValue = columnValues.get(rowIndex);
+          byte[] indexKey = indexKeys.get(rowIndex++);
+          // If a column has null byte (the key delimiter) in it, then we need to check against the data row's column
+          // to be sure this row isn't a false positive in the scan.
+          // For reference, take a look at IndexedTableTest#testIndexKeyDelimiterAmbiguity
+          // With blind writes, the index entry may also be stale, that is the value has changed since it was written.
+          if ((hasColumnWithDelimiter || blindWrites) && !Bytes.equals(row.get(column), columnValue)) {
+            // With delimiter in column, the index entry can belong to a different column, hence can't be removed.
+            if (cleanupOnRead && !hasColumnWithDelimiter) {
+              staleIndexKeys.add(indexKey);
+              staleGets.add(new Get(rowKey, column));
+              staleColumnValues.add(columnValue);
+            }
+            continue;
+          }
+          return row;
+        }
+        if (indexExhausted) {
+          // end of index
+          return null;
+        }
+        readAhead();
+      }
+    }
+
+    /**
+     * Reads the next batch of matching index entries and fetches the corresponding data rows with one multi-get.
+     * The batch size starts from one and doubles on every call, up to the configured read ahead, so that callers
+     * that only need the first few rows don't pay for reading many.
+     */
+    private void readAhead() {
+      gets.clear();
+      columnValues.clear();
+      indexKeys.clear();
+      while (gets.size() < batchSize) {
+        Row indexRow = baseScanner.next();
+        if (indexRow == null) {
+          indexExhausted = true;
+          break;
+        }
         byte[] rowkey = indexRow.get(IDX_COL);
         if (rowkey == null) {
           LOG.warn("Row of Indexed table '{}' is missing index column. Row key: {}", getName(), indexRow.getRow());
@@ -614,23 +755,41 @@ public class IndexedTable extends AbstractDataset implements Table {
         // Verify that datarow matches the expected row key to avoid issues with column name or value
         // containing the delimiter used. This is a sufficient check, as long as columns don't contain the null byte.
         if (matches(columnValue)) {
-          Row row = table.get(rowkey);
-          // If a column has null byte (the key delimiter) in it, then we need to check against the data row's column
-          // to be sure this row isn't a false positive in the scan.
-          // For reference, take a look at IndexedTableTest#testIndexKeyDelimiterAmbiguity
-          if (hasColumnWithDelimiter && !Bytes.equals(row.get(column), columnValue)) {
-            continue;
-          }
-          return row;
+          gets.add(new Get(rowkey));
+          columnValues.add(columnValue);
+          indexKeys.add(indexRow.getRow());
         }
       }
-      // end of index
-      return null;
+      batchSize = Math.min(batchSize * 2, indexReadAhead);
+
+      rowIndex = 0;
+      if (gets.isEmpty()) {
+        rows = Collections.emptyList();
+      } else if (gets.size() == 1) {
+        rows = Collections.singletonList(table.get(gets.get(0)));
+      } else {
+        rows = table.get(gets);
+      }
     }
 
     @Override
     public void close() {
       baseScanner.close();
+      if (staleIndexKeys.isEmpty()) {
+        return;
+      }
+      // Deleting while the scan is open is avoided, as the scan can be reading from the same write buffer.
+      // The indexed column is read again, since the row may have been written with the old value since it was read,
+      // in which case the index entry is valid again.
+      List<Row> staleRows = table.get(staleGets);
+      for (int i = 0; i < staleIndexKeys.size(); i++) {
+        if (!Bytes.equals(staleRows.get(i).get(column), staleColumnValues.get(i))) {
+          index.delete(staleIndexKeys.get(i), IDX_COL);
+        }
+      }
+      staleIndexKeys.clear();
+      staleGets.clear();
+      staleColumnValues.clear();
     }
   }
 
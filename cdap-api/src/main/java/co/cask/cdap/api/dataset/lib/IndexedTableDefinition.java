@@ -43,6 +43,27 @@ public class IndexedTableDefinition
    */
   public static final String INDEX_COLUMNS_CONF_KEY = "columnsToIndex";
 
+  /**
+   * Configuration key for defining the maximum number of data rows that are read with a single multi-get
+   * when reading by index. Defaults to {@link IndexedTable#DEFAULT_INDEX_READ_AHEAD}.
+   */
+  public static final String INDEX_READ_AHEAD_CONF_KEY = "indexReadAhead";
+
+  /**
+   * Configuration key for enabling blind index writes. If set to "true", writes add index entries without reading
+   * the data row to remove the index entries of previous values, which are instead filtered out when reading by
+   * index. Defaults to "false".
+   */
+  public static final String INDEX_BLIND_WRITES_CONF_KEY = "indexBlindWrites";
+
+  /**
+   * Configuration key for whether stale index entries found when reading by index are deleted. Only used if
+   * {@link #INDEX_BLIND_WRITES_CONF_KEY} is enabled. Defaults to "false". If enabled, a transaction that reads by
+   * index also writes to the index table when it finds stale entries, hence it can conflict with concurrent
+   * transactions that write the same index entries.
+   */
+  public static final String INDEX_CLEANUP_ON_READ_CONF_KEY = "indexCleanupOnRead";
+
   private final DatasetDefinition<? extends Table, ?> tableDef;
 
   public IndexedTableDefinition(String name, DatasetDefinition<? extends Table, ?> tableDef) {
@@ -55,6 +76,8 @@ public class IndexedTableDefinition
 
   @Override
   public DatasetSpecification configure(String instanceName, DatasetProperties properties) {
+    // Validate the read ahead property when the dataset is created rather than when it is used
+    getIndexReadAhead(properties.getProperties().get(INDEX_READ_AHEAD_CONF_KEY));
     return DatasetSpecification.builder(instanceName, getName())
       .properties(properties.getProperties())
       .datasets(tableDef.configure("d", properties),
@@ -90,9 +113,34 @@ public class IndexedTableDefinition
       columnsToIndex[i] = Bytes.toBytes(columns[i]);
     }
 
+    int indexReadAhead = getIndexReadAhead(spec.getProperty(INDEX_READ_AHEAD_CONF_KEY));
+    boolean blindWrites = Boolean.parseBoolean(spec.getProperty(INDEX_BLIND_WRITES_CONF_KEY));
+    boolean cleanupOnRead = Boolean.parseBoolean(spec.getProperty(INDEX_CLEANUP_ON_READ_CONF_KEY));
+
     // TODO: add support for setting index key delimiter
 
-    return new IndexedTable(spec.getName(), table, index, columnsToIndex);
+    return new IndexedTable(spec.getName(), table, index, columnsToIndex, indexReadAhead,
+                            blindWrites, cleanupOnRead);
+  }
+
+  /**
+   * Parses the value of the {@link #INDEX_READ_AHEAD_CONF_KEY} property.
+   *
+   * @throws IllegalArgumentException if the value is not a positive integer
+   */
+  private int getIndexReadAhead(String readAhead) {
+    if (readAhead == null) {
+      return IndexedTable.DEFAULT_INDEX_READ_AHEAD;
+    }
+    try {
+      int indexReadAhead = Integer.parseInt(readAhead.trim());
+      if (indexReadAhead > 0) {
+        return indexReadAhead;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to throw the exception below
+    }
+    throw new IllegalArgumentException(INDEX_READ_AHEAD_CONF_KEY + " must be a positive integer: " + readAhead);
   }
 
 }
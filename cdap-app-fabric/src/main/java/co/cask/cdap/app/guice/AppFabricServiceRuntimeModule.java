@@ -379,6 +379,12 @@ public final class AppFabricServiceRuntimeModule extends RuntimeModule {
       qrs.setThreadExecutor(new DefaultThreadExecutor());
       qrs.setJobStore(store);
       qrs.setRunUpdateCheck(false);
+      // Acquire and fire triggers that are due at about the same time together,
+      // so that the job store persists their fired state in one transaction
+      qrs.setMaxBatchSize(Math.min(threadPoolSize, cConf.getInt(Constants.Scheduler.CFG_SCHEDULER_MAX_BATCH_SIZE,
+                                                                Constants.Scheduler.DEFAULT_MAX_BATCH_SIZE)));
+      qrs.setBatchTimeWindow(cConf.getLong(Constants.Scheduler.CFG_SCHEDULER_BATCH_TIME_WINDOW_MS,
+                                           Constants.Scheduler.DEFAULT_BATCH_TIME_WINDOW_MS));
       QuartzScheduler qs = new QuartzScheduler(qrs, -1, -1);
 
       ClassLoadHelper cch = new CascadingClassLoadHelper();
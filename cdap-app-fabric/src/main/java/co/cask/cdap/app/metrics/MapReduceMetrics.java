@@ -35,6 +35,14 @@ public final class MapReduceMetrics {
   public static final String METRIC_USED_CONTAINERS = "resources.used.containers";
   public static final String METRIC_USED_MEMORY = "resources.used.memory";
 
+  public static final String METRIC_DATASET_INPUT_RECORDS = "process.dataset.entries.in";
+  public static final String METRIC_DATASET_INPUT_BYTES = "process.dataset.bytes.in";
+  public static final String METRIC_DATASET_INPUT_RECORDS_RATE = "process.dataset.entries.in.rate";
+  public static final String METRIC_DATASET_INPUT_BYTES_RATE = "process.dataset.bytes.in.rate";
+  public static final String METRIC_DATASET_INPUT_WAIT_MILLIS = "process.dataset.wait.millis";
+
+  public static final String METRIC_STREAM_SPLIT_PLANNING_MILLIS = "process.stream.split.planning.millis";
+
   /**
    * Type of map reduce task.
    */
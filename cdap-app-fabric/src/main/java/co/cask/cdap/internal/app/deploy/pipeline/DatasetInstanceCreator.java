@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.dataset2.InstanceConflictException;
+import co.cask.cdap.data2.dataset2.ParallelDatasetOperations;
 import co.cask.cdap.internal.dataset.DatasetCreationSpec;
 import co.cask.cdap.proto.Id;
 import org.slf4j.Logger;
@@ -35,36 +36,50 @@ public class DatasetInstanceCreator {
   private final Id.Namespace namespace;
   private final DatasetFramework datasetFramework;
   private final boolean allowDatasetUncheckedUpgrade;
+  private final int parallelism;
 
   public DatasetInstanceCreator(CConfiguration configuration, DatasetFramework datasetFramework,
                                 Id.Namespace namespace) {
     this.namespace = namespace;
     this.datasetFramework = datasetFramework;
     this.allowDatasetUncheckedUpgrade = configuration.getBoolean(Constants.Dataset.DATASET_UNCHECKED_UPGRADE);
+    this.parallelism = configuration.getInt(Constants.Dataset.ADMIN_OP_PARALLELISM,
+                                            Constants.Dataset.DEFAULT_ADMIN_OP_PARALLELISM);
   }
 
   /**
    * Receives an input containing application specification and location
-   * and verifies both.
+   * and verifies both. The dataset instances are created concurrently, since they are independent of each other.
    *
    * @param datasets the datasets to create
    */
-  public void createInstances(Map<String, DatasetCreationSpec> datasets) throws Exception {
+  public void createInstances(final Map<String, DatasetCreationSpec> datasets) throws Exception {
     // create dataset instances
-    for (Map.Entry<String, DatasetCreationSpec> instanceEntry : datasets.entrySet()) {
-      String instanceName = instanceEntry.getKey();
-      Id.DatasetInstance instanceId = Id.DatasetInstance.from(namespace, instanceName);
-      DatasetCreationSpec instanceSpec = instanceEntry.getValue();
-      try {
-        if (!datasetFramework.hasInstance(instanceId) || allowDatasetUncheckedUpgrade) {
-          LOG.info("Adding instance: {}", instanceName);
-          datasetFramework.addInstance(instanceSpec.getTypeName(), instanceId, instanceSpec.getProperties());
+    Map<String, Exception> failures = ParallelDatasetOperations.execute(
+      datasets.keySet(), parallelism, new ParallelDatasetOperations.Operation<String>() {
+        @Override
+        public void execute(String instanceName) throws Exception {
+          createInstance(instanceName, datasets.get(instanceName));
         }
-      } catch (InstanceConflictException e) {
-        // NO-OP: Instance is simply already created, possibly by an older version of this app OR a different app
-        // TODO: verify that the created instance is from this app
-        LOG.warn("Couldn't create dataset instance '" + instanceName + "' of type '" + instanceSpec.getTypeName(), e);
+      });
+
+    for (Map.Entry<String, Exception> entry : failures.entrySet()) {
+      LOG.error("Failed to create dataset instance '{}'", entry.getKey(), entry.getValue());
+    }
+    ParallelDatasetOperations.propagateFailures(failures);
+  }
+
+  private void createInstance(String instanceName, DatasetCreationSpec instanceSpec) throws Exception {
+    Id.DatasetInstance instanceId = Id.DatasetInstance.from(namespace, instanceName);
+    try {
+      if (!datasetFramework.hasInstance(instanceId) || allowDatasetUncheckedUpgrade) {
+        LOG.info("Adding instance: {}", instanceName);
+        datasetFramework.addInstance(instanceSpec.getTypeName(), instanceId, instanceSpec.getProperties());
       }
+    } catch (InstanceConflictException e) {
+      // NO-OP: Instance is simply already created, possibly by an older version of this app OR a different app
+      // TODO: verify that the created instance is from this app
+      LOG.warn("Couldn't create dataset instance '" + instanceName + "' of type '" + instanceSpec.getTypeName(), e);
     }
   }
 }
@@ -27,6 +27,7 @@ import co.cask.cdap.internal.app.runtime.BasicArguments;
 import co.cask.cdap.internal.app.runtime.batch.dataset.DataSetInputFormat;
 import co.cask.cdap.internal.app.runtime.batch.dataset.DataSetOutputFormat;
 import co.cask.cdap.internal.app.runtime.workflow.BasicWorkflowToken;
+import co.cask.cdap.proto.DatasetMeta;
 import co.cask.tephra.Transaction;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
@@ -70,6 +71,7 @@ public final class MapReduceContextConfig {
   private static final String HCONF_ATTR_INPUT_SPLIT_CLASS = "hconf.program.input.split.class";
   private static final String HCONF_ATTR_INPUT_SPLITS = "hconf.program.input.splits";
   private static final String HCONF_ATTR_NEW_TX = "hconf.program.newtx.tx";
+  private static final String HCONF_ATTR_DATASET_METAS = "hconf.program.dataset.metas";
 
   private final Configuration hConf;
 
@@ -319,4 +321,24 @@ public final class MapReduceContextConfig {
   public Transaction getTx() {
     return GSON.fromJson(hConf.get(HCONF_ATTR_NEW_TX), Transaction.class);
   }
+
+  /**
+   * Sets the {@link DatasetMeta} of the datasets used by the program, keyed by dataset name, so that
+   * tasks don't need to fetch them from the dataset service.
+   */
+  public void setDatasetMetas(Map<String, DatasetMeta> datasetMetas) {
+    hConf.set(HCONF_ATTR_DATASET_METAS, GSON.toJson(datasetMetas));
+  }
+
+  /**
+   * Returns the {@link DatasetMeta} of the datasets used by the program stored inside the job
+   * {@link Configuration}, keyed by dataset name.
+   */
+  public Map<String, DatasetMeta> getDatasetMetas() {
+    String metas = hConf.get(HCONF_ATTR_DATASET_METAS);
+    if (metas == null) {
+      return Collections.emptyMap();
+    }
+    return GSON.fromJson(metas, new TypeToken<Map<String, DatasetMeta>>() { }.getType());
+  }
 }
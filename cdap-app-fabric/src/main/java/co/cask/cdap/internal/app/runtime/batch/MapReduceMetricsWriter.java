@@ -19,6 +19,7 @@ package co.cask.cdap.internal.app.runtime.batch;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.app.metrics.MapReduceMetrics;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.internal.app.runtime.batch.dataset.DataSetInputCounter;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -105,6 +106,8 @@ public class MapReduceMetricsWriter {
     LOG.trace("Reporting mapper stats: (completion, containers, memory) = ({}, {}, {})",
               (int) (mapProgress * 100), runningMappers, runningMappers * memoryPerMapper);
 
+    reportDataSetInputStats(jobCounters);
+
     // reduce stats
     float reduceProgress = jobStatus.getReduceProgress();
     long reduceInputRecords = getTaskCounter(jobCounters, TaskCounter.REDUCE_INPUT_RECORDS);
@@ -120,6 +123,30 @@ public class MapReduceMetricsWriter {
               (int) (reduceProgress * 100), runningReducers, runningReducers * memoryPerReducer);
   }
 
+  // stats of reading dataset splits by mappers
+  private void reportDataSetInputStats(Counters jobCounters) {
+    long records = jobCounters.findCounter(DataSetInputCounter.RECORDS).getValue();
+    if (records == 0) {
+      return;
+    }
+    long bytes = jobCounters.findCounter(DataSetInputCounter.BYTES).getValue();
+    // Rates are computed over the total time spent in reading splits by all mappers
+    long readMillis = jobCounters.findCounter(DataSetInputCounter.READ_MILLIS).getValue();
+    long waitMillis = jobCounters.findCounter(DataSetInputCounter.WAIT_MILLIS).getValue();
+
+    mapperMetrics.gauge(MapReduceMetrics.METRIC_DATASET_INPUT_RECORDS, records);
+    mapperMetrics.gauge(MapReduceMetrics.METRIC_DATASET_INPUT_BYTES, bytes);
+    // Reads shorter than the counter resolution give no meaningful rate
+    if (readMillis > 0) {
+      mapperMetrics.gauge(MapReduceMetrics.METRIC_DATASET_INPUT_RECORDS_RATE, records * 1000 / readMillis);
+      mapperMetrics.gauge(MapReduceMetrics.METRIC_DATASET_INPUT_BYTES_RATE, bytes * 1000 / readMillis);
+    }
+    mapperMetrics.gauge(MapReduceMetrics.METRIC_DATASET_INPUT_WAIT_MILLIS, waitMillis);
+
+    LOG.trace("Reporting dataset input stats: (records, bytes, read millis, wait millis) = ({}, {}, {}, {})",
+              records, bytes, readMillis, waitMillis);
+  }
+
   private void reportMapTaskMetrics(TaskReport taskReport) {
     Counters counters = taskReport.getTaskCounters();
     MetricsContext metricsContext = mapTaskMetricsCollectors.getUnchecked(taskReport.getTaskId());
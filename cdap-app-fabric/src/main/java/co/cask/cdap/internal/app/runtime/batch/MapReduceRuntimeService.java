@@ -30,6 +30,7 @@ import co.cask.cdap.api.mapreduce.MapReduce;
 import co.cask.cdap.api.mapreduce.MapReduceContext;
 import co.cask.cdap.api.mapreduce.MapReduceSpecification;
 import co.cask.cdap.api.stream.StreamEventDecoder;
+import co.cask.cdap.app.metrics.MapReduceMetrics;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
@@ -41,6 +42,7 @@ import co.cask.cdap.common.twill.HadoopClassExcluder;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.data.stream.StreamInputFormat;
 import co.cask.cdap.data.stream.StreamUtils;
+import co.cask.cdap.data2.datafabric.dataset.RemoteDatasetFramework;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
 import co.cask.cdap.data2.registry.UsageRegistry;
 import co.cask.cdap.data2.transaction.Transactions;
@@ -54,6 +56,7 @@ import co.cask.cdap.internal.app.runtime.batch.dataset.UnsupportedOutputFormat;
 import co.cask.cdap.internal.app.runtime.batch.distributed.ContainerLauncherGenerator;
 import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerHelper;
 import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerLauncher;
+import co.cask.cdap.proto.DatasetMeta;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.tephra.Transaction;
@@ -275,11 +278,20 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
         // We remember tx, so that we can re-use it in mapreduce tasks
         CConfiguration cConfCopy = cConf;
         contextConfig.set(context, cConfCopy, tx, programJar.toURI());
+        if (!MapReduceTaskContextProvider.isLocal(mapredConf)) {
+          contextConfig.setDatasetMetas(getDatasetMetas(contextConfig));
+        }
 
         LOG.info("Submitting MapReduce Job: {}", context);
         // submits job and returns immediately. Shouldn't need to set context ClassLoader.
         job.submit();
 
+        // The stream input format records the split planning time in the job configuration during submission
+        long splitPlanningMillis = StreamInputFormat.getSplitPlanningMillis(job.getConfiguration());
+        if (splitPlanningMillis >= 0) {
+          context.getProgramMetrics().gauge(MapReduceMetrics.METRIC_STREAM_SPLIT_PLANNING_MILLIS, splitPlanningMillis);
+        }
+
         this.job = job;
         this.transaction = tx;
       } catch (Throwable t) {
@@ -702,6 +714,32 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
                          programId.getNamespaceId(), programId.getApplicationId(), programId.getId());
   }
 
+  /**
+   * Resolves the {@link DatasetMeta} of the datasets that every task instantiates, so that they can be passed to the
+   * tasks through the job configuration. Datasets that cannot be resolved are left to the tasks.
+   */
+  private Map<String, DatasetMeta> getDatasetMetas(MapReduceContextConfig contextConfig) {
+    Map<String, DatasetMeta> metas = new HashMap<>();
+    RemoteDatasetFramework datasetFramework = MapReduceTaskContextProvider.getRemoteDatasetFramework(injector);
+    if (datasetFramework == null) {
+      return metas;
+    }
+    Id.Namespace namespace = Id.Namespace.from(context.getProgram().getNamespaceId());
+    for (String dataset : MapReduceTaskContextProvider.getDatasets(context.getProgram(), contextConfig)) {
+      try {
+        // Fetch with the program as the owner, so that the usage is registered for the preloading tasks
+        DatasetMeta meta = datasetFramework.getDatasetMeta(Id.DatasetInstance.from(namespace, dataset),
+                                                           context.getOwners());
+        if (meta != null) {
+          metas.put(dataset, meta);
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to get the dataset meta of {} for MapReduce Job: {}", dataset, context, e);
+      }
+    }
+    return metas;
+  }
+
 
   /**
    * Creates a jar that contains everything that are needed for running the MapReduce program by Hadoop.
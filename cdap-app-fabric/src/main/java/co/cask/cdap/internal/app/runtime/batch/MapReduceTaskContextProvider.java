@@ -21,17 +21,26 @@ import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.app.metrics.MapReduceMetrics;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.program.Programs;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data2.datafabric.dataset.RemoteDatasetFramework;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.internal.app.runtime.workflow.WorkflowMapReduceProgram;
+import co.cask.cdap.proto.DatasetMeta;
+import co.cask.cdap.proto.Id;
 import co.cask.tephra.TransactionSystemClient;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.inject.Binding;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
@@ -45,9 +54,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * Provides access to MapReduceTaskContext for mapreduce job tasks.
@@ -70,6 +81,21 @@ public class MapReduceTaskContextProvider extends AbstractIdleService {
     return MRConfig.LOCAL_FRAMEWORK_NAME.equals(mrFramework);
   }
 
+  /**
+   * Returns the {@link RemoteDatasetFramework} bound in the given {@link Injector} or {@code null} if the
+   * datasets are not accessed through the dataset service.
+   */
+  @Nullable
+  static RemoteDatasetFramework getRemoteDatasetFramework(Injector injector) {
+    Binding<DatasetFramework> binding = injector.getExistingBinding(
+      Key.get(DatasetFramework.class, Names.named(DataSetsModules.BASIC_DATASET_FRAMEWORK)));
+    if (binding == null) {
+      return null;
+    }
+    DatasetFramework datasetFramework = binding.getProvider().get();
+    return datasetFramework instanceof RemoteDatasetFramework ? (RemoteDatasetFramework) datasetFramework : null;
+  }
+
   /**
    * Creates an instance with the given {@link Injector} that will be used for getting service instances.
    */
@@ -151,7 +177,7 @@ public class MapReduceTaskContextProvider extends AbstractIdleService {
    *
    * @return set of dataset names used by the program.
    */
-  private Set<String> getDatasets(Program program, MapReduceContextConfig contextConfig) {
+  static Set<String> getDatasets(Program program, MapReduceContextConfig contextConfig) {
     final Set<String> datasets = Sets.newHashSet(program.getApplicationSpecification().getDatasets().keySet());
     String dataset = contextConfig.getInputDataSet();
     if (dataset != null) {
@@ -172,6 +198,7 @@ public class MapReduceTaskContextProvider extends AbstractIdleService {
     final DatasetFramework datasetFramework = injector.getInstance(DatasetFramework.class);
     // Multiple instances of BasicMapReduceTaskContext can shares the same program.
     final AtomicReference<Program> programRef = new AtomicReference<>();
+    final AtomicReference<RemoteDatasetFramework> preloadFramework = new AtomicReference<>();
 
     return new CacheLoader<ContextCacheKey, BasicMapReduceTaskContext>() {
       @Override
@@ -184,6 +211,21 @@ public class MapReduceTaskContextProvider extends AbstractIdleService {
           // Creation of program is relatively cheap, so just create and do compare and set.
           programRef.compareAndSet(null, createProgram(contextConfig, classLoader));
           program = programRef.get();
+
+          // In distributed mode, use the dataset metas resolved at submission time, so that every task
+          // doesn't need to go to the dataset service for instantiating the same datasets. The metas were
+          // fetched with the program as the owner, which registered the dataset usage already.
+          if (!isLocal(contextConfig.getHConf())) {
+            RemoteDatasetFramework remoteDatasetFramework = getRemoteDatasetFramework(injector);
+            if (remoteDatasetFramework != null && preloadFramework.compareAndSet(null, remoteDatasetFramework)) {
+              Id.Namespace namespace = Id.Namespace.from(program.getNamespaceId());
+              Map<Id.DatasetInstance, DatasetMeta> metas = Maps.newHashMap();
+              for (Map.Entry<String, DatasetMeta> entry : contextConfig.getDatasetMetas().entrySet()) {
+                metas.put(Id.DatasetInstance.from(namespace, entry.getKey()), entry.getValue());
+              }
+              remoteDatasetFramework.preload(metas, ImmutableList.<Id>of(program.getId()));
+            }
+          }
         }
         MapReduceSpecification spec = program.getApplicationSpecification().getMapReduce().get(program.getName());
         MapReduceMetrics.TaskType taskType = MapReduceMetrics.TaskType.from(key.getTaskAttemptID().getTaskType());
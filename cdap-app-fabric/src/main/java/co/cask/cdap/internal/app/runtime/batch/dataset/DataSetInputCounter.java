@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.batch.dataset;
+
+/**
+ * Hadoop counters updated by the {@link DataSetInputFormat} record readers while reading dataset splits.
+ */
+public enum DataSetInputCounter {
+  /**
+   * Number of records read.
+   */
+  RECORDS,
+
+  /**
+   * Estimated number of bytes read. Only available for {@link co.cask.cdap.api.dataset.table.Table} datasets.
+   */
+  BYTES,
+
+  /**
+   * Time in milliseconds spent in reading splits, from the start of reading until the end of the split.
+   */
+  READ_MILLIS,
+
+  /**
+   * Time in milliseconds that the task waited for records to be fetched from the dataset.
+   */
+  WAIT_MILLIS
+}
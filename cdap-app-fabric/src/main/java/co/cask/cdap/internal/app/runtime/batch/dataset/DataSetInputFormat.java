@@ -43,6 +43,15 @@ public final class DataSetInputFormat<KEY, VALUE> extends InputFormat<KEY, VALUE
 
   public static final String HCONF_ATTR_INPUT_DATASET = "input.dataset.name";
 
+  /**
+   * Configuration key for the number of records to read ahead from each split in a separate thread, so that
+   * reading from the dataset overlaps with the processing in the mapper. Read ahead is disabled if it is not
+   * positive, which is the default. It should only be enabled if the mapper doesn't modify the input dataset,
+   * and if the dataset returns new key and value objects for each record, such as
+   * {@link co.cask.cdap.api.dataset.table.Table}.
+   */
+  public static final String HCONF_ATTR_READ_AHEAD_SIZE = "input.dataset.readahead.size";
+
   public static void setInput(Job job, String inputDatasetName) {
     job.setInputFormatClass(DataSetInputFormat.class);
     job.getConfiguration().set(DataSetInputFormat.HCONF_ATTR_INPUT_DATASET, inputDatasetName);
@@ -73,6 +82,10 @@ public final class DataSetInputFormat<KEY, VALUE> extends InputFormat<KEY, VALUE
     String dataSetName = getInputName(conf);
     BatchReadable<KEY, VALUE> inputDataset = taskContext.getDataset(dataSetName);
     SplitReader<KEY, VALUE> splitReader = inputDataset.createSplitReader(inputSplit.getSplit());
+    int readAheadSize = conf.getInt(HCONF_ATTR_READ_AHEAD_SIZE, 0);
+    if (readAheadSize > 0) {
+      splitReader = new ReadAheadSplitReader<>(splitReader, readAheadSize);
+    }
 
     // the record reader now owns the context and will close it
     return new DataSetRecordReader<>(splitReader, taskContext);
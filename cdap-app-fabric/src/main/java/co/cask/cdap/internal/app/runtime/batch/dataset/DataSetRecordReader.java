@@ -17,19 +17,46 @@
 package co.cask.cdap.internal.app.runtime.batch.dataset;
 
 import co.cask.cdap.api.data.batch.SplitReader;
+import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.internal.app.runtime.batch.BasicMapReduceTaskContext;
 import com.google.common.base.Throwables;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A {@link RecordReader} that reads from a dataset split through a {@link SplitReader}. Statistics about
+ * the reading are collected through the {@link DataSetInputCounter} counters.
+ *
+ * @param <KEY> Type of key.
+ * @param <VALUE> Type of value.
+ */
 final class DataSetRecordReader<KEY, VALUE> extends RecordReader<KEY, VALUE> {
+  private static final long TIME_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
   private final SplitReader<KEY, VALUE> splitReader;
   private final BasicMapReduceTaskContext context;
 
+  private Counter recordsCounter;
+  private Counter bytesCounter;
+  private Counter readMillisCounter;
+  private Counter waitMillisCounter;
+  private long lastReportNanos;
+  private long waitNanos;
+  private boolean finished;
+  // Whether the values are Table rows, which are the only records whose size is counted.
+  // It is decided from the first record, so that values of other datasets are not decoded more than once.
+  private Boolean rowValues;
+  // Value of the current record if it was already read for deciding the value type
+  private VALUE probedValue;
+  private boolean hasProbedValue;
+
   public DataSetRecordReader(SplitReader<KEY, VALUE> splitReader, BasicMapReduceTaskContext context) {
     this.splitReader = splitReader;
     this.context = context;
@@ -41,12 +68,43 @@ final class DataSetRecordReader<KEY, VALUE> extends RecordReader<KEY, VALUE> {
     // hack: making sure logging context is set on the thread that accesses the runtime context
     LoggingContextAccessor.setLoggingContext(this.context.getLoggingContext());
     DataSetInputSplit inputSplit = (DataSetInputSplit) split;
+
+    recordsCounter = context.getCounter(DataSetInputCounter.RECORDS);
+    bytesCounter = context.getCounter(DataSetInputCounter.BYTES);
+    readMillisCounter = context.getCounter(DataSetInputCounter.READ_MILLIS);
+    waitMillisCounter = context.getCounter(DataSetInputCounter.WAIT_MILLIS);
+
+    lastReportNanos = System.nanoTime();
     splitReader.initialize(inputSplit.getSplit());
+    waitNanos = System.nanoTime() - lastReportNanos;
   }
 
   @Override
   public boolean nextKeyValue() throws IOException, InterruptedException {
-    return splitReader.nextKeyValue();
+    long nanos = System.nanoTime();
+    boolean hasNext = splitReader.nextKeyValue();
+    long now = System.nanoTime();
+    waitNanos += now - nanos;
+
+    hasProbedValue = false;
+    probedValue = null;
+    if (hasNext) {
+      recordsCounter.increment(1L);
+      if (rowValues == null) {
+        probedValue = splitReader.getCurrentValue();
+        hasProbedValue = true;
+        rowValues = probedValue instanceof Row;
+      }
+      if (rowValues) {
+        bytesCounter.increment(getSize(splitReader.getCurrentKey(), (Row) getCurrentValue()));
+      }
+      if (now - lastReportNanos >= TIME_REPORT_INTERVAL_NANOS) {
+        reportTime(now);
+      }
+    } else {
+      finish();
+    }
+    return hasNext;
   }
 
   @Override
@@ -56,7 +114,7 @@ final class DataSetRecordReader<KEY, VALUE> extends RecordReader<KEY, VALUE> {
 
   @Override
   public VALUE getCurrentValue() throws IOException, InterruptedException {
-    return splitReader.getCurrentValue();
+    return hasProbedValue ? probedValue : splitReader.getCurrentValue();
   }
 
   @Override
@@ -66,6 +124,7 @@ final class DataSetRecordReader<KEY, VALUE> extends RecordReader<KEY, VALUE> {
 
   @Override
   public void close() throws IOException {
+    finish();
     splitReader.close();
     try {
       context.flushOperations();
@@ -74,4 +133,40 @@ final class DataSetRecordReader<KEY, VALUE> extends RecordReader<KEY, VALUE> {
       throw new IOException(e);
     }
   }
+
+  /**
+   * Reports the time spent on reading the split that is not yet reported. Only the first call has effect.
+   */
+  private void finish() {
+    if (finished || readMillisCounter == null) {
+      return;
+    }
+    finished = true;
+    reportTime(System.nanoTime());
+  }
+
+  /**
+   * Adds the time spent since the last report to the counters. It is done periodically instead of at the end of
+   * the split, so that the rates computed from the counters of running tasks are accurate.
+   */
+  private void reportTime(long now) {
+    readMillisCounter.increment(TimeUnit.NANOSECONDS.toMillis(now - lastReportNanos));
+    waitMillisCounter.increment(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    lastReportNanos = now;
+    waitNanos = 0;
+  }
+
+  /**
+   * Returns the number of bytes of a record read from a {@link co.cask.cdap.api.dataset.table.Table}.
+   */
+  private long getSize(KEY key, Row row) {
+    long size = 0;
+    if (key instanceof byte[]) {
+      size += ((byte[]) key).length;
+    }
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      size += column.getKey().length + column.getValue().length;
+    }
+    return size;
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.batch.dataset;
+
+import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.batch.SplitReader;
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SplitReader} that reads records from another {@link SplitReader} in a separate thread, so that
+ * fetching records from the dataset overlaps with the processing of the records by the caller.
+ * Up to a fixed number of records are read ahead.
+ *
+ * This reader can only be used if the delegating reader returns a new key and value object for each record,
+ * and if the dataset is not modified by the caller while reading.
+ *
+ * @param <KEY> Type of key.
+ * @param <VALUE> Type of value.
+ */
+final class ReadAheadSplitReader<KEY, VALUE> extends SplitReader<KEY, VALUE> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadAheadSplitReader.class);
+
+  // Marker for the end of the records.
+  private static final Entry<?, ?> END = new Entry<>(null, null, 1.0f, null);
+
+  private final SplitReader<KEY, VALUE> delegate;
+  private final BlockingQueue<Entry<KEY, VALUE>> queue;
+  private Thread readThread;
+  private Entry<KEY, VALUE> current;
+  private volatile boolean closed;
+
+  ReadAheadSplitReader(SplitReader<KEY, VALUE> delegate, int readAheadSize) {
+    this.delegate = delegate;
+    this.queue = new ArrayBlockingQueue<>(readAheadSize);
+  }
+
+  @Override
+  public void initialize(Split split) throws InterruptedException {
+    delegate.initialize(split);
+    readThread = new Thread("dataset-split-readahead") {
+      @Override
+      public void run() {
+        readRecords();
+      }
+    };
+    readThread.setDaemon(true);
+    readThread.start();
+  }
+
+  @Override
+  public boolean nextKeyValue() throws InterruptedException {
+    if (current == END) {
+      return false;
+    }
+    current = queue.take();
+    if (current.failure != null) {
+      Throwables.propagateIfPossible(current.failure, InterruptedException.class);
+      throw Throwables.propagate(current.failure);
+    }
+    return current != END;
+  }
+
+  @Override
+  public KEY getCurrentKey() throws InterruptedException {
+    return current == null ? null : current.key;
+  }
+
+  @Override
+  public VALUE getCurrentValue() throws InterruptedException {
+    return current == null ? null : current.value;
+  }
+
+  @Override
+  public float getProgress() throws InterruptedException {
+    return current == null ? 0.0f : current.progress;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    if (readThread != null) {
+      readThread.interrupt();
+      try {
+        readThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    delegate.close();
+  }
+
+  /**
+   * Reads records from the delegating reader until the end is reached or this reader is closed.
+   */
+  @SuppressWarnings("unchecked")
+  private void readRecords() {
+    try {
+      while (!closed && delegate.nextKeyValue()) {
+        Entry<KEY, VALUE> entry = new Entry<>(delegate.getCurrentKey(), delegate.getCurrentValue(),
+                                              delegate.getProgress(), null);
+        // Use timed offer so that closing of this reader is noticed
+        while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+          if (closed) {
+            return;
+          }
+        }
+      }
+      queue.put((Entry<KEY, VALUE>) END);
+    } catch (InterruptedException e) {
+      // Only happens when this reader is closed.
+      LOG.debug("Read ahead of split interrupted.");
+    } catch (Throwable t) {
+      if (!closed) {
+        try {
+          queue.put(new Entry<KEY, VALUE>(null, null, 0.0f, t));
+        } catch (InterruptedException e) {
+          LOG.debug("Read ahead of split interrupted while reporting failure.", t);
+        }
+      }
+    }
+  }
+
+  /**
+   * A record read ahead, or a failure that happened while reading.
+   */
+  private static final class Entry<KEY, VALUE> {
+    private final KEY key;
+    private final VALUE value;
+    private final float progress;
+    private final Throwable failure;
+
+    private Entry(KEY key, VALUE value, float progress, Throwable failure) {
+      this.key = key;
+      this.value = value;
+      this.progress = progress;
+      this.failure = failure;
+    }
+  }
+}
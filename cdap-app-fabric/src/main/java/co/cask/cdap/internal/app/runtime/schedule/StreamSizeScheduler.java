@@ -72,7 +72,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 /**
  * {@link Scheduler} that triggers program executions based on data availability in streams.
@@ -81,7 +80,6 @@ import javax.annotation.Nullable;
 public class StreamSizeScheduler implements Scheduler {
   private static final Logger LOG = LoggerFactory.getLogger(StreamSizeScheduler.class);
   private static final int STREAM_POLLING_THREAD_POOL_SIZE = 10;
-  private static final int POLLING_AFTER_NOTIFICATION_RETRY = 3;
 
   private final long pollingDelay;
   private final NotificationService notificationService;
@@ -453,8 +451,11 @@ public class StreamSizeScheduler implements Scheduler {
 
   /**
    * One instance of this class contains a list of {@link StreamSizeSchedule}s, which are all interested
-   * in the same stream. This instance subscribes to the size notification of the stream, and polls the
-   * stream for its size whenever the schedules it references need the information.
+   * in the same stream. This instance subscribes to the size notification of the stream. The sizes carried by
+   * the notifications are aggregated by the stream service from the exact byte counts of the stream writers, and
+   * are used to trigger the schedules directly, once the gap between them and the stream size metric is known.
+   * The stream is only polled through metrics to compute that gap, and at a slow fixed rate in case
+   * notifications are lost.
    * The {@link StreamSizeScheduler} communicates with this class, which in turn communicates to the schedules
    * it contains to perform operations on the schedules - suspend, resume, etc.
    */
@@ -472,6 +473,10 @@ public class StreamSizeScheduler implements Scheduler {
 
     // delta represents the gap between notifications for the stream and the stream size metric
     private Long delta;
+    // Number of times the stream writers counters were reset, which invalidates the delta
+    private int deltaResets;
+    // Whether a poll for computing the delta is already scheduled
+    private boolean deltaPollScheduled;
 
     private StreamSubscriber(Id.Stream streamId) {
       this.streamId = streamId;
@@ -526,34 +531,39 @@ public class StreamSizeScheduler implements Scheduler {
 
     @Override
     public void received(final StreamSizeNotification notification, NotificationContext notificationContext) {
-      // We only use the stream size notification if it came after the last seen notification
-      if (lastNotification != null && notification.getTimestamp() <= lastNotification.getTimestamp()) {
-        return;
-      }
-
-      lastNotification = notification;
-      if (activeTasks.get() <= 0) {
-        return;
-      }
-
-      boolean poll = false;
-      Long estimate = null;
+      Long estimate;
       synchronized (deltaLock) {
-        if (delta == null) {
-          poll = true;
-        } else {
-          for (StreamSizeScheduleTask streamSizeScheduleTask : scheduleTasks.values()) {
-            if (streamSizeScheduleTask.shouldTriggerProgram(notification.getSize() - delta)) {
-              poll = true;
-              estimate = notification.getSize() - delta;
-              break;
-            }
+        // We only use the stream size notification if it came after the last seen notification
+        if (lastNotification != null && notification.getTimestamp() <= lastNotification.getTimestamp()) {
+          return;
+        }
+        if (lastNotification != null && notification.getSize() < lastNotification.getSize()) {
+          // The stream writers counters were reset, the gap with the metric has to be computed again
+          delta = null;
+          deltaResets++;
+        }
+        lastNotification = notification;
+        if (activeTasks.get() <= 0) {
+          return;
+        }
+        estimate = (delta == null) ? null : notification.getSize() - delta;
+        if (estimate == null) {
+          // Only one poll is needed to compute the delta, no matter how many notifications arrive meanwhile
+          if (!deltaPollScheduled) {
+            deltaPollScheduled = true;
+            pollAfterNotification(deltaResets);
           }
+          return;
         }
       }
 
-      if (poll) {
-        pollAfterNotification(notification, estimate);
+      // No need to poll the metric system to confirm the size: the notification size comes from the exact
+      // counts of the stream writers
+      for (StreamSizeScheduleTask streamSizeScheduleTask : scheduleTasks.values()) {
+        if (streamSizeScheduleTask.shouldTriggerProgram(estimate)) {
+          sendPollingInfoToActiveTasks(new StreamSize(estimate, notification.getTimestamp()));
+          break;
+        }
       }
     }
 
@@ -565,49 +575,28 @@ public class StreamSizeScheduler implements Scheduler {
     }
 
     /**
-     * Poll the stream size using metrics after receiving a notification, either to set the delta between metric value
-     * and notification value, or because the notification indicates that one {@link StreamSizeScheduleTask} will
-     * execute, and polling the stream is required to confirm the information.
+     * Poll the stream size using metrics after receiving a notification, to set the delta between metric value
+     * and notification value. The polling happens after the metrics of the data described by the notification
+     * had time to be collected. The delta is computed with the latest notification at the time of polling. The
+     * metric rather lags behind that notification than exceeds it, so that schedules rather trigger late than early.
      *
-     * @param notification {@link StreamSizeNotification} received which triggered polling
-     * @param estimate size of data present in the stream, in bytes, which will trigger the execution of a program
-     *                 in one of the {@link StreamSizeScheduleTask} present in this {@link StreamSubscriber}. It
-     *                 can be null if, when receiving the {@code notification}, not enough information was present
-     *                 to compute an estimate - ie, the {@code delta} was null
+     * @param resets number of resets of the stream writers counters when the poll was scheduled. The delta is
+     *               not computed if another reset happened since then
      */
-    private void pollAfterNotification(final StreamSizeNotification notification, @Nullable final Long estimate) {
-      final AtomicBoolean firstPoll = new AtomicBoolean(true);
-      final AtomicInteger pollRetry = new AtomicInteger(POLLING_AFTER_NOTIFICATION_RETRY);
+    private void pollAfterNotification(final int resets) {
       pollBookingExecutor.schedule(new Runnable() {
         @Override
         public void run() {
           try {
             StreamSize streamSize;
-            boolean estimateReached = false;
             synchronized (deltaLock) {
+              deltaPollScheduled = false;
               streamSize = pollOnce();
-              if (firstPoll.compareAndSet(true, false)) {
-                // The first polling will recalibrate the delta, for future use when receiving a notification
-                delta = notification.getSize() - streamSize.getSize();
-              }
-              if (estimate != null && streamSize.getSize() >= estimate) {
-                estimateReached = true;
+              if (resets == deltaResets && lastNotification != null) {
+                delta = lastNotification.getSize() - streamSize.getSize();
               }
             }
-
-            // It is always worth it to send the latest stream size to the active tasks. Even if the estimate was
-            // not reached, one of the tasks might expect less data than shown by the estimate
             sendPollingInfoToActiveTasks(streamSize);
-
-            // TODO instead of relying on expected size to retry polling, use notification timestamp VS
-            // metric timestamp [CDAP-1676]
-            if (estimate != null && !estimateReached && pollRetry.decrementAndGet() >= 0) {
-              pollBookingExecutor.schedule(this, Constants.MetricsCollector.DEFAULT_FREQUENCY_SECONDS,
-                                           TimeUnit.SECONDS);
-            } else if (estimate != null && !estimateReached) {
-              LOG.debug("Polling estimate {} was not reached for stream {} after {} retries",
-                        estimate, streamId.getId(), POLLING_AFTER_NOTIFICATION_RETRY);
-            }
           } catch (IOException e) {
             LOG.error("Could not poll stream {}", streamId.getId(), e);
           } catch (Throwable t) {
@@ -978,11 +967,11 @@ public class StreamSizeScheduler implements Scheduler {
     }
 
     /**
-     * Received stream size information coming from polling.
+     * Received stream size information coming from polling, or estimated from a notification.
      *
      * @param pollingInfo {@link StreamSize} info that came from polling the stream using metrics
      */
-    public void receivedPollingInformation(@Nonnull StreamSize pollingInfo) {
+    public synchronized void receivedPollingInformation(@Nonnull StreamSize pollingInfo) {
       Preconditions.checkNotNull(pollingInfo);
       if (!active.get()) {
         return;
@@ -1021,6 +1010,9 @@ public class StreamSizeScheduler implements Scheduler {
       basePollTs = pollingInfo.getTimestamp();
 
 
+      LOG.debug("Triggering schedule {} {}ms after stream {} reached {} bytes", streamSizeSchedule.getName(),
+                System.currentTimeMillis() - pollingInfo.getTimestamp(), streamSizeSchedule.getStreamName(),
+                pollingInfo.getSize());
       final ScheduleTaskRunner taskRunner = new ScheduleTaskRunner(store, lifecycleService, propertiesResolver,
                                                                    taskExecutorService);
       try {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -34,20 +34,29 @@ import org.quartz.JobPersistenceException;
 import org.quartz.ObjectAlreadyExistsException;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.simpl.RAMJobStore;
 import org.quartz.spi.ClassLoadHelper;
 import org.quartz.spi.OperableTrigger;
 import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * ScheduleStore extends from RAMJobStore and persists the trigger and schedule information into datasets.
+ *
+ * Changes made by a bulk operation, such as storing many jobs and triggers or pausing all triggers of a group,
+ * are persisted in a single transaction when the outermost operation completes. The fire times of triggers are
+ * persisted after each batch of triggers is fired, so that triggers don't misfire after a restart. This happens
+ * synchronously in the scheduler thread and delays running the jobs of the batch by one transaction.
  */
 public class DatasetBasedTimeScheduleStore extends RAMJobStore {
 
@@ -57,6 +66,8 @@ public class DatasetBasedTimeScheduleStore extends RAMJobStore {
 
   private final TransactionExecutorFactory factory;
   private final ScheduleStoreTableUtil tableUtil;
+  // Changes to be persisted when the bulk operation that is in progress in the current thread completes
+  private final ThreadLocal<List<TransactionExecutor.Subroutine>> pendingChanges = new ThreadLocal<>();
   private Table table;
 
   @Inject
@@ -90,24 +101,28 @@ public class DatasetBasedTimeScheduleStore extends RAMJobStore {
     persistJobAndTrigger(null, newTrigger);
   }
 
-
   @Override
   public void storeJobsAndTriggers(Map<JobDetail, Set<? extends Trigger>> triggersAndJobs,
                                    boolean replace) throws JobPersistenceException {
-    super.storeJobsAndTriggers(triggersAndJobs, replace);
-    for (Map.Entry<JobDetail, Set<? extends Trigger>> e : triggersAndJobs.entrySet()) {
-      persistJobAndTrigger(e.getKey(), null);
-      for (Trigger trigger : e.getValue()) {
-        persistJobAndTrigger(null, (OperableTrigger) trigger);
-      }
+    // RAMJobStore stores each of the jobs and triggers through storeJob and storeTrigger
+    boolean outermost = startBatch();
+    try {
+      super.storeJobsAndTriggers(triggersAndJobs, replace);
+    } finally {
+      endBatch(outermost);
     }
   }
 
   @Override
   public void storeJobAndTrigger(JobDetail newJob, OperableTrigger newTrigger)
                                  throws JobPersistenceException {
-    storeJob(newJob, true);
-    storeTrigger(newTrigger, true);
+    boolean outermost = startBatch();
+    try {
+      storeJob(newJob, true);
+      storeTrigger(newTrigger, true);
+    } finally {
+      endBatch(outermost);
+    }
   }
 
   @Override
@@ -116,78 +131,232 @@ public class DatasetBasedTimeScheduleStore extends RAMJobStore {
     persistChangeOfState(triggerKey, Trigger.TriggerState.PAUSED);
   }
 
+  @Override
+  public List<String> pauseTriggers(GroupMatcher<TriggerKey> matcher) {
+    boolean outermost = startBatch();
+    try {
+      return super.pauseTriggers(matcher);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public void pauseJob(JobKey jobKey) {
+    boolean outermost = startBatch();
+    try {
+      super.pauseJob(jobKey);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public List<String> pauseJobs(GroupMatcher<JobKey> matcher) {
+    boolean outermost = startBatch();
+    try {
+      return super.pauseJobs(matcher);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public void pauseAll() {
+    boolean outermost = startBatch();
+    try {
+      super.pauseAll();
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
   @Override
   public void resumeTrigger(TriggerKey triggerKey) {
     super.resumeTrigger(triggerKey);
     persistChangeOfState(triggerKey, Trigger.TriggerState.NORMAL);
   }
 
+  @Override
+  public List<String> resumeTriggers(GroupMatcher<TriggerKey> matcher) {
+    boolean outermost = startBatch();
+    try {
+      return super.resumeTriggers(matcher);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public void resumeJob(JobKey jobKey) {
+    boolean outermost = startBatch();
+    try {
+      super.resumeJob(jobKey);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public Collection<String> resumeJobs(GroupMatcher<JobKey> matcher) {
+    boolean outermost = startBatch();
+    try {
+      return super.resumeJobs(matcher);
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
+  @Override
+  public void resumeAll() {
+    boolean outermost = startBatch();
+    try {
+      super.resumeAll();
+    } finally {
+      endBatch(outermost);
+    }
+  }
+
   @Override
   public boolean removeTrigger(TriggerKey triggerKey) {
     try {
+      OperableTrigger trigger = super.retrieveTrigger(triggerKey);
       super.removeTrigger(triggerKey);
       executeDelete(triggerKey);
+      // RAMJobStore removes a non-durable job together with its last trigger, without going through removeJob
+      if (trigger != null && super.retrieveJob(trigger.getJobKey()) == null) {
+        executeDelete(trigger.getJobKey());
+      }
       return true;
     } catch (Throwable t) {
       throw Throwables.propagate(t);
     }
   }
 
+  @Override
+  public boolean removeTriggers(List<TriggerKey> triggerKeys) throws JobPersistenceException {
+    boolean outermost = startBatch();
+    try {
+      return super.removeTriggers(triggerKeys);
+    } finally {
+      endBatch(outermost);
+    }
+  }
 
   @Override
   public boolean removeJob(JobKey jobKey) {
+    // RAMJobStore removes the triggers of the job through removeTrigger
+    boolean outermost = startBatch();
     try {
       super.removeJob(jobKey);
       executeDelete(jobKey);
       return true;
     } catch (Throwable t) {
       throw Throwables.propagate(t);
+    } finally {
+      endBatch(outermost);
     }
   }
 
-  private void executeDelete(final TriggerKey triggerKey) {
+  @Override
+  public boolean removeJobs(List<JobKey> jobKeys) throws JobPersistenceException {
+    boolean outermost = startBatch();
     try {
-      factory.createExecutor(ImmutableList.of((TransactionAware) table))
-        .execute(new TransactionExecutor.Subroutine() {
-          @Override
-          public void apply() throws Exception {
-            removeTrigger(table, triggerKey);
-          }
-        });
-    } catch (Throwable th) {
-      throw Throwables.propagate(th);
+      return super.removeJobs(jobKeys);
+    } finally {
+      endBatch(outermost);
     }
   }
 
-  private void executeDelete(final JobKey jobKey) {
+  @Override
+  public List<TriggerFiredResult> triggersFired(List<OperableTrigger> firedTriggers) {
+    List<TriggerFiredResult> results = super.triggersFired(firedTriggers);
+
+    final List<OperableTrigger> triggers = Lists.newArrayListWithCapacity(results.size());
+    for (TriggerFiredResult result : results) {
+      TriggerFiredBundle bundle = result.getTriggerFiredBundle();
+      // Triggers that won't fire again are removed once their job completes
+      if (bundle != null && bundle.getTrigger().getNextFireTime() != null) {
+        triggers.add(bundle.getTrigger());
+      }
+    }
+    if (triggers.isEmpty()) {
+      return results;
+    }
+
+    // The fire times are persisted synchronously by the scheduler thread, in one transaction for the whole batch,
+    // before the jobs of the batch are run. This is best effort: if it fails, the failure is logged and the jobs
+    // still run, and the triggers are handled as misfired after a restart, which is what happened before.
     try {
-      factory.createExecutor(ImmutableList.of((TransactionAware) table))
-        .execute(new TransactionExecutor.Subroutine() {
-          @Override
-          public void apply() throws Exception {
-            removeJob(table, jobKey);
+      execute(ImmutableList.<TransactionExecutor.Subroutine>of(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          for (OperableTrigger trigger : triggers) {
+            // Use the current in-memory state, so that a concurrent pause or removal is not overwritten
+            Trigger.TriggerState state = getTriggerState(trigger.getKey());
+            if (state == Trigger.TriggerState.NONE) {
+              continue;
+            }
+            persistTrigger(table, trigger, state == Trigger.TriggerState.PAUSED ? Trigger.TriggerState.PAUSED
+                                                                                : Trigger.TriggerState.NORMAL);
           }
-        });
-    } catch (Throwable th) {
-      throw Throwables.propagate(th);
+        }
+      }));
+    } catch (Throwable t) {
+      LOG.warn("Failed to persist the fire times of {} triggers.", triggers.size(), t);
     }
+    return results;
   }
 
-  private void persistChangeOfState(final TriggerKey triggerKey, final Trigger.TriggerState newTriggerState) {
+  /**
+   * Starts a bulk operation in the current thread, during which changes are collected instead of being persisted.
+   *
+   * @return {@code true} if this is the outermost bulk operation, which needs to persist the changes at the end
+   */
+  private boolean startBatch() {
+    if (pendingChanges.get() != null) {
+      return false;
+    }
+    pendingChanges.set(Lists.<TransactionExecutor.Subroutine>newArrayList());
+    return true;
+  }
+
+  /**
+   * Ends a bulk operation in the current thread. If it is the outermost one, all changes collected are
+   * persisted in one transaction.
+   */
+  private void endBatch(boolean outermost) {
+    if (!outermost) {
+      return;
+    }
+    List<TransactionExecutor.Subroutine> changes = pendingChanges.get();
+    pendingChanges.remove();
+    execute(changes);
+  }
+
+  /**
+   * Persists the given change, or adds it to the pending changes if a bulk operation is in progress.
+   */
+  private void persist(TransactionExecutor.Subroutine change) {
+    List<TransactionExecutor.Subroutine> changes = pendingChanges.get();
+    if (changes != null) {
+      changes.add(change);
+    } else {
+      execute(ImmutableList.of(change));
+    }
+  }
+
+  private void execute(final List<TransactionExecutor.Subroutine> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
     try {
-      Preconditions.checkNotNull(triggerKey);
       factory.createExecutor(ImmutableList.of((TransactionAware) table))
         .execute(new TransactionExecutor.Subroutine() {
           @Override
           public void apply() throws Exception {
-            TriggerStatus storedTriggerStatus = readTrigger(triggerKey);
-            if (storedTriggerStatus != null) {
-              // its okay to persist the same trigger back again since during pause/resume
-              // operation the trigger does not change. We persist it here with just the new trigger state
-              persistTrigger(table, storedTriggerStatus.trigger, newTriggerState);
-            } else {
-              LOG.warn("Trigger key {} was not found in {} while trying to persist its state to {}.",
-                       triggerKey, ScheduleStoreTableUtil.SCHEDULE_STORE_DATASET_NAME, newTriggerState);
+            for (TransactionExecutor.Subroutine change : changes) {
+              change.apply();
             }
           }
         });
@@ -196,30 +365,65 @@ public class DatasetBasedTimeScheduleStore extends RAMJobStore {
     }
   }
 
+  private void executeDelete(final TriggerKey triggerKey) {
+    persist(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        removeTrigger(table, triggerKey);
+      }
+    });
+  }
+
+  private void executeDelete(final JobKey jobKey) {
+    persist(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        removeJob(table, jobKey);
+      }
+    });
+  }
+
+  private void persistChangeOfState(final TriggerKey triggerKey, final Trigger.TriggerState newTriggerState) {
+    Preconditions.checkNotNull(triggerKey);
+    persist(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        TriggerStatus storedTriggerStatus = readTrigger(triggerKey);
+        if (storedTriggerStatus != null) {
+          // its okay to persist the same trigger back again since during pause/resume
+          // operation the trigger does not change. We persist it here with just the new trigger state
+          persistTrigger(table, storedTriggerStatus.trigger, newTriggerState);
+        } else {
+          LOG.warn("Trigger key {} was not found in {} while trying to persist its state to {}.",
+                   triggerKey, ScheduleStoreTableUtil.SCHEDULE_STORE_DATASET_NAME, newTriggerState);
+        }
+      }
+    });
+  }
+
   private void persistJobAndTrigger(final JobDetail newJob, final OperableTrigger newTrigger) {
-    try {
-      Trigger.TriggerState triggerState = Trigger.TriggerState.NONE;
-      if (newTrigger != null) {
+    Trigger.TriggerState triggerState = Trigger.TriggerState.NONE;
+    if (newTrigger != null) {
+      try {
         triggerState = super.getTriggerState(newTrigger.getKey());
+      } catch (JobPersistenceException e) {
+        throw Throwables.propagate(e);
       }
-      final Trigger.TriggerState finalTriggerState = triggerState;
-      factory.createExecutor(ImmutableList.of((TransactionAware) table))
-        .execute(new TransactionExecutor.Subroutine() {
-          @Override
-          public void apply() throws Exception {
-            if (newJob != null) {
-              persistJob(table, newJob);
-              LOG.debug("Schedule: stored job with key {}", newJob.getKey());
-            }
-            if (newTrigger != null) {
-              persistTrigger(table, newTrigger, finalTriggerState);
-              LOG.debug("Schedule: stored trigger with key {}", newTrigger.getKey());
-            }
-          }
-        });
-    } catch (Throwable th) {
-      throw Throwables.propagate(th);
     }
+    final Trigger.TriggerState finalTriggerState = triggerState;
+    persist(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        if (newJob != null) {
+          persistJob(table, newJob);
+          LOG.debug("Schedule: stored job with key {}", newJob.getKey());
+        }
+        if (newTrigger != null) {
+          persistTrigger(table, newTrigger, finalTriggerState);
+          LOG.debug("Schedule: stored trigger with key {}", newTrigger.getKey());
+        }
+      }
+    });
   }
 
   // Persist the job information to dataset
@@ -241,7 +445,8 @@ public class DatasetBasedTimeScheduleStore extends RAMJobStore {
 
   private void removeJob(Table table, JobKey key) {
     byte[][] col = new byte[1][];
-    col[0] = Bytes.toBytes(key.getName());
+    // jobs are stored by the string form of the key, see persistJob
+    col[0] = Bytes.toBytes(key.toString());
     table.delete(JOB_KEY, col);
   }
 
@@ -51,6 +51,7 @@ import org.apache.twill.internal.ServiceListenerAdapter;
  */
 public class ServiceProgramRunner extends AbstractProgramRunnerWithPlugin {
 
+  private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
   private final DatasetFramework datasetFramework;
   private final DiscoveryServiceClient discoveryServiceClient;
@@ -64,6 +65,7 @@ public class ServiceProgramRunner extends AbstractProgramRunnerWithPlugin {
                               TransactionSystemClient txClient, ServiceAnnouncer serviceAnnouncer,
                               DataFabricFacadeFactory dataFabricFacadeFactory) {
     super(cConf);
+    this.cConf = cConf;
     this.metricsCollectionService = metricsCollectionService;
     this.datasetFramework = datasetFramework;
     this.discoveryServiceClient = discoveryServiceClient;
@@ -104,7 +106,8 @@ public class ServiceProgramRunner extends AbstractProgramRunnerWithPlugin {
 
     final PluginInstantiator pluginInstantiator = createPluginInstantiator(options, program.getClassLoader());
     try {
-      ServiceHttpServer component = new ServiceHttpServer(host, program, spec, runId, options.getUserArguments(),
+      ServiceHttpServer component = new ServiceHttpServer(cConf, host, program, spec, runId,
+                                                          options.getUserArguments(),
                                                           instanceId, instanceCount, serviceAnnouncer,
                                                           metricsCollectionService, datasetFramework,
                                                           dataFabricFacadeFactory, txClient, discoveryServiceClient,
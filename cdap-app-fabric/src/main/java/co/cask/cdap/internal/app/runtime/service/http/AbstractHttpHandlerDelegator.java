@@ -38,6 +38,13 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
 public abstract class AbstractHttpHandlerDelegator<T extends HttpServiceHandler> implements HttpHandler,
                                                                                             DelegatorContext<T> {
 
+  private static final Runnable NO_OP = new Runnable() {
+    @Override
+    public void run() {
+      // no-op
+    }
+  };
+
   private final DelegatorContext<T> context;
   private MetricsContext metricsContext;
 
@@ -78,6 +85,10 @@ public abstract class AbstractHttpHandlerDelegator<T extends HttpServiceHandler>
    */
   protected final void dismissTransactionContext() {
     ((TransactionalHttpServiceContext) context.getServiceContext()).dismissTransactionContext();
+    // The handler call is completed, hence the handler instance can be used by other calls
+    if (context instanceof PooledDelegatorContext) {
+      ((PooledDelegatorContext<T>) context).release();
+    }
   }
 
   /**
@@ -114,7 +125,12 @@ public abstract class AbstractHttpHandlerDelegator<T extends HttpServiceHandler>
                                                    TransactionContext txContext) {
     Preconditions.checkState(context.getServiceContext() instanceof TransactionalHttpServiceContext,
                              "This instance of HttpServiceContext does not support transactions.");
-    return new BodyConsumerAdapter(responder, consumer, txContext,
-                                   ((TransactionalHttpServiceContext) context.getServiceContext()));
+    TransactionalHttpServiceContext serviceContext = (TransactionalHttpServiceContext) context.getServiceContext();
+    // The handler instance is used by the body consumer until the request body is consumed
+    Runnable onComplete = NO_OP;
+    if (context instanceof PooledDelegatorContext) {
+      onComplete = ((PooledDelegatorContext<T>) context).detach();
+    }
+    return new BodyConsumerAdapter(responder, consumer, txContext, serviceContext, onComplete);
   }
 }
@@ -44,6 +44,7 @@ final class BodyConsumerAdapter extends BodyConsumer {
   private final HttpContentConsumer delegate;
   private final TransactionContext txContext;
   private final TransactionalHttpServiceContext serviceContext;
+  private final Runnable onComplete;
   private final Transactional transactional;
   private final ClassLoader programContextClassLoader;
 
@@ -56,13 +57,16 @@ final class BodyConsumerAdapter extends BodyConsumer {
    * @param delegate the {@link HttpContentConsumer} to delegate calls to
    * @param txContext
    * @param serviceContext the {@link TransactionalHttpServiceContext} for this handler.
+   * @param onComplete a {@link Runnable} to run after the transaction context is dismissed
    */
   BodyConsumerAdapter(DelayedHttpServiceResponder responder, HttpContentConsumer delegate,
-                      TransactionContext txContext, TransactionalHttpServiceContext serviceContext) {
+                      TransactionContext txContext, TransactionalHttpServiceContext serviceContext,
+                      Runnable onComplete) {
     this.responder = responder;
     this.delegate = delegate;
     this.txContext = txContext;
     this.serviceContext = serviceContext;
+    this.onComplete = onComplete;
     this.transactional = createTransactional(this.txContext);
     this.programContextClassLoader = new CombineClassLoader(null, ImmutableList.of(delegate.getClass().getClassLoader(),
                                                                                    getClass().getClassLoader()));
@@ -104,6 +108,7 @@ final class BodyConsumerAdapter extends BodyConsumer {
     // To the HttpContentConsumer, the call is completed even if it fails to send response back to client.
     completed = true;
     serviceContext.dismissTransactionContext();
+    onComplete.run();
     BodyConsumerAdapter.this.responder.execute();
   }
 
@@ -151,6 +156,7 @@ final class BodyConsumerAdapter extends BodyConsumer {
       responder.setTransactionFailureResponse(t);
     } finally {
       serviceContext.dismissTransactionContext();
+      onComplete.run();
       responder.execute(false);
     }
   }
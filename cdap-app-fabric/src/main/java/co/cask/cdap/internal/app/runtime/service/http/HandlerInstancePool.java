@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded pool of handler instances, used by {@link PooledDelegatorContext} implementations. An instance is bound
+ * to the calling thread by {@link #get()} until it is {@link #release() released} or {@link #detach() detached}.
+ * If no instance becomes available within the configured wait time, an extra instance is created, which is closed
+ * when it is returned.
+ *
+ * @param <T> Type of the pooled instances
+ */
+public abstract class HandlerInstancePool<T extends Closeable> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HandlerInstancePool.class);
+
+  private final String name;
+  private final int poolSize;
+  private final long waitMillis;
+  private final MetricsContext metricsContext;
+  private final ThreadLocal<T> currentInstance;
+  private final BlockingQueue<T> idleInstances;
+  private final Set<T> allInstances;
+  private final AtomicInteger instanceCount;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param name name of the pool, used for logging
+   * @param poolSize maximum number of instances kept in the pool
+   * @param waitMillis milliseconds to wait for an idle instance before creating an extra one
+   * @param metricsContext the {@link MetricsContext} for emitting pool metrics or {@code null} to emit none
+   */
+  protected HandlerInstancePool(String name, int poolSize, long waitMillis, @Nullable MetricsContext metricsContext) {
+    Preconditions.checkArgument(poolSize > 0, "Pool size must be positive: %s", poolSize);
+    this.name = name;
+    this.poolSize = poolSize;
+    this.waitMillis = waitMillis;
+    this.metricsContext = metricsContext;
+    this.currentInstance = new ThreadLocal<>();
+    this.idleInstances = new LinkedBlockingQueue<>();
+    this.allInstances = Sets.newSetFromMap(Maps.<T, Boolean>newConcurrentMap());
+    this.instanceCount = new AtomicInteger();
+  }
+
+  /**
+   * Creates a new instance for the pool.
+   */
+  protected abstract T create();
+
+  /**
+   * Fills the pool with instances.
+   */
+  public void warmUp() {
+    while (reserve()) {
+      idleInstances.add(createInstance());
+    }
+    emitPoolSize();
+  }
+
+  /**
+   * Returns the instance bound to the current thread, borrowing one from the pool if there is none.
+   */
+  public T get() {
+    T instance = currentInstance.get();
+    if (instance == null) {
+      instance = borrow();
+      currentInstance.set(instance);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the instance bound to the current thread to the pool.
+   */
+  public void release() {
+    T instance = currentInstance.get();
+    if (instance != null) {
+      currentInstance.remove();
+      giveBack(instance);
+    }
+  }
+
+  /**
+   * Unbinds the instance from the current thread without returning it to the pool.
+   *
+   * @return a {@link Runnable} to run for returning the instance to the pool
+   */
+  public Runnable detach() {
+    final T instance = currentInstance.get();
+    currentInstance.remove();
+    return new Runnable() {
+      @Override
+      public void run() {
+        if (instance != null) {
+          giveBack(instance);
+        }
+      }
+    };
+  }
+
+  /**
+   * Closes all instances created by this pool.
+   */
+  public void close() {
+    idleInstances.clear();
+    for (T instance : allInstances) {
+      closeQuietly(instance);
+    }
+    allInstances.clear();
+  }
+
+  /**
+   * Returns the number of instances that currently exist, including the extra ones.
+   */
+  public int getSize() {
+    return instanceCount.get();
+  }
+
+  /**
+   * Returns the number of instances that are not borrowed.
+   */
+  public int getIdleSize() {
+    return idleInstances.size();
+  }
+
+  private T borrow() {
+    T instance = idleInstances.poll();
+    if (instance == null) {
+      if (reserve()) {
+        return createInstance();
+      }
+      long startTime = System.nanoTime();
+      try {
+        instance = idleInstances.poll(waitMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (metricsContext != null) {
+        metricsContext.increment("handler.pool.wait.ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      }
+      if (instance == null) {
+        LOG.debug("No instance of handler {} available after {} ms. Creating an extra instance.", name, waitMillis);
+        if (metricsContext != null) {
+          metricsContext.increment("handler.pool.overflow", 1);
+        }
+        instanceCount.incrementAndGet();
+        return createInstance();
+      }
+    }
+    emitPoolSize();
+    return instance;
+  }
+
+  private void giveBack(T instance) {
+    // Extra instances created when the pool was exhausted are closed
+    while (true) {
+      int count = instanceCount.get();
+      if (count <= poolSize) {
+        idleInstances.add(instance);
+        emitPoolSize();
+        return;
+      }
+      if (instanceCount.compareAndSet(count, count - 1)) {
+        allInstances.remove(instance);
+        closeQuietly(instance);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Reserves the creation of a new instance if the pool is not full yet.
+   */
+  private boolean reserve() {
+    while (true) {
+      int count = instanceCount.get();
+      if (count >= poolSize) {
+        return false;
+      }
+      if (instanceCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private T createInstance() {
+    try {
+      T instance = create();
+      allInstances.add(instance);
+      return instance;
+    } catch (RuntimeException e) {
+      instanceCount.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private void closeQuietly(T instance) {
+    try {
+      instance.close();
+    } catch (IOException e) {
+      LOG.error("Exception raised when closing the HttpServiceHandler of class {} and it's context.", name, e);
+    }
+  }
+
+  private void emitPoolSize() {
+    if (metricsContext != null) {
+      metricsContext.gauge("handler.pool.size", instanceCount.get());
+      metricsContext.gauge("handler.pool.idle", idleInstances.size());
+    }
+  }
+}
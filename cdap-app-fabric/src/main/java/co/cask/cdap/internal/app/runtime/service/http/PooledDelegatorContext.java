@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import co.cask.cdap.api.service.http.HttpServiceHandler;
+
+/**
+ * A {@link DelegatorContext} that borrows handler instances from a pool. The instance returned by
+ * {@link #getHandler()} and {@link #getServiceContext()} is bound to the calling thread until it is
+ * released or detached.
+ *
+ * @param <T> Type of the user {@link HttpServiceHandler}
+ */
+public interface PooledDelegatorContext<T extends HttpServiceHandler> extends DelegatorContext<T> {
+
+  /**
+   * Returns the handler instance bound to the current thread to the pool.
+   */
+  void release();
+
+  /**
+   * Unbinds the handler instance from the current thread without returning it to the pool. This is used when
+   * the handler call continues after the handler method returned, e.g. for consuming the request body.
+   *
+   * @return a {@link Runnable} to run for returning the handler instance to the pool
+   */
+  Runnable detach();
+}
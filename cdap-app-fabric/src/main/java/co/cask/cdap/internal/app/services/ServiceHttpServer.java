@@ -23,6 +23,7 @@ import co.cask.cdap.api.service.http.HttpServiceHandler;
 import co.cask.cdap.api.service.http.HttpServiceHandlerSpecification;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.Arguments;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.CombineClassLoader;
@@ -38,7 +39,9 @@ import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.app.runtime.service.http.BasicHttpServiceContext;
 import co.cask.cdap.internal.app.runtime.service.http.DelegatorContext;
+import co.cask.cdap.internal.app.runtime.service.http.HandlerInstancePool;
 import co.cask.cdap.internal.app.runtime.service.http.HttpHandlerFactory;
+import co.cask.cdap.internal.app.runtime.service.http.PooledDelegatorContext;
 import co.cask.cdap.internal.lang.Reflections;
 import co.cask.cdap.logging.context.UserServiceLoggingContext;
 import co.cask.cdap.proto.Id;
@@ -102,12 +105,16 @@ public class ServiceHttpServer extends AbstractIdleService {
   private final DiscoveryServiceClient discoveryServiceClient;
   private final BasicHttpServiceContextFactory contextFactory;
   private final PluginInstantiator pluginInstantiator;
+  private final int handlerPoolSize;
+  private final long handlerPoolWaitMillis;
+  private final List<PooledHandlerDelegatorContext> pooledDelegatorContexts;
 
   private NettyHttpService service;
   private Cancellable cancelDiscovery;
   private Timer timer;
 
-  public ServiceHttpServer(String host, Program program, ServiceSpecification spec, RunId runId, Arguments runtimeArgs,
+  public ServiceHttpServer(CConfiguration cConf, String host, Program program, ServiceSpecification spec,
+                           RunId runId, Arguments runtimeArgs,
                            int instanceId, int instanceCount, ServiceAnnouncer serviceAnnouncer,
                            MetricsCollectionService metricsCollectionService, DatasetFramework datasetFramework,
                            DataFabricFacadeFactory dataFabricFacadeFactory, TransactionSystemClient txClient,
@@ -127,6 +134,11 @@ public class ServiceHttpServer extends AbstractIdleService {
     this.txClient = txClient;
     this.discoveryServiceClient = discoveryServiceClient;
     this.pluginInstantiator = pluginInstantiator;
+    this.handlerPoolSize = cConf.getInt(Constants.AppFabric.SERVICE_HANDLER_POOL_SIZE,
+                                        Constants.AppFabric.DEFAULT_SERVICE_HANDLER_POOL_SIZE);
+    this.handlerPoolWaitMillis = cConf.getLong(Constants.AppFabric.SERVICE_HANDLER_POOL_WAIT_MS,
+                                               Constants.AppFabric.DEFAULT_SERVICE_HANDLER_POOL_WAIT_MS);
+    this.pooledDelegatorContexts = Lists.newArrayList();
 
     this.contextFactory = createHttpServiceContextFactory();
     this.handlerReferences = Maps.newConcurrentMap();
@@ -140,13 +152,24 @@ public class ServiceHttpServer extends AbstractIdleService {
     // Constructs all handler delegator. It is for bridging ServiceHttpHandler and HttpHandler (in netty-http).
     List<HandlerDelegatorContext> delegatorContexts = Lists.newArrayList();
     InstantiatorFactory instantiatorFactory = new InstantiatorFactory(false);
+    MetricsContext collector = getMetricCollector(metricsCollectionService, program, runId.getId());
 
     for (Map.Entry<String, HttpServiceHandlerSpecification> entry : spec.getHandlers().entrySet()) {
       try {
         Class<?> handlerClass = program.getClassLoader().loadClass(entry.getValue().getClassName());
         @SuppressWarnings("unchecked")
         TypeToken<HttpServiceHandler> type = TypeToken.of((Class<HttpServiceHandler>) handlerClass);
-        delegatorContexts.add(new HandlerDelegatorContext(type, instantiatorFactory, entry.getValue(), contextFactory));
+        if (handlerPoolSize > 0) {
+          MetricsContext poolMetrics = collector == null
+            ? null : collector.childContext(Constants.Metrics.Tag.HANDLER, entry.getValue().getName());
+          PooledHandlerDelegatorContext delegatorContext =
+            new PooledHandlerDelegatorContext(type, instantiatorFactory, entry.getValue(), contextFactory, poolMetrics);
+          pooledDelegatorContexts.add(delegatorContext);
+          delegatorContexts.add(delegatorContext);
+        } else {
+          delegatorContexts.add(new ThreadLocalHandlerDelegatorContext(type, instantiatorFactory,
+                                                                       entry.getValue(), contextFactory));
+        }
       } catch (Exception e) {
         LOG.error("Could not initialize HTTP Service");
         Throwables.propagate(e);
@@ -160,7 +183,7 @@ public class ServiceHttpServer extends AbstractIdleService {
                                       programId.getApplicationId(),
                                       programId.getId());
 
-    service = createNettyHttpService(runId, host, pathPrefix, delegatorContexts, metricsCollectionService);
+    service = createNettyHttpService(host, pathPrefix, delegatorContexts, collector);
   }
 
   private BasicHttpServiceContextFactory createHttpServiceContextFactory() {
@@ -189,6 +212,11 @@ public class ServiceHttpServer extends AbstractIdleService {
                                                                            String.valueOf(instanceId)));
     LOG.debug("Starting HTTP server for Service {}", program.getId());
     Id.Program programId = program.getId();
+
+    // Creates the pooled handler instances upfront, so that the first requests don't pay for it
+    for (PooledHandlerDelegatorContext delegatorContext : pooledDelegatorContexts) {
+      delegatorContext.warmUp();
+    }
     service.startAndWait();
 
     // announce the twill runnable
@@ -219,6 +247,9 @@ public class ServiceHttpServer extends AbstractIdleService {
                     handlerContextPair.getClass(), e);
         }
       }
+      for (PooledHandlerDelegatorContext delegatorContext : pooledDelegatorContexts) {
+        delegatorContext.close();
+      }
     }
   }
 
@@ -296,15 +327,13 @@ public class ServiceHttpServer extends AbstractIdleService {
    * @param host the host which the service will run on
    * @param pathPrefix a string prepended to the paths which the handlers in handlerContextPairs will bind to
    * @param delegatorContexts the list {@link HandlerDelegatorContext}
-   * @param metricsCollectionService a {@link MetricsCollectionService} for metrics collection
+   * @param collector a {@link MetricsContext} for metrics collection
    * @return a NettyHttpService which delegates to the {@link HttpServiceHandler}s to handle the HTTP requests
    */
-  private NettyHttpService createNettyHttpService(RunId runId, String host, String pathPrefix,
+  private NettyHttpService createNettyHttpService(String host, String pathPrefix,
                                                   Iterable<HandlerDelegatorContext> delegatorContexts,
-                                                  MetricsCollectionService metricsCollectionService) {
+                                                  @Nullable MetricsContext collector) {
     // Create HttpHandlers which delegate to the HttpServiceHandlers
-    MetricsContext collector =
-      getMetricCollector(metricsCollectionService, program, runId.getId());
     HttpHandlerFactory factory = new HttpHandlerFactory(pathPrefix, collector);
     List<HttpHandler> nettyHttpHandlers = Lists.newArrayList();
     // get the runtime args from the twill context
@@ -360,10 +389,9 @@ public class ServiceHttpServer extends AbstractIdleService {
   /**
    * Helper class for carrying information about each user handler instance.
    */
-  private final class HandlerDelegatorContext implements DelegatorContext<HttpServiceHandler> {
+  private abstract class HandlerDelegatorContext implements DelegatorContext<HttpServiceHandler> {
 
     private final InstantiatorFactory instantiatorFactory;
-    private final ThreadLocal<Supplier<HandlerContextPair>> handlerThreadLocal;
     private final TypeToken<HttpServiceHandler> handlerType;
     private final HttpServiceHandlerSpecification spec;
     private final BasicHttpServiceContextFactory contextFactory;
@@ -374,7 +402,6 @@ public class ServiceHttpServer extends AbstractIdleService {
                                     BasicHttpServiceContextFactory contextFactory) {
       this.handlerType = handlerType;
       this.instantiatorFactory = instantiatorFactory;
-      this.handlerThreadLocal = new ThreadLocal<>();
       this.spec = spec;
       this.contextFactory = contextFactory;
     }
@@ -390,16 +417,14 @@ public class ServiceHttpServer extends AbstractIdleService {
     }
 
     /**
-     * If either a {@link HttpServiceHandler} or a {@link BasicHttpServiceContext} is requested and they aren't
-     * set in the ThreadLocal, then create both and set to the ThreadLocal.
-     * @return the HandlerContextPair created.
+     * Returns the {@link HandlerContextPair} to be used by the current thread.
      */
-    private HandlerContextPair getHandlerContextPair() {
-      Supplier<HandlerContextPair> supplier = handlerThreadLocal.get();
-      if (supplier != null) {
-        return supplier.get();
-      }
+    protected abstract HandlerContextPair getHandlerContextPair();
 
+    /**
+     * Creates a new {@link HttpServiceHandler} with a new {@link BasicHttpServiceContext} and initializes it.
+     */
+    protected HandlerContextPair createHandlerContextPair() {
       // Instantiate the user handler and injects Metrics and Dataset fields.
       HttpServiceHandler handler = instantiatorFactory.get(handlerType).create();
       BasicHttpServiceContext context = contextFactory.create(spec);
@@ -408,7 +433,42 @@ public class ServiceHttpServer extends AbstractIdleService {
                         new DataSetFieldSetter(context),
                         new PropertyFieldSetter(spec.getProperties()));
       initHandler(handler, context);
-      HandlerContextPair handlerContextPair = new HandlerContextPair(handler, context);
+      return new HandlerContextPair(handler, context);
+    }
+
+    TypeToken<HttpServiceHandler> getHandlerType() {
+      return handlerType;
+    }
+  }
+
+  /**
+   * A {@link HandlerDelegatorContext} that creates one user handler instance per thread.
+   */
+  private final class ThreadLocalHandlerDelegatorContext extends HandlerDelegatorContext {
+
+    private final ThreadLocal<Supplier<HandlerContextPair>> handlerThreadLocal;
+
+    private ThreadLocalHandlerDelegatorContext(TypeToken<HttpServiceHandler> handlerType,
+                                               InstantiatorFactory instantiatorFactory,
+                                               HttpServiceHandlerSpecification spec,
+                                               BasicHttpServiceContextFactory contextFactory) {
+      super(handlerType, instantiatorFactory, spec, contextFactory);
+      this.handlerThreadLocal = new ThreadLocal<>();
+    }
+
+    /**
+     * If either a {@link HttpServiceHandler} or a {@link BasicHttpServiceContext} is requested and they aren't
+     * set in the ThreadLocal, then create both and set to the ThreadLocal.
+     * @return the HandlerContextPair created.
+     */
+    @Override
+    protected HandlerContextPair getHandlerContextPair() {
+      Supplier<HandlerContextPair> supplier = handlerThreadLocal.get();
+      if (supplier != null) {
+        return supplier.get();
+      }
+
+      HandlerContextPair handlerContextPair = createHandlerContextPair();
       supplier = Suppliers.ofInstance(handlerContextPair);
 
       // We use GC of the supplier as a signal for us to know that a thread is gone
@@ -422,9 +482,60 @@ public class ServiceHttpServer extends AbstractIdleService {
       handlerThreadLocal.set(supplier);
       return handlerContextPair;
     }
+  }
 
-    TypeToken<HttpServiceHandler> getHandlerType() {
-      return handlerType;
+  /**
+   * A {@link HandlerDelegatorContext} that shares a bounded pool of user handler instances, together with the
+   * datasets they use, among all threads. An instance is borrowed for the duration of one handler call, which is
+   * until the transaction context of the call is dismissed.
+   */
+  private final class PooledHandlerDelegatorContext extends HandlerDelegatorContext
+                                                    implements PooledDelegatorContext<HttpServiceHandler> {
+
+    private final HandlerInstancePool<HandlerContextPair> pool;
+
+    private PooledHandlerDelegatorContext(TypeToken<HttpServiceHandler> handlerType,
+                                          InstantiatorFactory instantiatorFactory,
+                                          HttpServiceHandlerSpecification spec,
+                                          BasicHttpServiceContextFactory contextFactory,
+                                          @Nullable MetricsContext metricsContext) {
+      super(handlerType, instantiatorFactory, spec, contextFactory);
+      this.pool = new HandlerInstancePool<HandlerContextPair>(spec.getClassName(), handlerPoolSize,
+                                                              handlerPoolWaitMillis, metricsContext) {
+        @Override
+        protected HandlerContextPair create() {
+          return createHandlerContextPair();
+        }
+      };
+    }
+
+    /**
+     * Fills the pool with handler instances.
+     */
+    void warmUp() {
+      pool.warmUp();
+    }
+
+    @Override
+    protected HandlerContextPair getHandlerContextPair() {
+      return pool.get();
+    }
+
+    @Override
+    public void release() {
+      pool.release();
+    }
+
+    @Override
+    public Runnable detach() {
+      return pool.detach();
+    }
+
+    /**
+     * Destroys all handler instances in the pool.
+     */
+    void close() {
+      pool.close();
     }
   }
 
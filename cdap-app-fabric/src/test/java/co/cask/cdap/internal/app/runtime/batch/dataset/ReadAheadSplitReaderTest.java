@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.batch.dataset;
+
+import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.batch.SplitReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReadAheadSplitReader}.
+ */
+public class ReadAheadSplitReaderTest {
+
+  @Test
+  public void testReadAll() throws InterruptedException {
+    CountingSplitReader countingReader = new CountingSplitReader(1000, -1);
+    SplitReader<Integer, String> reader = new ReadAheadSplitReader<>(countingReader, 10);
+    reader.initialize(null);
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(reader.nextKeyValue());
+      Assert.assertEquals(i, reader.getCurrentKey().intValue());
+      Assert.assertEquals("value" + i, reader.getCurrentValue());
+    }
+    Assert.assertFalse(reader.nextKeyValue());
+    Assert.assertFalse(reader.nextKeyValue());
+    reader.close();
+    Assert.assertTrue(countingReader.closed);
+  }
+
+  @Test
+  public void testEarlyClose() throws InterruptedException {
+    CountingSplitReader countingReader = new CountingSplitReader(1000, -1);
+    SplitReader<Integer, String> reader = new ReadAheadSplitReader<>(countingReader, 10);
+    reader.initialize(null);
+    Assert.assertTrue(reader.nextKeyValue());
+    // Closing before reading all records shouldn't block
+    reader.close();
+    Assert.assertTrue(countingReader.closed);
+  }
+
+  @Test
+  public void testFailure() throws InterruptedException {
+    SplitReader<Integer, String> reader = new ReadAheadSplitReader<>(new CountingSplitReader(1000, 5), 10);
+    reader.initialize(null);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertTrue(reader.nextKeyValue());
+    }
+    try {
+      reader.nextKeyValue();
+      Assert.fail("Expected failure from the underlying reader");
+    } catch (IllegalStateException e) {
+      // expected
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * A {@link SplitReader} that returns a sequence of numbers and optionally fails at a given position.
+   */
+  private static final class CountingSplitReader extends SplitReader<Integer, String> {
+    private final int count;
+    private final int failAt;
+    private int current = -1;
+    private volatile boolean closed;
+
+    private CountingSplitReader(int count, int failAt) {
+      this.count = count;
+      this.failAt = failAt;
+    }
+
+    @Override
+    public void initialize(Split split) {
+      // no-op
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+      current++;
+      if (current == failAt) {
+        throw new IllegalStateException("Failure at " + current);
+      }
+      return current < count;
+    }
+
+    @Override
+    public Integer getCurrentKey() {
+      return current;
+    }
+
+    @Override
+    public String getCurrentValue() {
+      return "value" + current;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
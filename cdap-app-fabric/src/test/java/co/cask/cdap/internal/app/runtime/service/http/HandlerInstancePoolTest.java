@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.service.http;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link HandlerInstancePool}.
+ */
+public class HandlerInstancePoolTest {
+
+  @Test
+  public void testConcurrentBorrow() throws Exception {
+    final TestPool pool = new TestPool(2, 50L);
+    pool.warmUp();
+    Assert.assertEquals(2, pool.getSize());
+    Assert.assertEquals(2, pool.getIdleSize());
+    Assert.assertEquals(2, pool.created.get());
+
+    // Four concurrent callers, two of them get extra instances after waiting for the pool
+    final Set<TestInstance> borrowed = Sets.newSetFromMap(Maps.<TestInstance, Boolean>newConcurrentMap());
+    final CountDownLatch borrowedLatch = new CountDownLatch(4);
+    final CountDownLatch releaseLatch = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            TestInstance instance = pool.get();
+            // The instance stays bound to the thread until it is released
+            Assert.assertSame(instance, pool.get());
+            borrowed.add(instance);
+            borrowedLatch.countDown();
+            Assert.assertTrue(releaseLatch.await(10, TimeUnit.SECONDS));
+            pool.release();
+            return null;
+          }
+        }));
+      }
+
+      Assert.assertTrue(borrowedLatch.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(4, borrowed.size());
+      Assert.assertEquals(4, pool.created.get());
+      Assert.assertEquals(4, pool.getSize());
+      Assert.assertEquals(0, pool.getIdleSize());
+
+      releaseLatch.countDown();
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // The extra instances are closed when they are returned
+    Assert.assertEquals(2, pool.getSize());
+    Assert.assertEquals(2, pool.getIdleSize());
+    Assert.assertEquals(2, pool.closed.get());
+
+    pool.close();
+    Assert.assertEquals(4, pool.closed.get());
+  }
+
+  @Test
+  public void testWaitForRelease() throws Exception {
+    final TestPool pool = new TestPool(1, TimeUnit.SECONDS.toMillis(10));
+    TestInstance instance = pool.get();
+    Assert.assertEquals(1, pool.created.get());
+
+    // Another caller waits for the instance instead of creating a new one
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<TestInstance> future = executor.submit(new Callable<TestInstance>() {
+        @Override
+        public TestInstance call() throws Exception {
+          TestInstance instance = pool.get();
+          pool.release();
+          return instance;
+        }
+      });
+      pool.release();
+      Assert.assertSame(instance, future.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(1, pool.created.get());
+    Assert.assertEquals(1, pool.getIdleSize());
+    Assert.assertEquals(0, pool.closed.get());
+  }
+
+  @Test
+  public void testDetach() {
+    TestPool pool = new TestPool(1, 10L);
+    TestInstance instance = pool.get();
+    Runnable giveBack = pool.detach();
+
+    // The detached instance is not bound to the thread nor available in the pool
+    TestInstance extra = pool.get();
+    Assert.assertNotSame(instance, extra);
+    Assert.assertEquals(2, pool.getSize());
+
+    // Since the pool is full, whichever instance is returned first is closed
+    giveBack.run();
+    Assert.assertEquals(1, pool.getSize());
+    Assert.assertEquals(0, pool.getIdleSize());
+    Assert.assertEquals(1, pool.closed.get());
+
+    pool.release();
+    Assert.assertEquals(1, pool.getSize());
+    Assert.assertEquals(1, pool.getIdleSize());
+    Assert.assertEquals(1, pool.closed.get());
+    Assert.assertSame(extra, pool.get());
+    pool.release();
+
+    // Releasing without a bound instance does nothing
+    pool.release();
+    Assert.assertEquals(1, pool.getIdleSize());
+  }
+
+  private static final class TestPool extends HandlerInstancePool<TestInstance> {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private TestPool(int poolSize, long waitMillis) {
+      super("test", poolSize, waitMillis, null);
+    }
+
+    @Override
+    protected TestInstance create() {
+      created.incrementAndGet();
+      return new TestInstance(closed);
+    }
+  }
+
+  private static final class TestInstance implements Closeable {
+
+    private final AtomicInteger closed;
+
+    private TestInstance(AtomicInteger closed) {
+      this.closed = closed;
+    }
+
+    @Override
+    public void close() {
+      closed.incrementAndGet();
+    }
+  }
+}
@@ -51,6 +51,7 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -66,6 +67,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -293,6 +295,74 @@ public class HttpHandlerGeneratorTest {
     }
   }
 
+  @Test
+  public void testPooledDelegatorContext() throws Exception {
+    MetricsContext noOpsMetricsContext =
+      new NoOpMetricsCollectionService().getContext(new HashMap<String, String>());
+    HttpHandlerFactory factory = new HttpHandlerFactory("/pooled", noOpsMetricsContext);
+
+    final File outputDir = TEMP_FOLDER.newFolder();
+    TestPooledDelegatorContext<MyHttpHandler> handlerContext =
+      new TestPooledDelegatorContext<MyHttpHandler>() {
+        @Override
+        protected MyHttpHandler createHandler() {
+          return new MyHttpHandler();
+        }
+      };
+    TestPooledDelegatorContext<FileUploadHandler> uploadContext =
+      new TestPooledDelegatorContext<FileUploadHandler>() {
+        @Override
+        protected FileUploadHandler createHandler() {
+          return new FileUploadHandler(outputDir);
+        }
+      };
+
+    NettyHttpService service = NettyHttpService.builder()
+      .addHttpHandlers(ImmutableList.of(factory.createHttpHandler(TypeToken.of(MyHttpHandler.class), handlerContext),
+                                        factory.createHttpHandler(TypeToken.of(FileUploadHandler.class),
+                                                                  uploadContext)))
+      .build();
+
+    service.startAndWait();
+    try {
+      InetSocketAddress bindAddress = service.getBindAddress();
+
+      // A handler call without content consumer releases the handler when the call completes
+      URLConnection urlConn = new URL(String.format("http://%s:%d/pooled/p2/handle",
+                                                    bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      urlConn.setReadTimeout(2000);
+      Assert.assertEquals("Hello World", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+      Assert.assertEquals(1, handlerContext.pool.getIdleSize());
+
+      // The same handler instance is used by the next call
+      urlConn = new URL(String.format("http://%s:%d/pooled/p2/handle",
+                                      bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      urlConn.setReadTimeout(2000);
+      Assert.assertEquals("Hello World", new String(ByteStreams.toByteArray(urlConn.getInputStream()), Charsets.UTF_8));
+      Assert.assertEquals(1, handlerContext.pool.getIdleSize());
+      Assert.assertEquals(1, handlerContext.pool.getSize());
+      Assert.assertEquals(1, handlerContext.created.get());
+
+      // A handler call with content consumer detaches the handler and releases it after the body is consumed
+      HttpURLConnection uploadConn = (HttpURLConnection) new URL(
+        String.format("http://%s:%d/pooled/upload/test.txt",
+                      bindAddress.getHostName(), bindAddress.getPort())).openConnection();
+      uploadConn.setReadTimeout(2000);
+      uploadConn.setDoOutput(true);
+      uploadConn.setRequestMethod("PUT");
+      uploadConn.setChunkedStreamingMode(-1);
+      try (OutputStream os = uploadConn.getOutputStream()) {
+        os.write("Hello".getBytes(Charsets.UTF_8));
+      }
+      Assert.assertEquals(200, uploadConn.getResponseCode());
+      Assert.assertEquals(1, uploadContext.pool.getIdleSize());
+      Assert.assertEquals(1, uploadContext.pool.getSize());
+      Assert.assertEquals(1, uploadContext.created.get());
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   @Test
   public void testHttpHandlerGenerator() throws Exception {
     MetricsContext noOpsMetricsContext =
@@ -375,6 +445,61 @@ public class HttpHandlerGeneratorTest {
     protected abstract T createHandler();
   }
 
+  /**
+   * A {@link PooledDelegatorContext} backed by a {@link HandlerInstancePool} of one handler instance.
+   */
+  private abstract static class TestPooledDelegatorContext<T extends HttpServiceHandler>
+    implements PooledDelegatorContext<T> {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final HandlerInstancePool<HandlerHolder<T>> pool =
+      new HandlerInstancePool<HandlerHolder<T>>("test", 1, 100L, null) {
+        @Override
+        protected HandlerHolder<T> create() {
+          created.incrementAndGet();
+          return new HandlerHolder<>(createHandler());
+        }
+      };
+
+    @Override
+    public final T getHandler() {
+      return pool.get().handler;
+    }
+
+    @Override
+    public final HttpServiceContext getServiceContext() {
+      return new NoOpHttpServiceContext();
+    }
+
+    @Override
+    public void release() {
+      pool.release();
+    }
+
+    @Override
+    public Runnable detach() {
+      return pool.detach();
+    }
+
+    protected abstract T createHandler();
+  }
+
+  /**
+   * Holds a handler instance in a {@link HandlerInstancePool}.
+   */
+  private static final class HandlerHolder<T> implements Closeable {
+    private final T handler;
+
+    private HandlerHolder(T handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void close() {
+      // No-op
+    }
+  }
+
   /**
    * An no-op implementation of {@link HttpServiceContext} that implements no-op transactional operations.
    */
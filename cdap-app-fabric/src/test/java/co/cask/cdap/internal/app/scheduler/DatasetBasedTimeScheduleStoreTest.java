@@ -37,6 +37,7 @@ import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
 import co.cask.cdap.test.SlowTests;
 import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionManager;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -48,12 +49,16 @@ import org.junit.experimental.categories.Category;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.impl.DirectSchedulerFactory;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.listeners.JobListenerSupport;
 import org.quartz.simpl.RAMJobStore;
 import org.quartz.simpl.SimpleThreadPool;
 import org.quartz.spi.JobStore;
@@ -62,6 +67,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -244,6 +250,86 @@ public class DatasetBasedTimeScheduleStoreTest {
     schedulerTearDown();
   }
 
+  @Test
+  public void testBulkOperationsAcrossRestarts() throws SchedulerException {
+    schedulerSetup(true);
+    String group = "bulk";
+    Map<JobDetail, Set<? extends Trigger>> jobsTriggers = new HashMap<>();
+    List<JobKey> jobKeys = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      JobDetail job = JobBuilder.newJob(LogPrintingJob.class)
+        .withIdentity(String.format("developer:application1:bulk%d", i), group)
+        .build();
+      Trigger trigger = TriggerBuilder.newTrigger()
+        .withIdentity("bulk" + i, group)
+        .startNow()
+        .withSchedule(CronScheduleBuilder.cronSchedule("0 0/5 * * * ?"))
+        .build();
+      jobsTriggers.put(job, Sets.newHashSet(trigger));
+      jobKeys.add(job.getKey());
+    }
+    scheduler.scheduleJobs(jobsTriggers, true);
+
+    // pause all of them, the states should be retained across restart
+    scheduler.pauseJobs(GroupMatcher.jobGroupEquals(group));
+    schedulerTearDown();
+    schedulerSetup(true);
+    for (JobKey jobKey : jobKeys) {
+      verifyJobAndTriggers(jobKey, 1, Trigger.TriggerState.PAUSED);
+    }
+
+    scheduler.resumeJobs(GroupMatcher.jobGroupEquals(group));
+    schedulerTearDown();
+    schedulerSetup(true);
+    for (JobKey jobKey : jobKeys) {
+      verifyJobAndTriggers(jobKey, 1, Trigger.TriggerState.NORMAL);
+    }
+
+    // deleted jobs and their triggers should not come back after restart
+    Assert.assertTrue(scheduler.deleteJobs(jobKeys));
+    schedulerTearDown();
+    schedulerSetup(true);
+    for (JobKey jobKey : jobKeys) {
+      Assert.assertNull(scheduler.getJobDetail(jobKey));
+    }
+    Assert.assertTrue(scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group)).isEmpty());
+    schedulerTearDown();
+  }
+
+  @Test
+  public void testFireTimesAcrossRestarts() throws SchedulerException, InterruptedException {
+    schedulerSetup(true);
+    JobDetail jobDetail = getJobDetail("mapreduce3");
+    Trigger trigger = TriggerBuilder.newTrigger()
+      .withIdentity("p4")
+      .startNow()
+      .withSchedule(CronScheduleBuilder.cronSchedule("0/1 * * * * ?"))
+      .build();
+
+    // The job store persists the fire times of a batch of triggers before their jobs are executed
+    final CountDownLatch jobExecuted = new CountDownLatch(1);
+    scheduler.getListenerManager().addJobListener(new JobListenerSupport() {
+      @Override
+      public String getName() {
+        return "fireTimesListener";
+      }
+
+      @Override
+      public void jobToBeExecuted(JobExecutionContext context) {
+        jobExecuted.countDown();
+      }
+    }, KeyMatcher.keyEquals(jobDetail.getKey()));
+    scheduler.scheduleJob(jobDetail, trigger);
+    Assert.assertTrue(jobExecuted.await(10, TimeUnit.SECONDS));
+
+    // The fire time should have been persisted
+    schedulerTearDown();
+    schedulerSetup(true);
+    Assert.assertNotNull(scheduler.getTrigger(trigger.getKey()).getPreviousFireTime());
+    scheduler.deleteJob(jobDetail.getKey());
+    schedulerTearDown();
+  }
+
   private void verifyJobAndTriggers(JobKey jobKey, int expectedTriggersSize,
                                     Trigger.TriggerState expectedTriggerState) throws SchedulerException {
     JobDetail jobStored = scheduler.getJobDetail(jobKey);
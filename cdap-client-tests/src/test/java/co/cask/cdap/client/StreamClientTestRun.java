@@ -27,6 +27,7 @@ import co.cask.cdap.proto.NamespaceMeta;
 import co.cask.cdap.proto.StreamProperties;
 import co.cask.cdap.test.XSlowTests;
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
@@ -120,6 +121,61 @@ public class StreamClientTestRun extends ClientTestBase {
     }
   }
 
+  /**
+   * Tests for reading events in binary format with cursor
+   */
+  @Test
+  public void testReadEventsWithCursor() throws Exception {
+    Id.Stream streamId = Id.Stream.from(namespaceId, "testCursor");
+    streamClient.create(streamId);
+
+    // Send 1000 events
+    int eventCount = 1000;
+    for (int i = 0; i < eventCount; i++) {
+      streamClient.sendEvent(streamId, "Testing " + i);
+    }
+
+    // Read all events in batches of 300, resuming from the cursor of the previous batch
+    final List<StreamEvent> events = Lists.newArrayList();
+    Function<StreamEvent, Boolean> callback = new Function<StreamEvent, Boolean>() {
+      @Override
+      public Boolean apply(StreamEvent event) {
+        events.add(event);
+        return true;
+      }
+    };
+    String cursor = null;
+    String endTime = Long.toString(Long.MAX_VALUE);
+    for (int i = 0; i < 4; i++) {
+      StreamClient.ReadEventsResult result = streamClient.readEvents(streamId, cursor, "0", endTime, 300, callback);
+      Assert.assertFalse(result.isStopped());
+      Assert.assertEquals(Math.min(300, eventCount - i * 300), result.getEventsRead());
+      cursor = result.getCursor();
+      Assert.assertNotNull(cursor);
+      Assert.assertEquals(Math.min(eventCount, (i + 1) * 300), events.size());
+    }
+    for (int i = 0; i < eventCount; i++) {
+      Assert.assertEquals("Testing " + i, Bytes.toString(events.get(i).getBody()));
+    }
+
+    // No more events, an empty result with the same cursor is returned
+    StreamClient.ReadEventsResult result = streamClient.readEvents(streamId, cursor, "0", endTime, 300, callback);
+    Assert.assertEquals(0, result.getEventsRead());
+    Assert.assertFalse(result.isStopped());
+    Assert.assertEquals(cursor, result.getCursor());
+    Assert.assertEquals(eventCount, events.size());
+
+    // A cursor claiming more offsets than there are stream files is rejected.
+    // It is the URL safe base64 encoding of Integer.MAX_VALUE.
+    String badCursor = "f____w";
+    try {
+      streamClient.readEvents(streamId, badCursor, "0", endTime, 300, callback);
+      Assert.fail("Expected BadRequestException");
+    } catch (BadRequestException e) {
+      // Expected
+    }
+  }
+
   /**
    * Tests for async write to stream.
    */
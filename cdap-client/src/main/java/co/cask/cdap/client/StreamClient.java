@@ -24,6 +24,9 @@ import co.cask.cdap.client.util.RESTClient;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.StreamNotFoundException;
 import co.cask.cdap.common.UnauthorizedException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventBinaryCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
@@ -48,6 +51,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -58,6 +62,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.net.ssl.HttpsURLConnection;
 import javax.ws.rs.core.HttpHeaders;
@@ -368,28 +373,9 @@ public class StreamClient {
     URL url = config.resolveNamespacedURLV3(streamId.getNamespace(),
                                             String.format("streams/%s/events?start=%d&end=%d&limit=%d",
                                                           streamId.getId(), startTime, endTime, limit));
-    HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
-    AccessToken accessToken = config.getAccessToken();
-    if (accessToken != null) {
-      urlConn.setRequestProperty(HttpHeaders.AUTHORIZATION, accessToken.getTokenType() + " " + accessToken.getValue());
-    }
-
-    if (urlConn instanceof HttpsURLConnection && !config.isVerifySSLCert()) {
-      try {
-        HttpRequests.disableCertCheck((HttpsURLConnection) urlConn);
-      } catch (Exception e) {
-        // TODO: Log "Got exception while disabling SSL certificate check for request.getURL()"
-      }
-    }
-
+    HttpURLConnection urlConn = openEventsConnection(url);
     try {
-      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
-        throw new UnauthorizedException("Unauthorized status code received from the server.");
-      }
-      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
-        throw new StreamNotFoundException(streamId);
-      }
-      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+      if (!checkEventsResponse(streamId, urlConn)) {
         return;
       }
 
@@ -410,6 +396,106 @@ public class StreamClient {
     }
   }
 
+  /**
+   * Reads events from a stream using the binary format, which is more compact and faster to decode than the
+   * JSON format used by the {@code getEvents} methods. The returned cursor can be passed to the next call to
+   * continue reading from where this call ended, so that a large stream can be read in batches of events
+   * without relying on event timestamps.
+   *
+   * @param streamId ID of the stream
+   * @param cursor Cursor returned by a previous call to continue reading from, or {@code null} to start
+   *               reading from the given start time
+   * @param start Timestamp in milliseconds or now-xs format to start reading event from (inclusive)
+   * @param end Timestamp in milliseconds or now-xs format for the last event to read (exclusive)
+   * @param limit Maximum number of events to read
+   * @param callback Callback to invoke for each stream event read. If the callback function returns {@code false}
+   *                 upon invocation, it will stops the reading
+   * @return A {@link ReadEventsResult} with the number of events read and the cursor to continue reading from.
+   *         If there is no event to read, the result has no event and the given cursor
+   * @throws IOException If fails to read from stream
+   * @throws StreamNotFoundException If the given stream does not exists
+   * @throws BadRequestException If the cursor is invalid or the stream was truncated after the cursor was obtained
+   */
+  public ReadEventsResult readEvents(Id.Stream streamId, @Nullable String cursor, String start, String end, int limit,
+                                     Function<? super StreamEvent, Boolean> callback)
+    throws IOException, StreamNotFoundException, UnauthorizedException, BadRequestException {
+
+    long startTime = TimeMathParser.parseTime(start, TimeUnit.MILLISECONDS);
+    long endTime = TimeMathParser.parseTime(end, TimeUnit.MILLISECONDS);
+
+    String path = String.format("streams/%s/events?start=%d&end=%d&limit=%d",
+                                streamId.getId(), startTime, endTime, limit);
+    if (cursor != null) {
+      path += "&cursor=" + cursor;
+    }
+    URL url = config.resolveNamespacedURLV3(streamId.getNamespace(), path);
+    HttpURLConnection urlConn = openEventsConnection(url);
+    urlConn.setRequestProperty(HttpHeaders.ACCEPT, StreamEventBinaryCodec.CONTENT_TYPE);
+    try {
+      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_BAD_REQUEST) {
+        throw new BadRequestException("Failed to read events from stream " + streamId + " with cursor " + cursor);
+      }
+      if (!checkEventsResponse(streamId, urlConn)) {
+        return new ReadEventsResult(0, cursor, false);
+      }
+
+      InputStream inputStream = urlConn.getInputStream();
+      Decoder decoder = new BinaryDecoder(new BufferedInputStream(inputStream));
+      int eventsRead = 0;
+      int count = decoder.readInt();
+      while (count > 0) {
+        for (int i = 0; i < count; i++) {
+          Boolean result = callback.apply(StreamEventBinaryCodec.decode(decoder));
+          eventsRead++;
+          if (result == null || !result) {
+            drain(inputStream);
+            return new ReadEventsResult(eventsRead, cursor, true);
+          }
+        }
+        count = decoder.readInt();
+      }
+      return new ReadEventsResult(eventsRead, decoder.readString(), false);
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  /**
+   * Opens a connection to the given stream events URL with the access token and SSL settings of the client.
+   */
+  private HttpURLConnection openEventsConnection(URL url) throws IOException {
+    HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+    AccessToken accessToken = config.getAccessToken();
+    if (accessToken != null) {
+      urlConn.setRequestProperty(HttpHeaders.AUTHORIZATION, accessToken.getTokenType() + " " + accessToken.getValue());
+    }
+
+    if (urlConn instanceof HttpsURLConnection && !config.isVerifySSLCert()) {
+      try {
+        HttpRequests.disableCertCheck((HttpsURLConnection) urlConn);
+      } catch (Exception e) {
+        // TODO: Log "Got exception while disabling SSL certificate check for request.getURL()"
+      }
+    }
+    return urlConn;
+  }
+
+  /**
+   * Checks the response code of a stream events request.
+   *
+   * @return {@code true} if there are events in the response, {@code false} if there is no event
+   */
+  private boolean checkEventsResponse(Id.Stream streamId, HttpURLConnection urlConn)
+    throws IOException, StreamNotFoundException, UnauthorizedException {
+    if (urlConn.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+      throw new UnauthorizedException("Unauthorized status code received from the server.");
+    }
+    if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new StreamNotFoundException(streamId);
+    }
+    return urlConn.getResponseCode() != HttpURLConnection.HTTP_NO_CONTENT;
+  }
+
   /**
    * Writes stream event using the given URL. The write maybe sync or async, depending on the URL.
    */
@@ -429,4 +515,43 @@ public class StreamClient {
       // empty
     }
   }
+
+  /**
+   * Result of {@link #readEvents(Id.Stream, String, String, String, int, Function)}.
+   */
+  public static final class ReadEventsResult {
+
+    private final int eventsRead;
+    private final String cursor;
+    private final boolean stopped;
+
+    private ReadEventsResult(int eventsRead, @Nullable String cursor, boolean stopped) {
+      this.eventsRead = eventsRead;
+      this.cursor = cursor;
+      this.stopped = stopped;
+    }
+
+    /**
+     * Returns the number of events passed to the callback.
+     */
+    public int getEventsRead() {
+      return eventsRead;
+    }
+
+    /**
+     * Returns the cursor to continue reading from. It is the cursor given to the read if there was no event to read
+     * or if the reading was stopped by the callback, hence it is {@code null} if no cursor was given in such cases.
+     */
+    @Nullable
+    public String getCursor() {
+      return cursor;
+    }
+
+    /**
+     * Returns {@code true} if the reading was stopped by the callback.
+     */
+    public boolean isStopped() {
+      return stopped;
+    }
+  }
 }
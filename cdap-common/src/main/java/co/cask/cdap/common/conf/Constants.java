@@ -97,6 +97,14 @@ public final class Constants {
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
 
+    /**
+     * Pooling of user service handler instances. A pool size of 0 means every handler thread has its own instance.
+     */
+    public static final String SERVICE_HANDLER_POOL_SIZE = "app.program.service.handler.pool.size";
+    public static final String SERVICE_HANDLER_POOL_WAIT_MS = "app.program.service.handler.pool.wait.ms";
+    public static final int DEFAULT_SERVICE_HANDLER_POOL_SIZE = 0;
+    public static final long DEFAULT_SERVICE_HANDLER_POOL_WAIT_MS = 1000L;
+
     /**
      * Guice named bindings.
      */
@@ -149,6 +157,10 @@ public final class Constants {
   public class Scheduler {
     public static final String CFG_SCHEDULER_MAX_THREAD_POOL_SIZE = "scheduler.max.thread.pool.size";
     public static final int DEFAULT_THREAD_POOL_SIZE = 100;
+    public static final String CFG_SCHEDULER_MAX_BATCH_SIZE = "scheduler.max.batch.size";
+    public static final int DEFAULT_MAX_BATCH_SIZE = 10;
+    public static final String CFG_SCHEDULER_BATCH_TIME_WINDOW_MS = "scheduler.batch.time.window.ms";
+    public static final long DEFAULT_BATCH_TIME_WINDOW_MS = 0L;
   }
 
   /**
@@ -213,6 +225,14 @@ public final class Constants {
 
     public static final String DATASET_UNCHECKED_UPGRADE = "dataset.unchecked.upgrade";
 
+    /** Seconds for which the metadata of dataset instances is cached by the dataset client, 0 to disable. */
+    public static final String CLIENT_CACHE_EXPIRE_SECONDS = "dataset.client.cache.expire.seconds";
+    public static final long DEFAULT_CLIENT_CACHE_EXPIRE_SECONDS = 0L;
+
+    /** Maximum number of dataset instances created or dropped concurrently by batch operations. */
+    public static final String ADMIN_OP_PARALLELISM = "dataset.admin.op.parallelism";
+    public static final int DEFAULT_ADMIN_OP_PARALLELISM = 4;
+
     /**
      * Constants for PartitionedFileSet's DynamicPartitioner
      */
@@ -289,8 +309,13 @@ public final class Constants {
     public static final String INDEX_INTERVAL = "stream.index.interval";
     public static final String FILE_PREFIX = "stream.file.prefix";
     public static final String INSTANCE_FILE_PREFIX = "stream.instance.file.prefix";
+    public static final String FILE_SHARDS = "stream.file.shards";
+    public static final String FILE_SHARD_KEY_HEADER = "stream.file.shard.key.header";
+    public static final String CONSUMER_OFFSET_CHECKPOINT = "stream.consumer.offset.checkpoint";
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
+    public static final String FILE_CLEANUP_THREADS = "stream.file.cleanup.threads";
+    public static final String FILE_CLEANUP_OPS_PER_SECOND = "stream.file.cleanup.ops.per.second";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
 
@@ -769,6 +794,10 @@ public final class Constants {
    */
   public static final class Notification {
     public static final String TRANSPORT_SYSTEM = "notification.transport.system";
+    public static final String PUBLISH_LINGER_MS = "notification.publish.linger.ms";
+    public static final long DEFAULT_PUBLISH_LINGER_MS = 5L;
+    public static final String PUBLISH_BATCH_SIZE = "notification.publish.batch.size";
+    public static final int DEFAULT_PUBLISH_BATCH_SIZE = 100;
 
     /**
      * Notifications in Streams constants.
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link Decoder} for binary-format data that reads directly from a {@link ByteBuffer}.
+ * It decodes the same format as {@link BinaryDecoder}. Bytes values returned by {@link #readBytes()} are
+ * views of the underlying buffer instead of copies, hence they are only valid as long as the content of the
+ * buffer given to this decoder is not modified.
+ *
+ * This class is not thread safe.
+ */
+public final class ByteBufferDecoder implements Decoder {
+
+  private ByteBuffer buffer;
+
+  public ByteBufferDecoder(ByteBuffer buffer) {
+    reset(buffer);
+  }
+
+  /**
+   * Resets this decoder to read from the given buffer, starting from its current position.
+   * The position of the given buffer won't be modified by this decoder.
+   */
+  public ByteBufferDecoder reset(ByteBuffer buffer) {
+    // Numeric values with fixed size are encoded in little endian
+    this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    return this;
+  }
+
+  /**
+   * Returns number of bytes left for decoding.
+   */
+  public int remaining() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public Object readNull() throws IOException {
+    // No-op
+    return null;
+  }
+
+  @Override
+  public boolean readBool() throws IOException {
+    return readByte() == 1;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    // Fast path for single byte value, which is the common case for lengths and small numbers.
+    int b = readByte();
+    if (b <= 0x7f) {
+      return (b >>> 1) ^ -(b & 1);
+    }
+
+    int val = b & 0x7f;
+    int shift = 7;
+    b = readByte();
+    while (b > 0x7f) {
+      val ^= (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    long val = 0;
+    int shift = 0;
+    int b = readByte();
+    while (b > 0x7f) {
+      val ^= (long) (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= (long) b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    ensureRemaining(4);
+    return buffer.getFloat();
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    ensureRemaining(8);
+    return buffer.getDouble();
+  }
+
+  @Override
+  public String readString() throws IOException {
+    int len = readLength();
+    ensureRemaining(len);
+    String str;
+    if (buffer.hasArray()) {
+      str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), len, Charsets.UTF_8);
+    } else {
+      byte[] bytes = new byte[len];
+      buffer.duplicate().get(bytes);
+      str = new String(bytes, Charsets.UTF_8);
+    }
+    buffer.position(buffer.position() + len);
+    return str;
+  }
+
+  @Override
+  public ByteBuffer readBytes() throws IOException {
+    int len = readLength();
+    ensureRemaining(len);
+    ByteBuffer bytes = buffer.slice();
+    bytes.limit(len);
+    buffer.position(buffer.position() + len);
+    return bytes;
+  }
+
+  @Override
+  public void skipFloat() throws IOException {
+    // Skip 4 bytes
+    skipBytes(4);
+  }
+
+  @Override
+  public void skipDouble() throws IOException {
+    // Skip 8 bytes
+    skipBytes(8);
+  }
+
+  @Override
+  public void skipString() throws IOException {
+    skipBytes();
+  }
+
+  @Override
+  public void skipBytes() throws IOException {
+    skipBytes(readLength());
+  }
+
+  /**
+   * Reads the length prefix of a string or bytes value.
+   *
+   * @throws IOException If the length is negative, which can only come from corrupted data.
+   */
+  private int readLength() throws IOException {
+    int len = readInt();
+    if (len < 0) {
+      throw new IOException("Invalid negative length " + len);
+    }
+    return len;
+  }
+
+  private void skipBytes(int len) throws IOException {
+    ensureRemaining(len);
+    buffer.position(buffer.position() + len);
+  }
+
+  private void ensureRemaining(int len) throws IOException {
+    if (buffer.remaining() < len) {
+      throw new EOFException();
+    }
+  }
+
+  /**
+   * Reads a byte value.
+   *
+   * @return The byte value read.
+   * @throws EOFException If end of buffer reached.
+   */
+  private int readByte() throws IOException {
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    return buffer.get() & 0xff;
+  }
+}
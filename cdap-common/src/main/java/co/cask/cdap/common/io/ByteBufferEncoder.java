@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An {@link Encoder} for binary-format data that writes directly into a growable {@link ByteBuffer}.
+ * It produces the same encoding as {@link BinaryEncoder}, but avoids going through an {@link java.io.OutputStream}
+ * and allows the encoded bytes to be used without copying. The underlying buffer is retained across
+ * {@link #reset()} calls, so an instance can be reused to encode many messages without reallocation.
+ *
+ * This class is not thread safe.
+ */
+public final class ByteBufferEncoder implements Encoder {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final boolean direct;
+  private ByteBuffer buffer;
+
+  /**
+   * Creates an encoder backed by a heap buffer with the default initial capacity.
+   */
+  public ByteBufferEncoder() {
+    this(DEFAULT_CAPACITY, false);
+  }
+
+  /**
+   * Creates an encoder.
+   *
+   * @param initialCapacity initial capacity of the buffer in bytes
+   * @param direct {@code true} to use direct buffers, {@code false} to use heap buffers
+   */
+  public ByteBufferEncoder(int initialCapacity, boolean direct) {
+    this.direct = direct;
+    this.buffer = allocate(Math.max(initialCapacity, 16));
+  }
+
+  /**
+   * Discards all encoded bytes. The underlying buffer is kept for reuse.
+   */
+  public ByteBufferEncoder reset() {
+    buffer.clear();
+    return this;
+  }
+
+  /**
+   * Returns number of bytes encoded since the last {@link #reset()}.
+   */
+  public int size() {
+    return buffer.position();
+  }
+
+  /**
+   * Returns a {@link ByteBuffer} view of all bytes encoded since the last {@link #reset()}.
+   * The returned buffer shares content with this encoder, hence is only valid until the next {@link #reset()}.
+   */
+  public ByteBuffer getBuffer() {
+    return slice(0);
+  }
+
+  /**
+   * Returns a {@link ByteBuffer} view of the encoded bytes starting from the given offset up to the
+   * current write position. The returned buffer shares content with this encoder, hence is only valid until
+   * the next {@link #reset()}. Growing the internal buffer doesn't invalidate views returned previously.
+   *
+   * @param offset the starting offset, which should be a value returned by {@link #size()} earlier
+   */
+  public ByteBuffer slice(int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.flip();
+    view.position(offset);
+    return view.slice();
+  }
+
+  /**
+   * Returns a copy of all bytes encoded since the last {@link #reset()}.
+   */
+  public byte[] toByteArray() {
+    byte[] bytes = new byte[buffer.position()];
+    if (buffer.hasArray()) {
+      System.arraycopy(buffer.array(), buffer.arrayOffset(), bytes, 0, bytes.length);
+    } else {
+      getBuffer().get(bytes);
+    }
+    return bytes;
+  }
+
+  /**
+   * Writes raw bytes to the buffer without encoding.
+   */
+  public ByteBufferEncoder writeRaw(byte[] rawBytes) {
+    return writeRaw(rawBytes, 0, rawBytes.length);
+  }
+
+  /**
+   * Writes raw bytes to the buffer without encoding.
+   *
+   * @param rawBytes The bytes to write.
+   * @param off Offset to start in the byte array.
+   * @param len Number of bytes to write starting from the offset.
+   */
+  public ByteBufferEncoder writeRaw(byte[] rawBytes, int off, int len) {
+    ensureCapacity(len);
+    buffer.put(rawBytes, off, len);
+    return this;
+  }
+
+  /**
+   * Writes the remaining bytes of the given buffer without encoding. The position of the given buffer
+   * is not modified.
+   */
+  public ByteBufferEncoder writeRaw(ByteBuffer rawBytes) {
+    ensureCapacity(rawBytes.remaining());
+    buffer.put(rawBytes.duplicate());
+    return this;
+  }
+
+  @Override
+  public Encoder writeNull() throws IOException {
+    // No-op
+    return this;
+  }
+
+  @Override
+  public Encoder writeBool(boolean b) throws IOException {
+    ensureCapacity(1);
+    buffer.put(b ? (byte) 1 : (byte) 0);
+    return this;
+  }
+
+  @Override
+  public Encoder writeInt(int i) throws IOException {
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    int val = (i << 1) ^ (i >> 31);
+
+    // Reserve space for the longest varint once, so that each byte can be put without bound checking.
+    ensureCapacity(5);
+    while ((val & ~0x7f) != 0) {
+      buffer.put((byte) (0x80 | val & 0x7f));
+      val >>>= 7;
+    }
+    buffer.put((byte) val);
+    return this;
+  }
+
+  @Override
+  public Encoder writeLong(long l) throws IOException {
+    // Compute the zig-zag value. First double the value and flip the bit if the input is negative.
+    long val = (l << 1) ^ (l >> 63);
+
+    ensureCapacity(10);
+    while ((val & ~0x7fL) != 0) {
+      buffer.put((byte) (0x80 | val & 0x7f));
+      val >>>= 7;
+    }
+    buffer.put((byte) val);
+    return this;
+  }
+
+  @Override
+  public Encoder writeFloat(float f) throws IOException {
+    ensureCapacity(4);
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.LITTLE_ENDIAN).putInt(Float.floatToIntBits(f)).order(order);
+    return this;
+  }
+
+  @Override
+  public Encoder writeDouble(double d) throws IOException {
+    ensureCapacity(8);
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.LITTLE_ENDIAN).putLong(Double.doubleToLongBits(d)).order(order);
+    return this;
+  }
+
+  @Override
+  public Encoder writeString(String s) throws IOException {
+    return writeBytes(Charsets.UTF_8.encode(s));
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes) throws IOException {
+    return writeBytes(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Encoder writeBytes(byte[] bytes, int off, int len) throws IOException {
+    writeInt(len);
+    return writeRaw(bytes, off, len);
+  }
+
+  @Override
+  public Encoder writeBytes(ByteBuffer bytes) throws IOException {
+    writeInt(bytes.remaining());
+    return writeRaw(bytes);
+  }
+
+  /**
+   * Makes sure there are at least the given number of bytes available for writing, growing the buffer if needed.
+   */
+  private void ensureCapacity(int size) {
+    if (buffer.remaining() >= size) {
+      return;
+    }
+    // Grows by doubling, but at least enough to hold the requested size
+    int newCapacity = Math.max(buffer.capacity() << 1, buffer.position() + size);
+    ByteBuffer newBuffer = allocate(newCapacity);
+    buffer.flip();
+    newBuffer.put(buffer);
+    buffer = newBuffer;
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.stream;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+
+import java.io.IOException;
+
+/**
+ * Utility class for encoding/decoding the binary response of the stream events fetch endpoint. It is used as
+ * an alternative to the JSON response, so that event bodies don't need to be base64 encoded and the events
+ * can be written as they are read from the stream files.
+ *
+ * The response is encoded using Avro binary encoding, with the format:
+ *
+ * <pre>
+ * {@code
+ *
+ * response = <block>* 0 <cursor>
+ * block = <count> <event>{count}
+ * event = <timestamp> <body> <headers>
+ * count = int value of the number of events in the block, always > 0
+ * timestamp = long value of the event timestamp
+ * body, headers = same as the StreamEventData encoding of {@link StreamEventDataCodec}
+ * cursor = string value of the reader position after the last event in the response, for resuming the read
+ * }
+ * </pre>
+ */
+public final class StreamEventBinaryCodec {
+
+  /**
+   * Content type of the binary response.
+   */
+  public static final String CONTENT_TYPE = "application/x-cdap-stream-events";
+
+  /**
+   * Encodes the given {@link StreamEvent} using the {@link Encoder}.
+   *
+   * @param event The event to encode
+   * @param encoder The encoder
+   * @throws IOException If there is any IO error during encoding.
+   */
+  public static void encode(StreamEvent event, Encoder encoder) throws IOException {
+    encoder.writeLong(event.getTimestamp());
+    StreamEventDataCodec.encode(event, encoder);
+  }
+
+  /**
+   * Decodes from the given {@link Decoder} to reconstruct a {@link StreamEvent}.
+   *
+   * @param decoder the decoder to read data from
+   * @return A new instance of {@link StreamEvent}
+   * @throws IOException If there is any IO error during decoding.
+   */
+  public static StreamEvent decode(Decoder decoder) throws IOException {
+    long timestamp = decoder.readLong();
+    StreamEventData data = StreamEventDataCodec.decode(decoder);
+    return new StreamEvent(data, timestamp);
+  }
+
+  private StreamEventBinaryCodec() {
+  }
+}
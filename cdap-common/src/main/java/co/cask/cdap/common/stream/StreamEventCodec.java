@@ -21,16 +21,13 @@ import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
-import co.cask.cdap.common.io.BinaryDecoder;
-import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
 import co.cask.cdap.common.io.Decoder;
-import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
-import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
@@ -43,6 +40,17 @@ public final class StreamEventCodec {
 
   private static final Schema STREAM_EVENT_SCHEMA;
 
+  // Maximum size of the per thread encoding buffer that will be kept for reuse
+  private static final int MAX_CACHED_BUFFER_SIZE = 64 * 1024;
+
+  // Per thread encoder, so that the encoding buffer is reused across calls instead of allocated per event
+  private static final ThreadLocal<ByteBufferEncoder> ENCODER = new ThreadLocal<ByteBufferEncoder>() {
+    @Override
+    protected ByteBufferEncoder initialValue() {
+      return new ByteBufferEncoder();
+    }
+  };
+
   static {
     Schema schema;
     try {
@@ -66,18 +74,26 @@ public final class StreamEventCodec {
     Map<String, String> headers = event.getHeaders();
     long timestamp = event.getTimestamp();
 
-    // Some assumption on the header size to minimize array copying
+    // Some assumption on the header size to minimize buffer growth
     // 16 bytes Schema hash + body size + (header size) * (50 bytes key/value pair) + 9 bytes timestamp (vlong encoding)
-    ByteArrayOutputStream os = new ByteArrayOutputStream(16 + body.remaining() + headers.size() * 50 + 9);
-    Encoder encoder = new BinaryEncoder(os);
+    int sizeHint = 16 + body.remaining() + headers.size() * 50 + 9;
+    ByteBufferEncoder encoder = sizeHint > MAX_CACHED_BUFFER_SIZE
+      ? new ByteBufferEncoder(sizeHint, false)
+      : ENCODER.get().reset();
 
     try {
       // Write the schema hash
-      os.write(STREAM_EVENT_SCHEMA.getSchemaHash().toByteArray());
+      encoder.writeRaw(STREAM_EVENT_SCHEMA.getSchemaHash().toByteArray());
 
       StreamEventDataCodec.encode(event, encoder);
       encoder.writeLong(timestamp);
-      return os.toByteArray();
+      byte[] payload = encoder.toByteArray();
+
+      // Don't keep a large buffer around if the encoding grows over the limit
+      if (encoder.size() > MAX_CACHED_BUFFER_SIZE) {
+        ENCODER.remove();
+      }
+      return payload;
 
     } catch (IOException e) {
       // It should never happens, otherwise something very wrong.
@@ -86,7 +102,8 @@ public final class StreamEventCodec {
   }
 
   /**
-   * Reverse of {@link #encodePayload(StreamEvent)}.
+   * Reverse of {@link #encodePayload(StreamEvent)}. The body of the returned {@link StreamEvent} shares
+   * the given payload array instead of copying it.
    *
    * @param payload The byte array containing the queue payload.
    * @return A {@link StreamEvent} reconstructed from payload.
@@ -98,7 +115,7 @@ public final class StreamEventCodec {
     Preconditions.checkArgument(schemaHash.equals(STREAM_EVENT_SCHEMA.getSchemaHash()),
                                 "Schema from payload not matching StreamEvent schema.");
 
-    Decoder decoder = new BinaryDecoder(new ByteBufferInputStream(buffer));
+    Decoder decoder = new ByteBufferDecoder(buffer);
 
     try {
       StreamEventData data = StreamEventDataCodec.decode(decoder);
@@ -74,7 +74,18 @@ public final class StreamEventDataCodec {
     encoder.writeBytes(data.getBody());
 
     // Writes the headers
-    Map<String, String> headers = data.getHeaders();
+    encodeHeaders(data.getHeaders(), encoder);
+  }
+
+  /**
+   * Encodes the headers of a {@link StreamEventData} using the {@link Encoder}. The encoded headers must be written
+   * right after the encoded event body.
+   *
+   * @param headers The headers to encode
+   * @param encoder The encoder
+   * @throws IOException If there is any IO error during encoding.
+   */
+  public static void encodeHeaders(Map<String, String> headers, Encoder encoder) throws IOException {
     encoder.writeInt(headers.size());
     for (Map.Entry<String, String> entry : headers.entrySet()) {
       String value = entry.getValue();
@@ -113,11 +124,25 @@ public final class StreamEventDataCodec {
     ByteBuffer body = decoder.readBytes();
 
     // Reads the headers
+    return new StreamEventData(decodeHeaders(decoder, defaultHeaders), body);
+  }
+
+  /**
+   * Decodes the headers of an encoded {@link StreamEventData}. The given {@link Decoder} must be positioned
+   * right after the event body.
+   *
+   * @param decoder the decoder to read data from
+   * @param defaultHeaders A map of headers available by default.
+   * @return A map of headers, which is the given default headers map if the encoded headers is empty.
+   * @throws IOException If there is any IO error during decoding.
+   */
+  public static Map<String, String> decodeHeaders(Decoder decoder,
+                                                  Map<String, String> defaultHeaders) throws IOException {
     int len = decoder.readInt();
 
     // A special optimization for the case where there is no event header.
     if (len == 0) {
-      return new StreamEventData(defaultHeaders, body);
+      return defaultHeaders;
     }
 
     Map<String, String> headers = defaultHeaders.isEmpty() ? Maps.<String, String>newHashMap()
@@ -130,8 +155,7 @@ public final class StreamEventDataCodec {
       }
       len = decoder.readInt();
     } while (len != 0);
-    return new StreamEventData(headers, body);
-
+    return headers;
   }
 
   /**
@@ -145,6 +169,17 @@ public final class StreamEventDataCodec {
     decoder.skipBytes();
 
     // Skips the headers
+    skipHeaders(decoder);
+  }
+
+  /**
+   * Skips the headers of an encoded {@link StreamEventData}. The given {@link Decoder} must be positioned
+   * right after the event body.
+   *
+   * @param decoder Decoder to skip data from.
+   * @throws IOException If there is any IO error during decoding.
+   */
+  public static void skipHeaders(Decoder decoder) throws IOException {
     int len = decoder.readInt();
     while (len != 0) {
       for (int i = 0; i < len; i++) {
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ByteBufferEncoder} and {@link ByteBufferDecoder}.
+ */
+public class ByteBufferCodecTest {
+
+  @Test
+  public void testCompatibility() throws IOException {
+    for (boolean direct : new boolean[] { false, true }) {
+      // Use a small initial capacity to exercise buffer growth
+      ByteBufferEncoder bufferEncoder = new ByteBufferEncoder(16, direct);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+      writeValues(bufferEncoder);
+      writeValues(new BinaryEncoder(os));
+
+      // Both encoders should produce the same bytes
+      Assert.assertArrayEquals(os.toByteArray(), bufferEncoder.toByteArray());
+
+      // Decode with both decoders
+      verifyValues(new ByteBufferDecoder(bufferEncoder.getBuffer()));
+      verifyValues(new BinaryDecoder(new ByteArrayInputStream(bufferEncoder.toByteArray())));
+
+      // Reset should discard all encoded bytes
+      bufferEncoder.reset();
+      Assert.assertEquals(0, bufferEncoder.size());
+    }
+  }
+
+  @Test
+  public void testSlice() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder(16, false);
+    encoder.writeString("first");
+    int offset = encoder.size();
+    encoder.writeString("second");
+    ByteBuffer slice = encoder.slice(offset);
+
+    // Force the buffer to grow. The slice should still be valid
+    encoder.writeBytes(new byte[1024]);
+    Assert.assertEquals("second", new ByteBufferDecoder(slice).readString());
+  }
+
+  @Test
+  public void testZeroCopyRead() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeBytes("Testing".getBytes(Charsets.UTF_8));
+    encoder.writeInt(10);
+
+    ByteBuffer buffer = encoder.getBuffer();
+    ByteBufferDecoder decoder = new ByteBufferDecoder(buffer);
+    ByteBuffer bytes = decoder.readBytes();
+    Assert.assertEquals("Testing", Charsets.UTF_8.decode(bytes.duplicate()).toString());
+    Assert.assertEquals(10, decoder.readInt());
+    Assert.assertEquals(0, decoder.remaining());
+
+    // The position of the source buffer shouldn't get changed
+    Assert.assertEquals(0, buffer.position());
+  }
+
+  @Test (expected = EOFException.class)
+  public void testEOF() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeBytes(new byte[10]);
+
+    ByteBuffer buffer = encoder.getBuffer();
+    buffer.limit(buffer.limit() - 1);
+    new ByteBufferDecoder(buffer).readBytes();
+  }
+
+  @Test
+  public void testNegativeLength() throws IOException {
+    ByteBufferEncoder encoder = new ByteBufferEncoder();
+    encoder.writeInt(-5);
+    encoder.writeBytes(new byte[10]);
+
+    ByteBuffer buffer = encoder.getBuffer();
+    for (int i = 0; i < 3; i++) {
+      ByteBufferDecoder decoder = new ByteBufferDecoder(buffer);
+      try {
+        if (i == 0) {
+          decoder.readBytes();
+        } else if (i == 1) {
+          decoder.readString();
+        } else {
+          decoder.skipBytes();
+        }
+        Assert.fail("Expected IOException for negative length");
+      } catch (EOFException e) {
+        Assert.fail("Expected IOException for negative length, but got EOFException");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws IOException {
+    byte[] body = new byte[100];
+    int count = 1000000;
+    long startTime;
+    long endTime;
+
+    // Stream based encoding and decoding, with a new buffer per message
+    startTime = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(128);
+      new BinaryEncoder(os).writeInt(i).writeLong(i).writeString("key").writeBytes(body);
+      Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(os.toByteArray()));
+      decoder.readInt();
+      decoder.readLong();
+      decoder.readString();
+      decoder.readBytes();
+    }
+    endTime = System.nanoTime();
+    System.out.println("Stream codec time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+
+    // Buffer based encoding and decoding, with the encoding buffer reused
+    ByteBufferEncoder encoder = new ByteBufferEncoder(128, false);
+    startTime = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      encoder.reset().writeInt(i).writeLong(i).writeString("key").writeBytes(body);
+      Decoder decoder = new ByteBufferDecoder(encoder.getBuffer());
+      decoder.readInt();
+      decoder.readLong();
+      decoder.readString();
+      decoder.readBytes();
+    }
+    endTime = System.nanoTime();
+    System.out.println("Buffer codec time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+  }
+
+  private void writeValues(Encoder encoder) throws IOException {
+    encoder.writeNull()
+      .writeBool(true)
+      .writeBool(false);
+
+    for (int i : new int[] { 0, -1, 1, 63, -64, 64, 1234, -1234, Short.MAX_VALUE, Short.MIN_VALUE,
+                             Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      encoder.writeInt(i);
+    }
+    for (long l : new long[] { 0L, -20L, 30000L, -600000L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                               Long.MAX_VALUE, Long.MIN_VALUE }) {
+      encoder.writeLong(l);
+    }
+
+    encoder.writeFloat(3.14f)
+      .writeFloat(Float.MAX_VALUE)
+      .writeFloat(Float.MIN_VALUE)
+      .writeDouble(Math.E)
+      .writeDouble(Double.MAX_VALUE)
+      .writeDouble(Double.MIN_VALUE)
+      .writeString("This is a testing message")
+      .writeString(Character.toString((char) 200) + Character.toString((char) 20000))
+      .writeBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3)
+      .writeBytes(ByteBuffer.wrap(new byte[300]));
+  }
+
+  private void verifyValues(Decoder decoder) throws IOException {
+    Assert.assertNull(decoder.readNull());
+    Assert.assertTrue(decoder.readBool());
+    Assert.assertFalse(decoder.readBool());
+
+    for (int i : new int[] { 0, -1, 1, 63, -64, 64, 1234, -1234, Short.MAX_VALUE, Short.MIN_VALUE,
+                             Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+      Assert.assertEquals(i, decoder.readInt());
+    }
+    for (long l : new long[] { 0L, -20L, 30000L, -600000L, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                               Long.MAX_VALUE, Long.MIN_VALUE }) {
+      Assert.assertEquals(l, decoder.readLong());
+    }
+
+    Assert.assertEquals(3.14f, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Float.MAX_VALUE, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Float.MIN_VALUE, decoder.readFloat(), 0.0000001f);
+    Assert.assertEquals(Math.E, decoder.readDouble(), 0.0000001d);
+    Assert.assertEquals(Double.MAX_VALUE, decoder.readDouble(), 0.0000001d);
+    Assert.assertEquals(Double.MIN_VALUE, decoder.readDouble(), 0.0000001d);
+    Assert.assertEquals("This is a testing message", decoder.readString());
+    Assert.assertEquals(Character.toString((char) 200) + Character.toString((char) 20000), decoder.readString());
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] { 2, 3, 4 }), decoder.readBytes());
+    decoder.skipBytes();
+  }
+}
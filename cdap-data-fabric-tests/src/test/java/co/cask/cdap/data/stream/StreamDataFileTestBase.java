@@ -17,6 +17,7 @@ package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data.file.ReadFilter;
@@ -42,6 +43,7 @@ import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.Assert;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
@@ -174,6 +176,82 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testLargeEvents() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write small and large events with the same timestamps. Large events are written directly to the output.
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10000L, 1024L, ImmutableMap.<String, String>of());
+    List<StreamEvent> expected = Lists.newArrayList();
+    Map<String, String> headers = ImmutableMap.of("key", "value");
+    for (int i = 0; i < 30; i++) {
+      ByteBuffer body;
+      if (i % 3 == 0) {
+        body = Charsets.UTF_8.encode("Small " + i);
+      } else {
+        byte[] bytes = Strings.repeat((char) ('a' + i % 26), 100 * 1024).getBytes(Charsets.UTF_8);
+        // Use both array backed and direct buffer
+        body = (i % 3 == 1) ? ByteBuffer.wrap(bytes) : (ByteBuffer) ByteBuffer.allocateDirect(bytes.length)
+          .put(bytes).flip();
+      }
+      StreamEvent event = new StreamEvent(i % 2 == 0 ? headers : ImmutableMap.<String, String>of(), body, i / 5);
+      expected.add(new StreamEvent(event.getHeaders(), event.getBody().duplicate(), event.getTimestamp()));
+      writer.append(event);
+    }
+    writer.close();
+
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<StreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(30, reader.read(events, 100, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, reader.read(events, 100, 0, TimeUnit.SECONDS));
+    reader.close();
+
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).getTimestamp(), events.get(i).getTimestamp());
+      Assert.assertEquals(expected.get(i).getHeaders(), events.get(i).getHeaders());
+      Assert.assertEquals(expected.get(i).getBody(), events.get(i).getBody());
+    }
+
+    // Read by start time through the index
+    for (long ts = 0; ts < 6; ts++) {
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), ts);
+      events.clear();
+      Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(expected.get((int) ts * 5).getBody(), events.get(0).getBody());
+      reader.close();
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testLargeEventsSpeed() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Map<String, String> headers = ImmutableMap.of("key", "value");
+
+    // Benchmark writing small and large events
+    for (int size : new int[] { 100, 1024 * 1024 }) {
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+      StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                             Locations.newOutputSupplier(indexFile), 10000L);
+      ByteBuffer body = ByteBuffer.wrap(new byte[size]);
+      int eventCount = (int) Math.min(100000L, 128L * 1024 * 1024 / size);
+      Stopwatch stopwatch = new Stopwatch().start();
+      for (int i = 0; i < eventCount; i++) {
+        writer.append(new StreamEvent(headers, body.duplicate(), i));
+      }
+      writer.close();
+      long micros = Math.max(1L, stopwatch.elapsedTime(TimeUnit.MICROSECONDS));
+      LOG.info("Write {} events of {} bytes: {} events/sec, {} bytes/sec",
+               eventCount, size, eventCount * 1000000L / micros, (long) eventCount * size * 1000000L / micros);
+    }
+  }
+
   @Test
   public void testTail() throws Exception {
     Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
@@ -985,6 +1063,186 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testFooterAndIndexBytesInterval() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write 1000 events with different timestamps. The time interval is larger than the time span of all events,
+    // hence index entries are only created by the bytes interval.
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           100000L, 1024L, ImmutableMap.<String, String>of());
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(1000 + i, "Testing " + i));
+      // Have each event in its own data block
+      writer.flush();
+    }
+    writer.close();
+
+    // Index timestamps should be strictly increasing
+    StreamDataFileIndexIterator iterator = new StreamDataFileIndex(Locations.newInputSupplier(indexFile))
+      .indexIterator();
+    int indexEntries = 0;
+    long lastTimestamp = -1L;
+    while (iterator.nextIndexEntry()) {
+      Assert.assertTrue(iterator.currentTimestamp() > lastTimestamp);
+      lastTimestamp = iterator.currentTimestamp();
+      indexEntries++;
+    }
+    Assert.assertTrue(indexEntries > 1);
+
+    // Verify the footer
+    StreamDataFileFooter footer;
+    try (SeekableInputStream input = Locations.newInputSupplier(eventFile).getInput()) {
+      footer = StreamDataFileFooter.read(input);
+    }
+    Assert.assertNotNull(footer);
+    Assert.assertEquals(1000L, footer.getMinTimestamp());
+    Assert.assertEquals(1999L, footer.getMaxTimestamp());
+    Assert.assertEquals(1000L, footer.getEventCount());
+
+    // Reading the whole file should stop at the footer
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<StreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(1000, reader.read(events, 2000, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(footer.getPosition(), reader.getPosition().longValue());
+    reader.close();
+
+    // Read with index
+    for (long ts : new long[] {1000, 1050, 1512, 1999}) {
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), ts);
+      events.clear();
+      Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(ts, events.get(0).getTimestamp());
+      reader.close();
+    }
+
+    // Reading with start time after all events should go to the footer directly
+    reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                    Locations.newInputSupplier(indexFile), 2000L);
+    Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(footer.getPosition(), reader.getPosition().longValue());
+    reader.close();
+
+    // Reading with a time range filter should stop at the end of the range
+    reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                    Locations.newInputSupplier(indexFile), 1500L);
+    events.clear();
+    Assert.assertEquals(10, reader.read(events, 100, 0, TimeUnit.SECONDS, new TimeRangeReadFilter(1500L, 1510L)));
+    Assert.assertEquals(-1, reader.read(events, 100, 0, TimeUnit.SECONDS, new TimeRangeReadFilter(1500L, 1510L)));
+    reader.close();
+  }
+
+  @Test
+  public void testFooterUniTimestamp() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(
+      Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10000L,
+      ImmutableMap.of(
+        StreamDataFileConstants.Property.Key.UNI_TIMESTAMP, StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP
+      ));
+    for (int i = 0; i < 10; i++) {
+      writer.append(StreamFileTestUtils.createEvent(i, "Message " + i));
+    }
+    writer.close();
+
+    // The footer should have the close timestamp, which is the timestamp of all events returned by the reader
+    StreamDataFileFooter footer;
+    try (SeekableInputStream input = Locations.newInputSupplier(eventFile).getInput()) {
+      footer = StreamDataFileFooter.read(input);
+    }
+    Assert.assertNotNull(footer);
+    Assert.assertEquals(writer.getCloseTimestamp(), footer.getMinTimestamp());
+    Assert.assertEquals(writer.getCloseTimestamp(), footer.getMaxTimestamp());
+    Assert.assertEquals(10L, footer.getEventCount());
+
+    // A file without any event should still have a footer
+    eventFile = dir.getTempFile(".dat");
+    indexFile = dir.getTempFile(".idx");
+    new StreamDataFileWriter(Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile),
+                             10000L).close();
+    try (SeekableInputStream input = Locations.newInputSupplier(eventFile).getInput()) {
+      footer = StreamDataFileFooter.read(input);
+    }
+    Assert.assertNotNull(footer);
+    Assert.assertEquals(0L, footer.getEventCount());
+    Assert.assertTrue(footer.isOutside(0L, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testReadBatch() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write events with alternating headers, 10 events per timestamp
+    int eventCount = 20000;
+    Map<String, String> headersA = ImmutableMap.of("source", "a");
+    Map<String, String> headersB = ImmutableMap.of("source", "b", "type", "test");
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10000L);
+    for (int i = 0; i < eventCount; i++) {
+      writer.append(new StreamEvent(i % 2 == 0 ? headersA : headersB,
+                                    Charsets.UTF_8.encode("Batch test " + i), i / 10));
+    }
+    writer.close();
+
+    // Read with per event read
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<PositionStreamEvent> events = Lists.newArrayListWithCapacity(eventCount);
+    List<PositionStreamEvent> readEvents = Lists.newArrayListWithCapacity(1);
+    while (reader.read(readEvents, 1, 0, TimeUnit.SECONDS) > 0) {
+      events.addAll(readEvents);
+      readEvents.clear();
+    }
+    reader.close();
+    Assert.assertEquals(eventCount, events.size());
+
+    // Read with batch and verify the events are the same
+    reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    StreamEventBatch batch = new StreamEventBatch(1000);
+    List<PositionStreamEvent> keptEvents = Lists.newArrayList();
+    int idx = 0;
+    while (reader.readBatch(batch, ReadFilter.ALWAYS_ACCEPT) > 0) {
+      // Only two distinct headers in each batch
+      Assert.assertEquals(2, batch.getHeadersDictionarySize());
+      for (int i = 0; i < batch.size(); i++) {
+        PositionStreamEvent expected = events.get(idx++);
+        PositionStreamEvent actual = batch.getEventView(i);
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assert.assertEquals(expected.getStart(), actual.getStart());
+        Assert.assertEquals(expected.getHeaders(), actual.getHeaders());
+        Assert.assertEquals(expected.getBody(), actual.getBody());
+      }
+      // Keep the first event of each batch, which should stay valid after the batch is cleared
+      keptEvents.add(batch.getEvent(0));
+      batch.clear();
+    }
+    Assert.assertEquals(eventCount, idx);
+    Assert.assertEquals(eventCount / 1000, keptEvents.size());
+    for (int i = 0; i < keptEvents.size(); i++) {
+      Assert.assertEquals(events.get(i * 1000).getBody(), keptEvents.get(i).getBody());
+    }
+    reader.close();
+
+    // Batch read with an offset and time range filter
+    reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile), null,
+                                                   events.get(1000).getStart());
+    Assert.assertEquals(100, reader.readBatch(batch, new TimeRangeReadFilter(100L, 110L)));
+    Assert.assertEquals(100L, batch.getTimestamp(0));
+    Assert.assertEquals(events.get(1000).getStart(), batch.getPosition(0));
+    Assert.assertEquals(109L, batch.getTimestamp(99));
+    reader.close();
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval());
@@ -24,6 +24,8 @@ import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.proto.Id;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.Assert;
@@ -33,6 +35,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -163,6 +166,90 @@ public abstract class StreamFileJanitorTestBase {
     janitor.cleanAll();
   }
 
+  @Test
+  public void testCleanupAllParallel() throws Exception {
+    StreamAdmin streamAdmin = getStreamAdmin();
+    CConfiguration janitorConf = CConfiguration.copy(getCConfiguration());
+    janitorConf.setInt(Constants.Stream.FILE_CLEANUP_THREADS, 3);
+    janitorConf.setInt(Constants.Stream.FILE_CLEANUP_OPS_PER_SECOND, 1000);
+    StreamFileJanitor janitor = new StreamFileJanitor(janitorConf, streamAdmin, getNamespacedLocationFactory());
+
+    Properties properties = new Properties();
+    properties.setProperty(Constants.Stream.PARTITION_DURATION, "2000");
+    properties.setProperty(Constants.Stream.TTL, "5000");
+
+    // Create streams with events long expired
+    List<StreamConfig> configs = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      Id.Stream streamId = Id.Stream.from(Id.Namespace.DEFAULT, "cleanupParallel" + i);
+      streamAdmin.create(streamId, properties);
+      streamAdmin.truncate(streamId);
+      try (FileWriter<StreamEvent> writer = createWriter(streamId)) {
+        for (int j = 0; j < 10; j++) {
+          writer.append(StreamFileTestUtils.createEvent(j * 1000, "Testing " + j));
+        }
+      }
+      configs.add(streamAdmin.getConfig(streamId));
+    }
+
+    janitor.cleanAll();
+
+    // All partitions of all streams should be removed
+    for (StreamConfig config : configs) {
+      Assert.assertTrue(StreamUtils.createGenerationLocation(config.getLocation(), 1).list().isEmpty());
+    }
+
+    // Two streams with partitions of 2 seconds. The first one has events from time 0, the second one from time 6000.
+    StreamConfig config0 = createStream(streamAdmin, "cleanupBound0", properties, 0L);
+    StreamConfig config1 = createStream(streamAdmin, "cleanupBound1", properties, 6000L);
+
+    // With TTL of 5 seconds, partitions ended before 5000 are removed.
+    // The earliest surviving partition ends at 6000 for the first stream and 8000 for the second one.
+    janitor.cleanAll(10000L);
+    Assert.assertEquals(3, StreamUtils.createGenerationLocation(config0.getLocation(), 1).list().size());
+    Assert.assertEquals(2, StreamUtils.createGenerationLocation(config1.getLocation(), 1).list().size());
+
+    // Write an expired event to both streams, which is not known by the janitor
+    for (StreamConfig config : ImmutableList.of(config0, config1)) {
+      try (FileWriter<StreamEvent> writer = createWriter(config.getStreamId())) {
+        writer.append(StreamFileTestUtils.createEvent(1000L, "Late"));
+      }
+    }
+
+    // Partitions ended before 7000 are expired. Only the first stream has surviving partitions that may be expired,
+    // hence it is cleaned, while the second stream is skipped and still has the late partition.
+    janitor.cleanAll(12000L);
+    Location generation0 = StreamUtils.createGenerationLocation(config0.getLocation(), 1);
+    Location generation1 = StreamUtils.createGenerationLocation(config1.getLocation(), 1);
+    Assert.assertEquals(2, generation0.list().size());
+    Assert.assertFalse(StreamUtils.createPartitionLocation(generation0, 0L, 2000L).exists());
+    Assert.assertEquals(3, generation1.list().size());
+    Assert.assertTrue(StreamUtils.createPartitionLocation(generation1, 0L, 2000L).exists());
+
+    // The cleanup state of a deleted stream is removed in the next run
+    Assert.assertTrue(janitor.hasCleanupState(config1.getLocation()));
+    streamAdmin.drop(config1.getStreamId());
+    janitor.cleanAll(12000L);
+    Assert.assertFalse(janitor.hasCleanupState(config1.getLocation()));
+    Assert.assertTrue(janitor.hasCleanupState(config0.getLocation()));
+  }
+
+  /**
+   * Creates a truncated stream with events written every second from the given start time until time 10000.
+   */
+  private StreamConfig createStream(StreamAdmin streamAdmin, String name,
+                                    Properties properties, long startTime) throws Exception {
+    Id.Stream streamId = Id.Stream.from(Id.Namespace.DEFAULT, name);
+    streamAdmin.create(streamId, properties);
+    streamAdmin.truncate(streamId);
+    try (FileWriter<StreamEvent> writer = createWriter(streamId)) {
+      for (long timestamp = startTime; timestamp < 10000L; timestamp += 1000L) {
+        writer.append(StreamFileTestUtils.createEvent(timestamp, "Testing " + timestamp));
+      }
+    }
+    return streamAdmin.getConfig(streamId);
+  }
+
   private void verifyGeneration(StreamConfig config, int generation) throws IOException {
     Location generationLocation = StreamUtils.createGenerationLocation(config.getLocation(), generation);
     Assert.assertTrue(generationLocation.isDirectory());
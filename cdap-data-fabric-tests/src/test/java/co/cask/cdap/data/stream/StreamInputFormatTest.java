@@ -23,12 +23,15 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.GenericStreamEventData;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.api.stream.StreamEventDecoder;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.stream.decoder.BytesStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.IdentityStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.StringStreamEventDecoder;
 import co.cask.cdap.data.stream.decoder.TextStreamEventDecoder;
 import co.cask.cdap.format.TextRecordFormat;
 import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -53,23 +56,31 @@ import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.junit.Assert;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class StreamInputFormatTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(StreamInputFormatTest.class);
+
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
 
@@ -320,6 +331,250 @@ public class StreamInputFormatTest {
     Assert.assertFalse(recordReader.nextKeyValue());
   }
 
+  @Test
+  public void testStreamRecordReaderKeepEvents() throws Exception {
+    File partition = tmpFolder.newFolder();
+    File eventFile = new File(partition, "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+    File indexFile = new File(partition, "bucket.1.0." + StreamFileType.INDEX.getSuffix());
+
+    // Write more events than a batch of the record reader can hold
+    int eventCount = new StreamEventBatch().capacity() * 2 + 1;
+    StreamDataFileWriter writer = new StreamDataFileWriter(Files.newOutputStreamSupplier(eventFile),
+                                                           Files.newOutputStreamSupplier(indexFile),
+                                                           100L);
+    for (int i = 0; i < eventCount; i++) {
+      writer.append(StreamFileTestUtils.createEvent(i, "event " + i));
+    }
+    writer.close();
+
+    Configuration conf = new Configuration();
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    StreamInputSplit split = new StreamInputSplit(new Path(eventFile.toURI()), new Path(indexFile.toURI()),
+                                                  0L, Long.MAX_VALUE, 0L, eventFile.length(), null);
+
+    // Keep all the events returned by the identity decoder. They must stay valid after the batch is reused.
+    StreamRecordReader<LongWritable, StreamEvent> recordReader =
+      new StreamRecordReader<>(new IdentityStreamEventDecoder());
+    recordReader.initialize(split, context);
+    List<StreamEvent> events = Lists.newArrayList();
+    while (recordReader.nextKeyValue()) {
+      events.add(recordReader.getCurrentValue());
+    }
+    recordReader.close();
+
+    Assert.assertEquals(eventCount, events.size());
+    for (int i = 0; i < eventCount; i++) {
+      Assert.assertEquals(i, events.get(i).getTimestamp());
+      Assert.assertEquals("event " + i, Bytes.toString(events.get(i).getBody()));
+    }
+  }
+
+  @Test
+  public void testSplitCache() throws Exception {
+    File inputDir = tmpFolder.newFolder();
+    File partition = new File(inputDir, "1.1000");
+    partition.mkdirs();
+    writeEvent(partition, "bucket.1.0", 1000);
+
+    Configuration conf = new Configuration();
+    StreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    StreamInputFormat format = new StreamInputFormat();
+    JobContextImpl context = new JobContextImpl(new JobConf(conf), new JobID());
+    Assert.assertEquals(-1L, StreamInputFormat.getSplitPlanningMillis(context.getConfiguration()));
+
+    // One file in a closed partition, with one split for the content and one for the tail
+    Assert.assertEquals(2, format.getSplits(context).size());
+    Assert.assertTrue(StreamInputFormat.getSplitPlanningMillis(context.getConfiguration()) >= 0L);
+
+    // Reusing the cached partition finds out that its file is closed
+    Assert.assertEquals(2, format.getSplits(context).size());
+
+    // Remove the file without changing the partition modification time. The cached file should still be used.
+    long modificationTime = partition.lastModified();
+    Assert.assertTrue(new File(partition, "bucket.1.0." + StreamFileType.EVENT.getSuffix()).delete());
+    Assert.assertTrue(partition.setLastModified(modificationTime));
+    Assert.assertEquals(2, format.getSplits(context).size());
+
+    // Add a new file to the partition. The file system modification time may only be in seconds,
+    // hence explicitly move the partition modification time forward.
+    writeEvent(partition, "bucket.2.0", 1001);
+    Assert.assertTrue(partition.setLastModified(modificationTime + 1000));
+    List<InputSplit> splits = format.getSplits(context);
+    Assert.assertEquals(2, splits.size());
+    Assert.assertTrue(((StreamInputSplit) splits.get(0)).getPath().getName().startsWith("bucket.2.0"));
+  }
+
+  @Test
+  public void testSplitCacheOpenFile() throws Exception {
+    File inputDir = tmpFolder.newFolder();
+    File partition = new File(inputDir, "1.1000");
+    partition.mkdirs();
+
+    // A file that is still being written in a closed partition
+    File eventFile = new File(partition, "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+    File indexFile = new File(partition, "bucket.1.0." + StreamFileType.INDEX.getSuffix());
+    StreamDataFileWriter writer = new StreamDataFileWriter(Files.newOutputStreamSupplier(eventFile),
+                                                           Files.newOutputStreamSupplier(indexFile),
+                                                           100L);
+    try {
+      writer.append(StreamFileTestUtils.createEvent(1000, "test"));
+      writer.flush();
+
+      Configuration conf = new Configuration();
+      StreamInputFormat.setStreamPath(conf, inputDir.toURI());
+      StreamInputFormat format = new StreamInputFormat();
+      JobContextImpl context = new JobContextImpl(new JobConf(conf), new JobID());
+
+      List<InputSplit> splits = format.getSplits(context);
+      Assert.assertEquals(2, splits.size());
+      Assert.assertEquals(eventFile.length(), splits.get(0).getLength());
+
+      // Append to the file without changing the partition modification time.
+      // Since the file was not closed when it was cached, the new length should be picked up.
+      long modificationTime = partition.lastModified();
+      writer.append(StreamFileTestUtils.createEvent(1001, "test"));
+      writer.flush();
+      Assert.assertTrue(partition.setLastModified(modificationTime));
+      Assert.assertTrue(eventFile.setLastModified(eventFile.lastModified() + 1000));
+
+      splits = format.getSplits(context);
+      Assert.assertEquals(2, splits.size());
+      Assert.assertEquals(eventFile.length(), splits.get(0).getLength());
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testNarrowTimeRangeSplits() throws Exception {
+    // Write a day long partition, with one event per second and one file for each half of the day.
+    File inputDir = tmpFolder.newFolder();
+    File partition = new File(inputDir, "0." + TimeUnit.DAYS.toSeconds(1));
+    partition.mkdirs();
+
+    long halfDay = TimeUnit.HOURS.toMillis(12);
+    String body = Strings.repeat("x", 100);
+    for (int i = 0; i < 2; i++) {
+      File eventFile = new File(partition, "bucket." + i + ".0." + StreamFileType.EVENT.getSuffix());
+      File indexFile = new File(partition, "bucket." + i + ".0." + StreamFileType.INDEX.getSuffix());
+      StreamDataFileWriter writer = new StreamDataFileWriter(Files.newOutputStreamSupplier(eventFile),
+                                                             Files.newOutputStreamSupplier(indexFile),
+                                                             TimeUnit.MINUTES.toMillis(10), 64 * 1024,
+                                                             ImmutableMap.<String, String>of());
+      for (long timestamp = i * halfDay; timestamp < (i + 1) * halfDay; timestamp += 1000) {
+        writer.append(StreamFileTestUtils.createEvent(timestamp, body));
+      }
+      writer.close();
+    }
+
+    // A one minute time range in the second half of the day
+    long startTime = TimeUnit.HOURS.toMillis(18);
+    long endTime = startTime + TimeUnit.MINUTES.toMillis(1);
+
+    Configuration conf = new Configuration();
+    StreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    StreamInputFormat.setMaxSplitSize(conf, 64 * 1024);
+    StreamInputFormat.setDecoderClassName(conf, IdentityStreamEventDecoder.class.getName());
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    StreamInputFormat<LongWritable, StreamEvent> format = new StreamInputFormat<>();
+
+    // Splits for the whole partition, with the time range applied to each of them,
+    // which is what used to be generated for the time range.
+    List<InputSplit> fullSplits = Lists.newArrayList();
+    for (InputSplit split : format.getSplits(new JobContextImpl(new JobConf(conf), new JobID()))) {
+      StreamInputSplit streamSplit = (StreamInputSplit) split;
+      fullSplits.add(new StreamInputSplit(streamSplit.getPath(), streamSplit.getIndexPath(), startTime, endTime,
+                                          streamSplit.getStart(), streamSplit.getLength(), null));
+    }
+
+    StreamInputFormat.setTimeRange(conf, startTime, endTime);
+    Stopwatch stopwatch = new Stopwatch().start();
+    List<InputSplit> splits = format.getSplits(new JobContextImpl(new JobConf(conf), new JobID()));
+    long planningMillis = stopwatch.elapsedMillis();
+
+    // Only the part of the second file around the time range should be covered
+    Assert.assertTrue(splits.size() < fullSplits.size() / 10);
+    for (InputSplit split : splits) {
+      Assert.assertTrue(((StreamInputSplit) split).getPath().getName().startsWith("bucket.1.0"));
+    }
+
+    stopwatch.reset().start();
+    Assert.assertEquals(60, readAll(format, splits, context));
+    long readMillis = stopwatch.elapsedMillis();
+
+    stopwatch.reset().start();
+    Assert.assertEquals(60, readAll(format, fullSplits, context));
+    long fullReadMillis = stopwatch.elapsedMillis();
+
+    LOG.info("One minute of a day long partition: {} splits planned in {} ms and read in {} ms. " +
+               "Without the file summaries: {} splits read in {} ms",
+             splits.size(), planningMillis, readMillis, fullSplits.size(), fullReadMillis);
+  }
+
+  @Ignore
+  @Test
+  public void testRecordReaderSpeed() throws Exception {
+    File partition = tmpFolder.newFolder();
+    File eventFile = new File(partition, "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+    File indexFile = new File(partition, "bucket.1.0." + StreamFileType.INDEX.getSuffix());
+
+    // Write events with alternating headers, 10 events per timestamp
+    int eventCount = 1000000;
+    Map<String, String> headersA = ImmutableMap.of("source", "a");
+    Map<String, String> headersB = ImmutableMap.of("source", "b", "type", "test");
+    StreamDataFileWriter writer = new StreamDataFileWriter(Files.newOutputStreamSupplier(eventFile),
+                                                           Files.newOutputStreamSupplier(indexFile),
+                                                           10000L);
+    for (int i = 0; i < eventCount; i++) {
+      writer.append(new StreamEvent(i % 2 == 0 ? headersA : headersB,
+                                    Charsets.UTF_8.encode("Speed test " + i), i / 10));
+    }
+    writer.close();
+
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    BytesStreamEventDecoder decoder = new BytesStreamEventDecoder();
+
+    // Per event read, decoding each event the same way as the record reader does
+    long allocated = getThreadAllocatedBytes(threadMXBean);
+    Stopwatch stopwatch = new Stopwatch().start();
+    StreamDataFileReader reader = StreamDataFileReader.create(
+      Locations.newInputSupplier(Locations.toLocation(eventFile)));
+    StreamEventDecoder.DecodeResult<LongWritable, BytesWritable> result = new StreamEventDecoder.DecodeResult<>();
+    List<PositionStreamEvent> events = Lists.newArrayListWithCapacity(1);
+    int count = 0;
+    while (reader.read(events, 1, 0, TimeUnit.SECONDS) > 0) {
+      result = decoder.decode(events.get(0), result);
+      events.clear();
+      count++;
+    }
+    reader.close();
+    long eventMicros = stopwatch.elapsedTime(TimeUnit.MICROSECONDS);
+    long eventAllocated = getThreadAllocatedBytes(threadMXBean) - allocated;
+    Assert.assertEquals(eventCount, count);
+
+    // Read with the record reader, which reads in batches
+    Configuration conf = new Configuration();
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    StreamInputSplit split = new StreamInputSplit(new Path(eventFile.toURI()), new Path(indexFile.toURI()),
+                                                  0L, Long.MAX_VALUE, 0L, eventFile.length(), null);
+    allocated = getThreadAllocatedBytes(threadMXBean);
+    stopwatch = new Stopwatch().start();
+    StreamRecordReader<LongWritable, BytesWritable> recordReader = new StreamRecordReader<>(decoder);
+    recordReader.initialize(split, context);
+    count = 0;
+    while (recordReader.nextKeyValue()) {
+      count++;
+    }
+    recordReader.close();
+    long batchMicros = stopwatch.elapsedTime(TimeUnit.MICROSECONDS);
+    long batchAllocated = getThreadAllocatedBytes(threadMXBean) - allocated;
+    Assert.assertEquals(eventCount, count);
+
+    LOG.info("Per event read: {} events/sec, {} bytes allocated. Record reader: {} events/sec, {} bytes allocated.",
+             eventCount * 1000000L / Math.max(1L, eventMicros), eventAllocated,
+             eventCount * 1000000L / Math.max(1L, batchMicros), batchAllocated);
+  }
+
   @Test
   public void testFormatStreamRecordReader() throws IOException, InterruptedException {
     File inputDir = tmpFolder.newFolder();
@@ -369,6 +624,43 @@ public class StreamInputFormatTest {
     Assert.assertEquals("hello world", eventData.getBody().get("body"));
   }
 
+  /**
+   * Reads all splits and returns the number of events read.
+   */
+  private int readAll(StreamInputFormat<?, ?> format, List<InputSplit> splits,
+                      TaskAttemptContext context) throws Exception {
+    int count = 0;
+    for (InputSplit split : splits) {
+      RecordReader<?, ?> recordReader = format.createRecordReader(split, context);
+      try {
+        recordReader.initialize(split, context);
+        while (recordReader.nextKeyValue()) {
+          count++;
+        }
+      } finally {
+        recordReader.close();
+      }
+    }
+    return count;
+  }
+
+  private long getThreadAllocatedBytes(ThreadMXBean threadMXBean) {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1L;
+  }
+
+  private void writeEvent(File partition, String bucketName, long timestamp) throws IOException {
+    File eventFile = new File(partition, bucketName + "." + StreamFileType.EVENT.getSuffix());
+    File indexFile = new File(partition, bucketName + "." + StreamFileType.INDEX.getSuffix());
+    StreamDataFileWriter writer = new StreamDataFileWriter(Files.newOutputStreamSupplier(eventFile),
+                                                           Files.newOutputStreamSupplier(indexFile),
+                                                           100L);
+    writer.append(StreamFileTestUtils.createEvent(timestamp, "test"));
+    writer.close();
+  }
+
   private void generateEvents(File inputDir, int numEvents, long startTime, long timeIncrement,
                               GenerateEvent generator) throws IOException {
     File partition = new File(inputDir, Long.toString(startTime / 1000) + ".1000");
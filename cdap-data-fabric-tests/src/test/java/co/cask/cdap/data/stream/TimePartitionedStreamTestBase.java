@@ -16,7 +16,14 @@
 package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.Assert;
@@ -28,6 +35,9 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link co.cask.cdap.data.stream.TimePartitionedStreamFileWriter}.
@@ -110,4 +120,108 @@ public abstract class TimePartitionedStreamTestBase {
       Assert.assertEquals(i * 1000, StreamUtils.getPartitionStartTime(partitionDirs.get(i).getName()));
     }
   }
+
+  @Test
+  public void testShardKeyHeader() throws Exception {
+    String streamName = "testShardKeyHeader";
+    Location streamLocation = getLocationFactory().create(streamName);
+    streamLocation.mkdirs();
+    TimePartitionedStreamFileWriter writer = new TimePartitionedStreamFileWriter(streamLocation, 1000, "file", 100,
+                                                                                 4, "key");
+
+    // Write events with 10 different keys across 2 partitions
+    for (int i = 0; i < 2000; i++) {
+      writer.append(new StreamEvent(ImmutableMap.of("key", "key" + (i % 10)),
+                                    Charsets.UTF_8.encode("Testing " + i), i));
+    }
+    writer.close();
+
+    // Events of the same key should always be written to the same shard
+    Map<String, Integer> keyShards = Maps.newHashMap();
+    int events = 0;
+    for (Location partitionLocation : streamLocation.list()) {
+      for (Location eventFile : getEventFiles(partitionLocation)) {
+        int shard = StreamUtils.getShardId(StreamUtils.getNamePrefix(eventFile.getName()));
+        Assert.assertTrue(shard >= 0 && shard < 4);
+        for (StreamEvent event : readEvents(eventFile)) {
+          Integer keyShard = keyShards.put(event.getHeaders().get("key"), shard);
+          Assert.assertTrue(keyShard == null || keyShard == shard);
+          events++;
+        }
+      }
+    }
+    Assert.assertEquals(10, keyShards.size());
+    Assert.assertEquals(2000, events);
+  }
+
+  @Test
+  public void testShardedRead() throws Exception {
+    String streamName = "testShardedRead";
+    Location streamLocation = getLocationFactory().create(streamName);
+    streamLocation.mkdirs();
+
+    int shards = 8;
+    TimePartitionedStreamFileWriter writer = new TimePartitionedStreamFileWriter(streamLocation, 1000, "file", 100,
+                                                                                 shards, null);
+    // Write 1000 events across 3 partitions
+    int totalEvents = 1000;
+    for (int i = 0; i < totalEvents; i++) {
+      writer.append(StreamFileTestUtils.createEvent(i * 3000L / totalEvents, "Testing " + i));
+    }
+    writer.close();
+
+    long totalBytes = 0;
+    for (Location partitionLocation : streamLocation.list()) {
+      for (Location eventFile : getEventFiles(partitionLocation)) {
+        totalBytes += eventFile.length();
+      }
+    }
+
+    // All instances of a consumer group together read each file once, whatever the group size is.
+    for (int groupSize : new int[] { 1, 2, 4, 8, 16 }) {
+      long bytesRead = 0;
+      Set<String> bodies = Sets.newHashSet();
+      for (int instanceId = 0; instanceId < groupSize; instanceId++) {
+        ConsumerConfig consumerConfig = new ConsumerConfig(0L, instanceId, groupSize, DequeueStrategy.HASH, null);
+        for (Location partitionLocation : streamLocation.list()) {
+          for (Location eventFile : getEventFiles(partitionLocation)) {
+            int shard = StreamUtils.getShardId(StreamUtils.getNamePrefix(eventFile.getName()));
+            if (!StreamUtils.isShardAssigned(shard, shards, consumerConfig)) {
+              continue;
+            }
+            bytesRead += eventFile.length();
+            for (StreamEvent event : readEvents(eventFile)) {
+              // Each event should be read by exactly one instance
+              Assert.assertTrue(bodies.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+            }
+          }
+        }
+      }
+      Assert.assertEquals(totalBytes, bytesRead);
+      Assert.assertEquals(totalEvents, bodies.size());
+    }
+  }
+
+  private List<Location> getEventFiles(Location partitionLocation) throws IOException {
+    List<Location> eventFiles = Lists.newArrayList();
+    for (Location location : partitionLocation.list()) {
+      if (location.getName().endsWith(StreamFileType.EVENT.getSuffix())) {
+        eventFiles.add(location);
+      }
+    }
+    return eventFiles;
+  }
+
+  private List<StreamEvent> readEvents(Location eventFile) throws Exception {
+    List<StreamEvent> events = Lists.newArrayList();
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    try {
+      while (reader.read(events, 1000, 0, TimeUnit.SECONDS) >= 0) {
+        // Keep reading until the end of file
+      }
+    } finally {
+      reader.close();
+    }
+    return events;
+  }
 }
@@ -90,6 +90,13 @@ public abstract class StreamConsumerStateTestBase {
     // Read the state back
     StreamConsumerState readState = stateStore.get(0, 0);
     Assert.assertEquals(state, readState);
+
+    // The number of stream file shards is saved with the offsets
+    state.setShards(4);
+    stateStore.save(state);
+    readState = stateStore.get(0, 0);
+    Assert.assertEquals(4, readState.getShards());
+    Assert.assertEquals(state, readState);
   }
 
   @Test
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.runtime.LocationStreamFileWriterFactory;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
@@ -32,14 +33,18 @@ import co.cask.tephra.TransactionContext;
 import co.cask.tephra.TransactionSystemClient;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -55,6 +60,8 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class StreamConsumerTestBase {
 
+  private static final Logger LOG = LoggerFactory.getLogger(StreamConsumerTestBase.class);
+
   protected static CConfiguration cConf = CConfiguration.create();
   protected static final Id.Namespace TEST_NAMESPACE = Id.Namespace.from("streamConsumerTestNamespace");
   protected static final Id.Namespace OTHER_NAMESPACE = Id.Namespace.from("otherNamespace");
@@ -311,6 +318,196 @@ public abstract class StreamConsumerTestBase {
     }
   }
 
+  @Test
+  public void testOffsetCheckpoint() throws Exception {
+    String stream = "testOffsetCheckpoint";
+    Id.Stream streamId = Id.Stream.from(TEST_NAMESPACE, stream);
+    StreamAdmin streamAdmin = getStreamAdmin();
+    streamAdmin.create(streamId);
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+
+    // Writes 200 events
+    writeEvents(streamConfig, "Testing ", 200);
+    streamAdmin.configureInstances(streamId, 0L, 2);
+
+    StreamConsumerFactory consumerFactory = getConsumerFactory();
+    ConsumerConfig consumerConfig = new ConsumerConfig(0L, 0, 2, DequeueStrategy.ROUND_ROBIN, null);
+    StreamConsumer consumer = consumerFactory.create(streamId, "checkpoint", consumerConfig);
+
+    // Consume 3 batches of events, and then rollback the fourth batch
+    Set<String> consumed = Sets.newHashSet();
+    TransactionContext txContext = createTxContext(consumer);
+    for (int i = 0; i < 4; i++) {
+      txContext.start();
+      DequeueResult<StreamEvent> result = consumer.poll(10, 1, TimeUnit.SECONDS);
+      Assert.assertEquals(10, result.size());
+      if (i < 3) {
+        for (StreamEvent event : result) {
+          consumed.add(Charsets.UTF_8.decode(event.getBody()).toString());
+        }
+        txContext.finish();
+      } else {
+        txContext.abort();
+      }
+    }
+
+    // Simulates failure by creating a new consumer without closing the old one, hence the consumer state is
+    // persisted only up to the first commit. Only events that are not committed should be consumed.
+    StreamConsumer newConsumer = consumerFactory.create(streamId, "checkpoint", consumerConfig);
+    txContext = createTxContext(newConsumer);
+    txContext.start();
+    DequeueResult<StreamEvent> result = newConsumer.poll(200, 1, TimeUnit.SECONDS);
+    for (StreamEvent event : result) {
+      Assert.assertTrue(consumed.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+    }
+    txContext.finish();
+
+    // The other consumer instance should consume the rest of the events
+    StreamConsumer otherConsumer = consumerFactory.create(streamId, "checkpoint",
+                                                          new ConsumerConfig(0L, 1, 2,
+                                                                             DequeueStrategy.ROUND_ROBIN, null));
+    txContext = createTxContext(otherConsumer);
+    txContext.start();
+    result = otherConsumer.poll(200, 1, TimeUnit.SECONDS);
+    for (StreamEvent event : result) {
+      Assert.assertTrue(consumed.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+    }
+    txContext.finish();
+    Assert.assertEquals(200, consumed.size());
+
+    // Change the group size before the consumer states are persisted again, which resets the states of all
+    // instances to the smallest offsets. Only the new events should be consumed by the new instances.
+    writeEvents(streamConfig, "More ", 100);
+    streamAdmin.configureInstances(streamId, 0L, 3);
+    for (int i = 0; i < 3; i++) {
+      StreamConsumer resizedConsumer = consumerFactory.create(
+        streamId, "checkpoint", new ConsumerConfig(0L, i, 3, DequeueStrategy.ROUND_ROBIN, null));
+      txContext = createTxContext(resizedConsumer);
+      do {
+        txContext.start();
+        result = resizedConsumer.poll(100, 1, TimeUnit.SECONDS);
+        for (StreamEvent event : result) {
+          String body = Charsets.UTF_8.decode(event.getBody()).toString();
+          Assert.assertTrue(body.startsWith("More "));
+          Assert.assertTrue(consumed.add(body));
+        }
+        txContext.finish();
+      } while (!result.isEmpty());
+      resizedConsumer.close();
+    }
+    Assert.assertEquals(300, consumed.size());
+
+    newConsumer.close();
+    otherConsumer.close();
+    consumer.close();
+  }
+
+  @Test
+  public void testShardsChange() throws Exception {
+    String stream = "testShardsChange";
+    Id.Stream streamId = Id.Stream.from(TEST_NAMESPACE, stream);
+    StreamAdmin streamAdmin = getStreamAdmin();
+    streamAdmin.create(streamId);
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+
+    // Writes 100 events to stream files that are not sharded
+    writeEvents(streamConfig, "Old ", 100);
+    streamAdmin.configureInstances(streamId, 0L, 2);
+
+    // Each consumer instance consumes one batch
+    StreamConsumerFactory consumerFactory = getConsumerFactory();
+    Set<String> consumed = Sets.newHashSet();
+    for (int i = 0; i < 2; i++) {
+      StreamConsumer consumer = consumerFactory.create(streamId, "shards",
+                                                       new ConsumerConfig(0L, i, 2, DequeueStrategy.ROUND_ROBIN, null));
+      TransactionContext txContext = createTxContext(consumer);
+      txContext.start();
+      for (StreamEvent event : consumer.poll(10, 1, TimeUnit.SECONDS)) {
+        Assert.assertTrue(consumed.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+      }
+      txContext.finish();
+      consumer.close();
+    }
+    Assert.assertEquals(20, consumed.size());
+
+    // Restarts the stream writer and the consumers with sharded stream files. The consumers should consume
+    // the rest of the old events and all the new events exactly once.
+    String shards = cConf.get(Constants.Stream.FILE_SHARDS);
+    cConf.setInt(Constants.Stream.FILE_SHARDS, 4);
+    try {
+      FileWriter<StreamEvent> writer = new LocationStreamFileWriterFactory(cConf).create(streamConfig, 0);
+      try {
+        writeEvents(writer, "New ", 100, new Clock());
+      } finally {
+        writer.close();
+      }
+
+      for (int i = 0; i < 2; i++) {
+        StreamConsumer consumer = consumerFactory.create(
+          streamId, "shards", new ConsumerConfig(0L, i, 2, DequeueStrategy.ROUND_ROBIN, null));
+        TransactionContext txContext = createTxContext(consumer);
+        DequeueResult<StreamEvent> result;
+        do {
+          txContext.start();
+          result = consumer.poll(100, 1, TimeUnit.SECONDS);
+          for (StreamEvent event : result) {
+            Assert.assertTrue(consumed.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+          }
+          txContext.finish();
+        } while (!result.isEmpty());
+        consumer.close();
+      }
+    } finally {
+      cConf.set(Constants.Stream.FILE_SHARDS, shards);
+    }
+    Assert.assertEquals(200, consumed.size());
+  }
+
+  @Ignore
+  @Test
+  public void testOffsetCheckpointThroughput() throws Exception {
+    String stream = "testCheckpointThroughput";
+    Id.Stream streamId = Id.Stream.from(TEST_NAMESPACE, stream);
+    StreamAdmin streamAdmin = getStreamAdmin();
+    streamAdmin.create(streamId);
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+
+    int events = 20000;
+    writeEvents(streamConfig, "Testing ", events);
+    streamAdmin.configureGroups(streamId, ImmutableMap.of(0L, 1, 1L, 1));
+
+    // Compares consuming with state row per event (group 0) and with offset checkpoint (group 1)
+    boolean checkpointConf = cConf.getBoolean(Constants.Stream.CONSUMER_OFFSET_CHECKPOINT, true);
+    try {
+      for (boolean checkpoint : new boolean[] { false, true }) {
+        cConf.setBoolean(Constants.Stream.CONSUMER_OFFSET_CHECKPOINT, checkpoint);
+        long groupId = checkpoint ? 1L : 0L;
+        StreamConsumer consumer = getConsumerFactory().create(
+          streamId, "throughput", new ConsumerConfig(groupId, 0, 1, DequeueStrategy.FIFO, null));
+        TransactionContext txContext = createTxContext(consumer);
+
+        Stopwatch stopwatch = new Stopwatch().start();
+        int consumed = 0;
+        while (consumed < events) {
+          txContext.start();
+          DequeueResult<StreamEvent> result = consumer.poll(100, 1, TimeUnit.SECONDS);
+          Assert.assertFalse(result.isEmpty());
+          consumed += result.size();
+          txContext.finish();
+        }
+        long elapsed = stopwatch.elapsedTime(TimeUnit.MILLISECONDS);
+        long stateUpdates = ((AbstractStreamFileConsumer) consumer).getStateUpdates();
+        LOG.info("Consumed {} events with offset checkpoint {} in {} ms, {} events/sec, {} state writes per event",
+                 consumed, checkpoint, elapsed, consumed * 1000L / Math.max(elapsed, 1L),
+                 (double) stateUpdates / consumed);
+        Assert.assertEquals(events, consumed);
+        consumer.close();
+      }
+    } finally {
+      cConf.setBoolean(Constants.Stream.CONSUMER_OFFSET_CHECKPOINT, checkpointConf);
+    }
+  }
+
   @Test
   public void testTTL() throws Exception {
     String stream = "testTTL";
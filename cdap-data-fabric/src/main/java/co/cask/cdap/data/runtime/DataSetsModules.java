@@ -100,7 +100,7 @@ public class DataSetsModules extends RuntimeModule {
 
         bind(DatasetFramework.class)
           .annotatedWith(Names.named(BASIC_DATASET_FRAMEWORK))
-          .to(RemoteDatasetFramework.class);
+          .to(RemoteDatasetFramework.class).in(Scopes.SINGLETON);
         expose(DatasetFramework.class).annotatedWith(Names.named(BASIC_DATASET_FRAMEWORK));
 
         bind(DatasetProvider.class)
@@ -135,7 +135,7 @@ public class DataSetsModules extends RuntimeModule {
 
         bind(DatasetFramework.class)
           .annotatedWith(Names.named(BASIC_DATASET_FRAMEWORK))
-          .to(RemoteDatasetFramework.class);
+          .to(RemoteDatasetFramework.class).in(Scopes.SINGLETON);
         expose(DatasetFramework.class).annotatedWith(Names.named(BASIC_DATASET_FRAMEWORK));
 
         bind(DatasetProvider.class)
@@ -25,11 +25,13 @@ import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data.stream.TimePartitionedStreamFileWriter;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import org.apache.twill.filesystem.Location;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link StreamFileWriterFactory} that provides {@link FileWriter} which writes to file location.
@@ -38,15 +40,25 @@ import java.io.IOException;
 public final class LocationStreamFileWriterFactory implements StreamFileWriterFactory {
 
   private final String filePrefix;
+  private final int shards;
+  private final String shardKeyHeader;
+  private final AtomicInteger nextShard;
 
   @Inject
   public LocationStreamFileWriterFactory(CConfiguration cConf) {
     this.filePrefix = cConf.get(Constants.Stream.INSTANCE_FILE_PREFIX);
+    this.shards = Math.max(cConf.getInt(Constants.Stream.FILE_SHARDS, 1), 1);
+    this.shardKeyHeader = Strings.emptyToNull(cConf.get(Constants.Stream.FILE_SHARD_KEY_HEADER));
+    this.nextShard = new AtomicInteger();
   }
 
   @Override
   public String getFileNamePrefix() {
-    return filePrefix;
+    if (shards == 1) {
+      return filePrefix;
+    }
+    int shard = (nextShard.getAndIncrement() & Integer.MAX_VALUE) % shards;
+    return StreamUtils.getShardFilePrefix(filePrefix, shards, shard);
   }
 
   @Override
@@ -58,7 +70,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
       Locations.mkdirsIfNotExists(baseLocation);
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
-                                                 filePrefix, config.getIndexInterval());
+                                                 filePrefix, config.getIndexInterval(), shards, shardKeyHeader);
 
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BufferedEncoder;
+import co.cask.cdap.common.io.SeekableInputStream;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Summary of a closed stream event file. It is written by {@link StreamDataFileWriter} right before the end marker
+ * when the file is closed, so that readers and split planning can skip the whole file, or the part of it,
+ * that is outside of the time range being read, without scanning the data blocks.
+ *
+ * <pre>
+ * {@code
+ *
+ * footer = <footer_marker> <properties> <footer_length>
+ * footer_marker = 8 bytes int64 with value == Long.MIN_VALUE
+ * properties = Avro encoded with the properties schema
+ * footer_length = 4 bytes int32 for the size of <footer_marker> and <properties>
+ *
+ * }
+ * </pre>
+ *
+ * Since the footer marker is negative, readers that are not aware of the footer treat it as the end of file.
+ */
+final class StreamDataFileFooter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileFooter.class);
+
+  static final long FOOTER_MARKER = Long.MIN_VALUE;
+
+  // Keys of the footer properties
+  private static final String MIN_TIMESTAMP = "stream.min.timestamp";
+  private static final String MAX_TIMESTAMP = "stream.max.timestamp";
+  private static final String EVENT_COUNT = "stream.event.count";
+  private static final String DATA_SIZE = "stream.data.size";
+
+  private final long position;
+  private final long minTimestamp;
+  private final long maxTimestamp;
+  private final long eventCount;
+  private final long dataSize;
+
+  /**
+   * Creates a footer.
+   *
+   * @param position position of the footer in the event file, which is also the end of the data blocks
+   * @param minTimestamp smallest event timestamp in the file or {@code -1} if there is no event
+   * @param maxTimestamp largest event timestamp in the file or {@code -1} if there is no event
+   * @param eventCount number of events in the file
+   * @param dataSize number of bytes of all data blocks in the file
+   */
+  StreamDataFileFooter(long position, long minTimestamp, long maxTimestamp, long eventCount, long dataSize) {
+    this.position = position;
+    this.minTimestamp = minTimestamp;
+    this.maxTimestamp = maxTimestamp;
+    this.eventCount = eventCount;
+    this.dataSize = dataSize;
+  }
+
+  /**
+   * Returns the position of the footer in the event file. All data blocks are before this position.
+   */
+  long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the smallest event timestamp in the file or {@code -1} if the file has no event.
+   */
+  long getMinTimestamp() {
+    return minTimestamp;
+  }
+
+  /**
+   * Returns the largest event timestamp in the file or {@code -1} if the file has no event.
+   */
+  long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  long getEventCount() {
+    return eventCount;
+  }
+
+  long getDataSize() {
+    return dataSize;
+  }
+
+  /**
+   * Returns {@code true} if no event in the file has timestamp in the given range.
+   *
+   * @param startTime start timestamp of the range (inclusive)
+   * @param endTime end timestamp of the range (exclusive)
+   */
+  boolean isOutside(long startTime, long endTime) {
+    return eventCount == 0 || maxTimestamp < startTime || minTimestamp >= endTime;
+  }
+
+  /**
+   * Returns {@code true} if all events in the file have timestamp in the given range.
+   *
+   * @param startTime start timestamp of the range (inclusive)
+   * @param endTime end timestamp of the range (exclusive)
+   */
+  boolean isWithin(long startTime, long endTime) {
+    return eventCount == 0 || (minTimestamp >= startTime && maxTimestamp < endTime);
+  }
+
+  /**
+   * Encodes this footer without the footer length, which is only known after encoding.
+   */
+  void encode(BufferedEncoder encoder) throws IOException {
+    encoder.writeRaw(Longs.toByteArray(FOOTER_MARKER));
+
+    ImmutableMap.Builder<String, String> properties = ImmutableMap.builder();
+    if (eventCount > 0) {
+      properties.put(MIN_TIMESTAMP, Long.toString(minTimestamp));
+      properties.put(MAX_TIMESTAMP, Long.toString(maxTimestamp));
+    }
+    properties.put(EVENT_COUNT, Long.toString(eventCount));
+    properties.put(DATA_SIZE, Long.toString(dataSize));
+    StreamUtils.encodeMap(properties.build(), encoder);
+  }
+
+  /**
+   * Reads the footer from the given event file input. The position of the input is restored before returning.
+   *
+   * @return the footer or {@code null} if the file doesn't have a footer, which is the case for a file that is
+   *         still being written, a file written by an older version or a file that wasn't closed properly.
+   */
+  @Nullable
+  static StreamDataFileFooter read(SeekableInputStream input) throws IOException {
+    long size = input.size();
+    // Footer marker + empty properties + footer length + end marker
+    if (size < Longs.BYTES * 2 + 1 + Ints.BYTES) {
+      return null;
+    }
+
+    long pos = input.getPos();
+    try {
+      byte[] buffer = new byte[Longs.BYTES];
+
+      // The end marker must be there for a closed file
+      input.seek(size - Longs.BYTES);
+      ByteStreams.readFully(input, buffer);
+      if (Bytes.toLong(buffer) >= 0) {
+        return null;
+      }
+
+      input.seek(size - Longs.BYTES - Ints.BYTES);
+      ByteStreams.readFully(input, buffer, 0, Ints.BYTES);
+      int length = Bytes.toInt(buffer, 0, Ints.BYTES);
+      long position = size - Longs.BYTES - Ints.BYTES - length;
+      if (length <= Longs.BYTES || position < 0) {
+        return null;
+      }
+
+      input.seek(position);
+      ByteStreams.readFully(input, buffer);
+      if (Bytes.toLong(buffer) != FOOTER_MARKER) {
+        return null;
+      }
+      Map<String, String> properties = StreamUtils.decodeMap(new BinaryDecoder(input));
+      if (input.getPos() != position + length) {
+        return null;
+      }
+
+      return new StreamDataFileFooter(position,
+                                      getLong(properties, MIN_TIMESTAMP, -1L), getLong(properties, MAX_TIMESTAMP, -1L),
+                                      getLong(properties, EVENT_COUNT, 0L), getLong(properties, DATA_SIZE, 0L));
+    } catch (NumberFormatException e) {
+      LOG.warn("Ignoring invalid stream file footer", e);
+      return null;
+    } finally {
+      input.seek(pos);
+    }
+  }
+
+  private static long getLong(Map<String, String> properties, String key, long defaultValue) {
+    String value = properties.get(key);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("position", position)
+      .add("minTimestamp", minTimestamp)
+      .add("maxTimestamp", maxTimestamp)
+      .add("eventCount", eventCount)
+      .add("dataSize", dataSize)
+      .toString();
+  }
+}
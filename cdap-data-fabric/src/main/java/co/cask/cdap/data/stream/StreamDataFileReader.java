@@ -60,6 +60,8 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private final byte[] timestampBuffer;
   private final StreamEventBuffer streamEventBuffer;
   private StreamDataFileIndex index;
+  private StreamDataFileFooter footer;
+  private boolean footerLoaded;
   private SeekableInputStream eventInput;
   private long position;
   private long timestamp;
@@ -229,6 +231,56 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     }
   }
 
+  /**
+   * Reads events into the given batch, until the batch is full or there is no more event available in the file.
+   * Events are added to the batch without clearing it first. Different from the
+   * {@link #read(Collection, int, long, TimeUnit, ReadFilter)} method, this method doesn't wait for new events
+   * to be written to the file and doesn't create any object per event.
+   *
+   * @param batch the batch to add events to
+   * @param readFilter filter to apply to decide reading or skipping event
+   * @return number of events added to the batch or {@code -1} if end of file is reached
+   * @throws IOException if failed to read events
+   */
+  public int readBatch(StreamEventBatch batch, ReadFilter readFilter) throws IOException {
+    if (closed) {
+      throw new IOException("Reader already closed.");
+    }
+
+    int eventCount = 0;
+    try {
+      while (!eof && !batch.isFull()) {
+        try {
+          if (eventInput == null) {
+            doOpen();
+          }
+          if (!nextDataBlock(readFilter)) {
+            break;
+          }
+          eventCount += streamEventBuffer.nextEvents(batch, timestamp, eventTemplate.getHeaders(), readFilter);
+          position = streamEventBuffer.getPosition();
+
+        } catch (IOException e) {
+          if (eventInput != null) {
+            eventInput.close();
+            eventInput = null;
+          }
+          if (!(e instanceof EOFException || e instanceof FileNotFoundException)) {
+            throw e;
+          }
+          // It could be a live stream file, in which case just return what has been read so far.
+          break;
+        }
+      }
+
+      return (eventCount == 0 && eof) ? -1 : eventCount;
+
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
   /**
    * Returns the index for the stream data or {@code null} if index is absent.
    */
@@ -239,6 +291,24 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     return index;
   }
 
+  /**
+   * Returns the footer of the event file or {@code null} if the file has no footer. The footer is only read once,
+   * since it is only present in a file that is already closed.
+   */
+  @Nullable
+  private StreamDataFileFooter getFooter() throws IOException {
+    if (!footerLoaded) {
+      footerLoaded = true;
+      try {
+        footer = StreamDataFileFooter.read(eventInput);
+      } catch (EOFException e) {
+        // The file is still being written.
+        footer = null;
+      }
+    }
+    return footer;
+  }
+
   /**
    * Opens and initialize this reader.
    */
@@ -377,6 +447,19 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   }
 
   private void initByTime(final long time) throws IOException {
+    // If the file is closed and doesn't have events at or after the given time, go to the end of the file directly.
+    StreamDataFileFooter footer = getFooter();
+    if (footer != null && (footer.getEventCount() == 0 || footer.getMaxTimestamp() < time)) {
+      eventInput.seek(footer.getPosition());
+      position = footer.getPosition();
+      eof = true;
+      return;
+    }
+    // If the time is not after any event, there is nothing to skip.
+    if (footer != null && time <= footer.getMinTimestamp()) {
+      return;
+    }
+
     // If index is provided, lookup the index find the offset closest to start time.
     // If no offset is found, starts from the beginning of the events
     StreamDataFileIndex index = getIndex();
@@ -519,10 +602,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
    * @return The next StreamEvent or {@code null} if the event is rejected by the filter or reached EOF.
    */
   private PositionStreamEvent nextStreamEvent(ReadFilter filter) throws IOException {
-    while (!eof && !(streamEventBuffer.hasEvent() && acceptTimestamp(filter, timestamp))) {
-      readDataBlock(filter);
-    }
-    if (eof) {
+    if (!nextDataBlock(filter)) {
       return null;
     }
 
@@ -531,6 +611,18 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     return event;
   }
 
+  /**
+   * Reads data blocks until there are events in the buffer with timestamp accepted by the filter.
+   *
+   * @return {@code true} if there are events in the buffer, {@code false} if reached EOF.
+   */
+  private boolean nextDataBlock(ReadFilter filter) throws IOException {
+    while (!eof && !(streamEventBuffer.hasEvent() && acceptTimestamp(filter, timestamp))) {
+      readDataBlock(filter);
+    }
+    return !eof;
+  }
+
   private boolean acceptTimestamp(ReadFilter filter, long timestamp) {
     filter.reset();
     return filter.acceptTimestamp(timestamp);
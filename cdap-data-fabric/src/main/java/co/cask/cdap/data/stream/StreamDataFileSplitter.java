@@ -15,15 +15,20 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.io.SeekableInputStream;
 import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.mapreduce.InputSplit;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Helper class for computing {@link InputSplit} for a stream data file.
@@ -36,29 +41,88 @@ import java.util.List;
  *
  * Each split produced will also carries {@code startTime} and {@code endTime} so that only stream events within
  * the given time range will get processed.
+ *
+ * For a closed event file that only partially overlaps with the time range, the file footer and index are used to
+ * only cover the part of the file that has events in the time range, and no split is created for a file that has no
+ * event in the time range.
  */
 final class StreamDataFileSplitter {
 
   private final FileStatus eventFileStatus;
 
+  // Footer of the event file, loaded on demand. An instance can be shared by multiple threads through the
+  // closed partition cache in StreamInputSplitFinder.
+  private StreamDataFileFooter footer;
+  private boolean footerLoaded;
+
   StreamDataFileSplitter(FileStatus eventFileStatus) {
     this.eventFileStatus = eventFileStatus;
   }
 
+  /**
+   * Returns the status of the event file that the splits are computed from.
+   */
+  FileStatus getFileStatus() {
+    return eventFileStatus;
+  }
+
+  /**
+   * Returns {@code true} if the event file is closed and its length is the one in the file status, meaning the
+   * splits computed from this instance will not change. On HDFS, the name node tells whether the file is closed,
+   * otherwise the file is closed if it has a footer.
+   */
+  boolean isClosed(FileSystem fs) throws IOException {
+    Path eventFile = eventFileStatus.getPath();
+    boolean closed = fs instanceof DistributedFileSystem
+      ? ((DistributedFileSystem) fs).isFileClosed(eventFile)
+      : getFooter(fs) != null;
+
+    // The file might have been closed after it was listed
+    return closed && fs.getFileStatus(eventFile).getLen() == eventFileStatus.getLen();
+  }
+
   /**
    * Computes splits for the event file.
+   *
+   * @param prune if {@code true}, use the footer and index of the file to skip the parts of the file that have no
+   *              event in the time range. It should only be set when the file is not expected to be written anymore.
    */
   <T> void computeSplits(FileSystem fs, long minSplitSize, long maxSplitSize, long startTime, long endTime,
-                         List<T> splits, StreamInputSplitFactory<T> splitFactory) throws IOException {
+                         boolean prune, List<T> splits, StreamInputSplitFactory<T> splitFactory) throws IOException {
 
     // Compute the splits based on the min/max size
     Path eventFile = eventFileStatus.getPath();
     Path indexFile = getIndexFile(eventFile);
 
-    BlockLocation[] blockLocations = fs.getFileBlockLocations(eventFile, 0, eventFileStatus.getLen());
-
     long length = eventFileStatus.getLen();
     long offset = 0;
+    boolean tail = true;
+
+    StreamDataFileFooter footer = prune ? getFooter(fs) : null;
+    if (footer != null) {
+      if (footer.isOutside(startTime, endTime)) {
+        return;
+      }
+      // The file is closed, hence no split is needed for the tail of the file.
+      tail = false;
+      length = footer.getPosition();
+
+      // Use the index to find the data blocks that cover the time range.
+      if (!footer.isWithin(startTime, endTime)) {
+        StreamDataFileIndex index = new StreamDataFileIndex(Locations.newInputSupplier(fs, indexFile));
+        offset = Math.max(0L, index.floorPositionByTime(startTime));
+        long endPosition = index.ceilingPositionByTime(endTime);
+        if (endPosition > offset) {
+          length = endPosition;
+        }
+      }
+    }
+
+    // The block locations are already fetched if the file status came from a located listing
+    BlockLocation[] blockLocations = eventFileStatus instanceof LocatedFileStatus
+      ? ((LocatedFileStatus) eventFileStatus).getBlockLocations()
+      : fs.getFileBlockLocations(eventFile, 0, eventFileStatus.getLen());
+
     int blockIndex = 0;
 
     while (offset < length) {
@@ -70,13 +134,29 @@ final class StreamDataFileSplitter {
         blockIndex = 0;
       }
 
-      long splitSize = computeSplitSize(eventFileStatus, offset, minSplitSize, maxSplitSize);
+      long splitSize = computeSplitSize(eventFileStatus, offset, length, minSplitSize, maxSplitSize);
       splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, splitSize, hosts));
       offset += splitSize;
     }
 
     // One extra split for the tail of the file.
-    splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    if (tail) {
+      splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    }
+  }
+
+  /**
+   * Returns the footer of the event file or {@code null} if the file has no footer.
+   */
+  @Nullable
+  private synchronized StreamDataFileFooter getFooter(FileSystem fs) throws IOException {
+    if (!footerLoaded) {
+      try (SeekableInputStream input = Locations.newInputSupplier(fs, eventFileStatus.getPath()).getInput()) {
+        footer = StreamDataFileFooter.read(input);
+      }
+      footerLoaded = true;
+    }
+    return footer;
   }
 
   /**
@@ -105,18 +185,20 @@ final class StreamDataFileSplitter {
   /**
    * Compute the actual split size. The split size compute would be no larger than the given max split size.
    * The split size would be no smaller than the given min split size, except if number of bytes between
-   * offset and file length is smaller than min split size.
+   * offset and end offset is smaller than min split size.
    *
    * @param fileStatus The FileStatus of the file to split on.
    * @param offset Starting offset for the split.
+   * @param endOffset End offset of the part of the file to split on.
    * @param minSplitSize Minimum size for the split.
    * @param maxSplitSize Maximum size for the split.
    * @return
    */
-  private long computeSplitSize(FileStatus fileStatus, long offset, long minSplitSize, long maxSplitSize) {
+  private long computeSplitSize(FileStatus fileStatus, long offset, long endOffset,
+                                long minSplitSize, long maxSplitSize) {
     long blockSize = fileStatus.getBlockSize();
     long splitSize = Math.max(minSplitSize, Math.min(maxSplitSize, blockSize));
-    return Math.min(splitSize, fileStatus.getLen() - offset);
+    return Math.min(splitSize, endOffset - offset);
   }
 
   private Path getIndexFile(Path eventFile) {
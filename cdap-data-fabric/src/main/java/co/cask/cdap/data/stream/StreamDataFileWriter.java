@@ -29,12 +29,16 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.common.io.OutputSupplier;
+import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 import java.util.Map;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -47,13 +51,14 @@ import javax.annotation.concurrent.NotThreadSafe;
  * <pre>
  * {@code
  *
- * event_file = <header> <data>* <end_marker>
+ * event_file = <header> <data>* <footer>? <end_marker>
  * header = "E" "1" <properties>
  * properties = Avro encoded with the properties schema
  * data = <timestamp> <length> <stream_event>+
  * timestamp = 8 bytes int64 for timestamp in milliseconds
  * length = Avro encoded int32 for size in bytes for all <stream_event>s
  * stream_event = Avro encoded bytes according to the StreamData schema
+ * footer = Summary of the file, written when the file is closed. See {@link StreamDataFileFooter}
  * end_marker = 8 bytes int64 with value == -(close_timestamp)
  *
  * }
@@ -73,26 +78,47 @@ import javax.annotation.concurrent.NotThreadSafe;
  *
  * }
  * </pre>
+ *
+ * An index entry is written for a data block if the time since the last entry reached the index interval, or if
+ * the number of bytes written since the last entry reached the index bytes interval, so that files with a high
+ * event rate are indexed finer than by time alone. Timestamps in the index are always strictly increasing.
  */
 @NotThreadSafe
 public final class StreamDataFileWriter implements TimestampCloseable, Flushable, FileWriter<StreamEvent> {
 
+  // Default number of bytes of data blocks between two index entries
+  public static final long DEFAULT_INDEX_BYTES_INTERVAL = 1024 * 1024;    // 1M
+
   private static final int BUFFER_SIZE = 256 * 1024;    // 256K
+  // Event bodies of at least this size are written to the output directly without copying to the buffer
+  private static final int DIRECT_WRITE_SIZE = 64 * 1024;   // 64K
 
   private final OutputStream eventOutput;
   private final OutputStream indexOutput;
   private final long indexInterval;
+  private final long indexBytesInterval;
+  private final boolean closeTimestampForAll;
+  private final long fileTimestamp;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final BufferedEncoder bodyLengthEncoder;
 
   // Timestamp for the current block
   private long currentTimestamp;
   private long position;
   private long nextIndexTime;
+  private long lastIndexTimestamp;
+  private long lastIndexPosition;
   private boolean synced;
   private boolean closed;
   private long closeTimestamp;
 
+  // Summary of the events written, for the footer
+  private long dataStart;
+  private long eventCount;
+  private long minTimestamp;
+  private long maxTimestamp;
+
   /**
    * Constructs a new instance that writes to given outputs. Same as calling
    * {@link StreamDataFileWriter#StreamDataFileWriter(OutputSupplier, OutputSupplier, long, Map)}
@@ -104,18 +130,36 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     this(eventOutputSupplier, indexOutputSupplier, indexInterval, ImmutableMap.<String, String>of());
   }
 
+  /**
+   * Constructs a new instance that writes to given outputs. Same as calling
+   * {@link StreamDataFileWriter#StreamDataFileWriter(OutputSupplier, OutputSupplier, long, long, Map)}
+   * with {@link #DEFAULT_INDEX_BYTES_INTERVAL}.
+   */
+  public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
+                              OutputSupplier<? extends OutputStream> indexOutputSupplier,
+                              long indexInterval, Map<String, String> properties) throws IOException {
+    this(eventOutputSupplier, indexOutputSupplier, indexInterval, DEFAULT_INDEX_BYTES_INTERVAL, properties);
+  }
+
   /**
    * Constructs a new instance that writes to given outputs.
    *
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
+   * @param indexBytesInterval the number of bytes written for emitting a new index entry
    * @param properties the property set that will be stored as file properties
    * @throws IOException if there is an error in preparing the output streams
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
-                              long indexInterval, Map<String, String> properties) throws IOException {
+                              long indexInterval, long indexBytesInterval,
+                              Map<String, String> properties) throws IOException {
+    // All events in the file may share the same timestamp, which is what the reader will return
+    String uniTimestamp = properties.get(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP);
+    this.closeTimestampForAll = StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP.equals(uniTimestamp);
+    this.fileTimestamp = (uniTimestamp == null || closeTimestampForAll) ? -1L : Long.parseLong(uniTimestamp);
+
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
@@ -124,12 +168,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       throw e;
     }
     this.indexInterval = indexInterval;
+    this.indexBytesInterval = indexBytesInterval;
     this.currentTimestamp = -1L;
     this.closeTimestamp = -1L;
+    this.lastIndexTimestamp = -1L;
+    this.minTimestamp = -1L;
+    this.maxTimestamp = -1L;
 
     Function<OutputStream, Encoder> encoderFactory = createEncoderFactory();
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.bodyLengthEncoder = new BufferedEncoder(5, encoderFactory);
 
     try {
       init(properties);
@@ -141,9 +190,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   }
 
 
+  /**
+   * Writes an event to the stream file. If the event body is large, the event is written as a data block by itself
+   * with the body written to the output directly, without copying it to the write buffer.
+   */
   @Override
   public void append(StreamEvent event) throws IOException {
-    doAppend(event, BUFFER_SIZE);
+    if (event.getBody().remaining() >= DIRECT_WRITE_SIZE) {
+      doAppendDirect(event);
+    } else {
+      doAppend(event, BUFFER_SIZE);
+    }
   }
 
   /**
@@ -170,8 +227,10 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
     try {
       flushBlock(false);
-      // Write the tail marker, which is a -(current timestamp).
       closeTimestamp = System.currentTimeMillis();
+      writeFooter();
+
+      // Write the tail marker, which is a -(current timestamp).
       eventOutput.write(Longs.toByteArray(-closeTimestamp));
     } finally {
       closed = true;
@@ -199,16 +258,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   }
 
   private void doAppend(StreamEvent event, int flushLimit) throws IOException {
-    if (closed) {
-      throw new IOException("Writer already closed.");
-    }
-
-    synced = false;
-    long eventTimestamp = event.getTimestamp();
-    if (eventTimestamp < currentTimestamp) {
-      throw closeWithException(new IOException("Out of order events written."));
-    }
-
+    long eventTimestamp = checkAppend(event);
     try {
       if (eventTimestamp > currentTimestamp) {
         flushBlock(false);
@@ -222,6 +272,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      updateSummary(eventTimestamp);
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -233,6 +284,88 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     }
   }
 
+  /**
+   * Writes an event as a data block by itself. The body is written to the output directly, between the encoded
+   * body length and the encoded headers, which are the only parts that go through the buffers.
+   */
+  private void doAppendDirect(StreamEvent event) throws IOException {
+    long eventTimestamp = checkAppend(event);
+    try {
+      // Finish the current data block, as the event needs to be in its own data block.
+      flushBlock(false);
+
+      currentTimestamp = eventTimestamp;
+      eventOutput.write(Bytes.toBytes(currentTimestamp));
+      position += Bytes.SIZEOF_LONG;
+
+      // The encoded form is the same as StreamEventDataCodec.encode, which is <body_length> <body> <headers>
+      ByteBuffer body = event.getBody();
+      int bodyLength = body.remaining();
+      bodyLengthEncoder.writeInt(bodyLength);
+      StreamEventDataCodec.encodeHeaders(event.getHeaders(), encoder);
+
+      long indexOffset = getIndexOffset();
+      writeBlockLength(bodyLengthEncoder.size() + bodyLength + encoder.size());
+
+      int size = bodyLengthEncoder.size();
+      bodyLengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      writeBody(body);
+      position += bodyLength;
+
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+
+      updateSummary(eventTimestamp);
+      endBlock(indexOffset, false);
+
+    } catch (IOException e) {
+      throw closeWithException(e);
+    }
+  }
+
+  /**
+   * Checks if the given event can be appended.
+   *
+   * @return the timestamp of the event
+   */
+  private long checkAppend(StreamEvent event) throws IOException {
+    if (closed) {
+      throw new IOException("Writer already closed.");
+    }
+
+    synced = false;
+    long eventTimestamp = event.getTimestamp();
+    if (eventTimestamp < currentTimestamp) {
+      throw closeWithException(new IOException("Out of order events written."));
+    }
+    return eventTimestamp;
+  }
+
+  private void updateSummary(long eventTimestamp) {
+    if (eventCount++ == 0) {
+      minTimestamp = eventTimestamp;
+    }
+    maxTimestamp = eventTimestamp;
+  }
+
+  /**
+   * Writes the content of the given buffer to the event output, without copying if the buffer is backed by array.
+   */
+  private void writeBody(ByteBuffer body) throws IOException {
+    if (body.hasArray()) {
+      eventOutput.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+      return;
+    }
+    WritableByteChannel channel = Channels.newChannel(eventOutput);
+    ByteBuffer buffer = body.duplicate();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
     encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
@@ -245,6 +378,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     encoder.writeTo(eventOutput);
     sync(eventOutput);
     position = headerSize;
+    dataStart = headerSize;
+    lastIndexPosition = headerSize;
 
     // Writes the header for index file
     encoder.writeRaw(StreamDataFileConstants.INDEX_MAGIC_HEADER_V1);
@@ -271,23 +406,46 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       return;
     }
 
-    // Record the current event output position if needs to update index
-    long indexOffset = -1L;
-    if (currentTimestamp >= nextIndexTime) {
-      // Index offset is the current block start, hence is current position - 8 bytes timestamp already written.
-      indexOffset = position - Bytes.SIZEOF_LONG;
-    }
+    long indexOffset = getIndexOffset();
 
     // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
+    writeBlockLength(encoder.size());
 
     // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
+    int size = encoder.size();
     encoder.writeTo(eventOutput);
     position += size;
+    endBlock(indexOffset, sync);
+  }
+
+  /**
+   * Returns the offset of the current data block if an index entry is needed for it, or {@code -1} otherwise.
+   * It must be called before the block length is written.
+   */
+  private long getIndexOffset() {
+    // Index offset is the current block start, hence is current position - 8 bytes timestamp already written.
+    long blockStart = position - Bytes.SIZEOF_LONG;
+    if (currentTimestamp >= nextIndexTime
+      || (currentTimestamp > lastIndexTimestamp && blockStart - lastIndexPosition >= indexBytesInterval)) {
+      return blockStart;
+    }
+    return -1L;
+  }
+
+  private void writeBlockLength(int length) throws IOException {
+    lengthEncoder.writeInt(length);
+    int size = lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    position += size;
+  }
+
+  /**
+   * Finishes the current data block, after all the data of the block is written to the event output.
+   *
+   * @param indexOffset offset of the data block as returned by {@link #getIndexOffset()}
+   * @param sync If {@code true}, perform a sync call to the underlying output stream.
+   */
+  private void endBlock(long indexOffset, boolean sync) throws IOException {
     if (sync) {
       sync(eventOutput);
     }
@@ -301,6 +459,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       }
 
       nextIndexTime = currentTimestamp + indexInterval;
+      lastIndexTimestamp = currentTimestamp;
+      lastIndexPosition = indexOffset;
     } else if (sync) {
       sync(indexOutput);
     }
@@ -310,6 +470,27 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Writes the footer with the summary of the file. The timestamps in the footer are the ones that readers will
+   * return for the events, which are the same for all events in the file if the uni-timestamp property is set.
+   */
+  private void writeFooter() throws IOException {
+    long minTimestamp = this.minTimestamp;
+    long maxTimestamp = this.maxTimestamp;
+    if (eventCount > 0 && closeTimestampForAll) {
+      minTimestamp = maxTimestamp = closeTimestamp;
+    } else if (eventCount > 0 && fileTimestamp >= 0) {
+      minTimestamp = maxTimestamp = fileTimestamp;
+    }
+
+    StreamDataFileFooter footer = new StreamDataFileFooter(position, minTimestamp, maxTimestamp,
+                                                           eventCount, position - dataStart);
+    footer.encode(encoder);
+    encoder.writeRaw(Ints.toByteArray(encoder.size()));
+    position += encoder.size();
+    encoder.writeTo(eventOutput);
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.stream.StreamEventData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A batch of stream events decoded by {@link StreamDataFileReader#readBatch(StreamEventBatch, ReadFilter)}.
+ *
+ * Events are stored in columns instead of one object per event:
+ *
+ * <ul>
+ *   <li>Timestamps and file positions are stored as {@code long[]}.</li>
+ *   <li>Bodies are stored as offsets and lengths into a {@code byte[]} shared by all events in the batch.</li>
+ *   <li>Headers are dictionary encoded. Events with the same encoded headers share the same headers id and
+ *       the same unmodifiable {@link Map}, which is only decoded once per batch. Unlike the headers of events
+ *       read one by one, the headers returned by this class can't be modified.</li>
+ * </ul>
+ *
+ * The buffers are reused after {@link #clear()}, hence the body data array is only valid until the batch is
+ * cleared. The only exception is when a {@link ByteBuffer} or {@link PositionStreamEvent} was returned by
+ * {@link #getBody(int)} or {@link #getEvent(int)}, in which case a new body data array is used after clear, so that
+ * those objects stay valid. Callers that don't keep the events after clear should use {@link #getBodyView(int)} or
+ * {@link #getEventView(int)} instead, so that the body data array is reused.
+ */
+@NotThreadSafe
+public final class StreamEventBatch {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final int capacity;
+  private final long[] timestamps;
+  private final long[] positions;
+  private final int[] bodyOffsets;
+  private final int[] bodyLengths;
+  private final int[] headersIds;
+
+  // Dictionary of headers and the encoded form, indexed by headers id
+  private final List<Map<String, String>> headersDictionary;
+  private final List<ByteBuffer> encodedHeaders;
+  // From encoded headers to headers id
+  private final Map<ByteBuffer, Integer> headersLookup;
+
+  private byte[] bodyData;
+  private int bodyDataSize;
+  // True if the body data array is referenced by a ByteBuffer handed out by this batch
+  private boolean bodyDataShared;
+  private int size;
+
+  // Default headers of the stream file that the encoded headers in the lookup map are from
+  private Map<String, String> defaultHeaders;
+
+  // Encoded headers and headers id of the last event added, as consecutive events mostly have the same headers
+  private ByteBuffer lastEncodedHeaders;
+  private int lastHeadersId;
+
+  /**
+   * Creates a batch that holds at most 1024 events.
+   */
+  public StreamEventBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a batch that holds at most the given number of events.
+   */
+  public StreamEventBatch(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be > 0");
+    this.capacity = capacity;
+    this.timestamps = new long[capacity];
+    this.positions = new long[capacity];
+    this.bodyOffsets = new int[capacity];
+    this.bodyLengths = new int[capacity];
+    this.headersIds = new int[capacity];
+    this.headersDictionary = Lists.newArrayList();
+    this.encodedHeaders = Lists.newArrayList();
+    this.headersLookup = Maps.newHashMap();
+    this.bodyData = new byte[capacity * 64];
+    this.lastHeadersId = -1;
+  }
+
+  /**
+   * Removes all events from this batch.
+   */
+  public void clear() {
+    size = 0;
+    bodyDataSize = 0;
+    if (bodyDataShared) {
+      bodyData = new byte[bodyData.length];
+      bodyDataShared = false;
+    }
+    headersDictionary.clear();
+    encodedHeaders.clear();
+    headersLookup.clear();
+    defaultHeaders = null;
+    lastEncodedHeaders = null;
+    lastHeadersId = -1;
+  }
+
+  /**
+   * Returns the number of events in this batch.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the maximum number of events in this batch.
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns {@code true} if no more event can be added to this batch.
+   */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Returns the timestamp of the event at the given index.
+   */
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * Returns the position in the stream file of the event at the given index.
+   */
+  public long getPosition(int index) {
+    checkIndex(index);
+    return positions[index];
+  }
+
+  /**
+   * Returns the array that holds the bodies of all events in this batch. The content of the array is only valid
+   * until the batch is cleared.
+   */
+  public byte[] getBodyData() {
+    return bodyData;
+  }
+
+  /**
+   * Returns the offset in the body data array of the body of the event at the given index.
+   */
+  public int getBodyOffset(int index) {
+    checkIndex(index);
+    return bodyOffsets[index];
+  }
+
+  /**
+   * Returns the length of the body of the event at the given index.
+   */
+  public int getBodyLength(int index) {
+    checkIndex(index);
+    return bodyLengths[index];
+  }
+
+  /**
+   * Returns the body of the event at the given index as a {@link ByteBuffer} backed by the body data array.
+   * The buffer stays valid after the batch is cleared.
+   */
+  public ByteBuffer getBody(int index) {
+    ByteBuffer body = getBodyView(index);
+    bodyDataShared = true;
+    return body;
+  }
+
+  /**
+   * Returns the body of the event at the given index as a {@link ByteBuffer} backed by the body data array.
+   * The buffer is only valid until the batch is cleared.
+   */
+  public ByteBuffer getBodyView(int index) {
+    checkIndex(index);
+    return ByteBuffer.wrap(bodyData, bodyOffsets[index], bodyLengths[index]).slice();
+  }
+
+  /**
+   * Returns the headers id of the event at the given index. Events with the same headers id have the same headers.
+   */
+  public int getHeadersId(int index) {
+    checkIndex(index);
+    return headersIds[index];
+  }
+
+  /**
+   * Returns the headers of the event at the given index.
+   */
+  public Map<String, String> getHeaders(int index) {
+    checkIndex(index);
+    return headersDictionary.get(headersIds[index]);
+  }
+
+  /**
+   * Returns the number of distinct headers in this batch. Headers ids are in the range of
+   * {@code [0, getHeadersDictionarySize())}.
+   */
+  public int getHeadersDictionarySize() {
+    return headersDictionary.size();
+  }
+
+  /**
+   * Creates a {@link PositionStreamEvent} for the event at the given index. The body of the event is backed by
+   * the body data array of this batch and stays valid after the batch is cleared.
+   */
+  public PositionStreamEvent getEvent(int index) {
+    return new PositionStreamEvent(new StreamEventData(getHeaders(index), getBody(index)),
+                                   getTimestamp(index), getPosition(index));
+  }
+
+  /**
+   * Creates a {@link PositionStreamEvent} for the event at the given index. The body of the event is backed by
+   * the body data array of this batch and is only valid until the batch is cleared.
+   */
+  public PositionStreamEvent getEventView(int index) {
+    return new PositionStreamEvent(new StreamEventData(getHeaders(index), getBodyView(index)),
+                                   getTimestamp(index), getPosition(index));
+  }
+
+  /**
+   * Adds an event to this batch.
+   *
+   * @param timestamp timestamp of the event
+   * @param position position of the event in the stream file
+   * @param source array that contains the body of the event
+   * @param bodyOffset offset of the body in the source array
+   * @param bodyLength length of the body
+   * @param headersId id of the event headers, as returned by {@link #lookupHeaders(Map, byte[], int, int)} or
+   *                  {@link #addHeaders(byte[], int, int, Map)}
+   */
+  void add(long timestamp, long position, byte[] source, int bodyOffset, int bodyLength, int headersId) {
+    Preconditions.checkState(!isFull(), "Batch is full");
+    if (bodyData.length - bodyDataSize < bodyLength) {
+      // Buffers already handed out keep referencing the old array, which is never modified again
+      bodyDataShared = false;
+      bodyData = Arrays.copyOf(bodyData, Math.max(bodyData.length * 2, bodyDataSize + bodyLength));
+    }
+    System.arraycopy(source, bodyOffset, bodyData, bodyDataSize, bodyLength);
+
+    timestamps[size] = timestamp;
+    positions[size] = position;
+    bodyOffsets[size] = bodyDataSize;
+    bodyLengths[size] = bodyLength;
+    headersIds[size] = headersId;
+
+    bodyDataSize += bodyLength;
+    size++;
+  }
+
+  /**
+   * Returns the headers id for the given encoded headers or {@code -1} if the headers are not in this batch yet.
+   *
+   * @param defaultHeaders the default headers of the stream file that the encoded headers are from
+   */
+  int lookupHeaders(Map<String, String> defaultHeaders, byte[] source, int offset, int length) {
+    // Encoded headers from a different file can't be shared, as the default headers may be different
+    if (defaultHeaders != this.defaultHeaders) {
+      headersLookup.clear();
+      lastEncodedHeaders = null;
+      this.defaultHeaders = defaultHeaders;
+    }
+    if (lastEncodedHeaders != null && equals(lastEncodedHeaders, source, offset, length)) {
+      return lastHeadersId;
+    }
+    Integer headersId = headersLookup.get(ByteBuffer.wrap(source, offset, length));
+    if (headersId == null) {
+      return -1;
+    }
+    lastEncodedHeaders = encodedHeaders.get(headersId);
+    lastHeadersId = headersId;
+    return headersId;
+  }
+
+  /**
+   * Adds the decoded headers for the given encoded headers to the dictionary. It must be called right after
+   * {@link #lookupHeaders(Map, byte[], int, int)} returned {@code -1} for the same encoded headers.
+   *
+   * @return the headers id
+   */
+  int addHeaders(byte[] source, int offset, int length, Map<String, String> headers) {
+    ByteBuffer encoded = ByteBuffer.wrap(Arrays.copyOfRange(source, offset, offset + length));
+    int headersId = headersDictionary.size();
+    headersDictionary.add(Collections.unmodifiableMap(headers));
+    encodedHeaders.add(encoded);
+    headersLookup.put(encoded, headersId);
+    lastEncodedHeaders = encoded;
+    lastHeadersId = headersId;
+    return headersId;
+  }
+
+  private boolean equals(ByteBuffer encoded, byte[] source, int offset, int length) {
+    if (encoded.remaining() != length) {
+      return false;
+    }
+    byte[] array = encoded.array();
+    int arrayOffset = encoded.arrayOffset() + encoded.position();
+    for (int i = 0; i < length; i++) {
+      if (array[arrayOffset + i] != source[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bound for batch of size " + size);
+    }
+  }
+}
@@ -128,6 +128,56 @@ final class StreamEventBuffer {
     return null;
   }
 
+  /**
+   * Decodes stream events from the buffer into the given batch, until the batch is full or there is no more event
+   * in the buffer. Event bodies are copied from the buffer directly and event headers are only decoded if they
+   * are not in the batch yet.
+   *
+   * @param batch the batch to add events to
+   * @param timestamp timestamp of the events
+   * @param defaultHeaders the set of headers that will used as the default for the stream events
+   * @param filter filter to apply to decide reading or skipping event
+   * @return number of events added to the batch
+   * @throws IOException if fails to decode event from the buffer
+   */
+  int nextEvents(StreamEventBatch batch, long timestamp,
+                 Map<String, String> defaultHeaders, ReadFilter filter) throws IOException {
+    byte[] array = buffer.array();
+    int arrayOffset = buffer.arrayOffset();
+    int count = 0;
+
+    while (hasEvent() && !batch.isFull()) {
+      long eventPos = basePosition + buffer.position();
+      if (!filter.acceptOffset(eventPos)) {
+        StreamEventDataCodec.skip(decoder);
+        continue;
+      }
+
+      // The body is Avro bytes, which is the length followed by the content.
+      int bodyLength = decoder.readInt();
+      int bodyOffset = buffer.position();
+      if (bodyLength < 0 || bodyLength > buffer.remaining()) {
+        throw new EOFException("Invalid body length " + bodyLength + " at position " + eventPos);
+      }
+      buffer.position(bodyOffset + bodyLength);
+
+      int headersOffset = buffer.position();
+      StreamEventDataCodec.skipHeaders(decoder);
+      int headersLength = buffer.position() - headersOffset;
+
+      int headersId = batch.lookupHeaders(defaultHeaders, array, arrayOffset + headersOffset, headersLength);
+      if (headersId < 0) {
+        buffer.position(headersOffset);
+        Map<String, String> headers = StreamEventDataCodec.decodeHeaders(decoder, defaultHeaders);
+        headersId = batch.addHeaders(array, arrayOffset + headersOffset, headersLength, headers);
+      }
+
+      batch.add(timestamp, eventPos, array, arrayOffset + bodyOffset, bodyLength, headersId);
+      count++;
+    }
+    return count;
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
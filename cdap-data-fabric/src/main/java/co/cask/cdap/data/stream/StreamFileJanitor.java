@@ -16,24 +16,52 @@
 
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.LocationStatus;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.io.Processor;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.proto.Id;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Performs deletion of unused stream files.
+ *
+ * Streams are cleaned in parallel by a configurable number of threads, with all file system operations
+ * sharing a rate limit. For each stream, the janitor remembers the current generation and the earliest end time
+ * of the partitions that survived the last cleanup, so that a stream is only listed again when some partition
+ * may have expired since then. The state of a stream is dropped once the stream is no longer found by a cleanup run.
  */
 public final class StreamFileJanitor {
 
@@ -42,6 +70,10 @@ public final class StreamFileJanitor {
   private final StreamAdmin streamAdmin;
   private final NamespacedLocationFactory namespacedLocationFactory;
   private final String streamBaseDirPath;
+  private final int threads;
+  private final RateLimiter rateLimiter;
+  private final ConcurrentMap<URI, CleanupState> cleanupStates;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   public StreamFileJanitor(CConfiguration cConf, StreamAdmin streamAdmin,
@@ -49,38 +81,95 @@ public final class StreamFileJanitor {
     this.streamAdmin = streamAdmin;
     this.streamBaseDirPath = cConf.get(Constants.Stream.BASE_DIR);
     this.namespacedLocationFactory = namespacedLocationFactory;
+    this.threads = Math.max(1, cConf.getInt(Constants.Stream.FILE_CLEANUP_THREADS, 4));
+
+    // Non-positive value means no limit
+    int opsPerSecond = cConf.getInt(Constants.Stream.FILE_CLEANUP_OPS_PER_SECOND, 0);
+    this.rateLimiter = opsPerSecond > 0 ? RateLimiter.create(opsPerSecond) : null;
+    this.cleanupStates = Maps.newConcurrentMap();
+    this.metricsCollectionService = new NoOpMetricsCollectionService();
+  }
+
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Optional injection since metrics are only emitted when running inside the stream service
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   /**
    * Performs file cleanup for all streams.
    */
   public void cleanAll() throws IOException {
+    cleanAll(System.currentTimeMillis());
+  }
+
+  /**
+   * Performs file cleanup for all streams, with the given timestamp as the current time.
+   * This method is package visible so that it can be test easily by providing a custom timestamp for current time.
+   */
+  @VisibleForTesting
+  void cleanAll(long currentTime) throws IOException {
     Map<Id.Namespace, Location> namespaceLocations = namespacedLocationFactory.list();
     if (namespaceLocations.size() == 0) {
       return;
     }
 
-    for (Location namespaceDir : namespaceLocations.values()) {
-      Location streamBaseLocation = namespaceDir.append(streamBaseDirPath);
-      if (!streamBaseLocation.exists()) {
-        continue;
-      }
+    Stopwatch stopwatch = new Stopwatch().start();
+    CleanupStats stats = new CleanupStats();
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+                                                            Threads.createDaemonThreadFactory("stream-cleanup-%d"));
+    // Streams found in this run. The cleanup state of any other stream is removed, as the stream was deleted.
+    Set<URI> streamURIs = Sets.newHashSet();
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (Location namespaceDir : namespaceLocations.values()) {
+        Location streamBaseLocation = namespaceDir.append(streamBaseDirPath);
+        acquire();
+        if (!streamBaseLocation.exists()) {
+          continue;
+        }
+
+        // Remove everything under the deleted directory
+        Location deletedLocation = StreamUtils.getDeletedLocation(streamBaseLocation);
+        acquire();
+        if (deletedLocation.exists()) {
+          acquire();
+          Locations.deleteContent(deletedLocation);
+        }
 
-      // Remove everything under the deleted directory
-      Location deletedLocation = StreamUtils.getDeletedLocation(streamBaseLocation);
-      if (deletedLocation.exists()) {
-        Locations.deleteContent(deletedLocation);
+        acquire();
+        for (Location streamLocation : StreamUtils.listAllStreams(streamBaseLocation)) {
+          streamURIs.add(streamLocation.toURI());
+          futures.add(executor.submit(createCleanTask(streamLocation, currentTime, stats)));
+        }
       }
 
-      for (Location streamLocation : StreamUtils.listAllStreams(streamBaseLocation)) {
-        Id.Stream streamId = StreamUtils.getStreamIdFromLocation(streamLocation);
-        long ttl = 0L;
-        if (isStreamExists(streamId)) {
-          ttl = streamAdmin.getConfig(streamId).getTTL();
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // Failure of individual stream is already logged by the task, and shouldn't stop cleanup of other streams
+          stats.failedStreams.incrementAndGet();
         }
-        clean(streamLocation, ttl, System.currentTimeMillis());
       }
+      cleanupStates.keySet().retainAll(streamURIs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for stream file cleanup", e);
+    } finally {
+      executor.shutdownNow();
     }
+
+    long elapsedMillis = stopwatch.elapsedMillis();
+    LOG.debug("Stream file cleanup completed in {} ms. Deleted {} partitions with {} bytes. {} streams failed.",
+              elapsedMillis, stats.deletedPartitions.get(), stats.deletedBytes.get(), stats.failedStreams.get());
+
+    MetricsContext metricsContext = metricsCollectionService.getContext(getMetricsContext());
+    metricsContext.gauge("stream.janitor.run.millis", elapsedMillis);
+    metricsContext.increment("stream.janitor.deleted.bytes", stats.deletedBytes.get());
+    metricsContext.increment("stream.janitor.deleted.partitions", stats.deletedPartitions.get());
+    metricsContext.increment("stream.janitor.failed.streams", stats.failedStreams.get());
   }
 
   /**
@@ -93,44 +182,163 @@ public final class StreamFileJanitor {
    */
   @VisibleForTesting
   void clean(Location streamLocation, long ttl, long currentTime) throws IOException {
+    clean(streamLocation, ttl, currentTime, new CleanupStats());
+  }
+
+  private void clean(Location streamLocation, long ttl, long currentTime, CleanupStats stats) throws IOException {
     LOG.debug("Cleanup stream file in {}", streamLocation);
 
+    URI streamURI = streamLocation.toURI();
+    CleanupState state = cleanupStates.get(streamURI);
+
     // Get the current generation and remove every generations smaller then the current one.
+    // It only needs to be done once per generation.
+    acquire();
     int generation = StreamUtils.getGeneration(streamLocation);
+    if (state == null || state.generation != generation) {
+      state = null;
+      cleanupStates.remove(streamURI);
+      removeOldGenerations(streamLocation, generation, stats);
+    }
+
+    // For current generation, remove all partition directories ended older than TTL.
+    // If none of the partitions survived the last cleanup can be expired, there is no need to list again.
+    long expireTime = currentTime - ttl;
+    if (state != null && expireTime <= state.minSurvivingEndTime) {
+      return;
+    }
 
+    // Partitions created after the listing always end later than the listing time
+    long minSurvivingEndTime = currentTime;
+    Location generationLocation = StreamUtils.createGenerationLocation(streamLocation, generation);
+    for (Location location : list(generationLocation)) {
+      // Only interested in partition directories
+      if (!isPartitionDirector(location)) {
+        continue;
+      }
+      long partitionEndTime = StreamUtils.getPartitionEndTime(location.getName());
+      if (partitionEndTime < expireTime) {
+        deletePartition(location, stats);
+      } else {
+        minSurvivingEndTime = Math.min(minSurvivingEndTime, partitionEndTime);
+      }
+    }
+    cleanupStates.put(streamURI, new CleanupState(generation, minSurvivingEndTime));
+  }
+
+  /**
+   * Removes all generations that are smaller than the given generation.
+   */
+  private void removeOldGenerations(Location streamLocation, int generation, CleanupStats stats) throws IOException {
     for (int i = 0; i < generation; i++) {
       Location generationLocation = StreamUtils.createGenerationLocation(streamLocation, i);
 
       // Special case for generation 0
       if (generationLocation.equals(streamLocation)) {
-        for (Location location : generationLocation.list()) {
+        for (Location location : list(generationLocation)) {
           // Only delete partition directories
           if (isPartitionDirector(location)) {
-            location.delete(true);
+            deletePartition(location, stats);
           }
         }
       } else {
-        generationLocation.delete(true);
+        acquire();
+        if (generationLocation.exists()) {
+          stats.deletedBytes.addAndGet(getSize(generationLocation));
+          acquire();
+          generationLocation.delete(true);
+        }
       }
     }
+  }
 
-    // For current generation, remove all partition directories ended older than TTL
-    long expireTime = currentTime - ttl;
-    Location generationLocation = StreamUtils.createGenerationLocation(streamLocation, generation);
-    for (Location location : generationLocation.list()) {
-      // Only interested in partition directories
-      if (!isPartitionDirector(location)) {
-        continue;
+  private void deletePartition(Location partitionLocation, CleanupStats stats) throws IOException {
+    long size = getSize(partitionLocation);
+    acquire();
+    if (partitionLocation.delete(true)) {
+      stats.deletedPartitions.incrementAndGet();
+      stats.deletedBytes.addAndGet(size);
+    }
+  }
+
+  /**
+   * Returns the total size of files under the given directory.
+   */
+  private long getSize(Location location) throws IOException {
+    return Locations.processLocations(location, true, new Processor<LocationStatus, Long>() {
+      private long size;
+
+      @Override
+      public boolean process(LocationStatus input) {
+        if (input.isDir()) {
+          // Each directory is a list call
+          acquire();
+        } else {
+          size += input.getLength();
+        }
+        return true;
       }
-      long partitionEndTime = StreamUtils.getPartitionEndTime(location.getName());
-      if (partitionEndTime < expireTime) {
-        location.delete(true);
+
+      @Override
+      public Long getResult() {
+        return size;
       }
-    }
+    });
+  }
+
+  private List<Location> list(Location location) throws IOException {
+    acquire();
+    return location.list();
   }
 
   private boolean isPartitionDirector(Location location) throws IOException {
-    return (location.isDirectory() && location.getName().indexOf('.') > 0);
+    if (!StreamUtils.isPartition(location.getName())) {
+      return false;
+    }
+    acquire();
+    return location.isDirectory();
+  }
+
+  /**
+   * Returns {@code true} if the janitor has cleanup state remembered for the given stream.
+   */
+  @VisibleForTesting
+  boolean hasCleanupState(Location streamLocation) {
+    return cleanupStates.containsKey(streamLocation.toURI());
+  }
+
+  private Runnable createCleanTask(final Location streamLocation, final long currentTime, final CleanupStats stats) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        Id.Stream streamId = StreamUtils.getStreamIdFromLocation(streamLocation);
+        try {
+          long ttl = 0L;
+          if (isStreamExists(streamId)) {
+            ttl = streamAdmin.getConfig(streamId).getTTL();
+          }
+          clean(streamLocation, ttl, currentTime, stats);
+        } catch (Exception e) {
+          LOG.warn("Failed to cleanup stream files for {}: {}", streamId, e.getMessage());
+          LOG.debug("Failed to cleanup stream files for {}", streamId, e);
+          throw Throwables.propagate(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Blocks until a file system operation is allowed by the rate limit.
+   */
+  private void acquire() {
+    if (rateLimiter != null) {
+      rateLimiter.acquire();
+    }
+  }
+
+  private Map<String, String> getMetricsContext() {
+    return ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+                           Constants.Metrics.Tag.COMPONENT, Constants.Service.STREAMS);
   }
 
   private boolean isStreamExists(Id.Stream streamId) throws IOException {
@@ -140,4 +348,26 @@ public final class StreamFileJanitor {
       throw new IOException(e);
     }
   }
+
+  /**
+   * Cleanup state of a stream that is remembered across runs.
+   */
+  private static final class CleanupState {
+    private final int generation;
+    private final long minSurvivingEndTime;
+
+    CleanupState(int generation, long minSurvivingEndTime) {
+      this.generation = generation;
+      this.minSurvivingEndTime = minSurvivingEndTime;
+    }
+  }
+
+  /**
+   * Statistics of one cleanup run, shared by all cleanup threads.
+   */
+  private static final class CleanupStats {
+    private final AtomicLong deletedBytes = new AtomicLong();
+    private final AtomicLong deletedPartitions = new AtomicLong();
+    private final AtomicLong failedStreams = new AtomicLong();
+  }
 }
@@ -27,7 +27,9 @@ import java.io.IOException;
 public interface StreamFileWriterFactory {
 
   /**
-   * Returns the file name prefix of all stream files created through this factory.
+   * Returns the file name prefix of stream files created through this factory. If the stream files are sharded,
+   * each call returns the prefix of the next shard, so that stream files appended as a whole are spread across
+   * the shards.
    */
   String getFileNamePrefix();
 
@@ -29,6 +29,7 @@ import co.cask.cdap.data.stream.decoder.TextStreamEventDecoder;
 import co.cask.cdap.format.RecordFormats;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -104,6 +105,18 @@ public class StreamInputFormat<K, V> extends InputFormat<K, V> {
   private static final String MIN_SPLIT_SIZE = "input.streaminputformat.min.splits.size";
   private static final String DECODER_TYPE = "input.streaminputformat.decoder.type";
   private static final String BODY_FORMAT = "input.streaminputformat.stream.body.format";
+  private static final String SPLIT_PLANNING_MILLIS = "input.streaminputformat.split.planning.millis";
+
+  /**
+   * Returns the time spent on finding the input splits, as recorded in the job configuration by the
+   * {@link #getSplits(JobContext)} call.
+   *
+   * @param conf The job configuration
+   * @return Time in milliseconds or {@code -1} if the splits were not computed with the given configuration.
+   */
+  public static long getSplitPlanningMillis(Configuration conf) {
+    return conf.getLong(SPLIT_PLANNING_MILLIS, -1L);
+  }
 
   /**
    * Sets the TTL for the stream events.
@@ -305,7 +318,11 @@ public class StreamInputFormat<K, V> extends InputFormat<K, V> {
       .setMinSplitSize(minSplitSize)
       .setMaxSplitSize(maxSplitSize)
       .build(splitFactory);
-    return splitFinder.getSplits(conf);
+
+    Stopwatch stopwatch = new Stopwatch().start();
+    List<InputSplit> splits = splitFinder.getSplits(conf);
+    conf.setLong(SPLIT_PLANNING_MILLIS, stopwatch.elapsedMillis());
+    return splits;
   }
 
   @Override
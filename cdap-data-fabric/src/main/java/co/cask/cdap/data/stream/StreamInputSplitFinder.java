@@ -17,26 +17,59 @@
 package co.cask.cdap.data.stream;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Finds input splits for a stream given several stream configuration settings and the location of the stream.
  * TODO: support multiple time ranges instead of just a single start and end.
  *
+ * The event files of closed partitions are cached across calls, so that jobs that run repeatedly over a time
+ * range don't need to fetch the block locations of partitions that didn't change since the last call. A partition
+ * is closed once its end time has passed for a few minutes, after which no new event file will be created in it.
+ * A cached partition is refreshed if its directory modification time has changed. Until all of its event files are
+ * known to be closed, the partition is also listed again when it is reused, and refreshed if the length or
+ * modification time of any file has changed, since a writer might still be flushing. Whether the files are closed
+ * is only checked when the cached partition is reused, so that a partition that is never reused doesn't cost
+ * more than listing it.
+ *
+ * The cache is static, hence it is only shared by the calls made in the same JVM, such as jobs planned repeatedly
+ * by a long-running process. A MapReduce client that runs in its own JVM for each run never reuses it.
+ *
  * @param <T> Type of input split to find. Expected to be either mapred.InputSplit or mapreduce.InputSplit.
  * @see StreamInputFormat for details on stream file layout.
  */
 public class StreamInputSplitFinder<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamInputSplitFinder.class);
+
+  // Time after the end of a partition before it is considered closed, to tolerate clock skew between writers
+  private static final long CLOSED_PARTITION_DELAY = TimeUnit.MINUTES.toMillis(5);
+  private static final int MAX_CACHED_PARTITIONS = 10000;
+
+  // Event files of closed partitions, keyed by the partition path
+  private static final Cache<Path, ClosedPartition> CLOSED_PARTITIONS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_PARTITIONS)
+    .build();
+
   private final long startTime;
   private final long endTime;
   private final long maxSplitSize;
@@ -65,6 +98,9 @@ public class StreamInputSplitFinder<T> {
    */
   public List<T> getSplits(Configuration conf) throws IOException {
     List<T> splits = Lists.newArrayList();
+    long closedTime = System.currentTimeMillis() - CLOSED_PARTITION_DELAY;
+    int partitions = 0;
+    int cachedPartitions = 0;
 
     // Collects all stream event files timestamp, size and block locations information
 
@@ -84,27 +120,50 @@ public class StreamInputSplitFinder<T> {
       if (partitionStartTime > endTime || partitionEndTime <= startTime) {
         continue;
       }
+      partitions++;
 
-      // Collects all bucket file status in the partition.
-      Collection<StreamDataFileSplitter> eventFiles = collectBuckets(fs, partitionStatus.getPath());
+      // Collects all bucket file status in the partition, from the cache if the partition is closed.
+      Collection<StreamDataFileSplitter> eventFiles;
+      boolean closed = partitionEndTime <= closedTime;
+      if (closed) {
+        ClosedPartition closedPartition = CLOSED_PARTITIONS.getIfPresent(partitionStatus.getPath());
+        if (closedPartition != null && closedPartition.modificationTime == partitionStatus.getModificationTime()
+          && isReusable(fs, partitionStatus.getPath(), closedPartition)) {
+          eventFiles = closedPartition.eventFiles;
+          cachedPartitions++;
+        } else {
+          eventFiles = collectBuckets(fs, partitionStatus.getPath());
+          CLOSED_PARTITIONS.put(partitionStatus.getPath(),
+                                new ClosedPartition(partitionStatus.getModificationTime(), eventFiles));
+        }
+      } else {
+        eventFiles = collectBuckets(fs, partitionStatus.getPath());
+      }
 
-      // For each bucket inside the partition directory, compute the splits
+      // For each bucket inside the partition directory, compute the splits. If the time range only covers part of
+      // a closed partition, the file summaries are used to skip the files and blocks outside of the time range.
+      boolean prune = closed && (partitionStartTime < startTime || partitionEndTime > endTime);
       for (StreamDataFileSplitter splitter : eventFiles) {
-        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime, splits, splitFactory);
+        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime, prune, splits, splitFactory);
       }
     }
 
+    LOG.debug("Found {} splits in {} partitions of stream {}, with {} partitions from cache",
+              splits.size(), partitions, path, cachedPartitions);
     return splits;
   }
 
   /**
-   * Collects file status of all buckets under a given partition.
+   * Collects file status of all buckets under a given partition. The file status are listed together with the
+   * block locations, so that computing the splits doesn't need to query the file system for each file.
    */
   private Collection<StreamDataFileSplitter> collectBuckets(FileSystem fs, Path partitionPath)
     throws IOException {
     ImmutableList.Builder<StreamDataFileSplitter> builder = ImmutableList.builder();
 
-    for (FileStatus fileStatus : fs.listStatus(partitionPath)) {
+    RemoteIterator<LocatedFileStatus> iterator = fs.listLocatedStatus(partitionPath);
+    while (iterator.hasNext()) {
+      LocatedFileStatus fileStatus = iterator.next();
       if (StreamFileType.EVENT.isMatched(fileStatus.getPath().getName())) {
         builder.add(new StreamDataFileSplitter(fileStatus));
       }
@@ -112,6 +171,60 @@ public class StreamInputSplitFinder<T> {
     return builder.build();
   }
 
+  /**
+   * Returns {@code true} if the cached event files of the given closed partition can be reused. If the files are not
+   * known to be closed yet, they must be unchanged in the partition, in which case whether they are closed is checked
+   * and remembered, so that later calls don't need to list the partition anymore.
+   */
+  private boolean isReusable(FileSystem fs, Path partitionPath, ClosedPartition partition) throws IOException {
+    if (partition.filesClosed) {
+      return true;
+    }
+    if (!isUnchanged(fs, partitionPath, partition.eventFiles)) {
+      return false;
+    }
+    partition.filesClosed = isClosed(fs, partition.eventFiles);
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if all the given event files are closed.
+   */
+  private boolean isClosed(FileSystem fs, Collection<StreamDataFileSplitter> eventFiles) throws IOException {
+    for (StreamDataFileSplitter splitter : eventFiles) {
+      if (!splitter.isClosed(fs)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the event files in the given partition are the same as the given ones, with the same
+   * length and modification time. The listing doesn't fetch the block locations.
+   */
+  private boolean isUnchanged(FileSystem fs, Path partitionPath,
+                              Collection<StreamDataFileSplitter> eventFiles) throws IOException {
+    Map<Path, FileStatus> cachedStatus = Maps.newHashMap();
+    for (StreamDataFileSplitter splitter : eventFiles) {
+      cachedStatus.put(splitter.getFileStatus().getPath(), splitter.getFileStatus());
+    }
+
+    int count = 0;
+    for (FileStatus fileStatus : fs.listStatus(partitionPath)) {
+      if (!StreamFileType.EVENT.isMatched(fileStatus.getPath().getName())) {
+        continue;
+      }
+      FileStatus cached = cachedStatus.get(fileStatus.getPath());
+      if (cached == null || cached.getLen() != fileStatus.getLen()
+        || cached.getModificationTime() != fileStatus.getModificationTime()) {
+        return false;
+      }
+      count++;
+    }
+    return count == cachedStatus.size();
+  }
+
   /**
    * Get a builder for creating an input split finder for a stream.
    *
@@ -168,4 +281,19 @@ public class StreamInputSplitFinder<T> {
       return new StreamInputSplitFinder<>(path, startTime, endTime, maxSplitSize, minSplitSize, splitFactory);
     }
   }
+
+  /**
+   * The event files of a closed partition and the partition directory modification time when they were listed.
+   */
+  private static final class ClosedPartition {
+    private final long modificationTime;
+    private final Collection<StreamDataFileSplitter> eventFiles;
+    // True once all the event files are known to be closed, with the length they had when they were listed
+    private volatile boolean filesClosed;
+
+    private ClosedPartition(long modificationTime, Collection<StreamDataFileSplitter> eventFiles) {
+      this.modificationTime = modificationTime;
+      this.eventFiles = eventFiles;
+    }
+  }
 }
@@ -15,21 +15,31 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventDecoder;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.ReadFilter;
-import com.google.common.collect.Lists;
+import co.cask.cdap.data.stream.decoder.BytesStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.FormatStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.IdentityStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.StringStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.TextStreamEventDecoder;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
- * A {@link RecordReader} for reading stream events.
+ * A {@link RecordReader} for reading stream events. Events are read from the stream file in batches with
+ * {@link StreamDataFileReader#readBatch(StreamEventBatch, ReadFilter)} and handed to the decoder one by one.
+ *
+ * Decoders that copy or convert the event body, such as the {@link TextStreamEventDecoder}, are given events whose
+ * body is backed by the batch buffer, which is reused for the next batch. Any other decoder, such as the
+ * {@link IdentityStreamEventDecoder}, may return the event or its body as the value, hence it is given events
+ * that stay valid after the batch is reused. The event headers are shared by the events in a batch and can't be
+ * modified.
  *
  * @param <K> Key type read by this record reader.
  * @param <V> Value type read by this record reader.
@@ -37,12 +47,16 @@ import java.util.concurrent.TimeUnit;
 final class StreamRecordReader<K, V> extends RecordReader<K, V> {
 
   private final StreamEventDecoder<K, V> decoder;
-  private final List<PositionStreamEvent> events;
+  private final StreamEventBatch batch;
+  // True if the decoder copies or converts the event body, so that the body can be reused after decoding
+  private final boolean decodeEventView;
 
   private StreamDataFileReader reader;
   private StreamInputSplit inputSplit;
   private StreamEventDecoder.DecodeResult<K, V> currentEntry;
   private ReadFilter readFilter;
+  private int batchIndex;
+  private boolean splitEnded;
 
   /**
    * Construct a {@link StreamRecordReader} with a given {@link StreamEventDecoder}.
@@ -51,7 +65,9 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
    */
   StreamRecordReader(StreamEventDecoder<K, V> decoder) {
     this.decoder = decoder;
-    this.events = Lists.newArrayListWithCapacity(1);
+    this.batch = new StreamEventBatch();
+    this.decodeEventView = decoder instanceof TextStreamEventDecoder || decoder instanceof StringStreamEventDecoder
+      || decoder instanceof BytesStreamEventDecoder || decoder instanceof FormatStreamEventDecoder;
     this.currentEntry = new StreamEventDecoder.DecodeResult<>();
   }
 
@@ -65,15 +81,24 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
 
   @Override
   public boolean nextKeyValue() throws IOException, InterruptedException {
-    events.clear();
-    if (reader.read(events, 1, 0, TimeUnit.SECONDS, readFilter) <= 0) {
+    if (splitEnded) {
       return false;
     }
-    PositionStreamEvent streamEvent = events.get(0);
-    if (streamEvent.getStart() - inputSplit.getStart() >= inputSplit.getLength()) {
+    if (batchIndex >= batch.size()) {
+      batch.clear();
+      batchIndex = 0;
+      if (reader.readBatch(batch, readFilter) <= 0) {
+        splitEnded = true;
+        return false;
+      }
+    }
+    if (batch.getPosition(batchIndex) - inputSplit.getStart() >= inputSplit.getLength()) {
+      splitEnded = true;
       return false;
     }
-    currentEntry = decoder.decode(streamEvent, currentEntry);
+    StreamEvent event = decodeEventView ? batch.getEventView(batchIndex) : batch.getEvent(batchIndex);
+    batchIndex++;
+    currentEntry = decoder.decode(event, currentEntry);
     return true;
   }
 
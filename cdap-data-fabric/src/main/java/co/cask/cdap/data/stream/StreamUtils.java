@@ -15,11 +15,15 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Decoder;
 import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.common.io.LocationStatus;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.Processor;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -31,6 +35,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.twill.filesystem.Location;
 
 import java.io.DataInput;
@@ -40,6 +45,7 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Collection of helper methods.
@@ -52,6 +58,9 @@ public final class StreamUtils {
   // StreamId cannot have "." there, so it's safe that it won't clash with any stream name
   private static final String DELETED = ".deleted";
 
+  // Separator between the writer file prefix and the shard id in the file prefix of a shard file
+  private static final String SHARD_SEPARATOR = ".shard";
+
   /**
    * Decode a map.
    */
@@ -252,6 +261,107 @@ public final class StreamUtils {
     return partitionLocation.append(String.format("%s.%06d.%s", prefix, seqId, type.getSuffix()));
   }
 
+  /**
+   * Returns the file prefix of a shard of the stream files written with the given prefix.
+   *
+   * @param prefix File prefix of the stream writer.
+   * @param shards Number of shards. If it is not greater than one, the stream files are not sharded.
+   * @param shard Id of the shard.
+   * @return The file prefix of the shard files.
+   */
+  public static String getShardFilePrefix(String prefix, int shards, int shard) {
+    return shards <= 1 ? prefix : prefix + SHARD_SEPARATOR + shard;
+  }
+
+  /**
+   * Returns the shard id of the given stream file prefix.
+   *
+   * @param prefix File prefix, as returned by {@link StreamFileOffset#getNamePrefix()}.
+   * @return The shard id or {@code -1} if the prefix is not of a shard file.
+   */
+  public static int getShardId(String prefix) {
+    int idx = prefix.lastIndexOf(SHARD_SEPARATOR);
+    if (idx < 0) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(prefix.substring(idx + SHARD_SEPARATOR.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns whether the given consumer only reads the stream files of the shards assigned to it. It is the case
+   * when the stream files are sharded and the consumer is one of the multiple instances of a group that uses
+   * {@link DequeueStrategy#HASH} or {@link DequeueStrategy#ROUND_ROBIN}.
+   * <p/>
+   * Note that for {@link DequeueStrategy#HASH}, events are then partitioned by the shard key, while all events of
+   * files that are not sharded go to the instance 0. With either strategy, instances with an id not smaller than
+   * the number of shards have no shard assigned and don't receive any event.
+   *
+   * @param shards Number of shards.
+   * @param consumerConfig Configuration of the consumer.
+   */
+  public static boolean isShardedConsumer(int shards, ConsumerConfig consumerConfig) {
+    return shards > 1 && consumerConfig.getGroupSize() > 1
+      && consumerConfig.getDequeueStrategy() != DequeueStrategy.FIFO;
+  }
+
+  /**
+   * Returns whether the given shard is read by the given consumer. For a sharded consumer, shards are assigned
+   * to the consumer instances in a round robin fashion, otherwise all shards are read.
+   *
+   * @param shard Id of the shard.
+   * @param shards Number of shards.
+   * @param consumerConfig Configuration of the consumer.
+   */
+  public static boolean isShardAssigned(int shard, int shards, ConsumerConfig consumerConfig) {
+    return !isShardedConsumer(shards, consumerConfig)
+      || shard % consumerConfig.getGroupSize() == consumerConfig.getInstanceId();
+  }
+
+  /**
+   * Returns whether the stream files of the given prefix are read by the given consumer, regardless of the current
+   * number of shards. Files that are not sharded are read by all consumer instances, while files of a shard are only
+   * read by the instance it is assigned to.
+   *
+   * @param prefix File prefix, as returned by {@link StreamFileOffset#getNamePrefix()}.
+   * @param consumerConfig Configuration of the consumer.
+   */
+  public static boolean isFileAssigned(String prefix, ConsumerConfig consumerConfig) {
+    int shard = getShardId(prefix);
+    // Any number of shards greater than one gives the assignment of a sharded layout
+    return shard < 0 || isShardAssigned(shard, 2, consumerConfig);
+  }
+
+  /**
+   * Returns the file prefixes of the stream files written by all stream writer instances.
+   *
+   * @param cConf Configuration for the file prefix, the number of writer instances and the number of shards.
+   * @param consumerConfig If not {@code null}, only returns the prefixes of the shards assigned to the consumer.
+   * @return A list of file prefixes.
+   */
+  public static List<String> getFilePrefixes(CConfiguration cConf, @Nullable ConsumerConfig consumerConfig) {
+    // TODO: Support dynamic writer instances discovery
+    // Current assume it won't change and is based on cConf
+    int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
+    int shards = cConf.getInt(Constants.Stream.FILE_SHARDS, 1);
+    String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
+
+    List<String> prefixes = Lists.newArrayList();
+    for (int i = 0; i < instances; i++) {
+      // The actual file prefix is formed by file prefix in cConf + writer instance id (+ shard id)
+      String instanceFilePrefix = filePrefix + '.' + i;
+      for (int shard = 0; shard < Math.max(shards, 1); shard++) {
+        if (consumerConfig == null || isShardAssigned(shard, shards, consumerConfig)) {
+          prefixes.add(getShardFilePrefix(instanceFilePrefix, shards, shard));
+        }
+      }
+    }
+    return prefixes;
+  }
+
   /**
    * Returns the aligned partition start time.
    *
@@ -373,7 +483,6 @@ public final class StreamUtils {
       if (!fileName.startsWith(filePrefix)) {
         continue;
       }
-      StreamUtils.getSequenceId(fileName);
 
       int idx = fileName.lastIndexOf('.');
       if (idx < filePrefix.length()) {
@@ -383,12 +492,16 @@ public final class StreamUtils {
 
       try {
         // File name format is [prefix].[sequenceId].[dat|idx]
+        // Ignore files with a longer prefix, e.g. the shard files of the same writer
+        if (!filePrefix.equals(StreamUtils.getNamePrefix(fileName))) {
+          continue;
+        }
         int seq = StreamUtils.getSequenceId(fileName);
         if (seq > maxSequence) {
           maxSequence = seq;
         }
-      } catch (NumberFormatException e) {
-        // Ignore stream file with invalid sequence id
+      } catch (IllegalArgumentException e) {
+        // Ignore stream file with invalid name or sequence id
       }
     }
     return maxSequence + 1;
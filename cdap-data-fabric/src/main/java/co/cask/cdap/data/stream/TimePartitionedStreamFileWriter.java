@@ -19,14 +19,18 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data.file.PartitionedFileWriter;
 import co.cask.cdap.data.stream.TimePartitionedStreamFileWriter.TimePartition;
+import com.google.common.base.Objects;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.io.OutputSupplier;
-import com.google.common.primitives.Longs;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -53,52 +57,115 @@ import javax.annotation.concurrent.NotThreadSafe;
  * </pre>
  * where the {@code bucketId} is an integer. The {@code seqNo} is a strictly increasing integer for the same
  * {@code bucketId}.
+ *
+ * <br/><br/>
+ * If the writer is created with more than one shard, events of each partition are routed to one of the shard
+ * files by the hash of the shard key, which is the value of the shard key header of the event if present, or the
+ * event body otherwise. The {@code bucketName} of a shard file is formatted as
+ * <pre>
+ *   "bucket".[bucketId]."shard"[shardId].[seqNo]
+ * </pre>
  */
 @NotThreadSafe
 public class TimePartitionedStreamFileWriter extends PartitionedFileWriter<StreamEvent, TimePartition> {
 
   private static final Logger LOG = LoggerFactory.getLogger(TimePartitionedStreamFileWriter.class);
+  private static final HashFunction SHARD_HASHER = Hashing.murmur3_32();
 
   private final long partitionDuration;
-  private TimePartition timePartition = new TimePartition(-1L);
+  private final String shardKeyHeader;
+  // Partitions of all shards of the current partition time, indexed by shard id
+  private final TimePartition[] timePartitions;
 
   // TODO: Add a timer task to close file after duration has passed even there is no writer.
 
   public TimePartitionedStreamFileWriter(Location streamLocation, long partitionDuration,
                                          String fileNamePrefix, long indexInterval) {
-    super(new StreamWriterFactory(streamLocation, partitionDuration, fileNamePrefix, indexInterval));
+    this(streamLocation, partitionDuration, fileNamePrefix, indexInterval, 1, null);
+  }
+
+  /**
+   * Creates a writer that writes events of each partition to the given number of shard files.
+   *
+   * @param shards number of shards. If it is not greater than one, events are not sharded.
+   * @param shardKeyHeader name of the event header for the shard key or {@code null} to always use the event body
+   */
+  public TimePartitionedStreamFileWriter(Location streamLocation, long partitionDuration,
+                                         String fileNamePrefix, long indexInterval,
+                                         int shards, @Nullable String shardKeyHeader) {
+    super(new StreamWriterFactory(streamLocation, partitionDuration, fileNamePrefix, indexInterval, shards));
     this.partitionDuration = partitionDuration;
+    this.shardKeyHeader = shardKeyHeader;
+    this.timePartitions = new TimePartition[Math.max(shards, 1)];
+    for (int i = 0; i < timePartitions.length; i++) {
+      timePartitions[i] = new TimePartition(-1L, i);
+    }
   }
 
   @Override
   protected TimePartition getPartition(StreamEvent event) {
+    int shard = timePartitions.length == 1 ? 0 : getShard(event);
     long eventPartitionStart = StreamUtils.getPartitionStartTime(event.getTimestamp(), partitionDuration);
-    if (eventPartitionStart != timePartition.getStartTimestamp()) {
-      timePartition = new TimePartition(eventPartitionStart);
+    if (eventPartitionStart != timePartitions[shard].getStartTimestamp()) {
+      timePartitions[shard] = new TimePartition(eventPartitionStart, shard);
     }
-    return timePartition;
+    return timePartitions[shard];
   }
 
   @Override
   protected void partitionChanged(TimePartition oldPartition, TimePartition newPartition) throws IOException {
-    closePartitionWriter(oldPartition);
+    if (oldPartition == null || oldPartition.getStartTimestamp() == newPartition.getStartTimestamp()) {
+      // Only switching between shards of the same partition time
+      return;
+    }
+    // Close the files of all shards of the old partition time
+    for (int i = 0; i < timePartitions.length; i++) {
+      closePartitionWriter(new TimePartition(oldPartition.getStartTimestamp(), i));
+    }
+  }
+
+  /**
+   * Returns the shard id for the given event.
+   */
+  private int getShard(StreamEvent event) {
+    String key = shardKeyHeader == null ? null : event.getHeaders().get(shardKeyHeader);
+    int hash;
+    if (key != null) {
+      hash = SHARD_HASHER.hashString(key).asInt();
+    } else {
+      ByteBuffer body = event.getBody();
+      if (body.hasArray()) {
+        hash = SHARD_HASHER.hashBytes(body.array(), body.arrayOffset() + body.position(), body.remaining()).asInt();
+      } else {
+        byte[] bytes = new byte[body.remaining()];
+        body.duplicate().get(bytes);
+        hash = SHARD_HASHER.hashBytes(bytes).asInt();
+      }
+    }
+    return (hash & Integer.MAX_VALUE) % timePartitions.length;
   }
 
   /**
-   * Uses timestamp to represent partition information.
+   * Uses timestamp and shard id to represent partition information.
    */
   public static final class TimePartition {
 
     private final long startTimestamp;
+    private final int shard;
 
-    private TimePartition(long startTimestamp) {
+    private TimePartition(long startTimestamp, int shard) {
       this.startTimestamp = startTimestamp;
+      this.shard = shard;
     }
 
     private long getStartTimestamp() {
       return startTimestamp;
     }
 
+    private int getShard() {
+      return shard;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
@@ -109,12 +176,12 @@ public class TimePartitionedStreamFileWriter extends PartitionedFileWriter<Strea
       }
 
       TimePartition other = (TimePartition) o;
-      return startTimestamp == other.startTimestamp;
+      return startTimestamp == other.startTimestamp && shard == other.shard;
     }
 
     @Override
     public int hashCode() {
-      return Longs.hashCode(startTimestamp);
+      return Objects.hashCode(startTimestamp, shard);
     }
   }
 
@@ -125,12 +192,15 @@ public class TimePartitionedStreamFileWriter extends PartitionedFileWriter<Strea
     private final long partitionDuration;
     private final String fileNamePrefix;
     private final long indexInterval;
+    private final int shards;
 
-    StreamWriterFactory(Location streamLocation, long partitionDuration, String fileNamePrefix, long indexInterval) {
+    StreamWriterFactory(Location streamLocation, long partitionDuration,
+                        String fileNamePrefix, long indexInterval, int shards) {
       this.streamLocation = streamLocation;
       this.partitionDuration = partitionDuration;
       this.fileNamePrefix = fileNamePrefix;
       this.indexInterval = indexInterval;
+      this.shards = shards;
     }
 
     @Override
@@ -147,10 +217,11 @@ public class TimePartitionedStreamFileWriter extends PartitionedFileWriter<Strea
       partitionDirectory.mkdirs();
 
       // Create the event and index file with the next sequence id
-      int fileSequence = StreamUtils.getNextSequenceId(partitionDirectory, fileNamePrefix);
-      Location eventFile = StreamUtils.createStreamLocation(partitionDirectory, fileNamePrefix,
+      String filePrefix = StreamUtils.getShardFilePrefix(fileNamePrefix, shards, partition.getShard());
+      int fileSequence = StreamUtils.getNextSequenceId(partitionDirectory, filePrefix);
+      Location eventFile = StreamUtils.createStreamLocation(partitionDirectory, filePrefix,
                                                             fileSequence, StreamFileType.EVENT);
-      Location indexFile = StreamUtils.createStreamLocation(partitionDirectory, fileNamePrefix,
+      Location indexFile = StreamUtils.createStreamLocation(partitionDirectory, filePrefix,
                                                             fileSequence, StreamFileType.INDEX);
       // The creation should succeed, as it's expected to only have one process running per fileNamePrefix.
       if (!eventFile.createNew() || !indexFile.createNew()) {
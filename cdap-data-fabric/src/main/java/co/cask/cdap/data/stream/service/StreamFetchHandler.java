@@ -19,6 +19,9 @@ package co.cask.cdap.data.stream.service;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.stream.StreamEventBinaryCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.data.file.FileReader;
@@ -37,12 +40,19 @@ import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
+import org.apache.commons.codec.binary.Base64;
 import org.apache.twill.filesystem.Location;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
@@ -55,7 +65,10 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -84,20 +97,26 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Handler for the HTTP API {@code /streams/[stream_name]/events?start=[start_ts]&end=[end_ts]&limit=[event_limit]}
+   * Handler for the HTTP API
+   * {@code /streams/[stream_name]/events?start=[start_ts]&end=[end_ts]&limit=[event_limit]&cursor=[cursor]}
    * <p>
    * Responds with:
    * <ul>
    * <li>404 if stream does not exist</li>
+   * <li>400 if the cursor is invalid or refers to a truncated stream</li>
    * <li>204 if no event in the given start/end time range exists</li>
    * <li>200 if there is are one or more events</li>
    * </ul>
    * </p>
    * <p>
-   * Response body is a JSON array of the StreamEvent object.
+   * Response body is a JSON array of the StreamEvent object. If the request accepts
+   * {@link StreamEventBinaryCodec#CONTENT_TYPE}, the response body is the binary encoded events, followed by
+   * a cursor that can be passed in the {@code cursor} parameter of the next request to continue reading
+   * from where the response ends.
    * </p>
    *
    * @see StreamEventTypeAdapter StreamEventTypeAdapter for the format of the StreamEvent object
+   * @see StreamEventBinaryCodec StreamEventBinaryCodec for the binary response format
    */
   @GET
   @Path("/{stream}/events")
@@ -106,7 +125,8 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
                     @PathParam("stream") String stream,
                     @QueryParam("start") @DefaultValue("0") String start,
                     @QueryParam("end") @DefaultValue("9223372036854775807") String end,
-                    @QueryParam("limit") @DefaultValue("2147483647") int limit) throws Exception {
+                    @QueryParam("limit") @DefaultValue("2147483647") int limit,
+                    @QueryParam("cursor") String cursor) throws Exception {
     long startTime = TimeMathParser.parseTime(start, TimeUnit.MILLISECONDS);
     long endTime = TimeMathParser.parseTime(end, TimeUnit.MILLISECONDS);
 
@@ -120,10 +140,20 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
     startTime = Math.max(startTime, now - streamConfig.getTTL());
     endTime = Math.min(endTime, now);
 
+    List<StreamFileOffset> cursorOffsets = null;
+    if (cursor != null) {
+      cursorOffsets = decodeCursor(streamConfig, cursor);
+      if (cursorOffsets == null) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, "Invalid cursor " + cursor);
+        return;
+      }
+    }
+
     // Create the stream event reader
-    try (FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader = createReader(streamConfig, startTime)) {
+    try (FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader = createReader(streamConfig, startTime,
+                                                                                         cursorOffsets)) {
       TimeRangeReadFilter readFilter = new TimeRangeReadFilter(startTime, endTime);
-      List<StreamEvent> events = Lists.newArrayListWithCapacity(100);
+      List<StreamEventOffset> events = Lists.newArrayListWithCapacity(100);
 
       // Reads the first batch of events from the stream.
       int eventsRead = readEvents(reader, events, limit, readFilter);
@@ -134,40 +164,20 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
         return;
       }
 
+      String accept = request.getHeader(HttpHeaders.Names.ACCEPT);
+      boolean binary = accept != null && accept.contains(StreamEventBinaryCodec.CONTENT_TYPE);
+
       // Send with chunk response, as we don't want to buffer all events in memory to determine the content-length.
-      ChunkResponder chunkResponder = responder.sendChunkStart(HttpResponseStatus.OK,
-                                                               ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE,
-                                                                                    "application/json; charset=utf-8"));
+      ChunkResponder chunkResponder = responder.sendChunkStart(
+        HttpResponseStatus.OK, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE,
+                                                    binary ? StreamEventBinaryCodec.CONTENT_TYPE
+                                                           : "application/json; charset=utf-8"));
       ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-      JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(new ChannelBufferOutputStream(buffer),
-                                                                    Charsets.UTF_8));
-      // Response is an array of stream event
-      jsonWriter.beginArray();
-      while (limit > 0 && eventsRead > 0) {
-        limit -= eventsRead;
-
-        for (StreamEvent event : events) {
-          GSON.toJson(event, StreamEvent.class, jsonWriter);
-          jsonWriter.flush();
-
-          // If exceeded chunk size limit, send a new chunk.
-          if (buffer.readableBytes() >= CHUNK_SIZE) {
-            // If the connect is closed, sendChunk will throw IOException.
-            // No need to handle the exception as it will just propagated back to the netty-http library
-            // and it will handle it.
-            // Need to copy the buffer because the buffer will get reused and send chunk is an async operation
-            chunkResponder.sendChunk(buffer.copy());
-            buffer.clear();
-          }
-        }
-        events.clear();
-
-        if (limit > 0) {
-          eventsRead = readEvents(reader, events, limit, readFilter);
-        }
+      if (binary) {
+        sendBinaryEvents(reader, events, eventsRead, limit, readFilter, chunkResponder, buffer);
+      } else {
+        sendJsonEvents(reader, events, eventsRead, limit, readFilter, chunkResponder, buffer);
       }
-      jsonWriter.endArray();
-      jsonWriter.close();
 
       // Send the last chunk that still has data
       if (buffer.readable()) {
@@ -178,11 +188,193 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Sends events as a JSON array of stream event. The first batch of events is already read into the given list.
+   */
+  private void sendJsonEvents(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
+                              List<StreamEventOffset> events, int eventsRead, int limit,
+                              TimeRangeReadFilter readFilter, ChunkResponder chunkResponder,
+                              ChannelBuffer buffer) throws IOException, InterruptedException {
+    JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(new ChannelBufferOutputStream(buffer),
+                                                                  Charsets.UTF_8));
+    // Response is an array of stream event
+    jsonWriter.beginArray();
+    while (limit > 0 && eventsRead > 0) {
+      limit -= eventsRead;
+
+      for (StreamEvent event : events) {
+        GSON.toJson(event, StreamEvent.class, jsonWriter);
+        jsonWriter.flush();
+        sendChunkIfFull(chunkResponder, buffer);
+      }
+      events.clear();
+
+      if (limit > 0) {
+        eventsRead = readEvents(reader, events, limit, readFilter);
+      }
+    }
+    jsonWriter.endArray();
+    jsonWriter.close();
+  }
+
+  /**
+   * Sends events in the binary format as described in {@link StreamEventBinaryCodec}, with one block per batch
+   * of events read. The first batch of events is already read into the given list.
+   */
+  private void sendBinaryEvents(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
+                                List<StreamEventOffset> events, int eventsRead, int limit,
+                                TimeRangeReadFilter readFilter, ChunkResponder chunkResponder,
+                                ChannelBuffer buffer) throws IOException, InterruptedException {
+    Encoder encoder = new BinaryEncoder(new ChannelBufferOutputStream(buffer));
+    // Offset of the last event sent from each stream file, keyed by the file name prefix
+    Map<String, StreamFileOffset> lastSentOffsets = Maps.newHashMap();
+    while (limit > 0 && eventsRead > 0) {
+      limit -= eventsRead;
+
+      encoder.writeInt(eventsRead);
+      for (StreamEventOffset event : events) {
+        StreamEventBinaryCodec.encode(event, encoder);
+        lastSentOffsets.put(event.getOffset().getNamePrefix(), event.getOffset());
+        sendChunkIfFull(chunkResponder, buffer);
+      }
+      events.clear();
+
+      if (limit > 0) {
+        eventsRead = readEvents(reader, events, limit, readFilter);
+      }
+    }
+    encoder.writeInt(0);
+    encoder.writeString(encodeCursor(getCursorOffsets(reader, lastSentOffsets)));
+  }
+
+  /**
+   * Returns the offsets to resume reading from after the given events were sent. The cursor is not taken from the
+   * reader position after the last read, since a read that rejects events at the end of the time range can move the
+   * position past events that are not sent yet, e.g. events written while the request is served.
+   *
+   * @param reader the reader of the events sent
+   * @param lastSentOffsets the offset of the last event sent from each stream file, keyed by the file name prefix
+   */
+  private List<StreamFileOffset> getCursorOffsets(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
+                                                  Map<String, StreamFileOffset> lastSentOffsets) {
+    List<StreamFileOffset> offsets = Lists.newArrayList();
+    for (StreamFileOffset position : reader.getPosition()) {
+      StreamFileOffset lastSent = lastSentOffsets.get(position.getNamePrefix());
+      if (lastSent == null) {
+        // The position of a stream file only moves when an event of the file is returned by the reader,
+        // hence it is still where the reader started
+        offsets.add(new StreamFileOffset(position));
+      } else {
+        // Reading from an offset starts at the first event at or after it, which is the event after the last one sent
+        offsets.add(new StreamFileOffset(lastSent, lastSent.getOffset() + 1));
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Sends the content of the given buffer as a chunk if it exceeded the chunk size limit.
+   */
+  private void sendChunkIfFull(ChunkResponder chunkResponder, ChannelBuffer buffer) throws IOException {
+    if (buffer.readableBytes() >= CHUNK_SIZE) {
+      // If the connect is closed, sendChunk will throw IOException.
+      // No need to handle the exception as it will just propagated back to the netty-http library
+      // and it will handle it.
+      // Need to copy the buffer because the buffer will get reused and send chunk is an async operation
+      chunkResponder.sendChunk(buffer.copy());
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Encodes the given reader position into a cursor string.
+   */
+  private String encodeCursor(Iterable<StreamFileOffset> offsets) throws IOException {
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    output.writeInt(Iterables.size(offsets));
+    for (StreamFileOffset offset : offsets) {
+      StreamUtils.encodeOffset(output, offset);
+    }
+    return Base64.encodeBase64URLSafeString(output.toByteArray());
+  }
+
+  /**
+   * Decodes a cursor string created by {@link #encodeCursor(Iterable)}. Since the cursor comes from the client,
+   * each offset is validated before its location is created, so that a cursor can only refer to the event files
+   * of the current generation of the stream.
+   *
+   * @return the list of file offsets or {@code null} if the cursor is invalid or belongs to an older
+   *         generation of the stream
+   */
+  @Nullable
+  private List<StreamFileOffset> decodeCursor(StreamConfig streamConfig, String cursor) throws IOException {
+    int generation = StreamUtils.getGeneration(streamConfig);
+    // Each stream file prefix can only appear once in the cursor
+    Set<String> filePrefixes = Sets.newHashSet(StreamUtils.getFilePrefixes(cConf, null));
+    try {
+      ByteArrayDataInput input = ByteStreams.newDataInput(Base64.decodeBase64(cursor));
+      int size = input.readInt();
+      if (size <= 0 || size > filePrefixes.size()) {
+        return null;
+      }
+      List<StreamFileOffset> offsets = Lists.newArrayList();
+      for (int i = 0; i < size; i++) {
+        StreamFileOffset offset = decodeCursorOffset(streamConfig, generation, filePrefixes, input);
+        if (offset == null) {
+          return null;
+        }
+        offsets.add(offset);
+      }
+      return offsets;
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      // Thrown by ByteArrayDataInput or location creation when the cursor is malformed
+      return null;
+    }
+  }
+
+  /**
+   * Decodes a {@link StreamFileOffset} encoded by {@link StreamUtils#encodeOffset} in a cursor. The fields are
+   * validated before the event file location is created from them.
+   *
+   * @param streamConfig the configuration of the stream being read
+   * @param generation the current generation of the stream
+   * @param filePrefixes the stream file prefixes that are not used by a previous offset of the cursor yet. The prefix
+   *                     of the decoded offset is removed from it.
+   * @param input the cursor input
+   * @return the decoded offset, or {@code null} if the offset is invalid or belongs to an older generation
+   */
+  @Nullable
+  private StreamFileOffset decodeCursorOffset(StreamConfig streamConfig, int generation, Set<String> filePrefixes,
+                                              ByteArrayDataInput input) throws IOException {
+    int offsetGeneration = input.readInt();
+    long partitionStart = input.readLong();
+    long partitionEnd = input.readLong();
+    String prefix = input.readUTF();
+    int seqId = input.readInt();
+    long offset = input.readLong();
+
+    long duration = streamConfig.getPartitionDuration();
+    if (offsetGeneration != generation || !filePrefixes.remove(prefix)
+      || partitionStart < 0 || partitionEnd - partitionStart != duration
+      || StreamUtils.getPartitionStartTime(partitionStart, duration) != partitionStart
+      || seqId < 0 || offset < 0) {
+      return null;
+    }
+
+    Location baseLocation = streamConfig.getLocation();
+    if (generation > 0) {
+      baseLocation = StreamUtils.createGenerationLocation(baseLocation, generation);
+    }
+    Location partitionLocation = StreamUtils.createPartitionLocation(baseLocation, partitionStart, duration);
+    Location eventLocation = StreamUtils.createStreamLocation(partitionLocation, prefix, seqId, StreamFileType.EVENT);
+    return new StreamFileOffset(eventLocation, offset, generation);
+  }
+
   /**
    * Reads events from the given reader.
    */
   private int readEvents(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
-                         List<StreamEvent> events, int limit,
+                         List<StreamEventOffset> events, int limit,
                          TimeRangeReadFilter readFilter) throws IOException, InterruptedException {
     // Keeps reading as long as the filter is active.
     // This mean there are events in the stream, just that they are rejected by the filter.
@@ -261,22 +453,51 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link FileReader} that starts reading stream event from the given partition.
+   * Creates a {@link FileReader} that starts reading stream event from the given cursor offsets if provided,
+   * otherwise from the partition that contains the given start time. Cursor offsets in partitions that end
+   * before the start time, which may have been removed since they expired, are restarted from the beginning
+   * of the partition that contains the start time.
    */
-  private FileReader<StreamEventOffset, Iterable<StreamFileOffset>> createReader(StreamConfig streamConfig,
-                                                                                 long startTime) throws IOException {
+  private FileReader<StreamEventOffset, Iterable<StreamFileOffset>> createReader(
+    StreamConfig streamConfig, long startTime,
+    @Nullable List<StreamFileOffset> cursorOffsets) throws IOException {
+
     int generation = StreamUtils.getGeneration(streamConfig);
-    Location startPartition = getStartPartitionLocation(streamConfig, startTime, generation);
+    Location startPartition = null;
+    if (cursorOffsets != null) {
+      List<StreamFileOffset> fileOffsets = Lists.newArrayList();
+      for (StreamFileOffset offset : cursorOffsets) {
+        if (offset.getPartitionEnd() > startTime) {
+          fileOffsets.add(offset);
+          continue;
+        }
+        if (startPartition == null) {
+          startPartition = getStartPartitionLocation(streamConfig, startTime, generation);
+          if (startPartition == null) {
+            // Nothing left to read for the expired offset
+            continue;
+          }
+        }
+        Location eventLocation = StreamUtils.createStreamLocation(startPartition, offset.getNamePrefix(),
+                                                                  0, StreamFileType.EVENT);
+        fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      }
+      if (fileOffsets.isEmpty()) {
+        return createEmptyReader();
+      }
+
+      MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
+      reader.initialize();
+      return reader;
+    }
+
+    startPartition = getStartPartitionLocation(streamConfig, startTime, generation);
     if (startPartition == null) {
       return createEmptyReader();
     }
 
     List<StreamFileOffset> fileOffsets = Lists.newArrayList();
-    int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
-    String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
-    for (int i = 0; i < instances; i++) {
-      // The actual file prefix is formed by file prefix in cConf + writer instance id
-      String streamFilePrefix = filePrefix + '.' + i;
+    for (String streamFilePrefix : StreamUtils.getFilePrefixes(cConf, null)) {
       Location eventLocation = StreamUtils.createStreamLocation(startPartition, streamFilePrefix,
                                                                 0, StreamFileType.EVENT);
       fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
@@ -436,7 +436,8 @@ public final class StreamHandler extends AbstractHttpHandler {
                                              ImmutableMap.<String, String>builder().put("content.type", contentType));
 
     StreamConfig config = streamAdmin.getConfig(streamId);
-    return new LengthBasedContentWriterFactory(config, streamWriter, headers, batchBufferThreshold);
+    return new LengthBasedContentWriterFactory(config, streamWriter, headers, batchBufferThreshold,
+                                               HttpHeaders.getContentLength(request, -1L));
   }
 
   /**
@@ -39,13 +39,17 @@ final class LengthBasedContentWriter implements ContentWriter {
   private long bodySize;
 
   LengthBasedContentWriter(StreamConfig streamConfig, ConcurrentStreamWriter streamWriter, Map<String, String> headers,
-                           long bufferThreshold) throws IOException {
+                           long bufferThreshold, long contentLength) throws IOException {
     this.bufferThreshold = bufferThreshold;
     this.bufferedContentWriter = (BufferedContentWriter) new BufferedContentWriterFactory(
       streamConfig.getStreamId(), streamWriter, headers).create(ImmutableMap.<String, String>of());
     this.fileContentWriterFactory = new FileContentWriterFactory(streamConfig, streamWriter, headers);
     bodySize = 0;
-    fileContentWriter = null;
+
+    // If the content is known to be larger than the threshold, there is no need to buffer the events first
+    fileContentWriter = contentLength >= bufferThreshold
+      ? fileContentWriterFactory.create(ImmutableMap.<String, String>of())
+      : null;
   }
 
   @Override
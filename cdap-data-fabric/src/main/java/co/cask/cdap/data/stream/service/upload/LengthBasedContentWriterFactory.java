@@ -27,7 +27,8 @@ import java.util.Map;
 
 /**
  * A {@link ContentWriterFactory} that creates {@link LengthBasedContentWriter} that buffers write requests in memory
- * until a threshold and then switches to writing events to file directly.
+ * until a threshold and then switches to writing events to file directly. If the content length of the request
+ * is known to be larger than the threshold, events are written to file directly from the start.
  */
 public final class LengthBasedContentWriterFactory implements ContentWriterFactory {
 
@@ -35,13 +36,25 @@ public final class LengthBasedContentWriterFactory implements ContentWriterFacto
   private final ConcurrentStreamWriter streamWriter;
   private final Map<String, String> headers;
   private final long bufferThreshold;
+  private final long contentLength;
 
   public LengthBasedContentWriterFactory(StreamConfig streamConfig, ConcurrentStreamWriter streamWriter,
                                          Map<String, String> headers, long bufferThreshold) {
+    this(streamConfig, streamWriter, headers, bufferThreshold, -1L);
+  }
+
+  /**
+   * Creates a factory for a request with the given content length.
+   *
+   * @param contentLength length of the request content or {@code -1} if unknown
+   */
+  public LengthBasedContentWriterFactory(StreamConfig streamConfig, ConcurrentStreamWriter streamWriter,
+                                         Map<String, String> headers, long bufferThreshold, long contentLength) {
     this.streamConfig = streamConfig;
     this.streamWriter = streamWriter;
     this.headers = ImmutableMap.copyOf(headers);
     this.bufferThreshold = bufferThreshold;
+    this.contentLength = contentLength;
   }
 
   @Override
@@ -53,6 +66,6 @@ public final class LengthBasedContentWriterFactory implements ContentWriterFacto
   public ContentWriter create(Map<String, String> headers) throws IOException {
     Map<String, String> allHeaders = Maps.newHashMap(this.headers);
     allHeaders.putAll(headers);
-    return new LengthBasedContentWriter(streamConfig, streamWriter, allHeaders, bufferThreshold);
+    return new LengthBasedContentWriter(streamConfig, streamWriter, allHeaders, bufferThreshold, contentLength);
   }
 }
@@ -25,21 +25,28 @@ import co.cask.cdap.api.dataset.module.DatasetModule;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.datafabric.dataset.type.ConstantClassLoaderProvider;
 import co.cask.cdap.data2.datafabric.dataset.type.DatasetClassLoaderProvider;
 import co.cask.cdap.data2.dataset2.DatasetDefinitionRegistryFactory;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.dataset2.DatasetManagementException;
 import co.cask.cdap.data2.dataset2.InstanceConflictException;
+import co.cask.cdap.data2.dataset2.ParallelDatasetOperations;
 import co.cask.cdap.data2.dataset2.SingleTypeModule;
 import co.cask.cdap.proto.DatasetMeta;
 import co.cask.cdap.proto.DatasetSpecificationSummary;
 import co.cask.cdap.proto.DatasetTypeMeta;
 import co.cask.cdap.proto.Id;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
@@ -54,15 +61,25 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import javax.annotation.Nullable;
 
 /**
- * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service
+ * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service.
+ *
+ * <p>The {@link DatasetMeta} of dataset instances can be cached locally for the time configured by
+ * {@link Constants.Dataset#CLIENT_CACHE_EXPIRE_SECONDS}. Changes made through this class invalidate the cache
+ * immediately. Program containers can also {@link #preload(Map, Iterable) preload} the metas of the datasets they use,
+ * which are then kept for the lifetime of the container.</p>
  */
 @SuppressWarnings("unchecked")
 public class RemoteDatasetFramework implements DatasetFramework {
@@ -71,6 +88,10 @@ public class RemoteDatasetFramework implements DatasetFramework {
   private final CConfiguration cConf;
   private final LoadingCache<Id.Namespace, DatasetServiceClient> clientCache;
   private final AbstractDatasetProvider instances;
+  private final Cache<Id.DatasetInstance, DatasetMeta> metaCache;
+  private final ConcurrentMap<Id.DatasetInstance, DatasetMeta> preloadedMetas;
+  // Owners that were already registered as users of a dataset through this instance
+  private final Set<ImmutablePair<Id.DatasetInstance, Set<Id>>> registeredOwners;
 
   @Inject
   public RemoteDatasetFramework(CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
@@ -82,11 +103,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
         return new DatasetServiceClient(discoveryClient, namespace);
       }
     });
+    long cacheExpireSeconds = cConf.getLong(Constants.Dataset.CLIENT_CACHE_EXPIRE_SECONDS,
+                                            Constants.Dataset.DEFAULT_CLIENT_CACHE_EXPIRE_SECONDS);
+    // A zero expiration disables the cache
+    this.metaCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(cacheExpireSeconds, 0), TimeUnit.SECONDS)
+      .build();
+    this.preloadedMetas = Maps.newConcurrentMap();
+    this.registeredOwners = Collections.newSetFromMap(
+      Maps.<ImmutablePair<Id.DatasetInstance, Set<Id>>, Boolean>newConcurrentMap());
     this.instances = new AbstractDatasetProvider(registryFactory) {
       @Override
       public DatasetMeta getMeta(Id.DatasetInstance instance) throws Exception {
-        return RemoteDatasetFramework.this.clientCache.getUnchecked(instance.getNamespace())
-          .getInstance(instance.getId());
+        return RemoteDatasetFramework.this.getDatasetMeta(instance);
       }
 
       @Override
@@ -109,6 +138,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
       try {
         clientCache.getUnchecked(moduleId.getNamespace())
           .addModule(moduleId.getId(), moduleClass.getName(), deploymentJar);
+        invalidateMetas(moduleId.getNamespace());
       } finally {
         try {
           deploymentJar.delete();
@@ -130,16 +160,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
                         Location jarLocation) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace())
       .addModule(moduleId.getId(), getModuleClass(module).getName(), jarLocation);
+    invalidateMetas(moduleId.getNamespace());
   }
 
   @Override
   public void deleteModule(Id.DatasetModule moduleId) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getNamespace()).deleteModule(moduleId.getId());
+    invalidateMetas(moduleId.getNamespace());
   }
 
   @Override
   public void deleteAllModules(Id.Namespace namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteModules();
+    invalidateMetas(namespaceId);
   }
 
   @Override
@@ -147,6 +180,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .addInstance(datasetInstanceId.getId(), datasetType, props);
+    invalidateMeta(datasetInstanceId);
   }
 
   @Override
@@ -154,6 +188,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace())
       .updateInstance(datasetInstanceId.getId(), props);
+    invalidateMeta(datasetInstanceId);
   }
 
   @Override
@@ -165,14 +200,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Nullable
   @Override
   public DatasetSpecification getDatasetSpec(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    DatasetMeta meta = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta meta = getDatasetMeta(datasetInstanceId);
     return meta == null ? null : meta.getSpec();
   }
 
   @Override
   public boolean hasInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetInstanceId.getNamespace()).getInstance(datasetInstanceId.getId()) != null;
+    return getDatasetMeta(datasetInstanceId) != null;
   }
 
   @Override
@@ -188,14 +222,42 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteInstance(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getNamespace()).deleteInstance(datasetInstanceId.getId());
+    invalidateMeta(datasetInstanceId);
   }
 
   @Override
   public void deleteAllInstances(Id.Namespace namespaceId) throws DatasetManagementException, IOException {
-    // delete all one by one
+    // delete all concurrently, since the deletion of one instance doesn't depend on the others
+    List<Id.DatasetInstance> instanceIds = Lists.newArrayList();
     for (DatasetSpecificationSummary metaSummary : getInstances(namespaceId)) {
-      Id.DatasetInstance datasetInstanceId = Id.DatasetInstance.from(namespaceId, metaSummary.getName());
-      deleteInstance(datasetInstanceId);
+      instanceIds.add(Id.DatasetInstance.from(namespaceId, metaSummary.getName()));
+    }
+
+    Map<Id.DatasetInstance, Exception> failures;
+    try {
+      failures = ParallelDatasetOperations.execute(
+        instanceIds, cConf.getInt(Constants.Dataset.ADMIN_OP_PARALLELISM,
+                                  Constants.Dataset.DEFAULT_ADMIN_OP_PARALLELISM),
+        new ParallelDatasetOperations.Operation<Id.DatasetInstance>() {
+          @Override
+          public void execute(Id.DatasetInstance datasetInstanceId) throws Exception {
+            deleteInstance(datasetInstanceId);
+          }
+        });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatasetManagementException("Interrupted while deleting dataset instances in " + namespaceId, e);
+    }
+
+    for (Map.Entry<Id.DatasetInstance, Exception> entry : failures.entrySet()) {
+      LOG.error("Failed to delete dataset instance {}", entry.getKey(), entry.getValue());
+    }
+    try {
+      ParallelDatasetOperations.propagateFailures(failures);
+    } catch (DatasetManagementException | IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
     }
   }
 
@@ -211,8 +273,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                              @Nullable ClassLoader parentClassLoader,
                                              DatasetClassLoaderProvider classLoaderProvider)
     throws DatasetManagementException, IOException {
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId());
+    DatasetMeta instanceInfo = getDatasetMeta(datasetInstanceId);
     if (instanceInfo == null) {
       return null;
     }
@@ -246,8 +307,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     DatasetClassLoaderProvider classLoaderProvider,
     @Nullable Iterable<? extends Id> owners) throws DatasetManagementException, IOException {
 
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getNamespace())
-      .getInstance(datasetInstanceId.getId(), owners);
+    DatasetMeta instanceInfo = getDatasetMeta(datasetInstanceId, owners);
     if (instanceInfo == null) {
       return null;
     }
@@ -265,6 +325,101 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteNamespace(Id.Namespace namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteNamespace();
+    invalidateMetas(namespaceId);
+  }
+
+  /**
+   * Returns the {@link DatasetMeta} of the given dataset instance, from the local cache if possible.
+   *
+   * @param datasetInstanceId the dataset instance
+   * @return the {@link DatasetMeta} or {@code null} if the dataset instance doesn't exist
+   */
+  @Nullable
+  public DatasetMeta getDatasetMeta(Id.DatasetInstance datasetInstanceId) throws DatasetManagementException {
+    return getDatasetMeta(datasetInstanceId, null);
+  }
+
+  /**
+   * Adds the given {@link DatasetMeta} to this instance, so that they are used instead of fetching them from the
+   * dataset service. Preloaded metas are kept until the dataset instance or its type is changed through this
+   * instance, hence this should only be used in program containers, with the metas fetched when the program was
+   * started.
+   *
+   * @param metas the {@link DatasetMeta} of dataset instances
+   * @param owners the owners that were registered as users of the dataset instances when the metas were fetched,
+   *               or {@code null} if none were. Lookups with other owners still go to the dataset service once.
+   */
+  public void preload(Map<Id.DatasetInstance, DatasetMeta> metas, @Nullable Iterable<? extends Id> owners) {
+    if (owners != null) {
+      Set<Id> ownerSet = ImmutableSet.copyOf(owners);
+      for (Id.DatasetInstance datasetInstanceId : metas.keySet()) {
+        registeredOwners.add(ImmutablePair.<Id.DatasetInstance, Set<Id>>of(datasetInstanceId, ownerSet));
+      }
+    }
+    preloadedMetas.putAll(metas);
+  }
+
+  /**
+   * Returns the {@link DatasetMeta} of the given dataset instance, from the local cache if possible. The owners are
+   * registered as users of the dataset instance with the dataset service if they weren't through this instance yet.
+   *
+   * @param datasetInstanceId the dataset instance
+   * @param owners the owners to register as users of the dataset instance, or {@code null} to register none
+   * @return the {@link DatasetMeta} or {@code null} if the dataset instance doesn't exist
+   */
+  @Nullable
+  public DatasetMeta getDatasetMeta(Id.DatasetInstance datasetInstanceId,
+                                    @Nullable Iterable<? extends Id> owners) throws DatasetManagementException {
+    ImmutablePair<Id.DatasetInstance, Set<Id>> ownersKey = null;
+    if (owners != null) {
+      ownersKey = ImmutablePair.<Id.DatasetInstance, Set<Id>>of(datasetInstanceId, ImmutableSet.copyOf(owners));
+    }
+
+    // Preloaded metas can only be used if the usage by the owners is known to be registered
+    DatasetMeta meta = preloadedMetas.get(datasetInstanceId);
+    if (meta != null && (ownersKey == null || registeredOwners.contains(ownersKey))) {
+      return meta;
+    }
+
+    // The owners only need to be sent to the dataset service once for registering the usage
+    if (ownersKey == null || registeredOwners.contains(ownersKey)) {
+      meta = metaCache.getIfPresent(datasetInstanceId);
+      if (meta != null) {
+        return meta;
+      }
+    }
+
+    meta = clientCache.getUnchecked(datasetInstanceId.getNamespace()).getInstance(datasetInstanceId.getId(), owners);
+    if (meta != null) {
+      metaCache.put(datasetInstanceId, meta);
+      if (ownersKey != null) {
+        registeredOwners.add(ownersKey);
+      }
+    }
+    return meta;
+  }
+
+  private void invalidateMeta(Id.DatasetInstance datasetInstanceId) {
+    metaCache.invalidate(datasetInstanceId);
+    preloadedMetas.remove(datasetInstanceId);
+  }
+
+  /**
+   * Invalidates all cached metas of the given namespace, since they contain the dataset type information as well.
+   */
+  private void invalidateMetas(Id.Namespace namespaceId) {
+    Iterator<Id.DatasetInstance> iterator = metaCache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (namespaceId.equals(iterator.next().getNamespace())) {
+        iterator.remove();
+      }
+    }
+    iterator = preloadedMetas.keySet().iterator();
+    while (iterator.hasNext()) {
+      if (namespaceId.equals(iterator.next().getNamespace())) {
+        iterator.remove();
+      }
+    }
   }
 
   private Location createDeploymentJar(Class<?> clz) throws IOException {
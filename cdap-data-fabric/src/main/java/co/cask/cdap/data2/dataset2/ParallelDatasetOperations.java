@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2;
+
+import co.cask.cdap.common.lang.ClassLoaders;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper for executing the same dataset operation, such as creating or dropping a dataset instance, for a
+ * collection of datasets concurrently. Operations on different dataset instances are independent of each other,
+ * hence this avoids paying for the round trips to the dataset service and the underlying storage one by one.
+ */
+public final class ParallelDatasetOperations {
+
+  /**
+   * An operation on a single dataset.
+   *
+   * @param <T> type of the dataset identifier
+   */
+  public interface Operation<T> {
+
+    /**
+     * Executes the operation for the given dataset.
+     */
+    void execute(T dataset) throws Exception;
+  }
+
+  /**
+   * Executes the given operation for all the given datasets, with at most the given number of operations running
+   * concurrently. A failure of one operation doesn't stop the other operations.
+   *
+   * @param datasets the datasets to execute the operation for
+   * @param parallelism maximum number of concurrent operations
+   * @param operation the operation to execute
+   * @param <T> type of the dataset identifier
+   * @return a map from dataset to the exception raised by its operation; empty if all operations succeeded
+   * @throws InterruptedException if interrupted while waiting for the operations to complete
+   */
+  public static <T> Map<T, Exception> execute(Collection<T> datasets, int parallelism,
+                                              final Operation<T> operation) throws InterruptedException {
+    final ConcurrentMap<T, Exception> failures = Maps.newConcurrentMap();
+    if (parallelism <= 1 || datasets.size() <= 1) {
+      for (T dataset : datasets) {
+        try {
+          operation.execute(dataset);
+        } catch (Exception e) {
+          failures.put(dataset, e);
+        }
+      }
+      return failures;
+    }
+
+    // The operations may need the ClassLoader of the caller, e.g. for loading dataset types
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, datasets.size()),
+                                                            new ThreadFactoryBuilder()
+                                                              .setDaemon(true)
+                                                              .setNameFormat("dataset-op-%d")
+                                                              .build());
+    try {
+      for (final T dataset : datasets) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(classLoader);
+            try {
+              operation.execute(dataset);
+            } catch (Exception e) {
+              failures.put(dataset, e);
+            } finally {
+              ClassLoaders.setContextClassLoader(oldClassLoader);
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    return failures;
+  }
+
+  /**
+   * Throws the exception of the first failed operation, with the exceptions of the other failed operations
+   * added as suppressed exceptions. Does nothing if there is no failure.
+   *
+   * @param failures the result of {@link #execute(Collection, int, Operation)}
+   */
+  public static void propagateFailures(Map<?, Exception> failures) throws Exception {
+    if (failures.isEmpty()) {
+      return;
+    }
+    Exception exception = Iterables.getFirst(failures.values(), null);
+    for (Exception failure : failures.values()) {
+      if (failure != exception) {
+        exception.addSuppressed(failure);
+      }
+    }
+    throw exception;
+  }
+
+  private ParallelDatasetOperations() {
+  }
+}
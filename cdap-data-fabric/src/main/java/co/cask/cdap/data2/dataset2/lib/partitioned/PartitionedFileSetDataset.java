@@ -82,6 +82,9 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
   protected static final byte[] CREATION_TIME_COL = { 'c' };
   protected static final byte[] WRITE_PTR_COL = { 'w' };
 
+  // number of consecutive rows not matching the filter before seeking to the next row that can match
+  private static final int SEEK_AFTER_SKIPPED_ROWS = 16;
+
   protected final FileSet files;
   protected final IndexedTable partitionsTable;
   protected final DatasetSpecification spec;
@@ -434,6 +437,7 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     byte[] endKey = generateStopKey(filter);
     Scanner scanner = partitionsTable.scan(startKey, endKey);
     try {
+      int skippedRows = 0;
       while (true) {
         Row row = scanner.next();
         if (row == null) {
@@ -450,8 +454,22 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
           continue;
         }
         if (filter != null && !filter.match(key)) {
+          // The start and stop keys only bound the scan by the leading fields of the filter. If many rows are
+          // skipped because of conditions on other fields, seek directly to the next row that can match.
+          if (++skippedRows >= SEEK_AFTER_SKIPPED_ROWS) {
+            skippedRows = 0;
+            byte[] seekKey = generateSeekKey(key, filter);
+            if (seekKey != null && Bytes.compareTo(seekKey, row.getRow()) > 0) {
+              if (endKey != null && Bytes.compareTo(seekKey, endKey) >= 0) {
+                break;
+              }
+              scanner.close();
+              scanner = partitionsTable.scan(seekKey, endKey);
+            }
+          }
           continue;
         }
+        skippedRows = 0;
         byte[] pathBytes = row.get(RELATIVE_PATH);
         if (pathBytes != null) {
           consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
@@ -735,9 +753,10 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
       if (condition == null) {
         break; // this field is not present; we can't include any more fields in the stop key
       }
-      Comparable upperValue = condition.getUpper();
+      // the upper bound of a single value condition is the value itself
+      Comparable upperValue = condition.isSingleValue() ? condition.getValue() : condition.getUpper();
       if (upperValue == null) {
-        break; // this field is not present; we can't include any more fields in the stop key
+        break; // this field has no upper bound; we can't include any more fields in the stop key
       }
       if (!FieldTypes.validateType(upperValue, fieldType)) {
         throw new IllegalArgumentException(
@@ -771,6 +790,68 @@ public class PartitionedFileSetDataset extends AbstractDataset implements Partit
     return stopKey;
   }
 
+  /**
+   * Generates the smallest row key after the row of the given partition key that can match the filter, by looking
+   * at the first field in the partition key that does not match its condition. If that value is below the lower
+   * bound of the condition, the row key is made of the preceding fields followed by the lower bound. Otherwise the
+   * row key is the smallest key after all rows with the preceding fields.
+   *
+   * @return the row key to seek to, or {@code null} if the partition key matches or if the key can't be computed
+   */
+  @VisibleForTesting
+  @Nullable
+  static byte[] generateSeekKey(PartitionKey key, PartitionFilter filter, Partitioning partitioning) {
+    List<byte[]> values = Lists.newArrayList();
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      String fieldName = entry.getKey();
+      FieldType fieldType = entry.getValue();
+      Comparable fieldValue = key.getField(fieldName);
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition == null || condition.match(fieldValue)) {
+        values.add(FieldTypes.toBytes(fieldValue, fieldType));
+        continue;
+      }
+      if (values.isEmpty()) {
+        // mismatches in the first field are already excluded by the start and stop key of the scan
+        return null;
+      }
+
+      byte[] prefix = joinFields(values);
+      Comparable lower = condition.getLower();
+      @SuppressWarnings("unchecked")
+      boolean belowLower = lower != null && lower.compareTo(fieldValue) > 0;
+      if (belowLower) {
+        // skip to the lower bound of this field: prefix + \0 + lower
+        return Bytes.add(prefix, new byte[1], FieldTypes.toBytes(lower, fieldType));
+      }
+      // no more match with this prefix. The next fields are always separated by \0, so prefix + \1 is larger
+      // than all rows with the same prefix
+      return Bytes.add(prefix, new byte[] { 1 });
+    }
+    return null;
+  }
+
+  private byte[] generateSeekKey(PartitionKey key, PartitionFilter filter) {
+    return generateSeekKey(key, filter, partitioning);
+  }
+
+  /**
+   * Joins the given field values with \0 as separator.
+   */
+  private static byte[] joinFields(List<byte[]> values) {
+    int totalSize = values.size() - 1; // one \0 between each of the fields
+    for (byte[] bytes : values) {
+      totalSize += bytes.length;
+    }
+    byte[] result = new byte[totalSize];
+    int offset = 0;
+    for (byte[] bytes : values) {
+      System.arraycopy(bytes, 0, result, offset, bytes.length);
+      offset += bytes.length + 1; // this leaves a \0 byte after the value
+    }
+    return result;
+  }
+
   @VisibleForTesting
   static PartitionKey parseRowKey(byte[] rowKey, Partitioning partitioning) {
     PartitionKey.Builder builder = PartitionKey.builder();
@@ -423,6 +423,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public List<Row> get(List<Get> gets) {
+    reportRead(gets.size());
     try {
       // get persisted, then overwrite with whats buffered
       List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetDefinition;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Filter;
@@ -77,6 +78,23 @@ public class HBaseTable extends BufferingTable {
 
   public static final String DELTA_WRITE = "d";
 
+  /**
+   * Property to configure the number of rows fetched per RPC by scanners. It can be set as a dataset property or
+   * overridden per program through runtime arguments.
+   */
+  public static final String PROPERTY_SCAN_CACHING = "scan.caching";
+
+  /**
+   * Property to configure the maximum size in bytes of rows fetched per RPC by scanners. Together with
+   * {@link #PROPERTY_SCAN_CACHING}, it adapts the number of rows per RPC to the size of the rows, so that
+   * wide rows don't cause too large responses. It can be set as a dataset property or overridden per
+   * program through runtime arguments.
+   */
+  public static final String PROPERTY_SCAN_MAX_RESULT_SIZE = "scan.max.result.size";
+
+  private static final int DEFAULT_SCAN_CACHING = 1000;
+  private static final long DEFAULT_SCAN_MAX_RESULT_SIZE = 8 * 1024 * 1024;
+
   private final HBaseTableUtil tableUtil;
   private final HTable hTable;
   private final String hTableName;
@@ -84,11 +102,18 @@ public class HBaseTable extends BufferingTable {
   private final TransactionCodec txCodec;
   // name length + name of the table: handy to have one cached
   private final byte[] nameAsTxChangePrefix;
+  private final int scanCaching;
+  private final long scanMaxResultSize;
 
   private Transaction tx;
 
   public HBaseTable(DatasetContext datasetContext, DatasetSpecification spec,
                     CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil) throws IOException {
+    this(datasetContext, spec, DatasetDefinition.NO_ARGUMENTS, cConf, hConf, tableUtil);
+  }
+
+  public HBaseTable(DatasetContext datasetContext, DatasetSpecification spec, Map<String, String> arguments,
+                    CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil) throws IOException {
     super(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), spec.getName()),
           ConflictDetection.valueOf(spec.getProperty(PROPERTY_CONFLICT_LEVEL, ConflictDetection.ROW.name())),
           HBaseTableAdmin.supportsReadlessIncrements(spec),
@@ -108,6 +133,19 @@ public class HBaseTable extends BufferingTable {
     // Overriding the hbase tx change prefix so it resembles the hbase table name more closely, since the HBase
     // table name is not the same as the dataset name anymore
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) this.hTableName.length()}, Bytes.toBytes(this.hTableName));
+    this.scanCaching = Integer.parseInt(getScanProperty(PROPERTY_SCAN_CACHING, spec, arguments,
+                                                        Integer.toString(DEFAULT_SCAN_CACHING)));
+    this.scanMaxResultSize = Long.parseLong(getScanProperty(PROPERTY_SCAN_MAX_RESULT_SIZE, spec, arguments,
+                                                            Long.toString(DEFAULT_SCAN_MAX_RESULT_SIZE)));
+  }
+
+  /**
+   * Gets a scan property, with runtime arguments taking precedence over dataset properties.
+   */
+  private static String getScanProperty(String key, DatasetSpecification spec,
+                                        Map<String, String> arguments, String defaultValue) {
+    String value = arguments.get(key);
+    return value == null ? spec.getProperty(key, defaultValue) : value;
   }
 
   @Override
@@ -257,10 +295,10 @@ public class HBaseTable extends BufferingTable {
   protected Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan) throws Exception {
     ScanBuilder hScan = tableUtil.buildScan();
     hScan.addFamily(columnFamily);
-    // todo: should be configurable
     // NOTE: by default we assume scanner is used in mapreduce job, hence no cache blocks
     hScan.setCacheBlocks(false);
-    hScan.setCaching(1000);
+    hScan.setCaching(scanCaching);
+    hScan.setMaxResultSize(scanMaxResultSize);
 
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
@@ -23,6 +23,7 @@ import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.hbase.AbstractHBaseDataSetAdmin;
+import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HTableDescriptorBuilder;
@@ -88,6 +89,11 @@ public class HBaseTableAdmin extends AbstractHBaseDataSetAdmin {
       }
     }
 
+    String presumProp = spec.getProperty(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD);
+    if (presumProp != null) {
+      columnDescriptor.setValue(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD, presumProp);
+    }
+
     final HTableDescriptorBuilder tableDescriptor = tableUtil.buildHTableDescriptor(tableId);
     setVersion(tableDescriptor);
     tableDescriptor.addFamily(columnDescriptor);
@@ -143,6 +149,16 @@ public class HBaseTableAdmin extends AbstractHBaseDataSetAdmin {
       needUpgrade = true;
     }
 
+    String presumProp = spec.getProperty(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD);
+    String currentPresumProp = columnDescriptor.getValue(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD);
+    if (presumProp == null && currentPresumProp != null) {
+      columnDescriptor.remove(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD.getBytes());
+      needUpgrade = true;
+    } else if (presumProp != null && !presumProp.equals(currentPresumProp)) {
+      columnDescriptor.setValue(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD, presumProp);
+      needUpgrade = true;
+    }
+
     // NOTE: transactional attribute for table cannot be changed between upgrades, currently
 
     // check if the readless increment setting has changed
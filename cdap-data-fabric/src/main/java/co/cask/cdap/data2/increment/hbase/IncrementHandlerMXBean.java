@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase;
+
+/**
+ * JMX interface for exposing the read statistics of a region with the {@code IncrementHandler} coprocessor.
+ */
+public interface IncrementHandlerMXBean {
+
+  /**
+   * Returns the name of the table that the region belongs to.
+   */
+  String getTableName();
+
+  /**
+   * Returns the number of rows read from the region.
+   */
+  long getReadCount();
+
+  /**
+   * Returns the total number of delta increments summed up by all reads.
+   */
+  long getDeltasSummed();
+
+  /**
+   * Returns the largest number of delta increments summed up by a single read.
+   */
+  long getMaxDeltasPerRead();
+
+  /**
+   * Returns the average number of delta increments summed up per read.
+   */
+  double getAverageDeltasPerRead();
+
+  /**
+   * Returns the number of pre-summed values written back to the region.
+   */
+  long getPresummedCount();
+}
@@ -18,6 +18,8 @@ package co.cask.cdap.data2.increment.hbase;
 
 import co.cask.cdap.data2.transaction.coprocessor.DefaultTransactionStateCacheSupplier;
 import co.cask.cdap.data2.util.hbase.HTableNameConverter;
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionCodec;
 import co.cask.tephra.TxConstants;
 import co.cask.tephra.coprocessor.TransactionStateCache;
 import co.cask.tephra.persist.TransactionSnapshot;
@@ -33,21 +35,42 @@ import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Common state and utilities shared by the HBase version-specific {@code IncrementHandler} coprocessor
  * implementations.  This common implementation cannot go into a shared base class, as each coprocessor needs
  * to derive from the HBase version's {@code BaseRegionObserver} class, in order to avoid being broken by
  * API changes.
+ *
+ * <p>It also keeps the read statistics of the region, which are exposed through JMX as an
+ * {@link IncrementHandlerMXBean}.</p>
  */
-public class IncrementHandlerState {
+public class IncrementHandlerState implements IncrementHandlerMXBean {
   /**
    * Property set for {@link HColumnDescriptor} to indicate if increment is transactional. Default: "true", i.e.
    * transactional.
    */
   public static final String PROPERTY_TRANSACTIONAL = "dataset.table.readless.increment.transactional";
+  /**
+   * Property set for {@link HColumnDescriptor}, or in the HBase configuration as the default for all tables, to set
+   * the number of delta increments that a read can sum up for a column before the sum is written back to the region
+   * as a new full value. Only transactional families are pre-summed. Default: "0", i.e. no pre-summing.
+   */
+  public static final String PROPERTY_PRESUM_THRESHOLD = "dataset.table.readless.increment.presum.threshold";
+  /**
+   * Attribute set on the {@code Put} of pre-summed values, so that their timestamps are preserved.
+   */
+  public static final String PRESUM_WRITE = "p";
+  public static final int DEFAULT_PRESUM_THRESHOLD = 0;
   public static final long MAX_TS_PER_MS = 1000000;
   // prefix bytes used to mark values that are deltas vs. full sums
   public static final byte[] DELTA_MAGIC_PREFIX = new byte[] { 'X', 'D' };
@@ -59,11 +82,20 @@ public class IncrementHandlerState {
   private final HTableDescriptor hTableDescriptor;
   private final HTableNameConverter hTableNameConverter;
 
+  private final TransactionCodec txCodec = new TransactionCodec();
   private TransactionStateCache cache;
   private TimestampOracle timeOracle = new TimestampOracle();
   private final Configuration conf;
   protected final Set<byte[]> txnlFamilies = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
   protected Map<byte[], Long> ttlByFamily = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+  protected Map<byte[], Integer> presumThresholdByFamily = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+  // read statistics
+  private final AtomicLong readCount = new AtomicLong();
+  private final AtomicLong deltasSummed = new AtomicLong();
+  private final AtomicLong maxDeltasPerRead = new AtomicLong();
+  private final AtomicLong presummedCount = new AtomicLong();
+  private ObjectName objectName;
 
   public IncrementHandlerState(Configuration conf, HTableDescriptor hTableDescriptor,
                                HTableNameConverter hTableNameConverter) {
@@ -106,6 +138,27 @@ public class IncrementHandlerState {
     }
     ttlByFamily.put(familyName, ttl);
 
+    // check for pre-summing configuration, the family setting overrides the region server default
+    int presumThreshold = conf.getInt(PROPERTY_PRESUM_THRESHOLD, DEFAULT_PRESUM_THRESHOLD);
+    byte[] columnPresumThreshold = familyValues.get(Bytes.toBytes(PROPERTY_PRESUM_THRESHOLD));
+    if (columnPresumThreshold != null) {
+      try {
+        presumThreshold = Integer.parseInt(Bytes.toString(columnPresumThreshold));
+      } catch (NumberFormatException nfe) {
+        LOG.warn("Invalid pre-sum threshold configured for column family " + familyAsString +
+            ", value = " + Bytes.toStringBinary(columnPresumThreshold));
+      }
+    }
+    if (presumThreshold > 0 && ttl > 0) {
+      // a pre-summed value would keep the expired deltas that it contains alive
+      LOG.info("Pre-summing is disabled for family " + familyAsString + " because it has a TTL");
+      presumThreshold = 0;
+    }
+    if (presumThreshold > 0) {
+      LOG.info("Family " + familyAsString + " has pre-sum threshold of " + presumThreshold);
+    }
+    presumThresholdByFamily.put(familyName, Math.max(presumThreshold, 0));
+
     // get the transaction state cache as soon as we have a transactional family
     if (!txnlFamilies.isEmpty() && cache == null) {
       Supplier<TransactionStateCache> cacheSupplier = getTransactionStateCacheSupplier(hTableDescriptor, conf);
@@ -147,6 +200,68 @@ public class IncrementHandlerState {
     }
   }
 
+  /**
+   * Returns the largest cell timestamp, inclusive, up to which a read of the given column family can write back the
+   * sum of the cells it has read as a pre-summed value. The pre-summed value hides all older cells of the column
+   * from later reads, hence it must include every cell up to the bound that is visible to any later transaction:
+   * <ul>
+   *   <li>the family must be transactional. Timestamps of a non-transactional family are assigned by the
+   *   {@link TimestampOracle} before the write acquires the row lock, hence a write with an older timestamp can become
+   *   visible after a read has already pre-summed past it, and its increment would then be hidden by the pre-summed
+   *   value;</li>
+   *   <li>no cell can be excluded by the time range of the read;</li>
+   *   <li>the bound is below the compaction bound, so that no transaction started before the latest transaction
+   *   snapshot can miss the new cell;</li>
+   *   <li>the read must be transactional, and the bound is at most the read pointer and below all transactions in
+   *   progress for the read, so that the reader saw every committed cell up to the bound. Cells of invalid
+   *   transactions are never visible, hence excluding them doesn't matter.</li>
+   * </ul>
+   * The caller must also make sure that the read has no filter besides the transaction visibility filter.
+   *
+   * @param familyName the column family name
+   * @param tx the transaction of the read, or {@code null} for a non-transactional read
+   * @param minTimestamp the minimum timestamp of the time range of the read, inclusive
+   * @param maxTimestamp the maximum timestamp of the time range of the read, exclusive
+   * @return the upper bound, or {@code 0} if the read cannot write pre-summed values
+   */
+  public long getPresumUpperBound(byte[] familyName, @Nullable Transaction tx, long minTimestamp, long maxTimestamp) {
+    // A non-transactional read also sees the cells of uncommitted and invalid transactions
+    if (tx == null || !txnlFamilies.contains(familyName)
+      || getPresumThreshold(familyName) <= 0 || minTimestamp > 0) {
+      return 0;
+    }
+    long bound = Math.min(getCompactionBound(familyName), tx.getReadPointer());
+    for (long inProgress : tx.getInProgress()) {
+      bound = Math.min(bound, inProgress - 1);
+    }
+    // Cells at or after the end of the time range are not seen by the read
+    bound = Math.min(bound, maxTimestamp - 1);
+    return Math.max(bound, 0);
+  }
+
+  /**
+   * Decodes the transaction set as an operation attribute by the client.
+   *
+   * @param encoded the value of the {@link TxConstants#TX_OPERATION_ATTRIBUTE_KEY} attribute
+   * @return the transaction, or {@code null} if the attribute is not set
+   */
+  @Nullable
+  public Transaction decodeTransaction(@Nullable byte[] encoded) throws IOException {
+    return encoded == null ? null : txCodec.decode(encoded);
+  }
+
+  /**
+   * Returns the number of delta increments a read has to sum up for a column in the given column family, before
+   * the sum is written back as a full value.
+   *
+   * @param familyName the column family name
+   * @return the pre-sum threshold, or {@code 0} if pre-summing is disabled for the column family
+   */
+  public int getPresumThreshold(byte[] familyName) {
+    Integer threshold = presumThresholdByFamily.get(familyName);
+    return threshold == null ? 0 : threshold;
+  }
+
   /**
    * Returns the time-to-live (in milliseconds) for the given column family, transformed into the same precision
    * used in assigning unique timestamps.
@@ -169,4 +284,96 @@ public class IncrementHandlerState {
     long familyTTL = getFamilyTTL(familyName);
     return familyTTL > 0 ? timeOracle.currentTime() - familyTTL : 0;
   }
+
+  /**
+   * Records a read of a single row.
+   *
+   * @param deltas the number of delta increments summed up by the read
+   */
+  public void recordRead(int deltas) {
+    readCount.incrementAndGet();
+    deltasSummed.addAndGet(deltas);
+    long max = maxDeltasPerRead.get();
+    while (deltas > max && !maxDeltasPerRead.compareAndSet(max, deltas)) {
+      max = maxDeltasPerRead.get();
+    }
+  }
+
+  /**
+   * Records the writing of pre-summed values.
+   *
+   * @param cells the number of pre-summed values written
+   */
+  public void recordPresummed(int cells) {
+    presummedCount.addAndGet(cells);
+  }
+
+  @Override
+  public String getTableName() {
+    return hTableDescriptor.getNameAsString();
+  }
+
+  @Override
+  public long getReadCount() {
+    return readCount.get();
+  }
+
+  @Override
+  public long getDeltasSummed() {
+    return deltasSummed.get();
+  }
+
+  @Override
+  public long getMaxDeltasPerRead() {
+    return maxDeltasPerRead.get();
+  }
+
+  @Override
+  public double getAverageDeltasPerRead() {
+    long reads = readCount.get();
+    return reads == 0 ? 0d : (double) deltasSummed.get() / reads;
+  }
+
+  @Override
+  public long getPresummedCount() {
+    return presummedCount.get();
+  }
+
+  /**
+   * Registers the read statistics of the given region with the platform MBean server.
+   *
+   * @param regionName the encoded name of the region
+   */
+  public synchronized void registerMBean(String regionName) {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("co.cask.cdap:type=IncrementHandler,table=" +
+                                         ObjectName.quote(getTableName()) + ",region=" + regionName);
+      if (!mBeanServer.isRegistered(name)) {
+        mBeanServer.registerMBean(this, name);
+        objectName = name;
+      }
+    } catch (JMException e) {
+      // Failure in registering the MBean shouldn't affect the coprocessor
+      LOG.warn("Failed to register MBean for region " + regionName, e);
+    }
+  }
+
+  /**
+   * Unregisters the read statistics from the platform MBean server.
+   */
+  public synchronized void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      LOG.warn("Failed to unregister MBean " + objectName, e);
+    }
+    objectName = null;
+  }
 }
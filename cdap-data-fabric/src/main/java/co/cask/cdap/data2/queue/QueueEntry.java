@@ -17,17 +17,15 @@
 package co.cask.cdap.data2.queue;
 
 import co.cask.cdap.api.common.Bytes;
-import co.cask.cdap.common.io.BinaryDecoder;
-import co.cask.cdap.common.io.BinaryEncoder;
-import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -75,10 +73,9 @@ public class QueueEntry {
   private static byte[] serializeEmptyHashKeys() {
     try {
       // we don't synchronize here: the worst thing that go wrong here is repeated assignment to the same value
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Encoder encoder = new BinaryEncoder(bos);
+      ByteBufferEncoder encoder = new ByteBufferEncoder(16, false);
       encoder.writeInt(0);
-      return bos.toByteArray();
+      return encoder.toByteArray();
     } catch (IOException e) {
       throw new RuntimeException("encoding empty hash keys went wrong - bailing out: " + e.getMessage(), e);
     }
@@ -90,14 +87,13 @@ public class QueueEntry {
     if (hashKeys == null || hashKeys.isEmpty()) {
       return SERIALIZED_EMPTY_HASH_KEYS;
     }
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    Encoder encoder = new BinaryEncoder(bos);
+    ByteBufferEncoder encoder = new ByteBufferEncoder(hashKeys.size() * 16 + 2, false);
     encoder.writeInt(hashKeys.size());
     for (Map.Entry<String, Integer> entry : hashKeys.entrySet()) {
       encoder.writeString(entry.getKey()).writeInt(entry.getValue());
     }
     encoder.writeInt(0); // per Avro spec, end with a (block of length) zero
-    return bos.toByteArray();
+    return encoder.toByteArray();
   }
 
   public static Map<String, Integer> deserializeHashKeys(byte[] bytes) throws IOException {
@@ -109,8 +105,7 @@ public class QueueEntry {
       // No hash keys.
       return ImmutableMap.of();
     }
-    ByteArrayInputStream bis = new ByteArrayInputStream(bytes, off, len);
-    BinaryDecoder decoder = new BinaryDecoder(bis);
+    ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(bytes, off, len));
     int size = decoder.readInt();
     Map<String, Integer> hashKeys = Maps.newHashMapWithExpectedSize(size);
     while (size > 0) { // per avro spec, ther ecan be multiple blocks
@@ -140,6 +140,10 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     // Start row can be updated to the largest rowKey in the consumingEntries
     // that is smaller than or equal to scanStartRow. If no such key exists, update start row to scanStartRow
     byte[] floorKey = consumingEntries.floorKey(scanStartRow);
+    if (floorKey != null && QueueEntryRow.isChunkEntryKey(floorKey, queueRowPrefix.length)) {
+      // Entry in a chunk row. Start from the chunk row so that the entry can be consumed again after restart.
+      floorKey = QueueEntryRow.getChunkRowKey(floorKey);
+    }
     updateStartRow(floorKey == null ? scanStartRow : floorKey);
 
     return result;
@@ -209,6 +213,14 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     // No-op by default.
   }
 
+  /**
+   * Called after scanning the queue with the number of rows that were scanned but cannot be consumed,
+   * such as entries that were already processed but not yet evicted.
+   */
+  protected void rowsSkipped(int rows) {
+    // No-op by default.
+  }
+
   private DequeueResult<byte[]> performDequeue(int maxBatchSize) throws IOException {
     Preconditions.checkArgument(maxBatchSize > 0, "Batch size must be > 0.");
 
@@ -320,6 +332,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     QueueScanner scanner = getScanner(scanStartRow,
                                       QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
                                       numRows);
+    int skippedRows = 0;
     try {
       // Try fill up the cache
       boolean firstScannedRow = true;
@@ -355,6 +368,15 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
           continue;
         }
 
+        byte[] chunkBytes = entry.getSecond().get(QueueEntryRow.CHUNK_COLUMN);
+        if (chunkBytes != null) {
+          populateChunkEntries(rowKey, writePointer, chunkBytes, entry.getSecond(), excludeRows);
+          if (stopwatch.elapsedMillis() >= maxDequeueMillis) {
+            break;
+          }
+          continue;
+        }
+
         // Based on the strategy to determine if include the given entry or not.
         byte[] dataBytes = entry.getSecond().get(QueueEntryRow.DATA_COLUMN);
         byte[] metaBytes = entry.getSecond().get(QueueEntryRow.META_COLUMN);
@@ -367,6 +389,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
         int counter = Bytes.toInt(rowKey, rowKey.length - 4, Ints.BYTES);
         if (!shouldInclude(writePointer, counter, metaBytes, stateBytes)) {
+          skippedRows++;
           continue;
         }
 
@@ -380,6 +403,40 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     } finally {
       scanner.close();
     }
+    if (skippedRows > 0) {
+      rowsSkipped(skippedRows);
+    }
+  }
+
+  /**
+   * Adds the entries of a chunk row that can be consumed to the entry cache. Each entry is keyed by the chunk entry
+   * key, which the subclass uses to locate the state column of the entry. The scan start row only moves past the
+   * chunk row if none of the entries in the chunk needs to be consumed anymore.
+   */
+  private void populateChunkEntries(byte[] rowKey, long writePointer, byte[] chunkBytes,
+                                    Map<byte[], byte[]> columns, Set<byte[]> excludeRows) {
+    QueueEntryChunk chunk = new QueueEntryChunk(chunkBytes);
+    boolean allOlder = true;
+    for (int i = 0; i < chunk.size(); i++) {
+      byte[] entryKey = QueueEntryRow.getChunkEntryKey(rowKey, i);
+      if (excludeRows.contains(entryKey)) {
+        allOlder = false;
+        continue;
+      }
+      byte[] stateBytes = columns.get(QueueEntryRow.getChunkStateColumn(stateColumnName, i));
+      QueueEntryRow.CanConsume canConsume = QueueEntryRow.canConsume(getConfig(), transaction, writePointer,
+                                                                     chunk.getCounter(i), chunk.getMeta(i),
+                                                                     stateBytes);
+      allOlder = allOlder && canConsume == QueueEntryRow.CanConsume.NO_INCLUDING_ALL_OLDER;
+      if (canConsume == QueueEntryRow.CanConsume.YES) {
+        entryCache.put(entryKey, new SimpleQueueEntry(entryKey, chunk.getData(i), stateBytes));
+      }
+    }
+
+    if (allOlder) {
+      int counter = Bytes.toInt(rowKey, rowKey.length - Ints.BYTES, Ints.BYTES);
+      scanStartRow = getNextRow(scanStartRow, writePointer, counter);
+    }
   }
 
   private byte[] encodeStateColumn(ConsumerEntryState state) {
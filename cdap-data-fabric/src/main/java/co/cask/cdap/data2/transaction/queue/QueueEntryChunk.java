@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.tephra.Transaction;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Multiple queue entries enqueued by the same transaction, packed into the {@link QueueEntryRow#CHUNK_COLUMN} of
+ * a single queue row. The chunk is encoded as
+ *
+ * <pre>
+ *   [entryCount][entryOffset]*[entry]*
+ * </pre>
+ *
+ * where each entry is encoded as {@code [counter][metaLength][meta][data]}. The entry offsets are relative to
+ * the beginning of the chunk, so that each entry can be accessed without decoding the ones before it.
+ * The consumer state of each entry is stored in a separate state column, as returned by
+ * {@link QueueEntryRow#getChunkStateColumn(byte[], int)}.
+ */
+public final class QueueEntryChunk {
+
+  private final byte[] buffer;
+  private final int offset;
+  private final int length;
+  private final int size;
+
+  public QueueEntryChunk(byte[] chunk) {
+    this(chunk, 0, chunk.length);
+  }
+
+  public QueueEntryChunk(byte[] buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+    this.size = Bytes.toInt(buffer, offset);
+  }
+
+  /**
+   * Returns the number of entries in this chunk.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the counter of the entry at the given index, which is the counter the entry would have in the
+   * row key if it was written in its own row.
+   */
+  public int getCounter(int index) {
+    return Bytes.toInt(buffer, getEntryOffset(index));
+  }
+
+  /**
+   * Returns the serialized hash keys of the entry at the given index.
+   */
+  public byte[] getMeta(int index) {
+    int entryOffset = getEntryOffset(index);
+    int metaLength = Bytes.toInt(buffer, entryOffset + Bytes.SIZEOF_INT);
+    int metaOffset = entryOffset + Bytes.SIZEOF_INT * 2;
+    return Arrays.copyOfRange(buffer, metaOffset, metaOffset + metaLength);
+  }
+
+  /**
+   * Returns the data of the entry at the given index.
+   */
+  public byte[] getData(int index) {
+    int entryOffset = getEntryOffset(index);
+    int metaLength = Bytes.toInt(buffer, entryOffset + Bytes.SIZEOF_INT);
+    int dataOffset = entryOffset + Bytes.SIZEOF_INT * 2 + metaLength;
+    int dataEnd = index + 1 < size ? getEntryOffset(index + 1) : offset + length;
+    return Arrays.copyOfRange(buffer, dataOffset, dataEnd);
+  }
+
+  /**
+   * Determines if a consumer can consume any entry of this chunk. The result is
+   * {@link QueueEntryRow.CanConsume#YES} if at least one entry can be consumed,
+   * {@link QueueEntryRow.CanConsume#NO_INCLUDING_ALL_OLDER} if that is the case for every entry, and
+   * {@link QueueEntryRow.CanConsume#NO} otherwise.
+   *
+   * @param consumerConfig config of the consumer
+   * @param transaction current tx
+   * @param enqueueWritePointer write pointer used by enqueue of this chunk
+   * @param states values of the state columns of the consumer group, indexed by entry index. The array
+   *               can be shorter than the number of entries.
+   */
+  public QueueEntryRow.CanConsume canConsume(ConsumerConfig consumerConfig, Transaction transaction,
+                                             long enqueueWritePointer, byte[][] states) {
+    boolean allOlder = true;
+    for (int i = 0; i < size; i++) {
+      QueueEntryRow.CanConsume canConsume = QueueEntryRow.canConsume(consumerConfig, transaction,
+                                                                     enqueueWritePointer, getCounter(i), getMeta(i),
+                                                                     i < states.length ? states[i] : null);
+      if (canConsume == QueueEntryRow.CanConsume.YES) {
+        return canConsume;
+      }
+      allOlder = allOlder && canConsume == QueueEntryRow.CanConsume.NO_INCLUDING_ALL_OLDER;
+    }
+    return allOlder ? QueueEntryRow.CanConsume.NO_INCLUDING_ALL_OLDER : QueueEntryRow.CanConsume.NO;
+  }
+
+  private int getEntryOffset(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return offset + Bytes.toInt(buffer, offset + Bytes.SIZEOF_INT * (index + 1));
+  }
+
+  /**
+   * Builder for encoding a chunk.
+   */
+  public static final class Builder {
+
+    private final List<Integer> counters = Lists.newArrayList();
+    private final List<byte[]> metas = Lists.newArrayList();
+    private final List<byte[]> datas = Lists.newArrayList();
+
+    /**
+     * Adds an entry to the chunk.
+     *
+     * @param counter counter of the entry in the transaction that enqueues it
+     * @param meta serialized hash keys of the entry
+     * @param data data of the entry
+     */
+    public Builder add(int counter, byte[] meta, @Nullable byte[] data) {
+      counters.add(counter);
+      metas.add(meta);
+      datas.add(data == null ? Bytes.EMPTY_BYTE_ARRAY : data);
+      return this;
+    }
+
+    public int size() {
+      return counters.size();
+    }
+
+    public byte[] build() {
+      int size = counters.size();
+      int headerLength = Bytes.SIZEOF_INT * (size + 1);
+      int length = headerLength;
+      for (int i = 0; i < size; i++) {
+        length += Bytes.SIZEOF_INT * 2 + metas.get(i).length + datas.get(i).length;
+      }
+
+      byte[] chunk = new byte[length];
+      Bytes.putInt(chunk, 0, size);
+      int entryOffset = headerLength;
+      for (int i = 0; i < size; i++) {
+        byte[] meta = metas.get(i);
+        byte[] data = datas.get(i);
+
+        Bytes.putInt(chunk, Bytes.SIZEOF_INT * (i + 1), entryOffset);
+        int pos = Bytes.putInt(chunk, entryOffset, counters.get(i));
+        pos = Bytes.putInt(chunk, pos, meta.length);
+        pos = Bytes.putBytes(chunk, pos, meta, 0, meta.length);
+        entryOffset = Bytes.putBytes(chunk, pos, data, 0, data.length);
+      }
+      return chunk;
+    }
+  }
+}
@@ -41,6 +41,8 @@ public class QueueEntryRow {
   public static final byte[] DATA_COLUMN = new byte[] {'d'};
   public static final byte[] META_COLUMN = new byte[] {'m'};
   public static final byte[] STATE_COLUMN_PREFIX = new byte[] {'s'};
+  // Column for multiple entries packed into one row, see QueueEntryChunk
+  public static final byte[] CHUNK_COLUMN = new byte[] {'c'};
 
   /**
    * Returns a byte array representing prefix of a queue. The prefix is formed by first byte of
@@ -181,6 +183,66 @@ public class QueueEntryRow {
     return columnHasPrefix(qualifierBuffer, qualifierOffset, DATA_COLUMN);
   }
 
+  /**
+   * Returns {@code true} if the given {@code byte[]} is a chunk column qualifier in queue entry row.
+   */
+  public static boolean isChunkColumn(byte[] qualifierBuffer, int qualifierOffset) {
+    return columnHasPrefix(qualifierBuffer, qualifierOffset, CHUNK_COLUMN);
+  }
+
+  /**
+   * Returns the name of the column that stores the state of the entry at the given index of a chunk row.
+   *
+   * @param stateColumnName name of the state column of the consumer group
+   * @param index index of the entry in the chunk
+   */
+  public static byte[] getChunkStateColumn(byte[] stateColumnName, int index) {
+    return Bytes.add(stateColumnName, Bytes.toBytes(index));
+  }
+
+  /**
+   * Returns the index of the chunk entry that the given column stores the state for, or {@code -1} if the column
+   * is not a chunk entry state column of the consumer group with the given state column name.
+   */
+  public static int getChunkStateIndex(byte[] stateColumnName,
+                                       byte[] qualifierBuffer, int qualifierOffset, int qualifierLength) {
+    if (qualifierLength != stateColumnName.length + Ints.BYTES
+      || !Bytes.equals(stateColumnName, 0, stateColumnName.length,
+                       qualifierBuffer, qualifierOffset, stateColumnName.length)) {
+      return -1;
+    }
+    return Bytes.toInt(qualifierBuffer, qualifierOffset + stateColumnName.length, Ints.BYTES);
+  }
+
+  /**
+   * Returns the key used by consumers to identify the entry at the given index of a chunk row. The key is the
+   * row key followed by the index, hence it sorts right after the chunk row.
+   */
+  public static byte[] getChunkEntryKey(byte[] rowKey, int index) {
+    return Bytes.add(rowKey, Bytes.toBytes(index));
+  }
+
+  /**
+   * Returns {@code true} if the given key is a key created by {@link #getChunkEntryKey(byte[], int)}.
+   */
+  public static boolean isChunkEntryKey(byte[] key, int queueRowPrefixLength) {
+    return key.length == queueRowPrefixLength + Longs.BYTES + Ints.BYTES * 2;
+  }
+
+  /**
+   * Returns the row key of the chunk row that contains the entry with the given chunk entry key.
+   */
+  public static byte[] getChunkRowKey(byte[] chunkEntryKey) {
+    return Arrays.copyOf(chunkEntryKey, chunkEntryKey.length - Ints.BYTES);
+  }
+
+  /**
+   * Returns the index in the chunk row of the entry with the given chunk entry key.
+   */
+  public static int getChunkEntryIndex(byte[] chunkEntryKey) {
+    return Bytes.toInt(chunkEntryKey, chunkEntryKey.length - Ints.BYTES, Ints.BYTES);
+  }
+
   private static boolean columnHasPrefix(KeyValue keyValue, byte[] prefix) {
     return columnHasPrefix(keyValue.getBuffer(), keyValue.getQualifierOffset(), prefix);
   }
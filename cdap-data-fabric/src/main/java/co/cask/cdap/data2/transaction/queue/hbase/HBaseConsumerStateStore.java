@@ -155,6 +155,24 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
     return true;
   }
 
+  /**
+   * Returns the smallest start row among all consumer instances in the given group. All queue entries of the
+   * group before the returned row have been consumed by the group.
+   *
+   * @param groupId consumer group to check
+   * @return the smallest start row or {@code null} if there is no consumer state for the given group
+   */
+  @Nullable
+  byte[] getSmallestStartRow(long groupId) {
+    byte[] smallest = null;
+    for (byte[] startRow : fetchStartRows(groupId, Integer.MAX_VALUE).values()) {
+      if (smallest == null || Bytes.compareTo(startRow, smallest) < 0) {
+        smallest = startRow;
+      }
+    }
+    return smallest;
+  }
+
   /**
    * Updates the start row state of the given consumer.
    */
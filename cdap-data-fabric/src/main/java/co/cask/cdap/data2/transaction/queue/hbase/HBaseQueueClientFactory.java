@@ -15,7 +15,11 @@
  */
 package co.cask.cdap.data2.transaction.queue.hbase;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.ConsumerGroupConfig;
@@ -28,6 +32,7 @@ import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueConstants.QueueType;
+import co.cask.cdap.data2.transaction.queue.QueueEvictor;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
@@ -40,6 +45,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
@@ -47,6 +53,7 @@ import com.google.inject.Inject;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +61,10 @@ import java.io.IOException;
 import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory for creating HBase queue producer and consumer instances.
@@ -65,12 +76,19 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
   // 4M write buffer for HTable
   private static final int DEFAULT_WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
 
+  // How many dequeued entries to commit before triggering eviction.
+  private static final int EVICTION_LIMIT = 1000;
+  private static final int MAX_EVICTION_THREAD_POOL_SIZE = 10;
+  private static final int EVICTION_THREAD_POOL_KEEP_ALIVE_SECONDS = 60;
+
   private final CConfiguration cConf;
   private final Configuration hConf;
   private final HBaseQueueAdmin queueAdmin;
   private final HBaseQueueUtil queueUtil;
   private final HBaseTableUtil hBaseTableUtil;
   private final TransactionExecutorFactory txExecutorFactory;
+  private final ExecutorService evictionExecutor;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   public HBaseQueueClientFactory(CConfiguration cConf, Configuration hConf, HBaseTableUtil hBaseTableUtil,
@@ -81,6 +99,15 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
     this.queueUtil = new HBaseQueueUtilFactory().get();
     this.hBaseTableUtil = hBaseTableUtil;
     this.txExecutorFactory = txExecutorFactory;
+    this.evictionExecutor = createEvictionExecutor();
+    this.metricsCollectionService = new NoOpMetricsCollectionService();
+  }
+
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Optional injection since metrics are only emitted when running inside a program container
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -185,7 +212,11 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
         }
       };
 
-      return new SmartQueueConsumer(queueName, consumerConfig, consumerCreator);
+      // only the first consumer of each group runs eviction; and only if the number of consumers is known (> 0).
+      MetricsContext metricsContext = getMetricsContext(queueName);
+      QueueEvictor evictor = (numGroups <= 0 || consumerConfig.getInstanceId() != 0)
+        ? QueueEvictor.NOOP : createEvictor(queueName, consumerConfig.getGroupId(), metricsContext);
+      return new SmartQueueConsumer(queueName, consumerConfig, consumerCreator, evictor, metricsContext);
     } catch (Exception e) {
       // If there is exception, nothing much can be done here besides propagating
       Throwables.propagateIfPossible(e);
@@ -207,7 +238,20 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
   private HBaseQueueProducer createProducer(HTable hTable, QueueName queueName, QueueMetrics queueMetrics,
                                             HBaseQueueStrategy queueStrategy,
                                             Iterable<? extends ConsumerGroupConfig> groupConfigs) throws IOException {
-    return new HBaseQueueProducer(hTable, queueName, queueMetrics, queueStrategy, groupConfigs);
+    return new HBaseQueueProducer(hTable, queueName, queueMetrics, queueStrategy, groupConfigs,
+                                  cConf.getBoolean(QueueConstants.ConfigKeys.QUEUE_CHUNK_ENABLED,
+                                                   QueueConstants.DEFAULT_QUEUE_CHUNK_ENABLED));
+  }
+
+  /**
+   * Creates a {@link QueueEvictor} that evicts fully consumed entries of the given consumer group from the queue.
+   */
+  @VisibleForTesting
+  HBaseQueueEvictor createEvictor(QueueName queueName, long groupId,
+                                  MetricsContext metricsContext) throws IOException {
+    HBaseQueueAdmin admin = ensureTableExists(queueName);
+    return new HBaseQueueEvictor(hBaseTableUtil, hConf, admin.getDataTableId(queueName, queueAdmin.getType()),
+                                 queueName, groupId, admin, evictionExecutor, metricsContext);
   }
 
   /**
@@ -239,7 +283,26 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
     return consumerTable;
   }
 
-  public int getDistributorBuckets(HTableDescriptor htd) {
+  private MetricsContext getMetricsContext(QueueName queueName) {
+    return metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, queueName.getFirstComponent(),
+      Constants.Metrics.Tag.APP, queueName.getSecondComponent(),
+      Constants.Metrics.Tag.FLOW, queueName.getThirdComponent(),
+      Constants.Metrics.Tag.PRODUCER, queueName.getFourthComponent(),
+      Constants.Metrics.Tag.FLOWLET_QUEUE, queueName.getSimpleName()));
+  }
+
+  private ExecutorService createEvictionExecutor() {
+    // Evictions are rejected instead of run by the caller when all threads are busy, so that eviction never
+    // blocks the consumer. HBaseQueueEvictor skips rejected evictions.
+    return new ThreadPoolExecutor(0, MAX_EVICTION_THREAD_POOL_SIZE,
+                                  EVICTION_THREAD_POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                  new SynchronousQueue<Runnable>(),
+                                  Threads.createDaemonThreadFactory("queue-eviction-%d"),
+                                  new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  public static int getDistributorBuckets(HTableDescriptor htd) {
     String value = htd.getValue(QueueConstants.DISTRIBUTOR_BUCKETS);
     // If the setting is not in the table meta, this is a old table, hence use the value in the cConf
     if (value == null) {
@@ -251,6 +314,7 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
   /**
    * A {@link QueueConsumer} that delegates to a list of consumers sequentially. It also has logic to renew
    * the consumers list when all existing consumers has consumed everything in the current queue barrier.
+   * Eviction of consumed entries is triggered periodically after commits.
    */
   private final class SmartQueueConsumer extends ForwardingTransactionAware implements QueueConsumer {
 
@@ -258,13 +322,21 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
     private final ConsumerConfig consumerConfig;
     private final Callable<? extends Iterable<HBaseQueueConsumer>> consumerCreator;
     private final Deque<HBaseQueueConsumer> consumers;
+    private final QueueEvictor queueEvictor;
+    private final MetricsContext metricsContext;
+    private Transaction transaction;
+    private int dequeueCount;
+    private int commitCount;
 
     private SmartQueueConsumer(QueueName queueName, ConsumerConfig consumerConfig,
-                               Callable<? extends Iterable<HBaseQueueConsumer>> consumerCreator) throws Exception {
+                               Callable<? extends Iterable<HBaseQueueConsumer>> consumerCreator,
+                               QueueEvictor queueEvictor, MetricsContext metricsContext) throws Exception {
       this.queueName = queueName;
       this.consumerConfig = consumerConfig;
       this.consumers = Lists.newLinkedList(consumerCreator.call());
       this.consumerCreator = consumerCreator;
+      this.queueEvictor = queueEvictor;
+      this.metricsContext = metricsContext;
     }
 
     @Override
@@ -289,7 +361,15 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
 
     @Override
     public DequeueResult<byte[]> dequeue(int maxBatchSize) throws IOException {
-      return consumers.peek().dequeue(maxBatchSize);
+      HBaseQueueConsumer consumer = consumers.peek();
+      DequeueResult<byte[]> result = consumer.dequeue(maxBatchSize);
+      dequeueCount += result.size();
+
+      int skippedRows = consumer.getAndResetSkippedRows();
+      if (skippedRows > 0) {
+        metricsContext.increment("queue.skipped", skippedRows);
+      }
+      return result;
     }
 
     @Override
@@ -297,6 +377,11 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
       for (HBaseQueueConsumer consumer : consumers) {
         Closeables.closeQuietly(consumer);
       }
+      if (transaction != null) {
+        // Use whatever last transaction for eviction. The evictor doesn't hold resources that need to be released
+        // on close, hence there is no need to block until eviction is completed.
+        queueEvictor.evict(transaction);
+      }
     }
 
     @Override
@@ -306,11 +391,20 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
         updateConsumers();
       }
       super.startTx(tx);
+      transaction = tx;
+      dequeueCount = 0;
     }
 
     @Override
     public void postTxCommit() {
       super.postTxCommit();
+      commitCount += dequeueCount;
+      if (commitCount > EVICTION_LIMIT) {
+        // Fire and forget eviction.
+        queueEvictor.evict(transaction);
+        commitCount = 0;
+      }
+
       HBaseQueueConsumer consumer = consumers.poll();
       if (!consumer.isClosed()) {
         consumers.add(consumer);
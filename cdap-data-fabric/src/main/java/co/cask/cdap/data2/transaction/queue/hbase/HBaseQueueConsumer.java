@@ -21,6 +21,7 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueConsumer;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueScanner;
 import co.cask.tephra.Transaction;
@@ -47,9 +48,12 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
   private final HBaseConsumerState state;
   private final HBaseConsumerStateStore stateStore;
   private final HBaseQueueStrategy queueStrategy;
+  private final int queueRowPrefixLength;
+  private final boolean chunkEnabled;
   private boolean closed;
   private boolean canConsume;
   private boolean completed;
+  private int skippedRows;
 
   /**
    * Creates a HBaseQueue2Consumer.
@@ -62,12 +66,15 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
   HBaseQueueConsumer(CConfiguration cConf, HTable hTable, QueueName queueName,
                      HBaseConsumerState consumerState, HBaseConsumerStateStore stateStore,
                      HBaseQueueStrategy queueStrategy) {
-    // For HBase, eviction is done at table flush time, hence no QueueEvictor is needed.
+    // For HBase, eviction is done at table flush time and by the HBaseQueueEvictor owned by the client factory.
     super(cConf, consumerState.getConsumerConfig(), queueName, consumerState.getStartRow());
     this.hTable = hTable;
     this.state = consumerState;
     this.stateStore = stateStore;
     this.queueStrategy = queueStrategy;
+    this.queueRowPrefixLength = QueueEntryRow.getQueueRowPrefix(queueName).length;
+    this.chunkEnabled = cConf.getBoolean(QueueConstants.ConfigKeys.QUEUE_CHUNK_ENABLED,
+                                         QueueConstants.DEFAULT_QUEUE_CHUNK_ENABLED);
     this.canConsume = false;
   }
 
@@ -87,10 +94,11 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   protected boolean claimEntry(byte[] rowKey, byte[] claimedStateValue) throws IOException {
-    Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
-    put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, claimedStateValue);
+    byte[] columnName = getStateColumn(rowKey, stateColumnName);
+    Put put = new Put(getActualRowKey(rowKey));
+    put.add(QueueEntryRow.COLUMN_FAMILY, columnName, claimedStateValue);
     return hTable.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY,
-                              stateColumnName, null, put);
+                              columnName, null, put);
   }
 
   @Override
@@ -100,8 +108,8 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     }
     List<Put> puts = Lists.newArrayListWithCapacity(rowKeys.size());
     for (byte[] rowKey : rowKeys) {
-      Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
-      put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, stateContent);
+      Put put = new Put(getActualRowKey(rowKey));
+      put.add(QueueEntryRow.COLUMN_FAMILY, getStateColumn(rowKey, stateColumnName), stateContent);
       puts.add(put);
     }
     hTable.put(puts);
@@ -115,8 +123,8 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     }
     List<Row> ops = Lists.newArrayListWithCapacity(rowKeys.size());
     for (byte[] rowKey : rowKeys) {
-      Delete delete = new Delete(queueStrategy.getActualRowKey(getConfig(), rowKey));
-      delete.deleteColumns(QueueEntryRow.COLUMN_FAMILY, stateColumnName);
+      Delete delete = new Delete(getActualRowKey(rowKey));
+      delete.deleteColumns(QueueEntryRow.COLUMN_FAMILY, getStateColumn(rowKey, stateColumnName));
       ops.add(delete);
     }
     hTable.batch(ops);
@@ -137,6 +145,10 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     Map<String, byte[]> attributes = DequeueScanAttributes.addAttribute(transaction,
                                      DequeueScanAttributes.addAttribute(getConfig(), new HashMap<String, byte[]>()));
     Scan scan = createScan(startRow, getScanStopRow(stopRow), numRows, attributes);
+    if (chunkEnabled) {
+      // Chunk rows have one state column per entry, which cannot be selected individually.
+      scan.addFamily(QueueEntryRow.COLUMN_FAMILY);
+    }
 
     return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
   }
@@ -182,6 +194,20 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     return closed;
   }
 
+  /**
+   * Returns the number of rows scanned but skipped by this consumer since the last call to this method.
+   */
+  int getAndResetSkippedRows() {
+    int rows = skippedRows;
+    skippedRows = 0;
+    return rows;
+  }
+
+  @Override
+  protected void rowsSkipped(int rows) {
+    skippedRows += rows;
+  }
+
   @Override
   protected void updateStartRow(byte[] startRow) {
     if (canConsume && !completed) {
@@ -192,6 +218,25 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   protected abstract Scan createScan(byte[] startRow, byte[] stopRow, int numRows, Map<String, byte[]> attributes);
 
+  /**
+   * Returns the actual HBase row key of the row that stores the state of the entry with the given key.
+   */
+  private byte[] getActualRowKey(byte[] entryKey) {
+    byte[] rowKey = QueueEntryRow.isChunkEntryKey(entryKey, queueRowPrefixLength)
+      ? QueueEntryRow.getChunkRowKey(entryKey) : entryKey;
+    return queueStrategy.getActualRowKey(getConfig(), rowKey);
+  }
+
+  /**
+   * Returns the name of the column that stores the state of the entry with the given key.
+   */
+  private byte[] getStateColumn(byte[] entryKey, byte[] stateColumnName) {
+    if (QueueEntryRow.isChunkEntryKey(entryKey, queueRowPrefixLength)) {
+      return QueueEntryRow.getChunkStateColumn(stateColumnName, QueueEntryRow.getChunkEntryIndex(entryKey));
+    }
+    return stateColumnName;
+  }
+
   private byte[] getScanStopRow(byte[] stopRow) {
     byte[] barrierEndRow = state.getNextBarrier();
     return barrierEndRow == null || Bytes.compareTo(stopRow, barrierEndRow) < 0 ? stopRow : barrierEndRow;
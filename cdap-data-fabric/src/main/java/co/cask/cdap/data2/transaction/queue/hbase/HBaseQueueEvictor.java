@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.hbase;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.queue.ConsumerGroupConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
+import co.cask.cdap.data2.transaction.queue.QueueEvictor;
+import co.cask.cdap.data2.util.TableId;
+import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
+import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
+import co.cask.tephra.Transaction;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An evictor for the sharded HBase queues. It deletes the entries of a consumer group that are before
+ * the start rows of all consumer instances in the group, instead of waiting for the
+ * {@code HBaseQueueRegionObserver} to drop them on the next flush or compaction. Since the sharded queue
+ * writes a separate copy of each entry for each consumer group, the eviction of one group doesn't depend
+ * on the progress of the other groups.
+ *
+ * Queues that are still using the old salted row key are left to the region observer. This is decided on every
+ * eviction with the same check on the consumer state as used when creating the consumers.
+ *
+ * The evictor doesn't hold any HBase resources between evictions. The HTable is opened for each eviction run, so
+ * the number of open tables is bounded by the size of the eviction executor, no matter how many evictors exist.
+ */
+final class HBaseQueueEvictor implements QueueEvictor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseQueueEvictor.class);
+
+  // Number of rows to delete per batch.
+  private static final int DELETE_BATCH_SIZE = 1000;
+
+  private final HBaseTableUtil tableUtil;
+  private final Configuration hConf;
+  private final TableId tableId;
+  private final QueueName queueName;
+  private final long groupId;
+  private final HBaseQueueAdmin queueAdmin;
+  private final Executor executor;
+  private final MetricsContext metricsContext;
+  private final byte[] queueStartRow;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param tableUtil For opening the queue table
+   * @param hConf HBase configuration
+   * @param tableId Id of the sharded queue table
+   * @param queueName Name of the queue
+   * @param groupId Consumer group that this evictor evicts entries for
+   * @param queueAdmin For accessing the consumer states of the queue
+   * @param executor Executor for running the eviction. Evictions rejected by the executor are skipped.
+   * @param metricsContext For emitting number of evicted entries
+   */
+  HBaseQueueEvictor(HBaseTableUtil tableUtil, Configuration hConf, TableId tableId, QueueName queueName,
+                    long groupId, HBaseQueueAdmin queueAdmin, Executor executor, MetricsContext metricsContext) {
+    this.tableUtil = tableUtil;
+    this.hConf = hConf;
+    this.tableId = tableId;
+    this.queueName = queueName;
+    this.groupId = groupId;
+    this.queueAdmin = queueAdmin;
+    this.executor = executor;
+    this.metricsContext = metricsContext;
+    this.queueStartRow = QueueEntryRow.getQueueEntryRowKey(queueName, 0L, 0);
+  }
+
+  @Override
+  public ListenableFuture<Integer> evict(final Transaction transaction) {
+    final SettableFuture<Integer> result = SettableFuture.create();
+    try {
+      executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            result.set(doEvict(transaction));
+          } catch (Throwable t) {
+            result.setException(t);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // All eviction threads are busy. The entries will be evicted by a later eviction.
+      LOG.debug("Skipping eviction of queue {} for consumer group {} since eviction executor is busy",
+                queueName, groupId);
+      result.set(0);
+    }
+    return result;
+  }
+
+  private synchronized int doEvict(Transaction transaction) throws Exception {
+    // Consumer states are read with the given transaction, so that only committed start rows are used.
+    List<QueueBarrier> barriers;
+    byte[] smallestStartRow;
+    try (HBaseConsumerStateStore stateStore = queueAdmin.getConsumerStateStore(queueName)) {
+      stateStore.startTx(transaction);
+      if (stateStore.getState(groupId, 0).getPreviousBarrier() == null) {
+        // Old salted queue, same as how HBaseQueueClientFactory picks the SaltedHBaseQueueStrategy for consumers
+        LOG.trace("Not evicting from salted queue {} for consumer group {}", queueName, groupId);
+        return 0;
+      }
+      barriers = stateStore.getAllBarriers(groupId);
+      smallestStartRow = stateStore.getSmallestStartRow(groupId);
+    }
+
+    if (barriers.isEmpty() || smallestStartRow == null
+      || Bytes.compareTo(smallestStartRow, queueStartRow) <= 0) {
+      LOG.trace("Nothing to evict from queue {} for consumer group {}", queueName, groupId);
+      return 0;
+    }
+
+    // Entries could have been written to the shard of any instance of any group size that the group ever had.
+    int maxGroupSize = 0;
+    ConsumerGroupConfig groupConfig = null;
+    for (QueueBarrier barrier : barriers) {
+      groupConfig = barrier.getGroupConfig();
+      maxGroupSize = Math.max(maxGroupSize, groupConfig.getGroupSize());
+    }
+    // For FIFO, all instances share the same shard
+    int shards = groupConfig.getDequeueStrategy() == DequeueStrategy.FIFO ? 1 : maxGroupSize;
+
+    int evicted = 0;
+    try (HTable hTable = tableUtil.createHTable(hConf, tableId)) {
+      AbstractRowKeyDistributor rowKeyDistributor = ShardedHBaseQueueStrategy.createRowKeyDistributor(
+        HBaseQueueClientFactory.getDistributorBuckets(hTable.getTableDescriptor()));
+      for (int instanceId = 0; instanceId < shards; instanceId++) {
+        for (Pair<byte[], byte[]> interval : ShardedHBaseQueueStrategy.getActualRowKeyIntervals(
+          rowKeyDistributor, groupConfig, instanceId, queueStartRow, smallestStartRow)) {
+          evicted += deleteRows(hTable, interval.getFirst(), interval.getSecond());
+        }
+      }
+    }
+
+    if (evicted > 0) {
+      metricsContext.increment("queue.evicted", evicted);
+      LOG.trace("Evicted {} entries from queue {} for consumer group {}", evicted, queueName, groupId);
+    } else {
+      LOG.trace("Nothing to evict from queue {} for consumer group {}", queueName, groupId);
+    }
+    return evicted;
+  }
+
+  /**
+   * Deletes all rows in the given range in batches.
+   *
+   * @return number of rows deleted
+   */
+  private int deleteRows(HTable hTable, byte[] startRow, byte[] stopRow) throws IOException {
+    Scan scan = new Scan(startRow, stopRow);
+    scan.addFamily(QueueEntryRow.COLUMN_FAMILY);
+    // Only the row keys are needed
+    scan.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+    scan.setCaching(DELETE_BATCH_SIZE);
+    scan.setCacheBlocks(false);
+
+    int deleted = 0;
+    List<Delete> deletes = Lists.newArrayListWithCapacity(DELETE_BATCH_SIZE);
+    ResultScanner scanner = hTable.getScanner(scan);
+    try {
+      for (Result result : scanner) {
+        deletes.add(new Delete(result.getRow()));
+        if (deletes.size() >= DELETE_BATCH_SIZE) {
+          deleted += deletes.size();
+          hTable.delete(deletes);
+          deletes.clear();
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+    if (!deletes.isEmpty()) {
+      deleted += deletes.size();
+      hTable.delete(deletes);
+    }
+    return deleted;
+  }
+}
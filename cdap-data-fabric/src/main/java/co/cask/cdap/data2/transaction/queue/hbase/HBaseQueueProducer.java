@@ -15,10 +15,12 @@
  */
 package co.cask.cdap.data2.transaction.queue.hbase;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerGroupConfig;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueEntryChunk;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.tephra.Transaction;
@@ -26,14 +28,18 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,12 +53,26 @@ public class HBaseQueueProducer extends AbstractQueueProducer implements Closeab
   private final byte[] queueRowPrefix;
   private final HTable hTable;
   private final List<byte[]> rollbackKeys;
+  private final boolean chunkEnabled;
 
   public HBaseQueueProducer(HTable hTable, QueueName queueName,
                             QueueMetrics queueMetrics, HBaseQueueStrategy queueStrategy,
                             Iterable<? extends ConsumerGroupConfig> consumerGroupConfigs) {
+    this(hTable, queueName, queueMetrics, queueStrategy, consumerGroupConfigs, false);
+  }
+
+  /**
+   * Creates a producer.
+   *
+   * @param chunkEnabled if {@code true}, entries enqueued by one transaction that go to the same consumer shard
+   *                     are written to a single chunk row
+   */
+  public HBaseQueueProducer(HTable hTable, QueueName queueName,
+                            QueueMetrics queueMetrics, HBaseQueueStrategy queueStrategy,
+                            Iterable<? extends ConsumerGroupConfig> consumerGroupConfigs, boolean chunkEnabled) {
     super(queueMetrics, queueName);
     this.queueStrategy = queueStrategy;
+    this.chunkEnabled = chunkEnabled;
     // Make sure only one config per consumer group
     this.consumerGroupConfigs = ImmutableList.copyOf(
       Iterables.filter(consumerGroupConfigs, new Predicate<ConsumerGroupConfig>() {
@@ -84,6 +104,10 @@ public class HBaseQueueProducer extends AbstractQueueProducer implements Closeab
    * Persist queue entries into HBase.
    */
   protected int persist(Iterable<QueueEntry> entries, Transaction transaction) throws IOException {
+    if (chunkEnabled) {
+      return persistChunks(entries, transaction);
+    }
+
     int count = 0;
     List<Put> puts = Lists.newArrayList();
     int bytes = 0;
@@ -114,6 +138,56 @@ public class HBaseQueueProducer extends AbstractQueueProducer implements Closeab
     return bytes;
   }
 
+  /**
+   * Persist queue entries into HBase, with all the entries that would be written to rows of the same consumer shard
+   * packed into one chunk row. The chunk row uses the row key of the first entry in it.
+   */
+  private int persistChunks(Iterable<QueueEntry> entries, Transaction transaction) throws IOException {
+    int count = 0;
+    int bytes = 0;
+
+    // From the key without the salt and the counter to the chunk row key and the chunk
+    Map<byte[], byte[]> chunkRowKeys = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    Map<byte[], QueueEntryChunk.Builder> chunks = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+    List<byte[]> rowKeys = Lists.newArrayList();
+    long writePointer = transaction.getWritePointer();
+    for (QueueEntry entry : entries) {
+      rowKeys.clear();
+      queueStrategy.getRowKeys(consumerGroupConfigs, entry, queueRowPrefix, writePointer, count, rowKeys);
+
+      byte[] metaData = QueueEntry.serializeHashKeys(entry.getHashKeys());
+      for (byte[] rowKey : rowKeys) {
+        // The salt is computed from the whole key, hence it is different for each entry.
+        byte[] shardKey = Arrays.copyOfRange(rowKey, SaltedHBaseQueueStrategy.SALT_BYTES, rowKey.length - Ints.BYTES);
+        QueueEntryChunk.Builder chunk = chunks.get(shardKey);
+        if (chunk == null) {
+          chunk = new QueueEntryChunk.Builder();
+          chunks.put(shardKey, chunk);
+          chunkRowKeys.put(shardKey, rowKey);
+        }
+        chunk.add(count, metaData, entry.getData());
+        bytes += entry.getData().length;
+      }
+      count++;
+    }
+
+    List<Put> puts = Lists.newArrayListWithCapacity(chunks.size());
+    for (Map.Entry<byte[], QueueEntryChunk.Builder> chunk : chunks.entrySet()) {
+      byte[] rowKey = chunkRowKeys.get(chunk.getKey());
+      rollbackKeys.add(rowKey);
+
+      // No need to write ts=writePointer, as the row key already contains the writePointer
+      Put put = new Put(rowKey);
+      put.add(QueueEntryRow.COLUMN_FAMILY, QueueEntryRow.CHUNK_COLUMN, chunk.getValue().build());
+      puts.add(put);
+    }
+    hTable.put(puts);
+    hTable.flushCommits();
+
+    return bytes;
+  }
+
   @Override
   protected void doRollback() throws Exception {
     // If nothing to rollback, simply return
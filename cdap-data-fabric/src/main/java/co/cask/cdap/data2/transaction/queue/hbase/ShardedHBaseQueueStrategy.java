@@ -32,6 +32,7 @@ import com.google.common.base.Function;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.Threads;
 
 import java.io.Closeable;
@@ -90,8 +91,7 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
   public ShardedHBaseQueueStrategy(HBaseTableUtil tableUtil, int distributorBuckets) {
     this.tableUtil = tableUtil;
     this.distributorBuckets = distributorBuckets;
-    this.rowKeyDistributor = new RowKeyDistributorByHashPrefix(
-      new RowKeyDistributorByHashPrefix.OneByteSimpleHash(distributorBuckets));
+    this.rowKeyDistributor = createRowKeyDistributor(distributorBuckets);
 
     // Using the "direct handoff" approach, new threads will only be created
     // if it is necessary and will grow unbounded. This could be bad but in DistributedScanner
@@ -169,12 +169,30 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
     }
   }
 
+  /**
+   * Returns the actual row key intervals in all distributor buckets that cover the queue entries between the given
+   * start and stop row in the shard of the given consumer instance.
+   */
+  static Pair<byte[], byte[]>[] getActualRowKeyIntervals(AbstractRowKeyDistributor rowKeyDistributor,
+                                                         ConsumerGroupConfig groupConfig, int instanceId,
+                                                         byte[] startRow, byte[] stopRow) {
+    return rowKeyDistributor.getDistributedIntervals(getShardedKey(groupConfig, instanceId, startRow),
+                                                     getShardedKey(groupConfig, instanceId, stopRow));
+  }
+
+  /**
+   * Creates the {@link AbstractRowKeyDistributor} used by the sharded queue table with the given number of buckets.
+   */
+  static AbstractRowKeyDistributor createRowKeyDistributor(int distributorBuckets) {
+    return new RowKeyDistributorByHashPrefix(new RowKeyDistributorByHashPrefix.OneByteSimpleHash(distributorBuckets));
+  }
+
   @Override
   public void close() throws IOException {
     scansExecutor.shutdownNow();
   }
 
-  private byte[] getShardedKey(ConsumerGroupConfig groupConfig, int instanceId,
+  private static byte[] getShardedKey(ConsumerGroupConfig groupConfig, int instanceId,
                                byte[] originalRowKey) {
     // Need to subtract the SALT_BYTES as the row key distributor will prefix the key with salted bytes
     byte[] result = new byte[PREFIX_BYTES - SaltedHBaseQueueStrategy.SALT_BYTES + originalRowKey.length];
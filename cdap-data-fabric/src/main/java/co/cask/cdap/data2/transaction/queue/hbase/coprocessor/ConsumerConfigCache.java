@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2015 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -49,12 +50,19 @@ import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Provides a RegionServer shared cache for all instances of {@code HBaseQueueRegionObserver} of the recent
- * queue consumer configuration.
+ * queue consumer configuration. There is one cache per queue config table, and all caches are refreshed by
+ * a single thread. The statistics of each cache are exported through JMX.
+ *
+ * The queue consumer configuration is read with the visibility of the latest transaction snapshot, hence
+ * the cache is only reloaded when a new transaction snapshot is available.
  */
-public class ConsumerConfigCache {
+public class ConsumerConfigCache implements ConsumerConfigCacheMXBean {
   private static final Logger LOG = LoggerFactory.getLogger(ConsumerConfigCache.class);
 
   // Number of bytes for consumer state column (groupId + instanceId)
@@ -64,14 +72,22 @@ public class ConsumerConfigCache {
 
   private static final ConcurrentMap<TableName, ConsumerConfigCache> INSTANCES = new ConcurrentHashMap<>();
 
+  // Single thread for refreshing all instances
+  private static Thread refreshThread;
+
   private final TableName queueConfigTableName;
   private final CConfigurationReader cConfReader;
   private final Supplier<TransactionVisibilityState> transactionSnapshotSupplier;
   private final InputSupplier<HTableInterface> hTableSupplier;
   private final TransactionCodec txCodec;
 
-  private Thread refreshThread;
-  private long lastUpdated;
+  private volatile boolean alive;
+  private long lastChecked;
+  private volatile long lastUpdated;
+  private volatile long lastUpdateDuration;
+  private volatile long snapshotTimestamp;
+  private volatile long updateCount;
+  private volatile long skippedUpdateCount;
   private volatile Map<byte[], QueueConsumerConfig> configCache = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
   private long configCacheUpdateFrequency = QueueConstants.DEFAULT_QUEUE_CONFIG_UPDATE_FREQUENCY;
   private CConfiguration conf;
@@ -97,11 +113,13 @@ public class ConsumerConfigCache {
   }
 
   private void init() {
+    alive = true;
+    registerMBean();
     startRefreshThread();
   }
 
   public boolean isAlive() {
-    return refreshThread.isAlive();
+    return alive && isRefreshThreadAlive();
   }
 
   @Nullable
@@ -109,6 +127,42 @@ public class ConsumerConfigCache {
     return configCache.get(queueName);
   }
 
+  @Override
+  public String getTableName() {
+    return queueConfigTableName.getNameAsString();
+  }
+
+  @Override
+  public int getQueueCount() {
+    return configCache.size();
+  }
+
+  @Override
+  public long getLastUpdateTime() {
+    return lastUpdated;
+  }
+
+  @Override
+  public long getLastUpdateDuration() {
+    return lastUpdateDuration;
+  }
+
+  @Override
+  public long getSnapshotAge() {
+    long timestamp = snapshotTimestamp;
+    return timestamp <= 0 ? -1L : System.currentTimeMillis() - timestamp;
+  }
+
+  @Override
+  public long getUpdateCount() {
+    return updateCount;
+  }
+
+  @Override
+  public long getSkippedUpdateCount() {
+    return skippedUpdateCount;
+  }
+
   private void updateConfig() {
     long now = System.currentTimeMillis();
     if (this.conf == null || now > (lastConfigUpdate + CONFIG_UPDATE_FREQUENCY)) {
@@ -187,6 +241,9 @@ public class ConsumerConfigCache {
       long elapsed = System.currentTimeMillis() - now;
       this.configCache = newCache;
       this.lastUpdated = now;
+      this.lastUpdateDuration = elapsed;
+      this.snapshotTimestamp = txSnapshot.getTimestamp();
+      this.updateCount++;
       if (LOG.isDebugEnabled()) {
         LOG.debug("Updated consumer config cache with {} entries, took {} msec", configCnt, elapsed);
       }
@@ -199,24 +256,108 @@ public class ConsumerConfigCache {
     }
   }
 
-  private void startRefreshThread() {
+  /**
+   * Reloads the cache if the update interval has passed and there is a new transaction snapshot. Since the consumer
+   * configuration is read with the visibility of the transaction snapshot, it cannot change until the next snapshot.
+   * This is only called from the refresh thread.
+   *
+   * @return {@code false} if the config table no longer exists and this cache should be discarded
+   */
+  private synchronized boolean refresh() {
+    updateConfig();
+    long now = System.currentTimeMillis();
+    if (now <= (lastChecked + configCacheUpdateFrequency)) {
+      return true;
+    }
+    lastChecked = now;
+    return refreshIfSnapshotChanged();
+  }
+
+  /**
+   * Reloads the cache if there is a new transaction snapshot since the last reload.
+   *
+   * @return {@code false} if the config table no longer exists and this cache should be discarded
+   */
+  @VisibleForTesting
+  synchronized boolean refreshIfSnapshotChanged() {
+    TransactionVisibilityState txSnapshot = transactionSnapshotSupplier.get();
+    if (txSnapshot != null && txSnapshot.getTimestamp() == snapshotTimestamp) {
+      skippedUpdateCount++;
+      return true;
+    }
+    try {
+      updateCache();
+    } catch (TableNotFoundException e) {
+      // This is expected when the namespace goes away since there is one config table per namespace
+      // If the table is not found due to other situation, the region observer already
+      // has logic to get a new one through the getInstance method
+      LOG.warn("Queue config table not found: {}", queueConfigTableName, e);
+      return false;
+    } catch (IOException e) {
+      LOG.warn("Error updating queue consumer config cache", e);
+    }
+    return true;
+  }
+
+  /**
+   * Removes this cache from the shared instances.
+   */
+  @VisibleForTesting
+  void discard() {
+    alive = false;
+    INSTANCES.remove(queueConfigTableName, this);
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = getObjectName();
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      LOG.warn("Failed to unregister MBean for {}", queueConfigTableName, e);
+    }
+    LOG.info("Config cache update for {} terminated.", queueConfigTableName);
+  }
+
+  @VisibleForTesting
+  void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = getObjectName();
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException e) {
+      // Failure in registering the MBean shouldn't affect the cache
+      LOG.warn("Failed to register MBean for {}", queueConfigTableName, e);
+    }
+  }
+
+  @VisibleForTesting
+  ObjectName getObjectName() throws JMException {
+    return new ObjectName("co.cask.cdap:type=ConsumerConfigCache,name=" +
+                            ObjectName.quote(queueConfigTableName.getNameAsString()));
+  }
+
+  private static synchronized boolean isRefreshThreadAlive() {
+    return refreshThread != null && refreshThread.isAlive();
+  }
+
+  private static synchronized void startRefreshThread() {
+    if (isRefreshThreadAlive()) {
+      return;
+    }
     refreshThread = new Thread("queue-cache-refresh") {
       @Override
       public void run() {
         while (!isInterrupted()) {
-          updateConfig();
-          long now = System.currentTimeMillis();
-          if (now > (lastUpdated + configCacheUpdateFrequency)) {
+          for (ConsumerConfigCache cache : INSTANCES.values()) {
+            // A failure in refreshing one cache shouldn't stop the refresh of the other caches
             try {
-              updateCache();
-            } catch (TableNotFoundException e) {
-              // This is expected when the namespace goes away since there is one config table per namespace
-              // If the table is not found due to other situation, the region observer already
-              // has logic to get a new one through the getInstance method
-              LOG.warn("Queue config table not found: {}", queueConfigTableName, e);
-              break;
-            } catch (IOException e) {
-              LOG.warn("Error updating queue consumer config cache", e);
+              if (!cache.refresh()) {
+                cache.discard();
+              }
+            } catch (Throwable t) {
+              LOG.error("Failed to refresh consumer config cache for {}", cache.queueConfigTableName, t);
             }
           }
           try {
@@ -227,8 +368,10 @@ public class ConsumerConfigCache {
             break;
           }
         }
-        LOG.info("Config cache update for {} terminated.", queueConfigTableName);
-        INSTANCES.remove(queueConfigTableName, this);
+        LOG.info("Config cache update terminated.");
+        for (ConsumerConfigCache cache : INSTANCES.values()) {
+          cache.discard();
+        }
       }
     };
     refreshThread.setDaemon(true);
@@ -265,6 +408,8 @@ public class ConsumerConfigCache {
         cache = INSTANCES.get(tableName);
       }
     }
+    // Restart the refresh thread in case it died, otherwise the existing caches would never be refreshed again
+    startRefreshThread();
     return cache;
   }
 }
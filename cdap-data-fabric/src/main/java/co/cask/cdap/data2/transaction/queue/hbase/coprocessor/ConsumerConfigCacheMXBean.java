@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.hbase.coprocessor;
+
+/**
+ * JMX interface for exposing statistics of a {@link ConsumerConfigCache}.
+ */
+public interface ConsumerConfigCacheMXBean {
+
+  /**
+   * Returns the name of the queue config table that the cache is loaded from.
+   */
+  String getTableName();
+
+  /**
+   * Returns the number of queues in the cache.
+   */
+  int getQueueCount();
+
+  /**
+   * Returns the time in milliseconds when the cache was last reloaded.
+   */
+  long getLastUpdateTime();
+
+  /**
+   * Returns the time in milliseconds spent in the last reload of the cache.
+   */
+  long getLastUpdateDuration();
+
+  /**
+   * Returns the age in milliseconds of the transaction snapshot used by the last reload, or {@code -1} if the
+   * cache was never loaded.
+   */
+  long getSnapshotAge();
+
+  /**
+   * Returns the number of times the cache was reloaded.
+   */
+  long getUpdateCount();
+
+  /**
+   * Returns the number of times reloading was skipped because there was no new transaction snapshot.
+   */
+  long getSkippedUpdateCount();
+}
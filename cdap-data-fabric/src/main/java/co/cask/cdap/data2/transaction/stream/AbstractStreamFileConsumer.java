@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.stream;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.file.ReadFilters;
@@ -32,15 +33,19 @@ import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.proto.Id;
 import co.cask.tephra.Transaction;
 import co.cask.tephra.TxConstants;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.common.io.ByteArrayDataOutput;
@@ -50,8 +55,11 @@ import com.google.common.primitives.Longs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
@@ -94,6 +102,27 @@ import javax.annotation.concurrent.NotThreadSafe;
  *   state = ConsumerEntryState.getState(), either CLAIMED or PROCESSED
  * }</pre>
  *
+ * <p>
+ * Consumers that don't need to claim entries, which are all consumers except FIFO consumers in a group of more than
+ * one instance, don't write a state row per event. Instead, on every commit, the offsets of the last processed
+ * event of each stream file prefix are written as a checkpoint to one of the two checkpoint rows of the consumer
+ * instance alternately. On startup, the checkpoint with the latest visible write pointer is used for skipping
+ * events that were processed after the last persisted consumer state.
+ *
+ * <pre>{@code
+ *   checkpoint_row_key = <group_id> <marker> <group_size> <instance_id> <slot>
+ *   marker = 8 bytes of -1, which is never a valid partition start time
+ *   group_size = 4 bytes size of the consumer group
+ *   instance_id = 4 bytes instance id of the consumer
+ *   slot = 1 byte, either 0 or 1
+ *   checkpoint_value = <write_pointer> <group_size> <stream_file_offset>*
+ * }</pre>
+ *
+ * Checkpoints written with other group sizes are kept. Since the instance that an event goes to only depends on the
+ * event and the group size, an event is processed if it is not after the checkpoint of the instance that it went to
+ * with any of the group sizes. This prevents events from being consumed again after the group size changed, when
+ * the consumer states of all instances are reset to the smallest offsets.
+ *
  */
 @NotThreadSafe
 public abstract class AbstractStreamFileConsumer implements StreamConsumer {
@@ -106,6 +135,10 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
   // Persist state at most once per second.
   private static final long STATE_PERSIST_MIN_INTERVAL = TimeUnit.SECONDS.toNanos(1);
 
+  // Marker in place of the partition start time in the checkpoint row key
+  private static final long CHECKPOINT_ROW_MARKER = -1L;
+  private static final int CHECKPOINT_ROW_LENGTH = Longs.BYTES * 2 + Ints.BYTES * 2 + 1;
+
   private static final DequeueResult<StreamEvent> EMPTY_RESULT = DequeueResult.Empty.result();
   private static final Function<PollStreamEvent, byte[]> EVENT_ROW_KEY = new Function<PollStreamEvent, byte[]>() {
     @Override
@@ -143,9 +176,13 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
   private final Id.Stream streamName;
   private final StreamConfig streamConfig;
   private final ConsumerConfig consumerConfig;
+  private final boolean sharded;
+  private final boolean checkpointed;
   private final StreamConsumerStateStore consumerStateStore;
   private final FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader;
   private final ReadFilter readFilter;
+  // Filter for the events of the stream files that are not sharded, if they are read together with sharded files
+  private final ReadFilter unshardedFileFilter;
 
   // Map from row key prefix (row key without last eight bytes offset) to a sorted map of row key to state value
   // The rows are only needed for entries that are already in the state table when this consumer start.
@@ -154,6 +191,18 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
 
   private final StreamConsumerState consumerState;
   private final List<StreamEventOffset> eventCache;
+
+  // Map from file name prefix to the offset of the last processed event in the last committed checkpoint
+  private final Map<String, StreamFileOffset> checkpointOffsets;
+  // Event files that could have state rows written before checkpoint was used, keyed by the file location
+  private final Set<URI> stateRowFiles;
+  // Checkpoints written with other group sizes, indexed by group size and instance id
+  private final Table<Integer, Integer, Map<String, StreamFileOffset>> otherCheckpoints;
+  private Map<String, StreamFileOffset> pendingCheckpointOffsets;
+  private long stateUpdates;
+  private boolean checkpointLoaded;
+  private int checkpointSlot;
+
   private Transaction transaction;
   private List<PollStreamEvent> polledEvents;
   private long nextPersistStateTime;
@@ -184,14 +233,35 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     this.streamName = streamConfig.getStreamId();
     this.streamConfig = streamConfig;
     this.consumerConfig = consumerConfig;
+    // Stream files that are not sharded are partitioned across the consumer instances by the event offset, while
+    // files of a shard are only read by the instance the shard is assigned to.
+    // After the number of shards changed, the reader could read both kinds of files.
+    boolean hasShardFiles = false;
+    boolean hasUnshardedFiles = false;
+    for (StreamFileOffset offset : reader.getPosition()) {
+      if (StreamUtils.getShardId(offset.getNamePrefix()) < 0) {
+        hasUnshardedFiles = true;
+      } else {
+        hasShardFiles = true;
+      }
+    }
+    this.sharded = !hasUnshardedFiles && consumerConfig.getGroupSize() > 1
+      && consumerConfig.getDequeueStrategy() != DequeueStrategy.FIFO;
+    this.checkpointed = cConf.getBoolean(Constants.Stream.CONSUMER_OFFSET_CHECKPOINT, true) && !isClaimRequired();
     this.consumerStateStore = consumerStateStore;
     this.reader = reader;
-    this.readFilter = createReadFilter(consumerConfig, extraFilter);
+    ReadFilter partitionFilter = createBaseReadFilter(consumerConfig);
+    boolean mixedFiles = hasShardFiles && hasUnshardedFiles;
+    this.readFilter = createReadFilter(mixedFiles ? ReadFilter.ALWAYS_ACCEPT : partitionFilter, extraFilter);
+    this.unshardedFileFilter = mixedFiles ? partitionFilter : null;
 
     this.entryStates = Maps.newTreeMap(ROW_PREFIX_COMPARATOR);
     this.entryStatesScanCompleted = Sets.newTreeSet(ROW_PREFIX_COMPARATOR);
 
     this.eventCache = Lists.newArrayList();
+    this.checkpointOffsets = Maps.newHashMap();
+    this.stateRowFiles = Sets.newHashSet();
+    this.otherCheckpoints = HashBasedTable.create();
     this.consumerState = beginConsumerState;
     this.lastPersistedState = new StreamConsumerState(beginConsumerState);
     this.stateColumnName = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX, Bytes.toBytes(consumerConfig.getGroupId()));
@@ -225,10 +295,15 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
 
     // Only need the CLAIMED state for FIFO with group size > 1.
     byte[] fifoStateContent = null;
-    if (consumerConfig.getDequeueStrategy() == DequeueStrategy.FIFO && consumerConfig.getGroupSize() > 1) {
+    if (isClaimRequired()) {
       fifoStateContent = encodeStateColumn(ConsumerEntryState.CLAIMED);
     }
 
+    // The checkpoint can only be loaded with a transaction for checking its visibility
+    if (checkpointed && !checkpointLoaded) {
+      loadCheckpoint();
+    }
+
     // Try to read from cache if any
     if (!eventCache.isEmpty()) {
       getEvents(eventCache, polledEvents, maxEvents, fifoStateContent);
@@ -242,7 +317,8 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     // just a rough estimate for better read throughput.
     // Also, this maxRead is used throughout the read loop below, hence some extra events might be read and cached
     // for next poll call.
-    int maxRead = maxEvents * consumerConfig.getGroupSize();
+    // If the stream files are sharded, the reader only reads events of this consumer instance.
+    int maxRead = sharded ? maxEvents : maxEvents * consumerConfig.getGroupSize();
 
     long timeoutNano = timeoutUnit.toNanos(timeout);
     Stopwatch stopwatch = new Stopwatch();
@@ -256,6 +332,10 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     // Read from the underlying file reader
     while (polledEvents.size() < maxEvents) {
       int readCount = reader.read(eventCache, maxRead, timeoutNano, TimeUnit.NANOSECONDS, readFilter);
+      if (readCount < 0) {
+        // The reader has no file to read from, which happens if no stream file shard is assigned to this instance.
+        break;
+      }
       long elapsedNano = stopwatch.elapsedTime(TimeUnit.NANOSECONDS);
       timeoutNano -= elapsedNano;
 
@@ -336,9 +416,23 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
       return true;
     }
 
-    // For each polled events, set the state column to PROCESSED
-    updateState(Iterables.transform(polledEvents, EVENT_ROW_KEY), polledEvents.size(),
-                encodeStateColumn(ConsumerEntryState.PROCESSED));
+    if (checkpointed) {
+      // Write the offsets of the last polled events as the checkpoint, instead of a state row per event.
+      // Events of the same file prefix are always polled in order.
+      pendingCheckpointOffsets = Maps.newHashMap(checkpointOffsets);
+      for (PollStreamEvent event : polledEvents) {
+        StreamFileOffset offset = event.getStreamEventOffset().getOffset();
+        pendingCheckpointOffsets.put(offset.getNamePrefix(), offset);
+      }
+      updateState(ImmutableList.of(getCheckpointRow(checkpointSlot)), 1,
+                  encodeCheckpoint(pendingCheckpointOffsets.values()));
+      stateUpdates++;
+    } else {
+      // For each polled events, set the state column to PROCESSED
+      updateState(Iterables.transform(polledEvents, EVENT_ROW_KEY), polledEvents.size(),
+                  encodeStateColumn(ConsumerEntryState.PROCESSED));
+      stateUpdates += polledEvents.size();
+    }
 
     committed = true;
     return true;
@@ -352,6 +446,16 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
       persistConsumerState();
     }
 
+    if (checkpointed) {
+      if (committed) {
+        // The checkpoint is committed. The next one is written to the other slot.
+        checkpointOffsets.clear();
+        checkpointOffsets.putAll(pendingCheckpointOffsets);
+        checkpointSlot = 1 - checkpointSlot;
+      }
+      return;
+    }
+
     // Cleanup the entryStates map to free up memory
     for (PollStreamEvent event : polledEvents) {
       SortedMap<byte[], byte[]> states = entryStates.get(event.getStateRow());
@@ -384,7 +488,10 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     }
 
     // If committed, also need to rollback backing store.
-    if (committed) {
+    if (committed && checkpointed) {
+      // The other slot still has the last committed checkpoint
+      undoState(ImmutableList.of(getCheckpointRow(checkpointSlot)), 1);
+    } else if (committed) {
       // Special case for FIFO.
       // If group size > 1, need to update the rows states to CLAIMED state with this instance Id.
       // The transaction pointer used for the entry doesn't matter.
@@ -411,9 +518,7 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
       .toString();
   }
 
-  private ReadFilter createReadFilter(ConsumerConfig consumerConfig, @Nullable ReadFilter extraFilter) {
-    ReadFilter baseFilter = createBaseReadFilter(consumerConfig);
-
+  private ReadFilter createReadFilter(ReadFilter baseFilter, @Nullable ReadFilter extraFilter) {
     if (extraFilter != null) {
       return ReadFilters.and(extraFilter, baseFilter);
     } else {
@@ -425,7 +530,8 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     final int groupSize = consumerConfig.getGroupSize();
     final DequeueStrategy strategy = consumerConfig.getDequeueStrategy();
 
-    if (groupSize == 1 || strategy == DequeueStrategy.FIFO) {
+    // If the stream files are sharded, the reader only reads files of the shards assigned to this instance.
+    if (groupSize == 1 || strategy == DequeueStrategy.FIFO || sharded) {
       return ReadFilter.ALWAYS_ACCEPT;
     }
 
@@ -439,12 +545,32 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     return new ReadFilter() {
       @Override
       public boolean acceptOffset(long offset) {
-        int hashValue = Math.abs(strategy == DequeueStrategy.HASH ? 0 : ROUND_ROBIN_HASHER.hashLong(offset).hashCode());
-        return instanceId == (hashValue % groupSize);
+        return instanceId == (getPartitionHash(strategy, offset) % groupSize);
       }
     };
   }
 
+  /**
+   * Returns the hash value for partitioning an event of a stream file that is not sharded across consumer instances.
+   */
+  private static int getPartitionHash(DequeueStrategy strategy, long offset) {
+    return Math.abs(strategy == DequeueStrategy.HASH ? 0 : ROUND_ROBIN_HASHER.hashLong(offset).hashCode());
+  }
+
+  /**
+   * Returns the id of the instance that the event at the given offset goes to in a consumer group of the given size.
+   */
+  private int getInstanceId(StreamFileOffset offset, int groupSize) {
+    if (groupSize <= 1) {
+      return 0;
+    }
+    int shard = StreamUtils.getShardId(offset.getNamePrefix());
+    if (shard >= 0) {
+      return shard % groupSize;
+    }
+    return getPartitionHash(consumerConfig.getDequeueStrategy(), offset.getOffset()) % groupSize;
+  }
+
   private int getEvents(List<? extends StreamEventOffset> source,
                          List<? super PollStreamEvent> result,
                          int maxEvents, byte[] stateContent) throws IOException {
@@ -452,10 +578,21 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     int eventsClaimed = 0;
     while (result.size() < maxEvents && iterator.hasNext()) {
       StreamEventOffset event = iterator.next();
-      byte[] stateRow = claimEntry(event.getOffset(), stateContent);
-      if (stateRow == null) {
+      if (unshardedFileFilter != null && StreamUtils.getShardId(event.getOffset().getNamePrefix()) < 0
+        && !unshardedFileFilter.acceptOffset(event.getOffset().getOffset())) {
         continue;
       }
+      byte[] stateRow = null;
+      if (checkpointed) {
+        if (isProcessed(event.getOffset())) {
+          continue;
+        }
+      } else {
+        stateRow = claimEntry(event.getOffset(), stateContent);
+        if (stateRow == null) {
+          continue;
+        }
+      }
       result.add(new PollStreamEvent(event, stateRow));
       eventsClaimed++;
     }
@@ -473,6 +610,163 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     }
   }
 
+  /**
+   * Returns {@code true} if events have to be claimed before they can be consumed.
+   */
+  private boolean isClaimRequired() {
+    return consumerConfig.getDequeueStrategy() == DequeueStrategy.FIFO && consumerConfig.getGroupSize() > 1;
+  }
+
+  /**
+   * Returns the row key of the checkpoint row in the given slot.
+   */
+  private byte[] getCheckpointRow(int slot) {
+    byte[] row = new byte[CHECKPOINT_ROW_LENGTH];
+    Bytes.putLong(row, 0, consumerConfig.getGroupId());
+    Bytes.putLong(row, Longs.BYTES, CHECKPOINT_ROW_MARKER);
+    Bytes.putInt(row, Longs.BYTES * 2, consumerConfig.getGroupSize());
+    Bytes.putInt(row, Longs.BYTES * 2 + Ints.BYTES, consumerConfig.getInstanceId());
+    row[row.length - 1] = (byte) slot;
+    return row;
+  }
+
+  /**
+   * Returns the row key prefix of the checkpoint rows of all instances of the group.
+   */
+  private byte[] getCheckpointRowPrefix() {
+    return Bytes.add(Bytes.toBytes(consumerConfig.getGroupId()), Bytes.toBytes(CHECKPOINT_ROW_MARKER));
+  }
+
+  /**
+   * Encodes the checkpoint value with the current transaction and the given offsets.
+   */
+  private byte[] encodeCheckpoint(Collection<StreamFileOffset> offsets) throws IOException {
+    ByteArrayDataOutput out = ByteStreams.newDataOutput(Longs.BYTES + Ints.BYTES + offsets.size() * 50);
+    out.writeLong(transaction.getWritePointer());
+    out.writeInt(consumerConfig.getGroupSize());
+    for (StreamFileOffset offset : offsets) {
+      StreamUtils.encodeOffset(out, offset);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Loads the latest committed checkpoint of this consumer instance, as well as the ones of other instances that
+   * could have consumed events that go to this instance.
+   */
+  private void loadCheckpoint() throws IOException {
+    int groupSize = consumerConfig.getGroupSize();
+    int instanceId = consumerConfig.getInstanceId();
+
+    // Latest committed checkpoint write pointer, indexed by group size and instance id
+    Table<Integer, Integer, Long> writePointers = HashBasedTable.create();
+    byte[] startRow = getCheckpointRowPrefix();
+    try (StateScanner scanner = scanStates(startRow, Bytes.stopKeyForPrefix(startRow))) {
+      while (scanner.nextStateRow()) {
+        byte[] row = scanner.getRow();
+        byte[] value = scanner.getState();
+        if (row.length != CHECKPOINT_ROW_LENGTH || value == null || value.length < Longs.BYTES + Ints.BYTES) {
+          continue;
+        }
+        int rowGroupSize = Bytes.toInt(row, Longs.BYTES * 2);
+        int rowInstanceId = Bytes.toInt(row, Longs.BYTES * 2 + Ints.BYTES);
+        // With the same group size, other instances never consume the events of this instance
+        if (rowGroupSize == groupSize && rowInstanceId != instanceId) {
+          continue;
+        }
+        // Only use the checkpoint that is committed
+        long writePointer = Bytes.toLong(value, 0);
+        Long latestWritePointer = writePointers.get(rowGroupSize, rowInstanceId);
+        if ((latestWritePointer != null && writePointer <= latestWritePointer)
+          || !transaction.isVisible(writePointer)) {
+          continue;
+        }
+        writePointers.put(rowGroupSize, rowInstanceId, writePointer);
+
+        Map<String, StreamFileOffset> offsets = Maps.newHashMap();
+        DataInputStream input = new DataInputStream(
+          new ByteArrayInputStream(value, Longs.BYTES + Ints.BYTES, value.length - Longs.BYTES - Ints.BYTES));
+        while (input.available() > 0) {
+          StreamFileOffset offset = StreamUtils.decodeOffset(streamConfig, input);
+          offsets.put(offset.getNamePrefix(), offset);
+        }
+
+        if (rowGroupSize == groupSize) {
+          checkpointOffsets.clear();
+          checkpointOffsets.putAll(offsets);
+          // Next checkpoint goes to the other slot
+          checkpointSlot = 1 - row[row.length - 1];
+        } else {
+          otherCheckpoints.put(rowGroupSize, rowInstanceId, offsets);
+        }
+      }
+    }
+
+    if (!writePointers.contains(groupSize, instanceId)) {
+      // Without a checkpoint, the events in the files to begin with could have state rows written, e.g. by
+      // a consumer that didn't use checkpoint.
+      for (StreamFileOffset offset : consumerState.getState()) {
+        stateRowFiles.add(offset.getEventLocation().toURI());
+      }
+    }
+    checkpointLoaded = true;
+    LOG.debug("Loaded checkpoint for consumer {}: {}, checkpoints of other group sizes: {}",
+              consumerConfig, checkpointOffsets, otherCheckpoints);
+  }
+
+  /**
+   * Returns {@code true} if the event at the given offset is already processed according to the checkpoint or to
+   * the state rows.
+   */
+  private boolean isProcessed(StreamFileOffset offset) throws IOException {
+    if (isCheckpointed(checkpointOffsets, offset)) {
+      return true;
+    }
+
+    // The event could have been consumed by the instance it went to before the group size changed
+    for (int groupSize : otherCheckpoints.rowKeySet()) {
+      Map<String, StreamFileOffset> offsets = otherCheckpoints.get(groupSize, getInstanceId(offset, groupSize));
+      if (offsets != null && isCheckpointed(offsets, offset)) {
+        return true;
+      }
+    }
+
+    if (stateRowFiles.isEmpty() || !stateRowFiles.contains(offset.getEventLocation().toURI())) {
+      return false;
+    }
+    ByteArrayDataOutput out = ByteStreams.newDataOutput(50);
+    out.writeLong(consumerConfig.getGroupId());
+    StreamUtils.encodeOffset(out, offset);
+    byte[] row = out.toByteArray();
+
+    // A processed entry is in the rowStates with null value
+    SortedMap<byte[], byte[]> rowStates = getInitRowStates(row);
+    return rowStates.containsKey(row) && rowStates.get(row) == null;
+  }
+
+  /**
+   * Returns {@code true} if the given offset is not after the offset of the same file prefix in the given checkpoint.
+   */
+  private boolean isCheckpointed(Map<String, StreamFileOffset> checkpoint, StreamFileOffset offset) {
+    StreamFileOffset checkpointOffset = checkpoint.get(offset.getNamePrefix());
+    if (checkpointOffset == null || checkpointOffset.getGeneration() != offset.getGeneration()) {
+      return false;
+    }
+    return ComparisonChain.start()
+      .compare(offset.getPartitionStart(), checkpointOffset.getPartitionStart())
+      .compare(offset.getSequenceId(), checkpointOffset.getSequenceId())
+      .compare(offset.getOffset(), checkpointOffset.getOffset())
+      .result() <= 0;
+  }
+
+  /**
+   * Returns the number of state rows, including checkpoint rows, written by this consumer.
+   */
+  @VisibleForTesting
+  long getStateUpdates() {
+    return stateUpdates;
+  }
+
   /**
    * Encodes the value for the state column with the current transaction and consumer information.
    *
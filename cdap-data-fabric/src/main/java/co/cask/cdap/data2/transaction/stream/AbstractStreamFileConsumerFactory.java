@@ -35,14 +35,17 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -89,16 +92,11 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
    */
   protected abstract void dropTable(TableId tableId) throws IOException;
 
-  protected void getFileOffsets(Location partitionLocation,
+  protected void getFileOffsets(Location partitionLocation, ConsumerConfig consumerConfig,
                                 Collection<? super StreamFileOffset> fileOffsets,
                                 int generation) throws IOException {
-    // TODO: Support dynamic writer instances discovery
-    // Current assume it won't change and is based on cConf
-    int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
-    String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
-    for (int i = 0; i < instances; i++) {
-      // The actual file prefix is formed by file prefix in cConf + writer instance id
-      String streamFilePrefix = filePrefix + '.' + i;
+    // Only the files of the shards assigned to the consumer are read
+    for (String streamFilePrefix : StreamUtils.getFilePrefixes(cConf, consumerConfig)) {
       Location eventLocation = StreamUtils.createStreamLocation(partitionLocation, streamFilePrefix,
                                                                 0, StreamFileType.EVENT);
       fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
@@ -116,7 +114,7 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     StreamConsumerState consumerState = stateStore.get(consumerConfig.getGroupId(), consumerConfig.getInstanceId());
 
     return create(tableId, streamConfig, consumerConfig,
-                  stateStore, consumerState, createReader(streamConfig, consumerState),
+                  stateStore, consumerState, createReader(streamConfig, consumerConfig, consumerState),
                   new TTLReadFilter(streamConfig.getTTL()));
   }
 
@@ -144,6 +142,7 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
   }
 
   private MultiLiveStreamFileReader createReader(final StreamConfig streamConfig,
+                                                 final ConsumerConfig consumerConfig,
                                                  StreamConsumerState consumerState) throws IOException {
     Location streamLocation = streamConfig.getLocation();
     Preconditions.checkNotNull(streamLocation, "Stream location is null for %s", streamConfig.getStreamId());
@@ -153,6 +152,11 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     streamLocation = StreamUtils.createGenerationLocation(streamLocation, generation);
 
     final long currentTime = System.currentTimeMillis();
+    final int shards = Math.max(cConf.getInt(Constants.Stream.FILE_SHARDS, 1), 1);
+    if (StreamUtils.isShardedConsumer(shards, consumerConfig) && consumerConfig.getInstanceId() >= shards) {
+      LOG.warn("Consumer instance {} of group {} has no stream file shard assigned. Number of shards is {}.",
+               consumerConfig.getInstanceId(), consumerConfig.getGroupId(), shards);
+    }
 
     if (!Iterables.isEmpty(consumerState.getState())) {
       // See if any offset has a different generation or is expired. If so, don't use the old states.
@@ -168,11 +172,31 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
       if (useStoredStates) {
         LOG.info("Create file reader with consumer state: {}", consumerState);
         // Has existing offsets, just resume from there.
-        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState());
+        // The stored states could contain offsets of shards assigned to other instances, e.g. after the group size
+        // changed, which are read by the other instances.
+        List<StreamFileOffset> offsets = Lists.newArrayList(
+          Iterables.filter(consumerState.getState(), new Predicate<StreamFileOffset>() {
+            @Override
+            public boolean apply(StreamFileOffset input) {
+              return StreamUtils.isFileAssigned(input.getNamePrefix(), consumerConfig);
+            }
+          }));
+        if (consumerState.getShards() != shards) {
+          addShardOffsets(streamLocation, streamConfig, consumerConfig, consumerState, offsets, generation);
+          LOG.info("Number of stream file shards changed from {} to {}. Create file reader with file offsets: " +
+                     "groupId={}, instanceId={} states={}", consumerState.getShards(), shards,
+                   consumerState.getGroupId(), consumerState.getInstanceId(), offsets);
+          consumerState.setShards(shards);
+        }
+        removeFinishedOffsets(offsets, currentTime);
+
+        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, offsets);
         reader.initialize();
         return reader;
       }
+      LOG.info("Ignore consumer state with different generation or expired offsets: {}", consumerState);
     }
+    consumerState.setShards(shards);
 
     // TODO: Support starting from some time rather then from beginning.
     // Otherwise, search for files with the smallest partition start time
@@ -202,7 +226,7 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     Location partitionLocation = StreamUtils.createPartitionLocation(streamLocation,
                                                                      startTime, streamConfig.getPartitionDuration());
     List<StreamFileOffset> fileOffsets = Lists.newArrayList();
-    getFileOffsets(partitionLocation, fileOffsets, generation);
+    getFileOffsets(partitionLocation, consumerConfig, fileOffsets, generation);
 
     LOG.info("Empty consumer state. Create file reader with file offsets: groupId={}, instanceId={} states={}",
              consumerState.getGroupId(), consumerState.getInstanceId(), fileOffsets);
@@ -211,4 +235,51 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     reader.initialize();
     return reader;
   }
+
+  /**
+   * Adds offsets for the stream files of the shards that are assigned to the consumer after the number of shards
+   * changed. The offsets of the files of the old layout are kept, so that events written before the change are
+   * still read.
+   */
+  private void addShardOffsets(Location streamLocation, StreamConfig streamConfig, ConsumerConfig consumerConfig,
+                               StreamConsumerState consumerState, List<StreamFileOffset> offsets,
+                               int generation) throws IOException {
+    Set<String> prefixes = Sets.newHashSet();
+    for (StreamFileOffset offset : offsets) {
+      prefixes.add(offset.getNamePrefix());
+    }
+
+    // Files of the new layout are started in the earliest partition that the consumer is reading from,
+    // as they are written since the stream writers restarted with the new number of shards.
+    long partitionStart = Long.MAX_VALUE;
+    for (StreamFileOffset offset : consumerState.getState()) {
+      partitionStart = Math.min(partitionStart, offset.getPartitionStart());
+    }
+    Location partitionLocation = StreamUtils.createPartitionLocation(streamLocation, partitionStart,
+                                                                     streamConfig.getPartitionDuration());
+    for (String prefix : StreamUtils.getFilePrefixes(cConf, consumerConfig)) {
+      if (!prefixes.contains(prefix)) {
+        Location eventLocation = StreamUtils.createStreamLocation(partitionLocation, prefix, 0, StreamFileType.EVENT);
+        offsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      }
+    }
+  }
+
+  /**
+   * Removes offsets of the stream files that are no longer written, e.g. files of the layout before the number of
+   * shards changed, once the reader went past all of them. It is the case when the offset points to a file that
+   * doesn't exist in a partition that has already ended.
+   */
+  private void removeFinishedOffsets(List<StreamFileOffset> offsets, long currentTime) throws IOException {
+    Set<String> prefixes = Sets.newHashSet(StreamUtils.getFilePrefixes(cConf, null));
+    Iterator<StreamFileOffset> iterator = offsets.iterator();
+    while (iterator.hasNext()) {
+      StreamFileOffset offset = iterator.next();
+      if (!prefixes.contains(offset.getNamePrefix()) && offset.getPartitionEnd() < currentTime
+        && !offset.getEventLocation().exists()) {
+        LOG.info("Remove offset of stream files that are no longer written: {}", offset);
+        iterator.remove();
+      }
+    }
+  }
 }
@@ -527,8 +527,12 @@ public class FileStreamAdmin implements StreamAdmin {
     // Use tree map to maintain ordering consistency in the offsets.
     // Not required by any logic, just easier to look at when logged.
     Map<Location, StreamFileOffset> fileOffsets = Maps.newTreeMap(Locations.LOCATION_COMPARATOR);
+    // The number of stream file shards that the offsets were created with, which is the same for all instances
+    // unless some of them haven't started since the number changed.
+    int shards = 1;
 
     for (StreamConsumerState state : states) {
+      shards = Math.max(shards, state.getShards());
       for (StreamFileOffset fileOffset : state.getState()) {
         StreamFileOffset smallestOffset = fileOffsets.get(fileOffset.getEventLocation());
         if (smallestOffset == null || fileOffset.getOffset() < smallestOffset.getOffset()) {
@@ -544,7 +548,7 @@ public class FileStreamAdmin implements StreamAdmin {
     for (StreamConsumerState state : states) {
       if (state.getInstanceId() < instances) {
         // Only keep valid instances
-        newStates.add(new StreamConsumerState(groupId, state.getInstanceId(), smallestOffsets));
+        newStates.add(new StreamConsumerState(groupId, state.getInstanceId(), smallestOffsets, shards));
       } else {
         removeStates.add(state);
       }
@@ -552,7 +556,7 @@ public class FileStreamAdmin implements StreamAdmin {
 
     // For all new instances, set files offsets to smallest one constructed above.
     for (int i = oldInstances; i < instances; i++) {
-      newStates.add(new StreamConsumerState(groupId, i, smallestOffsets));
+      newStates.add(new StreamConsumerState(groupId, i, smallestOffsets, shards));
     }
   }
 
@@ -28,9 +28,10 @@ public final class StreamConsumerState implements ConsumerState<Iterable<StreamF
   private final long groupId;
   private final int instanceId;
   private Iterable<StreamFileOffset> state;
+  private int shards;
 
   public StreamConsumerState(StreamConsumerState other) {
-    this(other.getGroupId(), other.getInstanceId(), other.getState());
+    this(other.getGroupId(), other.getInstanceId(), other.getState(), other.getShards());
   }
 
   public StreamConsumerState(long groupId, int instanceId) {
@@ -38,9 +39,22 @@ public final class StreamConsumerState implements ConsumerState<Iterable<StreamF
   }
 
   public StreamConsumerState(long groupId, int instanceId, Iterable<StreamFileOffset> state) {
+    this(groupId, instanceId, state, 1);
+  }
+
+  /**
+   * Creates a consumer state.
+   *
+   * @param groupId Group id of the consumer.
+   * @param instanceId Instance id of the consumer.
+   * @param state Offsets of the stream files.
+   * @param shards Number of stream file shards of the layout that the offsets were created with.
+   */
+  public StreamConsumerState(long groupId, int instanceId, Iterable<StreamFileOffset> state, int shards) {
     this.groupId = groupId;
     this.instanceId = instanceId;
     this.state = ImmutableList.copyOf(state);
+    this.shards = Math.max(shards, 1);
   }
 
   @Override
@@ -63,6 +77,17 @@ public final class StreamConsumerState implements ConsumerState<Iterable<StreamF
     this.state = ImmutableList.copyOf(state);
   }
 
+  /**
+   * Returns the number of stream file shards of the layout that the offsets were created with.
+   */
+  public int getShards() {
+    return shards;
+  }
+
+  public void setShards(int shards) {
+    this.shards = Math.max(shards, 1);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -76,12 +101,13 @@ public final class StreamConsumerState implements ConsumerState<Iterable<StreamF
 
     return (groupId == other.groupId)
       && (instanceId == other.instanceId)
+      && (shards == other.shards)
       && Iterables.elementsEqual(state, other.state);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(groupId, instanceId, state);
+    return Objects.hashCode(groupId, instanceId, state, shards);
   }
 
   @Override
@@ -90,6 +116,7 @@ public final class StreamConsumerState implements ConsumerState<Iterable<StreamF
       .add("groupId", groupId)
       .add("instanceId", instanceId)
       .add("states", state)
+      .add("shards", shards)
       .toString();
   }
 }
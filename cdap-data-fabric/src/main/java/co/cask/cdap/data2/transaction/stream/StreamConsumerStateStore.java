@@ -45,6 +45,10 @@ import java.util.SortedMap;
 public abstract class StreamConsumerStateStore implements ConsumerStateStore<StreamConsumerState,
                                                                              Iterable<StreamFileOffset>> {
 
+  // Marks that the encoded value starts with the number of stream file shards. It never clashes with the
+  // generation that starts an encoded offset, since generation is never negative.
+  private static final int SHARDS_MARKER = -1;
+
   protected final StreamConfig streamConfig;
   protected final Id.Stream streamId;
 
@@ -62,7 +66,7 @@ public abstract class StreamConsumerStateStore implements ConsumerStateStore<Str
       byte[] column = entry.getKey();
       byte[] value = entry.getValue();
       if (value != null) {
-        result.add(new StreamConsumerState(getGroupId(column), getInstanceId(column), decodeOffsets(value)));
+        result.add(decodeState(getGroupId(column), getInstanceId(column), value));
       }
     }
   }
@@ -79,7 +83,7 @@ public abstract class StreamConsumerStateStore implements ConsumerStateStore<Str
       }
       byte[] value = entry.getValue();
       if (value != null) {
-        result.add(new StreamConsumerState(groupId, getInstanceId(column), decodeOffsets(value)));
+        result.add(decodeState(groupId, getInstanceId(column), value));
       }
     }
   }
@@ -87,12 +91,12 @@ public abstract class StreamConsumerStateStore implements ConsumerStateStore<Str
   @Override
   public final StreamConsumerState get(long groupId, int instanceId) throws IOException {
     byte[] value = fetch(streamId.toBytes(), getColumn(groupId, instanceId));
-    return value == null ? null : new StreamConsumerState(groupId, instanceId, decodeOffsets(value));
+    return value == null ? null : decodeState(groupId, instanceId, value);
   }
 
   @Override
   public final void save(StreamConsumerState state) throws IOException {
-    store(streamId.toBytes(), getColumn(state.getGroupId(), state.getInstanceId()), encodeOffsets(state.getState()));
+    store(streamId.toBytes(), getColumn(state.getGroupId(), state.getInstanceId()), encodeState(state));
   }
 
   @Override
@@ -102,7 +106,7 @@ public abstract class StreamConsumerStateStore implements ConsumerStateStore<Str
     DataOutput output = new DataOutputStream(os);
     for (StreamConsumerState state : states) {
       os.reset();
-      encodeOffsets(state.getState(), output);
+      encodeState(state, output);
       values.put(getColumn(state.getGroupId(), state.getInstanceId()), os.toByteArray());
     }
 
@@ -161,33 +165,44 @@ public abstract class StreamConsumerStateStore implements ConsumerStateStore<Str
   protected abstract void delete(byte[] row, Set<byte[]> columns) throws IOException;
 
   /**
-   * Encodes list of {@link StreamFileOffset} into bytes.
+   * Encodes a {@link StreamConsumerState} into bytes.
    */
-  private byte[] encodeOffsets(Iterable<StreamFileOffset> offsets) throws IOException {
+  private byte[] encodeState(StreamConsumerState state) throws IOException {
     // Assumption: Each offset encoded into ~40 bytes and there are 8 offsets (number of live files)
     ByteArrayDataOutput output = ByteStreams.newDataOutput(320);
-    encodeOffsets(offsets, output);
+    encodeState(state, output);
     return output.toByteArray();
   }
 
-  private void encodeOffsets(Iterable<StreamFileOffset> offsets, DataOutput output) throws IOException {
-    for (StreamFileOffset offset : offsets) {
+  private void encodeState(StreamConsumerState state, DataOutput output) throws IOException {
+    // The number of shards is only written for sharded layout, so that states of unsharded layout
+    // are encoded the same as before
+    if (state.getShards() > 1) {
+      output.writeInt(SHARDS_MARKER);
+      output.writeInt(state.getShards());
+    }
+    for (StreamFileOffset offset : state.getState()) {
       StreamUtils.encodeOffset(output, offset);
     }
   }
 
   /**
-   * Decodes encoded bytes back to list of {@link StreamFileOffset}.
+   * Decodes encoded bytes back to a {@link StreamConsumerState}.
    */
-  private Iterable<StreamFileOffset> decodeOffsets(byte[] encoded) throws IOException {
+  private StreamConsumerState decodeState(long groupId, int instanceId, byte[] encoded) throws IOException {
     ImmutableList.Builder<StreamFileOffset> offsets = ImmutableList.builder();
+    int shards = 1;
     if (encoded != null && encoded.length > 0) {
       DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoded));
+      if (encoded.length >= Ints.BYTES && Bytes.toInt(encoded) == SHARDS_MARKER) {
+        input.readInt();
+        shards = input.readInt();
+      }
       while (input.available() > 0) {
         offsets.add(StreamUtils.decodeOffset(streamConfig, input));
       }
     }
-    return offsets.build();
+    return new StreamConsumerState(groupId, instanceId, offsets.build(), shards);
   }
 
   private byte[] getColumn(long groupId, int instanceId) {
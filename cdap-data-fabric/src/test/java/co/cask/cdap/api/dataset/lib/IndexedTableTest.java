@@ -31,7 +31,12 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -43,6 +48,8 @@ import static org.junit.Assert.fail;
  */
 public class IndexedTableTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(IndexedTableTest.class);
+
   @ClassRule
   public static DatasetFrameworkTestUtil dsFrameworkUtil = new DatasetFrameworkTestUtil();
 
@@ -833,6 +840,251 @@ public class IndexedTableTest {
       dsFrameworkUtil.deleteInstance(incrTabInstance);
     }
   }
+
+  @Test
+  public void testHighFanoutIndexRead() throws Exception {
+    Id.DatasetInstance fanoutTabInstance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "fanouttab");
+    dsFrameworkUtil.createInstance("indexedTable", fanoutTabInstance, DatasetProperties.builder()
+      .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .add(IndexedTableDefinition.INDEX_READ_AHEAD_CONF_KEY, "64")
+      .build());
+    final IndexedTable iTable = dsFrameworkUtil.getInstance(fanoutTabInstance);
+    final int rows = 10000;
+
+    try {
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(iTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          for (int i = 0; i < rows; i++) {
+            iTable.put(new Put(Bytes.toBytes(i)).add(idxCol, idx1).add(valCol, Bytes.toBytes(i)));
+          }
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // Change the index value of some rows in this transaction. The index read should reflect the changes.
+          for (int i = 0; i < rows; i += 100) {
+            iTable.put(new Put(Bytes.toBytes(i)).add(idxCol, idx2));
+          }
+
+          long startTime = System.nanoTime();
+          Scanner scanner = iTable.readByIndex(idxCol, idx1);
+          int count = 0;
+          try {
+            int expected = 0;
+            for (Row row = scanner.next(); row != null; row = scanner.next()) {
+              if (expected % 100 == 0) {
+                expected++;
+              }
+              // Rows should be returned in the index order, which is the row key order
+              assertArrayEquals(Bytes.toBytes(expected), row.getRow());
+              assertArrayEquals(Bytes.toBytes(expected), row.get(valCol));
+              expected++;
+              count++;
+            }
+          } finally {
+            scanner.close();
+          }
+          long elapsed = System.nanoTime() - startTime;
+          assertEquals(rows - rows / 100, count);
+          LOG.info("Read {} rows by index in {} ms", count, TimeUnit.NANOSECONDS.toMillis(elapsed));
+
+          // Reading only the first row should work the same
+          Row row = readFirst(iTable.readByIndex(idxCol, idx2));
+          assertArrayEquals(Bytes.toBytes(0), row.getRow());
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(fanoutTabInstance);
+    }
+  }
+
+  @Test
+  public void testInvalidIndexReadAhead() throws Exception {
+    for (String readAhead : new String[] { "abc", "0" }) {
+      Id.DatasetInstance instance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "readaheadtab");
+      try {
+        dsFrameworkUtil.createInstance("indexedTable", instance, DatasetProperties.builder()
+          .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+          .add(IndexedTableDefinition.INDEX_READ_AHEAD_CONF_KEY, readAhead)
+          .build());
+        fail("Expected failure for index read ahead " + readAhead);
+      } catch (Exception e) {
+        // The error should tell which property is invalid
+        boolean found = false;
+        for (Throwable t = e; t != null && !found; t = t.getCause()) {
+          found = t instanceof IllegalArgumentException
+            && t.getMessage().contains(IndexedTableDefinition.INDEX_READ_AHEAD_CONF_KEY);
+        }
+        Assert.assertTrue("Unexpected exception " + e, found);
+      }
+    }
+  }
+
+  /**
+   * Tests that with blind index writes, index reads don't return rows whose indexed value has changed or that
+   * have been deleted, and that stale index entries are cleaned up without affecting later reads.
+   */
+  @Test
+  public void testBlindIndexWrites() throws Exception {
+    Id.DatasetInstance blindTabInstance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID, "blindtab");
+    dsFrameworkUtil.createInstance("indexedTable", blindTabInstance, DatasetProperties.builder()
+      .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .add(IndexedTableDefinition.INDEX_BLIND_WRITES_CONF_KEY, "true")
+      .add(IndexedTableDefinition.INDEX_CLEANUP_ON_READ_CONF_KEY, "true")
+      .build());
+    final IndexedTable iTable = dsFrameworkUtil.getInstance(blindTabInstance);
+
+    try {
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(iTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(new Put(keyA).add(idxCol, idx1).add(valCol, valA));
+          iTable.put(new Put(keyB).add(idxCol, idx1).add(valCol, valB));
+          iTable.put(new Put(keyC).add(idxCol, idx2).add(valCol, valC));
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // change the indexed value of A and delete B, which leaves stale entries for idx1 in the index
+          iTable.put(new Put(keyA).add(idxCol, idx2));
+          iTable.delete(keyB);
+
+          // the stale entries are not returned, and are cleaned up when the scanner is closed
+          Assert.assertNull(readFirst(iTable.readByIndex(idxCol, idx1)));
+          Scanner scanner = iTable.readByIndex(idxCol, idx2);
+          try {
+            TableAssert.assertRow(scanner.next(), keyA, new byte[][] { idxCol, valCol }, new byte[][] { idx2, valA });
+            TableAssert.assertRow(scanner.next(), keyC, new byte[][] { idxCol, valCol }, new byte[][] { idx2, valC });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // the stale entries of A and B for idx1 are removed from the index table
+          Scanner scanner = iTable.getIndexTable().scan(null, null);
+          try {
+            Assert.assertArrayEquals(keyA, scanner.next().get(new byte[] { 'r' }));
+            Assert.assertArrayEquals(keyC, scanner.next().get(new byte[] { 'r' }));
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          Assert.assertNull(readFirst(iTable.readByIndex(idxCol, idx1)));
+
+          // changing the value back after the stale entry has been removed must index the row again
+          iTable.put(new Put(keyA).add(idxCol, idx1));
+          Row row = readFirst(iTable.readByIndex(idxCol, idx1));
+          TableAssert.assertRow(row, keyA, new byte[][] { idxCol, valCol }, new byte[][] { idx1, valA });
+          row = readFirst(iTable.readByIndex(idxCol, idx2));
+          TableAssert.assertRow(row, keyC, new byte[][] { idxCol, valCol }, new byte[][] { idx2, valC });
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Row row = readFirst(iTable.readByIndex(idxCol, idx1));
+          TableAssert.assertRow(row, keyA, new byte[][] { idxCol, valCol }, new byte[][] { idx1, valA });
+          row = readFirst(iTable.readByIndex(idxCol, idx2));
+          TableAssert.assertRow(row, keyC, new byte[][] { idxCol, valCol }, new byte[][] { idx2, valC });
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // the stale entry found by the scan is valid again if the old value is written back before the scanner
+          // is closed, hence it must not be deleted
+          iTable.put(new Put(keyA).add(idxCol, idx2));
+          Scanner scanner = iTable.readByIndex(idxCol, idx1);
+          try {
+            assertEmpty(scanner);
+            iTable.put(new Put(keyA).add(idxCol, idx1));
+          } finally {
+            scanner.close();
+          }
+          Row row = readFirst(iTable.readByIndex(idxCol, idx1));
+          TableAssert.assertRow(row, keyA, new byte[][] { idxCol, valCol }, new byte[][] { idx1, valA });
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(blindTabInstance);
+    }
+  }
+
+  /**
+   * Compares the write throughput of updating indexed values with and without blind index writes.
+   */
+  @Ignore
+  @Test
+  public void testIndexWriteThroughput() throws Exception {
+    for (boolean blindWrites : new boolean[] { false, true }) {
+      Id.DatasetInstance writeTabInstance = Id.DatasetInstance.from(DatasetFrameworkTestUtil.NAMESPACE_ID,
+                                                                    "writetab" + blindWrites);
+      dsFrameworkUtil.createInstance("indexedTable", writeTabInstance, DatasetProperties.builder()
+        .add(IndexedTableDefinition.INDEX_COLUMNS_CONF_KEY, idxColString)
+        .add(IndexedTableDefinition.INDEX_BLIND_WRITES_CONF_KEY, Boolean.toString(blindWrites))
+        .build());
+      final IndexedTable iTable = dsFrameworkUtil.getInstance(writeTabInstance);
+      final int rows = 1000;
+      final int updates = 5;
+
+      try {
+        TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(iTable);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+          final byte[] value = Bytes.toBytes(i);
+          tx.execute(new TransactionExecutor.Subroutine() {
+            @Override
+            public void apply() throws Exception {
+              for (int j = 0; j < rows; j++) {
+                iTable.put(new Put(Bytes.toBytes(j)).add(idxCol, value).add(valCol, value));
+              }
+            }
+          });
+        }
+        long elapsed = System.nanoTime() - startTime;
+        LOG.info("Wrote {} indexed updates with blind writes {} in {} ms",
+                 rows * updates, blindWrites, TimeUnit.NANOSECONDS.toMillis(elapsed));
+
+        // only the rows with the latest value are returned
+        final byte[] lastValue = Bytes.toBytes(updates - 1);
+        tx.execute(new TransactionExecutor.Subroutine() {
+          @Override
+          public void apply() throws Exception {
+            Assert.assertNull(readFirst(iTable.readByIndex(idxCol, Bytes.toBytes(0))));
+            Scanner scanner = iTable.readByIndex(idxCol, lastValue);
+            int count = 0;
+            try {
+              for (Row row = scanner.next(); row != null; row = scanner.next()) {
+                assertArrayEquals(lastValue, row.get(valCol));
+                count++;
+              }
+            } finally {
+              scanner.close();
+            }
+            assertEquals(rows, count);
+          }
+        });
+      } finally {
+        dsFrameworkUtil.deleteInstance(writeTabInstance);
+      }
+    }
+  }
+
   /**
    * Asserts that the given scanner contains no more rows.
    */
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.datafabric.dataset;
 
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.module.DatasetModule;
 import co.cask.cdap.api.dataset.table.OrderedTable;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
@@ -43,12 +44,17 @@ import co.cask.cdap.data2.dataset2.SingleTypeModule;
 import co.cask.cdap.data2.dataset2.lib.table.CoreDatasetsModule;
 import co.cask.cdap.data2.dataset2.module.lib.inmemory.InMemoryTableModule;
 import co.cask.cdap.data2.metrics.DatasetMetricsReporter;
+import co.cask.cdap.data2.registry.UsageDatasetModule;
+import co.cask.cdap.data2.registry.UsageRegistry;
 import co.cask.cdap.explore.client.DiscoveryExploreClient;
 import co.cask.cdap.explore.client.ExploreFacade;
+import co.cask.cdap.proto.DatasetMeta;
 import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.ProgramType;
 import co.cask.http.HttpHandler;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.inmemory.InMemoryTxSystemClient;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -69,6 +75,7 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -80,6 +87,8 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
   private DatasetOpExecutorService opExecutorService;
   private DatasetService service;
   private RemoteDatasetFramework framework;
+  private InMemoryDiscoveryService discoveryService;
+  private UsageRegistry usageRegistry;
 
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
@@ -92,7 +101,7 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     cConf.setBoolean(Constants.Dangerous.UNRECOVERABLE_RESET, true);
 
     // Starting DatasetService service
-    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    discoveryService = new InMemoryDiscoveryService();
     MetricsCollectionService metricsCollectionService = new NoOpMetricsCollectionService();
 
     // Tx Manager to support working with datasets
@@ -123,9 +132,15 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     InMemoryDatasetFramework mdsFramework = new InMemoryDatasetFramework(registryFactory, modules, cConf);
     MDSDatasetsRegistry mdsDatasetsRegistry = new MDSDatasetsRegistry(txSystemClient, mdsFramework);
 
+    // The usage module is needed for registering the dataset usage of programs
+    Map<String, DatasetModule> typeModules = ImmutableMap.<String, DatasetModule>builder()
+      .putAll(DEFAULT_MODULES)
+      .put("usage", new UsageDatasetModule())
+      .build();
+
     ExploreFacade exploreFacade = new ExploreFacade(new DiscoveryExploreClient(discoveryService), cConf);
     DatasetInstanceService instanceService = new DatasetInstanceService(
-      new DatasetTypeManager(cConf, mdsDatasetsRegistry, locationFactory, DEFAULT_MODULES),
+      new DatasetTypeManager(cConf, mdsDatasetsRegistry, locationFactory, typeModules),
       new DatasetInstanceManager(mdsDatasetsRegistry),
       new InMemoryDatasetOpExecutor(framework),
       exploreFacade,
@@ -138,7 +153,7 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
                                  namespacedLocationFactory,
                                  discoveryService,
                                  discoveryService,
-                                 new DatasetTypeManager(cConf, mdsDatasetsRegistry, locationFactory, DEFAULT_MODULES),
+                                 new DatasetTypeManager(cConf, mdsDatasetsRegistry, locationFactory, typeModules),
                                  metricsCollectionService,
                                  new InMemoryDatasetOpExecutor(framework),
                                  mdsDatasetsRegistry,
@@ -164,6 +179,21 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
 
     framework.createNamespace(Id.Namespace.SYSTEM);
     framework.createNamespace(NAMESPACE_ID);
+
+    usageRegistry = new UsageRegistry(txExecutorFactory, new AbstractDatasetProvider(registryFactory) {
+      @Override
+      public DatasetMeta getMeta(Id.DatasetInstance instance) throws Exception {
+        return framework.getDatasetMeta(instance);
+      }
+
+      @Override
+      public void createIfNotExists(Id.DatasetInstance instance, String type,
+                                    DatasetProperties creationProps) throws Exception {
+        if (!framework.hasInstance(instance)) {
+          framework.addInstance(type, instance, creationProps);
+        }
+      }
+    });
   }
 
   // Note: Cannot have these system namespace restrictions in system namespace since we use it internally in
@@ -196,6 +226,51 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     }
   }
 
+  @Test
+  public void testPreloadedMeta() throws DatasetManagementException {
+    Id.DatasetInstance instance = Id.DatasetInstance.from(NAMESPACE_ID, "preloaded");
+    framework.addInstance("table", instance, DatasetProperties.EMPTY);
+    DatasetMeta meta = framework.getDatasetMeta(instance);
+    Assert.assertNotNull(meta);
+
+    // Preloaded metas are used without asking the dataset service
+    Id.DatasetInstance unknown = Id.DatasetInstance.from(NAMESPACE_ID, "unknown");
+    Assert.assertFalse(framework.hasInstance(unknown));
+    framework.preload(ImmutableMap.of(instance, meta, unknown, meta));
+    Assert.assertTrue(framework.hasInstance(unknown));
+    Assert.assertEquals(meta.getSpec(), framework.getDatasetSpec(unknown));
+
+    // Changes made through the framework invalidate the preloaded metas
+    framework.deleteInstance(instance);
+    Assert.assertFalse(framework.hasInstance(instance));
+    Assert.assertNull(framework.getDatasetMeta(instance));
+  }
+
+  @Test
+  public void testPreloadedMetaUsage() throws DatasetManagementException {
+    Id.DatasetInstance instance = Id.DatasetInstance.from(NAMESPACE_ID, "preloadedUsage");
+    framework.addInstance("table", instance, DatasetProperties.EMPTY);
+    Id.Program program1 = Id.Program.from(NAMESPACE_ID, "app", ProgramType.MAPREDUCE, "mr1");
+    Id.Program program2 = Id.Program.from(NAMESPACE_ID, "app", ProgramType.MAPREDUCE, "mr2");
+
+    // Fetching the meta with a program as the owner registers the usage, as done when a program is started
+    DatasetMeta meta = framework.getDatasetMeta(instance, ImmutableList.of(program1));
+    Assert.assertNotNull(meta);
+    Assert.assertEquals(ImmutableSet.of(instance), usageRegistry.getDatasets(program1));
+
+    // The preloaded metas are used without asking the dataset service for the owners they were fetched with
+    RemoteDatasetFramework containerFramework = new RemoteDatasetFramework(cConf, discoveryService, registryFactory);
+    Id.DatasetInstance unknown = Id.DatasetInstance.from(NAMESPACE_ID, "unknownUsage");
+    containerFramework.preload(ImmutableMap.of(instance, meta, unknown, meta), ImmutableList.of(program1));
+    Assert.assertNotNull(containerFramework.getDatasetMeta(unknown, ImmutableList.of(program1)));
+
+    // Other owners still go to the dataset service, so that their usage is registered
+    Assert.assertTrue(usageRegistry.getDatasets(program2).isEmpty());
+    Assert.assertNotNull(containerFramework.getDatasetMeta(instance, ImmutableList.of(program2)));
+    Assert.assertEquals(ImmutableSet.of(instance), usageRegistry.getDatasets(program2));
+    Assert.assertNull(containerFramework.getDatasetMeta(unknown, ImmutableList.of(program2)));
+  }
+
   @After
   public void after() throws DatasetManagementException {
     framework.deleteNamespace(NAMESPACE_ID);
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ParallelDatasetOperations}.
+ */
+public class ParallelDatasetOperationsTest {
+
+  @Test
+  public void testExecute() throws Exception {
+    List<String> datasets = ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h");
+    final Set<String> executed = Sets.newSetFromMap(Maps.<String, Boolean>newConcurrentMap());
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+
+    Map<String, Exception> failures = ParallelDatasetOperations.execute(
+      datasets, 3, new ParallelDatasetOperations.Operation<String>() {
+        @Override
+        public void execute(String dataset) throws Exception {
+          int count = running.incrementAndGet();
+          try {
+            while (true) {
+              int max = maxRunning.get();
+              if (count <= max || maxRunning.compareAndSet(max, count)) {
+                break;
+              }
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+            executed.add(dataset);
+            if ("c".equals(dataset) || "f".equals(dataset)) {
+              throw new IOException("Failed " + dataset);
+            }
+          } finally {
+            running.decrementAndGet();
+          }
+        }
+      });
+
+    // All operations are executed, even if some of them failed
+    Assert.assertEquals(ImmutableSet.copyOf(datasets), executed);
+    Assert.assertEquals(ImmutableSet.of("c", "f"), failures.keySet());
+    Assert.assertTrue(maxRunning.get() > 1);
+    Assert.assertTrue(maxRunning.get() <= 3);
+
+    try {
+      ParallelDatasetOperations.propagateFailures(failures);
+      Assert.fail("Expected an IOException");
+    } catch (IOException e) {
+      Assert.assertEquals(1, e.getSuppressed().length);
+    }
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    final Thread caller = Thread.currentThread();
+    Map<String, Exception> failures = ParallelDatasetOperations.execute(
+      ImmutableList.of("a", "b"), 1, new ParallelDatasetOperations.Operation<String>() {
+        @Override
+        public void execute(String dataset) throws Exception {
+          Assert.assertSame(caller, Thread.currentThread());
+        }
+      });
+    Assert.assertTrue(failures.isEmpty());
+    ParallelDatasetOperations.propagateFailures(failures);
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.partitioned;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.lib.Partition;
 import co.cask.cdap.api.dataset.lib.PartitionDetail;
@@ -45,6 +46,7 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
@@ -60,6 +62,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Test partitioned file sets without map/reduce and without explore.
@@ -292,6 +295,127 @@ public class PartitionedFileSetTest {
       .build();
   }
 
+  @Test
+  public void testGenerateSeekKey() {
+    PartitionKey key = PartitionKey.builder()
+      .addStringField("s", "b")
+      .addIntField("i", 5)
+      .addLongField("l", 3L)
+      .build();
+
+    // matching key doesn't need seek
+    Assert.assertNull(PartitionedFileSetDataset.generateSeekKey(
+      key, PartitionFilter.builder().addRangeCondition("i", 1, 10).build(), PARTITIONING_1));
+
+    // mismatch in the first field is handled by start and stop key
+    Assert.assertNull(PartitionedFileSetDataset.generateSeekKey(
+      key, PartitionFilter.builder().addValueCondition("s", "a").build(), PARTITIONING_1));
+
+    // below the lower bound: seek to the lower bound of the field
+    byte[] seekKey = PartitionedFileSetDataset.generateSeekKey(
+      key, PartitionFilter.builder().addRangeCondition("i", 7, 10).build(), PARTITIONING_1);
+    byte[] lowerRowKey = PartitionedFileSetDataset.generateRowKey(
+      PartitionKey.builder().addStringField("s", "b").addIntField("i", 7).addLongField("l", Long.MIN_VALUE).build(),
+      PARTITIONING_1);
+    // the seek key is the row key without the last field
+    Assert.assertTrue(Bytes.startsWith(lowerRowKey, seekKey));
+    Assert.assertEquals(lowerRowKey.length - 1 - Bytes.SIZEOF_LONG, seekKey.length);
+
+    // above the upper bound: seek past all rows of the preceding fields
+    seekKey = PartitionedFileSetDataset.generateSeekKey(
+      key, PartitionFilter.builder().addValueCondition("l", 2L).build(), PARTITIONING_1);
+    byte[] rowKey = PartitionedFileSetDataset.generateRowKey(key, PARTITIONING_1);
+    byte[] nextRowKey = PartitionedFileSetDataset.generateRowKey(
+      PartitionKey.builder().addStringField("s", "b").addIntField("i", 6).addLongField("l", Long.MIN_VALUE).build(),
+      PARTITIONING_1);
+    Assert.assertTrue(Bytes.compareTo(seekKey, rowKey) > 0);
+    Assert.assertTrue(Bytes.compareTo(seekKey, nextRowKey) < 0);
+  }
+
+  @Test
+  public void testGetPartitionsWithSeek() throws Exception {
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsInstance);
+    final Set<BasicPartition> allPartitions = Sets.newHashSet();
+
+    // add enough partitions so that filters on fields other than the first skip many rows
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (int s = 0; s < 5; s++) {
+          for (int i = 0; i < 20; i++) {
+            for (long l = 0; l < 10; l++) {
+              PartitionKey key = PartitionKey.builder()
+                .addStringField("s", "s" + s)
+                .addIntField("i", i)
+                .addLongField("l", l)
+                .build();
+              String path = key.toString();
+              dataset.addPartition(key, path);
+              allPartitions.add(new BasicPartition((PartitionedFileSetDataset) dataset, path, key));
+            }
+          }
+        }
+      }
+    });
+
+    testFilter(dataset, allPartitions, PartitionFilter.builder().addValueCondition("l", 3L).build());
+    testFilter(dataset, allPartitions, PartitionFilter.builder()
+      .addRangeCondition("i", 5, 8)
+      .addRangeCondition("l", 2L, 4L)
+      .build());
+    testFilter(dataset, allPartitions, PartitionFilter.builder()
+      .addValueCondition("s", "s2")
+      .addRangeCondition("l", 8L, null)
+      .build());
+    testFilter(dataset, allPartitions, PartitionFilter.builder()
+      .addRangeCondition("s", "s1", "s4")
+      .addValueCondition("i", 19)
+      .build());
+  }
+
+  // Note that the in-memory table copies the whole scan range when a scan is opened, hence this benchmark
+  // only shows the benefit of seeking if the dataset framework is backed by LevelDB or HBase tables.
+  @Ignore
+  @Test
+  public void testGetPartitionsSpeed() throws Exception {
+    final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsInstance);
+
+    // a year of hourly partitions for a few keys, with the key being the first field
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (int s = 0; s < 5; s++) {
+          for (int day = 0; day < 365; day++) {
+            for (long hour = 0; hour < 24; hour++) {
+              PartitionKey key = PartitionKey.builder()
+                .addStringField("s", "key" + s)
+                .addIntField("i", day)
+                .addLongField("l", hour)
+                .build();
+              dataset.addPartition(key, key.toString());
+            }
+          }
+        }
+      }
+    });
+
+    // list a day of partitions across all keys
+    final PartitionFilter filter = PartitionFilter.builder().addValueCondition("i", 100).build();
+    dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        int count = 100;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          Assert.assertEquals(5 * 24, dataset.getPartitions(filter).size());
+        }
+        long endTime = System.nanoTime();
+        System.out.println("Time spent per listing in ms: " +
+                             TimeUnit.NANOSECONDS.toMillis(endTime - startTime) / (double) count);
+      }
+    });
+  }
+
   @Test
   public void testPartitionCreationTime() throws Exception {
     final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(pfsInstance);
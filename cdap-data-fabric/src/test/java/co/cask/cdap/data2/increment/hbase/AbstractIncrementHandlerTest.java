@@ -24,6 +24,7 @@ import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtilFactory;
 import co.cask.cdap.proto.Id;
+import co.cask.tephra.Transaction;
 import co.cask.tephra.TxConstants;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -45,6 +46,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -452,6 +454,51 @@ public abstract class AbstractIncrementHandlerTest {
     }
   }
 
+  /**
+   * Tests that a Get doesn't pre-sum the delta increments of a non-transactional family, since a delta with an older
+   * timestamp can still become visible after the Get, and would then be hidden by the pre-summed value.
+   */
+  @Test
+  public void testNoPresumOnNonTransactionalGet() throws Exception {
+    byte[] row = Bytes.toBytes("r1");
+    byte[] col = Bytes.toBytes("c");
+    try (RegionWrapper region = createRegion(TableId.from(Id.Namespace.DEFAULT, "testNoPresumOnNonTransactionalGet"),
+                                             ImmutableMap.<String, String>builder()
+                                               .put(IncrementHandlerState.PROPERTY_TRANSACTIONAL, "false")
+                                               .put(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD, "2")
+                                               .build())) {
+      region.initialize();
+
+      SettableTimestampOracle timeOracle = new SettableTimestampOracle();
+      region.setCoprocessorTimestampOracle(timeOracle);
+
+      // five increments with timestamps 100 to 104
+      for (long ts = 100; ts <= 104; ts++) {
+        timeOracle.setCurrentTime(ts);
+        region.put(newIncrement(row, col, 1));
+      }
+      assertEquals(5L, region.get(row, col, null));
+
+      // none of the deltas is replaced by a full value
+      List<ColumnCell> results = Lists.newArrayList();
+      region.scanRegion(results, row);
+      assertEquals(5, results.size());
+      for (ColumnCell cell : results) {
+        assertTrue(cell.getValue().length > Bytes.SIZEOF_LONG);
+      }
+
+      // an increment that was assigned its timestamp before the Get, but only became visible after it. The oracle
+      // never goes back in time, hence use a new one to assign the older timestamp.
+      timeOracle = new SettableTimestampOracle();
+      timeOracle.setCurrentTime(99);
+      region.setCoprocessorTimestampOracle(timeOracle);
+      region.put(newIncrement(row, col, 1));
+      assertEquals(6L, region.get(row, col, null));
+      Transaction tx = new Transaction(110L, 111L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+      assertEquals(6L, region.get(row, col, tx));
+    }
+  }
+
   public Put newIncrement(byte[] row, byte[] column, long value) {
       return newIncrement(row, column, ts++, value);
   }
@@ -527,6 +574,12 @@ public abstract class AbstractIncrementHandlerTest {
 
     boolean scanRegion(List<ColumnCell> results, byte[] startRow, byte[][] column) throws IOException;
 
+    /**
+     * Reads the value of a column with a Get. If a transaction is given, the Get is set up the same way as the
+     * transaction processor coprocessor does.
+     */
+    long get(byte[] row, byte[] column, @Nullable Transaction tx) throws IOException;
+
     boolean flush() throws IOException;
 
     void compact(boolean majorCompact) throws IOException;
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase;
+
+import co.cask.tephra.Transaction;
+import co.cask.tephra.coprocessor.TransactionStateCache;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the pre-summing bounds computed by {@link IncrementHandlerState}.
+ */
+public class IncrementHandlerStateTest {
+  private static final byte[] TX_FAMILY = Bytes.toBytes("t");
+  private static final byte[] NON_TX_FAMILY = Bytes.toBytes("n");
+
+  @Test
+  public void testPresumUpperBound() {
+    IncrementHandlerState state = new TestIncrementHandlerState(1000L);
+    state.initFamily(TX_FAMILY, familyValues(true));
+    state.initFamily(NON_TX_FAMILY, familyValues(false));
+
+    Transaction tx = new Transaction(103L, 105L, new long[0], new long[] { 101L }, 101L);
+    // the bound is below the transactions in progress for the read
+    assertEquals(100L, state.getPresumUpperBound(TX_FAMILY, tx, 0, Long.MAX_VALUE));
+    tx = new Transaction(102L, 105L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+    // the bound is at most the read pointer
+    assertEquals(102L, state.getPresumUpperBound(TX_FAMILY, tx, 0, Long.MAX_VALUE));
+    // the bound is below the end of the time range
+    assertEquals(99L, state.getPresumUpperBound(TX_FAMILY, tx, 0, 100L));
+    // no pre-summing if the time range excludes older cells
+    assertEquals(0L, state.getPresumUpperBound(TX_FAMILY, tx, 10L, Long.MAX_VALUE));
+    // the bound is below the compaction bound
+    tx = new Transaction(2000L, 2001L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+    assertEquals(1000L, state.getPresumUpperBound(TX_FAMILY, tx, 0, Long.MAX_VALUE));
+    // no pre-summing for a non-transactional read of a transactional family
+    assertEquals(0L, state.getPresumUpperBound(TX_FAMILY, null, 0, Long.MAX_VALUE));
+
+    // no pre-summing for a non-transactional family, whatever the read
+    assertEquals(0L, state.getPresumUpperBound(NON_TX_FAMILY, tx, 0, Long.MAX_VALUE));
+    assertEquals(0L, state.getPresumUpperBound(NON_TX_FAMILY, null, 0, Long.MAX_VALUE));
+  }
+
+  private Map<byte[], byte[]> familyValues(boolean transactional) {
+    Map<byte[], byte[]> values = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    values.put(Bytes.toBytes(IncrementHandlerState.PROPERTY_TRANSACTIONAL),
+               Bytes.toBytes(String.valueOf(transactional)));
+    values.put(Bytes.toBytes(IncrementHandlerState.PROPERTY_PRESUM_THRESHOLD), Bytes.toBytes("2"));
+    return values;
+  }
+
+  /**
+   * An {@link IncrementHandlerState} with a fixed compaction bound for transactional families, which doesn't need a
+   * transaction state cache.
+   */
+  private static final class TestIncrementHandlerState extends IncrementHandlerState {
+    private final long compactionBound;
+
+    TestIncrementHandlerState(long compactionBound) {
+      super(new Configuration(), null, null);
+      this.compactionBound = compactionBound;
+    }
+
+    @Override
+    protected Supplier<TransactionStateCache> getTransactionStateCacheSupplier(HTableDescriptor htd,
+                                                                               Configuration conf) {
+      return Suppliers.<TransactionStateCache>ofInstance(null);
+    }
+
+    @Override
+    public long getCompactionBound(byte[] columnFamily) {
+      return txnlFamilies.contains(columnFamily) ? compactionBound : Long.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.tephra.Transaction;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link QueueEntryChunk}.
+ */
+public class QueueEntryChunkTest {
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    QueueEntryChunk.Builder builder = new QueueEntryChunk.Builder();
+    for (int i = 0; i < 10; i++) {
+      // Every third entry has no hash keys and every fourth entry has empty data
+      byte[] meta = QueueEntry.serializeHashKeys(i % 3 == 0 ? ImmutableMap.<String, Integer>of()
+                                                            : ImmutableMap.of("key", i));
+      builder.add(i * 2, meta, i % 4 == 0 ? Bytes.EMPTY_BYTE_ARRAY : Bytes.toBytes("data" + i));
+    }
+    Assert.assertEquals(10, builder.size());
+
+    // Decode from the middle of a larger buffer
+    byte[] chunkBytes = builder.build();
+    byte[] buffer = Bytes.add(new byte[] {1, 2, 3}, chunkBytes, new byte[] {4, 5});
+    QueueEntryChunk chunk = new QueueEntryChunk(buffer, 3, chunkBytes.length);
+
+    Assert.assertEquals(10, chunk.size());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(i * 2, chunk.getCounter(i));
+      Assert.assertEquals(i % 3 == 0 ? ImmutableMap.<String, Integer>of() : ImmutableMap.of("key", i),
+                          QueueEntry.deserializeHashKeys(chunk.getMeta(i)));
+      Assert.assertArrayEquals(i % 4 == 0 ? Bytes.EMPTY_BYTE_ARRAY : Bytes.toBytes("data" + i), chunk.getData(i));
+    }
+
+    try {
+      chunk.getData(10);
+      Assert.fail("Expected failure for index out of range");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCanConsume() throws Exception {
+    QueueEntryChunk.Builder builder = new QueueEntryChunk.Builder();
+    for (int i = 0; i < 3; i++) {
+      builder.add(i, QueueEntry.serializeHashKeys(ImmutableMap.<String, Integer>of()), Bytes.toBytes(i));
+    }
+    QueueEntryChunk chunk = new QueueEntryChunk(builder.build());
+
+    ConsumerConfig consumerConfig = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+    Transaction tx = new Transaction(10L, 11L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+
+    // No state, so the entries can be consumed
+    Assert.assertEquals(QueueEntryRow.CanConsume.YES, chunk.canConsume(consumerConfig, tx, 5L, new byte[0][]));
+
+    // Some entries processed
+    byte[] processed = encodeState(8L, 0, ConsumerEntryState.PROCESSED);
+    Assert.assertEquals(QueueEntryRow.CanConsume.YES,
+                        chunk.canConsume(consumerConfig, tx, 5L, new byte[][] { processed, null, processed }));
+
+    // All entries processed
+    Assert.assertEquals(QueueEntryRow.CanConsume.NO_INCLUDING_ALL_OLDER,
+                        chunk.canConsume(consumerConfig, tx, 5L, new byte[][] { processed, processed, processed }));
+
+    // One entry is being processed by the current transaction
+    byte[] claimed = encodeState(11L, 0, ConsumerEntryState.CLAIMED);
+    Assert.assertEquals(QueueEntryRow.CanConsume.NO,
+                        chunk.canConsume(consumerConfig, tx, 5L, new byte[][] { processed, claimed, processed }));
+  }
+
+  @Test
+  public void testChunkKeys() {
+    byte[] stateColumn = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX, Bytes.toBytes(3L));
+    byte[] chunkStateColumn = QueueEntryRow.getChunkStateColumn(stateColumn, 7);
+    Assert.assertEquals(7, QueueEntryRow.getChunkStateIndex(stateColumn, chunkStateColumn, 0,
+                                                            chunkStateColumn.length));
+    // The non chunk state column and state columns of other groups are not chunk state columns of the group
+    Assert.assertEquals(-1, QueueEntryRow.getChunkStateIndex(stateColumn, stateColumn, 0, stateColumn.length));
+    byte[] otherColumn = QueueEntryRow.getChunkStateColumn(Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX,
+                                                                     Bytes.toBytes(4L)), 7);
+    Assert.assertEquals(-1, QueueEntryRow.getChunkStateIndex(stateColumn, otherColumn, 0, otherColumn.length));
+
+    byte[] prefix = new byte[] {1, 2, 3};
+    byte[] rowKey = Bytes.add(prefix, Bytes.toBytes(100L), Bytes.toBytes(5));
+    byte[] entryKey = QueueEntryRow.getChunkEntryKey(rowKey, 2);
+    Assert.assertFalse(QueueEntryRow.isChunkEntryKey(rowKey, prefix.length));
+    Assert.assertTrue(QueueEntryRow.isChunkEntryKey(entryKey, prefix.length));
+    Assert.assertTrue(Bytes.compareTo(rowKey, entryKey) < 0);
+    Assert.assertArrayEquals(rowKey, QueueEntryRow.getChunkRowKey(entryKey));
+    Assert.assertEquals(2, QueueEntryRow.getChunkEntryIndex(entryKey));
+    Assert.assertEquals(100L, QueueEntryRow.getWritePointer(entryKey, prefix.length));
+  }
+
+  private byte[] encodeState(long writePointer, int instanceId, ConsumerEntryState state) {
+    return Bytes.add(Bytes.toBytes(writePointer), Bytes.toBytes(instanceId), new byte[] {state.getState()});
+  }
+}
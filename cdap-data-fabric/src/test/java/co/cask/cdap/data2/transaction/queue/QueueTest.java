@@ -732,10 +732,10 @@ public abstract class QueueTest {
     }
   }
 
-  private void enqueueDequeue(final QueueName queueName, int preEnqueueCount,
-                              int concurrentCount, int enqueueBatchSize,
-                              int consumerSize, DequeueStrategy dequeueStrategy,
-                              final int dequeueBatchSize) throws Exception {
+  protected void enqueueDequeue(final QueueName queueName, int preEnqueueCount,
+                                int concurrentCount, int enqueueBatchSize,
+                                int consumerSize, DequeueStrategy dequeueStrategy,
+                                final int dequeueBatchSize) throws Exception {
 
     ConsumerGroupConfig groupConfig = new ConsumerGroupConfig(0L, consumerSize, dequeueStrategy, "key");
     configureGroups(queueName, ImmutableList.of(groupConfig));
@@ -892,7 +892,7 @@ public abstract class QueueTest {
     // do nothing, HBase test will override this
   }
 
-  private TransactionContext createTxContext(Object... txAwares) {
+  protected TransactionContext createTxContext(Object... txAwares) {
     TransactionAware[] casted = new TransactionAware[txAwares.length];
     for (int i = 0; i < txAwares.length; i++) {
       casted[i] = (TransactionAware) txAwares[i];
@@ -16,12 +16,14 @@
 package co.cask.cdap.data2.transaction.queue.hbase;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.LocationRuntimeModule;
 import co.cask.cdap.common.guice.ZKClientModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.utils.Networks;
 import co.cask.cdap.data.hbase.HBaseTestBase;
@@ -55,7 +57,9 @@ import co.cask.cdap.data2.util.hbase.HTableNameConverterFactory;
 import co.cask.cdap.notifications.feeds.NotificationFeedManager;
 import co.cask.cdap.notifications.feeds.service.NoOpNotificationFeedManager;
 import co.cask.cdap.proto.Id;
+import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionAware;
+import co.cask.tephra.TransactionContext;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionManager;
@@ -69,6 +73,7 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -219,6 +224,67 @@ public abstract class HBaseQueueTest extends QueueTest {
                                                                               "flow", "flowlet", "out"));
   }
 
+  @Test(timeout = 120000L)
+  public void testChunkedQueue() throws Exception {
+    // Enqueue and dequeue with entries of each transaction written to chunk rows.
+    // The throughput is logged by enqueueDequeue, for comparing with the non-chunked tests.
+    CConfiguration chunkCConf = CConfiguration.copy(cConf);
+    chunkCConf.setBoolean(QueueConstants.ConfigKeys.QUEUE_CHUNK_ENABLED, true);
+
+    QueueClientFactory originalFactory = queueClientFactory;
+    queueClientFactory = new HBaseQueueClientFactory(chunkCConf, hConf, tableUtil, queueAdmin, executorFactory);
+    try {
+      enqueueDequeue(QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow", "flowlet", "chunkfifo"),
+                     100, 100, 10, 3, DequeueStrategy.FIFO, 10);
+      enqueueDequeue(QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow", "flowlet", "chunkhash"),
+                     200, 100, 10, 3, DequeueStrategy.HASH, 7);
+    } finally {
+      queueClientFactory = originalFactory;
+    }
+  }
+
+  @Test(timeout = 60000L)
+  public void testEvictor() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow", "flowlet", "evictor");
+    configureGroups(queueName, ImmutableList.of(
+      new ConsumerGroupConfig(0L, 1, DequeueStrategy.FIFO, null),
+      new ConsumerGroupConfig(1L, 2, DequeueStrategy.ROUND_ROBIN, null)
+    ));
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+
+    HBaseQueueClientFactory factory = (HBaseQueueClientFactory) queueClientFactory;
+    MetricsContext metricsContext = new NoOpMetricsCollectionService().getContext(ImmutableMap.<String, String>of());
+    ConsumerConfig consumerConfig = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+    HBaseQueueEvictor fifoEvictor = factory.createEvictor(queueName, 0L, metricsContext);
+    HBaseQueueEvictor roundRobinEvictor = factory.createEvictor(queueName, 1L, metricsContext);
+    try (QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, -1)) {
+      // Consume 4 entries, then dequeue again so that the consumer start row moves past the processed entries
+      TransactionContext txContext = createTxContext(consumer);
+      txContext.start();
+      Assert.assertEquals(4, consumer.dequeue(4).size());
+      txContext.finish();
+      txContext.start();
+      Assert.assertEquals(4, Bytes.toInt(consumer.dequeue().iterator().next()));
+      txContext.finish();
+
+      Transaction tx = txSystemClient.startShort();
+      try {
+        Assert.assertEquals(4, fifoEvictor.evict(tx).get().intValue());
+        // Nothing has been consumed by the round robin group
+        Assert.assertEquals(0, roundRobinEvictor.evict(tx).get().intValue());
+      } finally {
+        txSystemClient.abort(tx);
+      }
+
+      // The remaining entries are not affected by eviction
+      txContext.start();
+      DequeueResult<byte[]> result = consumer.dequeue(10);
+      Assert.assertEquals(5, result.size());
+      Assert.assertEquals(5, Bytes.toInt(result.iterator().next()));
+      txContext.finish();
+    }
+  }
+
   void testHTablePreSplitted(HBaseQueueAdmin admin, QueueName queueName) throws Exception {
     TableId tableId = admin.getDataTableId(queueName);
     if (!admin.exists(queueName)) {
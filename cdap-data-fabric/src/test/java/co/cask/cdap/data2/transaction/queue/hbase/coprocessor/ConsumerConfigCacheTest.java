@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.hbase.coprocessor;
+
+import co.cask.tephra.TransactionManager;
+import co.cask.tephra.persist.TransactionSnapshot;
+import co.cask.tephra.persist.TransactionVisibilityState;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.io.InputSupplier;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for {@link ConsumerConfigCache} that don't need a running HBase. The queue config table is replaced
+ * by an empty table.
+ */
+public class ConsumerConfigCacheTest {
+
+  @Test
+  public void testSkipRefreshOnSameSnapshot() {
+    AtomicReference<TransactionVisibilityState> snapshot = new AtomicReference<>();
+    AtomicInteger tableOpens = new AtomicInteger();
+    ConsumerConfigCache cache = createCache("test.skip.queue.config", snapshot, tableOpens);
+
+    // No snapshot, nothing is loaded
+    Assert.assertTrue(cache.refreshIfSnapshotChanged());
+    Assert.assertEquals(0, cache.getUpdateCount());
+    Assert.assertEquals(-1L, cache.getSnapshotAge());
+
+    snapshot.set(createSnapshot(1000L));
+    Assert.assertTrue(cache.refreshIfSnapshotChanged());
+    Assert.assertEquals(1, cache.getUpdateCount());
+    Assert.assertEquals(0, cache.getSkippedUpdateCount());
+    Assert.assertEquals(1, tableOpens.get());
+
+    // Same snapshot, the table shouldn't be read again
+    Assert.assertTrue(cache.refreshIfSnapshotChanged());
+    Assert.assertTrue(cache.refreshIfSnapshotChanged());
+    Assert.assertEquals(1, cache.getUpdateCount());
+    Assert.assertEquals(2, cache.getSkippedUpdateCount());
+    Assert.assertEquals(1, tableOpens.get());
+
+    // New snapshot, the cache is reloaded
+    snapshot.set(createSnapshot(2000L));
+    Assert.assertTrue(cache.refreshIfSnapshotChanged());
+    Assert.assertEquals(2, cache.getUpdateCount());
+    Assert.assertEquals(2, cache.getSkippedUpdateCount());
+    Assert.assertEquals(2, tableOpens.get());
+  }
+
+  @Test
+  public void testMXBean() throws Exception {
+    AtomicReference<TransactionVisibilityState> snapshot = new AtomicReference<>();
+    ConsumerConfigCache cache = createCache("test.mxbean.queue.config", snapshot, new AtomicInteger());
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = cache.getObjectName();
+
+    cache.registerMBean();
+    try {
+      Assert.assertTrue(mBeanServer.isRegistered(objectName));
+      Assert.assertEquals("test.mxbean.queue.config", mBeanServer.getAttribute(objectName, "TableName"));
+      Assert.assertEquals(0, mBeanServer.getAttribute(objectName, "QueueCount"));
+      Assert.assertEquals(-1L, mBeanServer.getAttribute(objectName, "SnapshotAge"));
+
+      snapshot.set(createSnapshot(System.currentTimeMillis()));
+      cache.refreshIfSnapshotChanged();
+      cache.refreshIfSnapshotChanged();
+      Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "UpdateCount"));
+      Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "SkippedUpdateCount"));
+      Assert.assertTrue((Long) mBeanServer.getAttribute(objectName, "LastUpdateTime") > 0L);
+      Assert.assertTrue((Long) mBeanServer.getAttribute(objectName, "SnapshotAge") >= 0L);
+    } finally {
+      cache.discard();
+    }
+    Assert.assertFalse(mBeanServer.isRegistered(objectName));
+  }
+
+  private ConsumerConfigCache createCache(String tableName,
+                                          final AtomicReference<TransactionVisibilityState> snapshot,
+                                          final AtomicInteger tableOpens) {
+    // The CConfigurationReader is only used by the refresh thread, which is not started by this test
+    return new ConsumerConfigCache(TableName.valueOf(tableName), null, new Supplier<TransactionVisibilityState>() {
+      @Override
+      public TransactionVisibilityState get() {
+        return snapshot.get();
+      }
+    }, new InputSupplier<HTableInterface>() {
+      @Override
+      public HTableInterface getInput() throws IOException {
+        tableOpens.incrementAndGet();
+        return createEmptyTable();
+      }
+    });
+  }
+
+  private TransactionSnapshot createSnapshot(long timestamp) {
+    return new TransactionSnapshot(timestamp, 10L, 11L, ImmutableList.<Long>of(),
+                                   new TreeMap<Long, TransactionManager.InProgressTx>());
+  }
+
+  /**
+   * Creates a {@link HTableInterface} that only supports scanning, which always returns no result.
+   */
+  private HTableInterface createEmptyTable() {
+    final ResultScanner scanner = (ResultScanner) Proxy.newProxyInstance(
+      getClass().getClassLoader(), new Class<?>[] { ResultScanner.class }, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          switch (method.getName()) {
+            case "iterator":
+              return Iterators.<Result>emptyIterator();
+            case "next":
+              return method.getReturnType().isArray() ? new Result[0] : null;
+            case "close":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        }
+      });
+    return (HTableInterface) Proxy.newProxyInstance(
+      getClass().getClassLoader(), new Class<?>[] { HTableInterface.class }, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          switch (method.getName()) {
+            case "getScanner":
+              return scanner;
+            case "close":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        }
+      });
+  }
+}
@@ -17,6 +17,7 @@
 package co.cask.cdap.hive.datasets;
 
 import co.cask.cdap.api.dataset.Dataset;
+import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.common.DatasetNotFoundException;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
@@ -71,6 +72,10 @@ public class DatasetAccessor implements Closeable {
     }
   }
 
+  public DatasetSpecification getDatasetSpec() throws DatasetManagementException {
+    return context.getDatasetSpec(datasetId);
+  }
+
   public <T extends Dataset> T getDataset() {
     return (T) dataset;
   }
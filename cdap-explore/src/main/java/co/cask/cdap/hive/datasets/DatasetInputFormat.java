@@ -19,10 +19,17 @@ package co.cask.cdap.hive.datasets;
 import co.cask.cdap.api.data.batch.RecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.data2.dataset2.DatasetManagementException;
+import co.cask.cdap.hive.predicate.IndexPredicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
 import org.apache.hadoop.hive.shims.ShimLoader;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.io.Text;
@@ -35,6 +42,8 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -46,6 +55,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Map reduce input format to read from datasets that implement RecordScannable.
  */
 public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetInputFormat.class);
   private static final Gson GSON = new Gson();
 
   @Override
@@ -61,7 +71,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
         JobContext jobContext = ShimLoader.getHadoopShims().newJobContext(job);
         Path[] tablePaths = FileInputFormat.getInputPaths(jobContext);
 
-        List<Split> dsSplits = recordScannable.getSplits();
+        List<Split> dsSplits = getDatasetSplits(jobConf, datasetAccessor, recordScannable);
 
         InputSplit[] inputSplits = new InputSplit[dsSplits.size()];
         for (int i = 0; i < dsSplits.size(); i++) {
@@ -72,6 +82,45 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     }
   }
 
+  /**
+   * Gets the splits of the dataset. If the dataset is a {@link Table} with a row key field and the query has
+   * predicates on it, only splits of the key range that can contain matching rows are returned.
+   */
+  private List<Split> getDatasetSplits(Configuration conf, DatasetAccessor datasetAccessor,
+                                       RecordScannable recordScannable) throws IOException {
+    if (!(recordScannable instanceof Table)) {
+      return recordScannable.getSplits();
+    }
+
+    DatasetSpecification spec;
+    try {
+      spec = datasetAccessor.getDatasetSpec();
+    } catch (DatasetManagementException e) {
+      throw new IOException("Could not get dataset specification", e);
+    }
+    String rowField = spec.getProperty(Table.PROPERTY_SCHEMA_ROW_FIELD);
+    String schemaStr = spec.getProperty(Table.PROPERTY_SCHEMA);
+    if (rowField == null || schemaStr == null) {
+      return recordScannable.getSplits();
+    }
+    Schema.Field rowKeyField = Schema.parseJson(schemaStr).getField(rowField);
+    if (rowKeyField == null) {
+      return recordScannable.getSplits();
+    }
+
+    // Hive column names are always in lowercase
+    List<IndexSearchCondition> conditions = IndexPredicates.getSearchConditions(conf, rowField.toLowerCase());
+    RowKeyRange range = RowKeyRange.create(rowKeyField.getSchema(), conditions);
+    if (range.isAll()) {
+      return recordScannable.getSplits();
+    }
+    if (range.isEmpty()) {
+      LOG.debug("No row in dataset {} can match the query predicate.", spec.getName());
+      return ImmutableList.of();
+    }
+    return ((Table) recordScannable).getSplits(-1, range.getStart(), range.getStop());
+  }
+
   @Override
   public RecordReader<Void, ObjectWritable> getRecordReader(final InputSplit split, JobConf jobConf, Reporter reporter)
     throws IOException {
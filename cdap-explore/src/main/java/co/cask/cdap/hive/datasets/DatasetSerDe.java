@@ -22,6 +22,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.ServiceUnavailableException;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
@@ -35,6 +36,7 @@ import co.cask.cdap.proto.Id;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
@@ -49,7 +51,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 /**
  * SerDe to serialize Dataset Objects. It MUST implement the deprecated SerDe interface instead of extending the
@@ -63,6 +67,7 @@ public class DatasetSerDe implements SerDe {
   private ObjectDeserializer deserializer;
   private ObjectSerializer serializer;
   private Schema schema;
+  private String rowField;
 
   @Override
   public void initialize(Configuration conf, Properties properties) throws SerDeException {
@@ -95,7 +100,8 @@ public class DatasetSerDe implements SerDe {
       getDatasetSchema(conf, datasetId);
     }
 
-    this.deserializer = new ObjectDeserializer(properties, schema);
+    // Only flatten the columns needed by the query
+    this.deserializer = new ObjectDeserializer(properties, schema, 0, getReadColumnIds(conf));
     ArrayList<String> columnNames = Lists.newArrayList(StringUtils.split(properties.getProperty("columns"), ","));
     this.serializer = new ObjectSerializer(columnNames);
     this.objectInspector = deserializer.getInspector();
@@ -111,6 +117,7 @@ public class DatasetSerDe implements SerDe {
         String schemaStr = datasetSpec.getProperty("schema");
         if (schemaStr != null) {
           schema = Schema.parseJson(schemaStr);
+          rowField = datasetSpec.getProperty(Table.PROPERTY_SCHEMA_ROW_FIELD);
           return;
         }
       } catch (DatasetManagementException | ServiceUnavailableException e) {
@@ -146,6 +153,25 @@ public class DatasetSerDe implements SerDe {
     }
   }
 
+  /**
+   * Returns the ids of the columns to be read by the query, or {@code null} if all columns are needed.
+   */
+  @Nullable
+  private List<Integer> getReadColumnIds(@Nullable Configuration conf) {
+    if (conf == null || ColumnProjectionUtils.isReadAllColumns(conf)) {
+      return null;
+    }
+    return ColumnProjectionUtils.getReadColumnIDs(conf);
+  }
+
+  /**
+   * Returns the name of the schema field that is the row key of the dataset, or {@code null} if there is none.
+   */
+  @Nullable
+  String getRowField() {
+    return rowField;
+  }
+
   @Override
   public Class<? extends Writable> getSerializedClass() {
     return Text.class;
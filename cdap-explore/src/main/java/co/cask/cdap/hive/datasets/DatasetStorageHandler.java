@@ -20,11 +20,16 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.hive.context.CConfCodec;
 import co.cask.cdap.hive.context.ConfigurationUtil;
+import co.cask.cdap.hive.predicate.IndexPredicates;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.hive.ql.metadata.DefaultStorageHandler;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputFormat;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.slf4j.Logger;
@@ -41,7 +46,7 @@ import java.util.Map;
  * because this class extends a Hive class, which isn't present in the {@code ExploreServiceUtils} class loader.
  * </p>
  */
-public class DatasetStorageHandler extends DefaultStorageHandler {
+public class DatasetStorageHandler extends DefaultStorageHandler implements HiveStoragePredicateHandler {
   private static final Logger LOG = LoggerFactory.getLogger(DatasetStorageHandler.class);
 
   @SuppressWarnings("unchecked")
@@ -91,6 +96,20 @@ public class DatasetStorageHandler extends DefaultStorageHandler {
     LOG.debug("Got dataset {} in namespace {} for external table {}", datasetName, namespce, tableDesc.getTableName());
   }
 
+  @Override
+  public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer, ExprNodeDesc predicate) {
+    // Predicates on the row key are used by the DatasetInputFormat to limit the key range being scanned
+    if (!(deserializer instanceof DatasetSerDe)) {
+      return null;
+    }
+    String rowField = ((DatasetSerDe) deserializer).getRowField();
+    if (rowField == null) {
+      return null;
+    }
+    // Hive column names are always in lowercase
+    return IndexPredicates.decompose(predicate, rowField.toLowerCase());
+  }
+
   private boolean writesEnabled() {
     try {
       CConfiguration cConf = ConfigurationUtil.get(getConf(), Constants.Explore.CCONF_KEY, CConfCodec.INSTANCE);
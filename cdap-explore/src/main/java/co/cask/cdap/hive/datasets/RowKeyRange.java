@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.hive.predicate.IndexPredicates.CompareOp;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Range of row keys of a {@link co.cask.cdap.api.dataset.table.Table} that contains all the rows matching
+ * the comparisons on the row key field pushed down by Hive. Equality is supported for string, int and long
+ * row keys. Ranges are only supported for string row keys, since the byte encoding of other types doesn't have
+ * the same ordering as the values.
+ */
+final class RowKeyRange {
+
+  private final byte[] start;
+  private final byte[] stop;
+
+  /**
+   * Creates a {@link RowKeyRange} from the given search conditions.
+   *
+   * @param rowKeySchema schema of the row key field
+   * @param conditions conditions on the row key field
+   */
+  static RowKeyRange create(Schema rowKeySchema, List<IndexSearchCondition> conditions) {
+    Schema.Type type = rowKeySchema.isNullableSimple()
+      ? rowKeySchema.getNonNullable().getType() : rowKeySchema.getType();
+
+    byte[] start = null;
+    byte[] stop = null;
+    for (IndexSearchCondition condition : conditions) {
+      CompareOp op = CompareOp.from(condition.getComparisonOp());
+      ExprNodeConstantDesc constant = condition.getConstantDesc();
+      if (op == null || constant == null) {
+        continue;
+      }
+      byte[] key = toRowKey(type, constant.getValue());
+      if (key == null) {
+        continue;
+      }
+
+      if (op == CompareOp.EQUAL) {
+        // Only the given key. The smallest key that is larger than it is the key appended with a zero byte.
+        start = max(start, key);
+        stop = min(stop, Bytes.add(key, new byte[1]));
+        continue;
+      }
+      if (type != Schema.Type.STRING) {
+        continue;
+      }
+      switch (op) {
+        case GREATER:
+          start = max(start, Bytes.add(key, new byte[1]));
+          break;
+        case EQUAL_OR_GREATER:
+          start = max(start, key);
+          break;
+        case LESS:
+          stop = min(stop, key);
+          break;
+        case EQUAL_OR_LESS:
+          stop = min(stop, Bytes.add(key, new byte[1]));
+          break;
+        default:
+          break;
+      }
+    }
+    return new RowKeyRange(start, stop);
+  }
+
+  private RowKeyRange(@Nullable byte[] start, @Nullable byte[] stop) {
+    this.start = start;
+    this.stop = stop;
+  }
+
+  /**
+   * Returns the inclusive start row key or {@code null} if there is no lower bound.
+   */
+  @Nullable
+  byte[] getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the exclusive stop row key or {@code null} if there is no upper bound.
+   */
+  @Nullable
+  byte[] getStop() {
+    return stop;
+  }
+
+  /**
+   * Returns {@code true} if this range doesn't limit the rows to read.
+   */
+  boolean isAll() {
+    return start == null && stop == null;
+  }
+
+  /**
+   * Returns {@code true} if no row can be in this range.
+   */
+  boolean isEmpty() {
+    return start != null && stop != null && Bytes.compareTo(start, stop) >= 0;
+  }
+
+  /**
+   * Encodes the given Hive constant the same way as the row key is written, or returns {@code null} if it
+   * is not possible.
+   */
+  @Nullable
+  private static byte[] toRowKey(Schema.Type type, Object value) {
+    switch (type) {
+      case STRING:
+        return value instanceof String ? Bytes.toBytes((String) value) : null;
+      case INT:
+        if (isIntegral(value) && ((Number) value).longValue() == ((Number) value).intValue()) {
+          return Bytes.toBytes(((Number) value).intValue());
+        }
+        return null;
+      case LONG:
+        return isIntegral(value) ? Bytes.toBytes(((Number) value).longValue()) : null;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+  }
+
+  private static byte[] max(@Nullable byte[] current, byte[] key) {
+    return current == null || Bytes.compareTo(current, key) < 0 ? key : current;
+  }
+
+  private static byte[] min(@Nullable byte[] current, byte[] key) {
+    return current == null || Bytes.compareTo(current, key) > 0 ? key : current;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.predicate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.index.IndexPredicateAnalyzer;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Helper methods for pushing simple comparison predicates on a single column from Hive down to the storage layer.
+ * Storage handlers use {@link #decompose(ExprNodeDesc, String)} to tell Hive which part of the query filter can be
+ * handled, and input formats use {@link #getSearchConditions(Configuration, String)} to get the conditions
+ * pushed by Hive.
+ */
+public final class IndexPredicates {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IndexPredicates.class);
+
+  /**
+   * Decomposes the given predicate for pushing comparisons on the given column down to the storage.
+   * The whole predicate is kept as residual, hence Hive still evaluates it on every row returned from the storage,
+   * and the pushed down predicate only needs to be used to narrow down the data being read.
+   *
+   * @param predicate the predicate of the query
+   * @param columnName name of the column that the storage can use to narrow down the data read
+   * @return a {@link DecomposedPredicate} or {@code null} if nothing can be pushed down
+   */
+  @Nullable
+  public static DecomposedPredicate decompose(ExprNodeDesc predicate, String columnName) {
+    if (!(predicate instanceof ExprNodeGenericFuncDesc)) {
+      return null;
+    }
+    try {
+      IndexPredicateAnalyzer analyzer = createAnalyzer(columnName);
+      List<IndexSearchCondition> conditions = Lists.newArrayList();
+      analyzer.analyzePredicate(predicate, conditions);
+      if (conditions.isEmpty()) {
+        return null;
+      }
+
+      DecomposedPredicate decomposed = new DecomposedPredicate();
+      decomposed.pushedPredicate = analyzer.translateSearchConditions(conditions);
+      decomposed.residualPredicate = (ExprNodeGenericFuncDesc) predicate;
+      return decomposed;
+    } catch (Throwable t) {
+      // Older versions of Hive have different types for the DecomposedPredicate fields.
+      // Not pushing down is always correct since Hive evaluates the predicate on every row.
+      LOG.debug("Failed to decompose predicate {}. No predicate will be pushed down.", predicate, t);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the search conditions on the given column from the filter that Hive pushed down into the configuration.
+   *
+   * @param conf configuration of the query
+   * @param columnName name of the column to look for conditions
+   * @return list of conditions, which is empty if there is no filter pushed down or if it cannot be analyzed
+   */
+  public static List<IndexSearchCondition> getSearchConditions(Configuration conf, String columnName) {
+    // the conf contains a 'hive.io.filter.expr.serialized' key which contains the serialized form of ExprNodeDesc
+    String serializedExpr = conf.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+    if (serializedExpr == null) {
+      return ImmutableList.of();
+    }
+
+    try {
+      ExprNodeGenericFuncDesc expr;
+      // Hack to deal with the fact that older versions of Hive use
+      // Utilities.deserializeExpression(String, Configuration),
+      // whereas newer versions use Utilities.deserializeExpression(String).
+      try {
+        expr = Utilities.deserializeExpression(serializedExpr);
+      } catch (NoSuchMethodError e) {
+        expr = (ExprNodeGenericFuncDesc) Utilities.class.getMethod(
+          "deserializeExpression", String.class, Configuration.class).invoke(null, serializedExpr, conf);
+      }
+
+      List<IndexSearchCondition> conditions = Lists.newArrayList();
+      createAnalyzer(columnName).analyzePredicate(expr, conditions);
+      return conditions;
+    } catch (Throwable t) {
+      LOG.warn("Exception analyzing query predicate. A full table scan will be performed.", t);
+      return ImmutableList.of();
+    }
+  }
+
+  private static IndexPredicateAnalyzer createAnalyzer(String columnName) {
+    IndexPredicateAnalyzer analyzer = new IndexPredicateAnalyzer();
+    for (CompareOp op : CompareOp.values()) {
+      analyzer.addComparisonOp(op.getOpClassName());
+    }
+    analyzer.clearAllowedColumnNames();
+    analyzer.allowColumnName(columnName);
+    return analyzer;
+  }
+
+  private IndexPredicates() {
+  }
+
+  /**
+   * Comparison operations that can be pushed down.
+   */
+  public enum CompareOp {
+    EQUAL(GenericUDFOPEqual.class.getName()),
+    EQUAL_OR_GREATER(GenericUDFOPEqualOrGreaterThan.class.getName()),
+    EQUAL_OR_LESS(GenericUDFOPEqualOrLessThan.class.getName()),
+    GREATER(GenericUDFOPGreaterThan.class.getName()),
+    LESS(GenericUDFOPLessThan.class.getName());
+
+    private final String opClassName;
+
+    CompareOp(String opClassName) {
+      this.opClassName = opClassName;
+    }
+
+    public String getOpClassName() {
+      return opClassName;
+    }
+
+    /**
+     * Returns a {@link CompareOp} by matching the given class name or {@code null} if there is none matching.
+     */
+    @Nullable
+    public static CompareOp from(String opClassName) {
+      for (CompareOp op : values()) {
+        if (op.getOpClassName().equals(opClassName)) {
+          return op;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import co.cask.cdap.hive.objectinspector.ObjectInspectorFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.hadoop.hive.serde.serdeConstants;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
@@ -42,7 +43,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import javax.annotation.Nullable;
 
 /**
  * Helper class for translating objects that fit a cdap {@link Schema} into objects
@@ -51,6 +54,8 @@ import java.util.UUID;
 public class ObjectDeserializer {
   private final List<String> fieldNames;
   private final List<TypeInfo> fieldTypes;
+  // Hive names of the fields that are read by the query, or null if all fields are read
+  private final Set<String> projectedFields;
   private final ObjectInspector inspector;
   // we can almost do without the schema. The problem is that everything in Hive is lowercase,
   // but when we look up record fields we need the case sensitive field name.
@@ -75,9 +80,24 @@ public class ObjectDeserializer {
    * @param fieldOffset Ignore columns before the offset when flattening records
    */
   public ObjectDeserializer(Properties properties, Schema schema, int fieldOffset) {
+    this(properties, schema, fieldOffset, null);
+  }
+
+  /**
+   * Creates an ObjectTranslator that will be able to deserialize objects that fit a {@link Schema} into objects
+   * that a Hive ObjectInspector can understand. Will ignore columns that are before the given field offset when
+   * flattening records, and will only translate the given columns, leaving other columns as {@code null}.
+   * The ObjectInspector will still use all columns.
+   *
+   * @param properties Properties object passed to a SerDe during initialization that contains the table columns
+   * @param fieldOffset Ignore columns before the offset when flattening records
+   * @param readColumnIds Indices of the table columns read by the query, or {@code null} to read all columns
+   */
+  public ObjectDeserializer(Properties properties, Schema schema, int fieldOffset,
+                            @Nullable Collection<Integer> readColumnIds) {
     this(Lists.newArrayList(properties.getProperty(serdeConstants.LIST_COLUMNS).split(",")),
          TypeInfoUtils.getTypeInfosFromTypeString(properties.getProperty(serdeConstants.LIST_COLUMN_TYPES)),
-         schema, fieldOffset);
+         schema, fieldOffset, readColumnIds);
   }
 
   public ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema) {
@@ -86,8 +106,24 @@ public class ObjectDeserializer {
 
   @VisibleForTesting
   ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema, int fieldOffset) {
+    this(fieldNames, fieldTypes, schema, fieldOffset, null);
+  }
+
+  @VisibleForTesting
+  ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema, int fieldOffset,
+                     @Nullable Collection<Integer> readColumnIds) {
     this.fieldNames = fieldNames.subList(fieldOffset, fieldNames.size());
     this.fieldTypes = fieldTypes.subList(fieldOffset, fieldTypes.size());
+    if (readColumnIds == null) {
+      this.projectedFields = null;
+    } else {
+      this.projectedFields = Sets.newHashSet();
+      for (int columnId : readColumnIds) {
+        if (columnId >= fieldOffset && columnId < fieldNames.size()) {
+          projectedFields.add(fieldNames.get(columnId));
+        }
+      }
+    }
     // inspector should still use all names and types passed in. This is in case there are some fields that are
     // determined outside of this class, such as the stream case where timestamp and headers are read elsewhere
     this.inspector = createInspector(fieldNames, fieldTypes);
@@ -103,6 +139,23 @@ public class ObjectDeserializer {
     return inspector;
   }
 
+  /**
+   * Returns the names of the schema fields that will be translated, or {@code null} if all fields are translated.
+   */
+  @Nullable
+  public Set<String> getProjectedSchemaFields() {
+    if (projectedFields == null || schema == null) {
+      return null;
+    }
+    Set<String> schemaFields = Sets.newHashSet();
+    for (Map.Entry<String, Schema.Field> entry : getFieldMap(schema).entrySet()) {
+      if (projectedFields.contains(entry.getKey())) {
+        schemaFields.add(entry.getValue().getName());
+      }
+    }
+    return schemaFields;
+  }
+
   /**
    * Using reflection, deserialize an object that fits a {@link Schema} into one that can be examined
    * by an ObjectInspector.
@@ -116,7 +169,7 @@ public class ObjectDeserializer {
     if (fieldTypes.size() == 1) {
       return deserializeField(obj, fieldTypes.get(0), schema);
     } else {
-      return flattenRecord(obj, fieldNames, fieldTypes, schema);
+      return flattenRecord(obj, fieldNames, fieldTypes, schema, projectedFields);
     }
   }
 
@@ -130,11 +183,12 @@ public class ObjectDeserializer {
    * @throws IllegalAccessException
    */
   public List<Object> translateRecord(Object obj) throws NoSuchFieldException, IllegalAccessException {
-    return flattenRecord(obj, fieldNames, fieldTypes, schema);
+    return flattenRecord(obj, fieldNames, fieldTypes, schema, projectedFields);
   }
 
   private List<Object> flattenRecord(Object obj, List<String> fieldNames, List<TypeInfo> fieldTypes,
-                                     Schema schema) throws NoSuchFieldException, IllegalAccessException {
+                                     Schema schema, @Nullable Set<String> projectedFields)
+    throws NoSuchFieldException, IllegalAccessException {
     boolean isNullable = schema.isNullable();
     if (obj == null) {
       if (isNullable) {
@@ -151,6 +205,11 @@ public class ObjectDeserializer {
     List<Object> objectFields = Lists.newArrayListWithCapacity(fieldNames.size());
     for (int i = 0; i < fieldNames.size(); i++) {
       String hiveName = fieldNames.get(i);
+      if (projectedFields != null && !projectedFields.contains(hiveName)) {
+        // field is not read, no need to translate
+        objectFields.add(null);
+        continue;
+      }
       TypeInfo fieldType = fieldTypes.get(i);
       Schema.Field schemaField = fieldMap.get(hiveName);
       // use the name from the schema field in case it is not all lowercase
@@ -203,7 +262,7 @@ public class ObjectDeserializer {
         StructTypeInfo structTypeInfo = (StructTypeInfo) typeInfo;
         ArrayList<String> innerFieldNames = structTypeInfo.getAllStructFieldNames();
         ArrayList<TypeInfo> innerFieldTypes = structTypeInfo.getAllStructFieldTypeInfos();
-        return flattenRecord(field, innerFieldNames, innerFieldTypes, schema);
+        return flattenRecord(field, innerFieldNames, innerFieldTypes, schema, null);
       case UNION:
         // TODO: decide what to do here
         return field;
@@ -18,37 +18,36 @@ package co.cask.cdap.hive.stream;
 
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.ReadFilter;
-import co.cask.cdap.data.stream.PositionStreamEvent;
 import co.cask.cdap.data.stream.StreamDataFileReader;
+import co.cask.cdap.data.stream.StreamEventBatch;
 import co.cask.cdap.data.stream.TimeRangeReadFilter;
-import com.google.common.collect.Lists;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link org.apache.hadoop.mapred.RecordReader} for reading stream events in hive queries. This is different
- * enough from the mapreduce version that there is not a common class for the two.
+ * enough from the mapreduce version that there is not a common class for the two. Events are read from the
+ * stream file in batches and set into the value one by one. The event set into the value is only valid until the
+ * next call to {@link #next(Void, ObjectWritable)}, as its body is backed by the batch buffer, which is reused for
+ * the next batch. The event headers are shared by the events in a batch and can't be modified.
  */
 final class StreamRecordReader implements RecordReader<Void, ObjectWritable> {
-  private static final Logger LOG = LoggerFactory.getLogger(StreamRecordReader.class);
 
-  private final List<PositionStreamEvent> events;
+  private final StreamEventBatch batch;
   private final StreamDataFileReader reader;
   private final StreamInputSplit inputSplit;
   private final ReadFilter readFilter;
+  private int batchIndex;
+  private boolean splitEnded;
 
   StreamRecordReader(InputSplit split, JobConf conf) throws IOException {
     this.inputSplit = (StreamInputSplit) split;
-    this.events = Lists.newArrayListWithCapacity(1);
+    this.batch = new StreamEventBatch();
     this.reader = createReader(FileSystem.get(conf), inputSplit);
     this.readFilter = new TimeRangeReadFilter(inputSplit.getStartTime(), inputSplit.getEndTime());
   }
@@ -65,21 +64,23 @@ final class StreamRecordReader implements RecordReader<Void, ObjectWritable> {
 
   @Override
   public boolean next(Void key, ObjectWritable value) throws IOException {
-    events.clear();
-    try {
-      if (reader.read(events, 1, 0, TimeUnit.SECONDS, readFilter) <= 0) {
-        return false;
-      }
-      PositionStreamEvent streamEvent = events.get(0);
-      if (streamEvent.getStart() - inputSplit.getStart() >= inputSplit.getLength()) {
+    if (splitEnded) {
+      return false;
+    }
+    if (batchIndex >= batch.size()) {
+      batch.clear();
+      batchIndex = 0;
+      if (reader.readBatch(batch, readFilter) <= 0) {
+        splitEnded = true;
         return false;
       }
-      value.set(streamEvent);
-      return true;
-    } catch (InterruptedException e) {
-      LOG.error("interrupted while reading stream events.", e);
+    }
+    if (batch.getPosition(batchIndex) - inputSplit.getStart() >= inputSplit.getLength()) {
+      splitEnded = true;
       return false;
     }
+    value.set(batch.getEventView(batchIndex++));
+    return true;
   }
 
   @Override
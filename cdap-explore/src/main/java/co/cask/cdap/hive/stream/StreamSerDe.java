@@ -32,6 +32,7 @@ import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
@@ -45,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 /**
  * SerDe to deserialize Stream Events. It MUST implement the deprecated SerDe interface instead of extending the
@@ -65,6 +67,8 @@ public class StreamSerDe implements SerDe {
   private ObjectInspector inspector;
   private AbstractStreamEventRecordFormat<?> streamFormat;
   private ObjectDeserializer deserializer;
+  // The row returned by deserialize. It is reused across calls, as Hive consumes a row before deserializing the next.
+  private final List<Object> row = Lists.newArrayList();
 
   // initialize gets called multiple times by Hive. It may seem like a good idea to put additional settings into
   // the conf, but be very careful when doing so. If there are multiple hive tables involved in a query, initialize
@@ -97,8 +101,10 @@ public class StreamSerDe implements SerDe {
       FormatSpecification formatSpec = getFormatSpec(properties, streamId, context);
       this.streamFormat = (AbstractStreamEventRecordFormat) RecordFormats.createInitializedFormat(formatSpec);
       Schema schema = formatSpec.getSchema();
-      this.deserializer = new ObjectDeserializer(properties, schema, BODY_OFFSET);
+      this.deserializer = new ObjectDeserializer(properties, schema, BODY_OFFSET, getReadColumnIds(conf));
       this.inspector = deserializer.getInspector();
+      // Only read the body fields needed by the query
+      streamFormat.setProjection(deserializer.getProjectedSchemaFields());
     } catch (UnsupportedTypeException e) {
       // this should have been validated up front when schema was set on the stream.
       // if we hit this something went wrong much earlier.
@@ -136,14 +142,14 @@ public class StreamSerDe implements SerDe {
     StreamEvent streamEvent = (StreamEvent) objectWritable.get();
 
     // timestamp and headers are always guaranteed to be first.
-    List<Object> event = Lists.newArrayList();
-    event.add(streamEvent.getTimestamp());
-    event.add(streamEvent.getHeaders());
+    row.clear();
+    row.add(streamEvent.getTimestamp());
+    row.add(streamEvent.getHeaders());
 
     try {
       // The format should always format the stream event into a record.
-      event.addAll(deserializer.translateRecord(streamFormat.read(streamEvent)));
-      return event;
+      row.addAll(deserializer.translateRecord(streamFormat.read(streamEvent)));
+      return row;
     } catch (Throwable t) {
       LOG.info("Unable to format the stream body.", t);
       throw new SerDeException("Unable to format the stream body.", t);
@@ -155,6 +161,18 @@ public class StreamSerDe implements SerDe {
     return inspector;
   }
 
+  /**
+   * Returns the indices of the columns read by the query as pushed down by Hive,
+   * or {@code null} if all columns are needed.
+   */
+  @Nullable
+  private List<Integer> getReadColumnIds(Configuration conf) {
+    if (conf == null || ColumnProjectionUtils.isReadAllColumns(conf)) {
+      return null;
+    }
+    return ColumnProjectionUtils.getReadColumnIDs(conf);
+  }
+
   /**
    * Gets the {@link FormatSpecification} for the given stream based on the SerDe properties.
    * For backward compatibility, if the format specification is not set in the SerDe properties, it will be
@@ -17,11 +17,16 @@
 package co.cask.cdap.hive.stream;
 
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.hive.predicate.IndexPredicates;
 import org.apache.hadoop.hive.metastore.HiveMetaHook;
 import org.apache.hadoop.hive.ql.metadata.DefaultStorageHandler;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.JobConf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +40,7 @@ import java.util.Map;
  * because this class extends a Hive class, which isn't present in the {@code ExploreServiceUtils} class loader.
  * </p>
  */
-public class StreamStorageHandler extends DefaultStorageHandler {
+public class StreamStorageHandler extends DefaultStorageHandler implements HiveStoragePredicateHandler {
   private static final Logger LOG = LoggerFactory.getLogger(StreamStorageHandler.class);
 
   @Override
@@ -72,6 +77,12 @@ public class StreamStorageHandler extends DefaultStorageHandler {
     throw new UnsupportedOperationException("Writing to streams through Hive is not supported");
   }
 
+  @Override
+  public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer, ExprNodeDesc predicate) {
+    // Predicates on the event timestamp are used by the HiveStreamInputFormat to limit the stream files being read
+    return IndexPredicates.decompose(predicate, "ts");
+  }
+
   @Override
   public HiveMetaHook getMetaHook() {
     return null;
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.hive.predicate.IndexPredicates.CompareOp;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RowKeyRange}.
+ */
+public class RowKeyRangeTest {
+
+  private static final Schema STRING_SCHEMA = Schema.of(Schema.Type.STRING);
+
+  @Test
+  public void testNoCondition() {
+    RowKeyRange range = RowKeyRange.create(STRING_SCHEMA, ImmutableList.<IndexSearchCondition>of());
+    Assert.assertTrue(range.isAll());
+    Assert.assertFalse(range.isEmpty());
+  }
+
+  @Test
+  public void testEqual() {
+    RowKeyRange range = RowKeyRange.create(STRING_SCHEMA, ImmutableList.of(condition(CompareOp.EQUAL, "abc")));
+    Assert.assertArrayEquals(Bytes.toBytes("abc"), range.getStart());
+    Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("abc"), new byte[1]), range.getStop());
+
+    range = RowKeyRange.create(Schema.nullableOf(Schema.of(Schema.Type.INT)),
+                               ImmutableList.of(condition(CompareOp.EQUAL, 10)));
+    Assert.assertArrayEquals(Bytes.toBytes(10), range.getStart());
+
+    // Long value that doesn't fit in an int key shouldn't be pushed down
+    range = RowKeyRange.create(Schema.of(Schema.Type.INT),
+                               ImmutableList.of(condition(CompareOp.EQUAL, Long.MAX_VALUE)));
+    Assert.assertTrue(range.isAll());
+
+    range = RowKeyRange.create(Schema.of(Schema.Type.LONG), ImmutableList.of(condition(CompareOp.EQUAL, 10)));
+    Assert.assertArrayEquals(Bytes.toBytes(10L), range.getStart());
+  }
+
+  @Test
+  public void testRange() {
+    RowKeyRange range = RowKeyRange.create(STRING_SCHEMA, ImmutableList.of(
+      condition(CompareOp.GREATER, "b"), condition(CompareOp.EQUAL_OR_GREATER, "a"), condition(CompareOp.LESS, "d")));
+    Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("b"), new byte[1]), range.getStart());
+    Assert.assertArrayEquals(Bytes.toBytes("d"), range.getStop());
+
+    range = RowKeyRange.create(STRING_SCHEMA, ImmutableList.of(condition(CompareOp.EQUAL_OR_LESS, "d")));
+    Assert.assertNull(range.getStart());
+    Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("d"), new byte[1]), range.getStop());
+
+    // Conflicting conditions
+    range = RowKeyRange.create(STRING_SCHEMA, ImmutableList.of(
+      condition(CompareOp.GREATER, "d"), condition(CompareOp.LESS, "b")));
+    Assert.assertTrue(range.isEmpty());
+
+    // Range on numeric keys is not pushed down since the byte ordering is different
+    range = RowKeyRange.create(Schema.of(Schema.Type.INT), ImmutableList.of(condition(CompareOp.GREATER, -10)));
+    Assert.assertTrue(range.isAll());
+  }
+
+  private IndexSearchCondition condition(CompareOp op, Object value) {
+    ExprNodeConstantDesc constant = new ExprNodeConstantDesc(value);
+    ExprNodeColumnDesc column = new ExprNodeColumnDesc(constant.getTypeInfo(), "key", "table", false);
+    return new IndexSearchCondition(column, op.getOpClassName(), constant, null);
+  }
+}
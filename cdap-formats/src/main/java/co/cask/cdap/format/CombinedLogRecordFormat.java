@@ -23,8 +23,9 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.spi.stream.AbstractStreamEventRecordFormat;
-import com.google.common.collect.Lists;
+import com.google.common.base.Charsets;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 
@@ -35,23 +36,74 @@ import java.util.List;
  * 220.181.108.77 - - [01/Feb/2015:06:59:57 +0000] "GET / HTTP/1.1" 301 295 "-"
  * "Mozilla/5.0 (compatible; Baiduspider/2.0; +http://www.baidu.com/search/spider.html)"
  *
+ * Entries are scanned directly on the UTF-8 encoded event body. Only entries that correspond to schema fields
+ * are scanned, and only the ones for projected fields are decoded into strings.
  */
 public class CombinedLogRecordFormat extends AbstractStreamEventRecordFormat<StructuredRecord> {
 
+  private static final byte SPACE = ' ';
+  private static final byte QUOTE = '"';
+  private static final byte OPEN_BRACKET = '[';
+  private static final byte CLOSE_BRACKET = ']';
+  private static final byte ESCAPE = '\\';
+
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody());
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    List<String> parts = getLogEntries(bodyAsStr);
-    List<Schema.Field> fields = schema.getFields();
-    int index = 0;
-    while (index < fields.size()) {
-      Schema.Field field = fields.get(index);
-      String val = (parts.size() < index || (parts.get(index).equals("-") &&
-                                             field.getSchema().getType() != Schema.Type.STRING))
-                    ? null : parts.get(index);
-      builder.convertAndSet(field.getName(), val);
-      index++;
+    ByteBuffer body = event.getBody();
+    byte[] data;
+    int position;
+    if (body.hasArray()) {
+      data = body.array();
+      position = body.arrayOffset() + body.position();
+    } else {
+      data = Bytes.toBytes(body);
+      position = 0;
+    }
+    int limit = position + body.remaining();
+
+    Schema recordSchema = getRecordSchema();
+    StructuredRecord.Builder builder = StructuredRecord.builder(recordSchema);
+    List<Schema.Field> fields = recordSchema.getFields();
+
+    // Scans one log entry per schema field. Fields without corresponding entry are left as null.
+    for (Schema.Field field : fields) {
+      // Skip empty spaces
+      while (position < limit && data[position] == SPACE) {
+        position++;
+      }
+      if (position >= limit) {
+        break;
+      }
+
+      int start = position;
+      int end;
+      if (data[start] == QUOTE) {
+        // Find the closing '"' and extract values within
+        start++;
+        end = findNext(data, start, limit, QUOTE);
+      } else if (data[start] == OPEN_BRACKET) {
+        // find the closing ']' and extract values
+        start++;
+        end = findNext(data, start, limit, CLOSE_BRACKET);
+      } else {
+        // find the next ' ' and extract values
+        end = findNext(data, start + 1, limit, SPACE);
+      }
+      if (end < 0) {
+        throw new UnexpectedFormatException(String.format("Could not parse data in CLF format. Entry %s",
+                                                          Bytes.toString(body)));
+      }
+      position = end + 1;
+
+      String fieldName = field.getName();
+      if (!isProjected(fieldName)) {
+        continue;
+      }
+      String val = null;
+      if (!(end - start == 1 && data[start] == '-' && field.getSchema().getType() != Schema.Type.STRING)) {
+        val = new String(data, start, end - start, Charsets.UTF_8);
+      }
+      builder.convertAndSet(fieldName, val);
     }
 
     return builder.build();
@@ -87,51 +139,11 @@ public class CombinedLogRecordFormat extends AbstractStreamEventRecordFormat<Str
     }
   }
 
-  // parse CLF logEvent and get the record values.
-  private List<String> getLogEntries(String logEvent) {
-    List<String> parts = Lists.newArrayList();
-    int start = 0;
-    while (start < logEvent.length()) {
-      if (logEvent.charAt(start) == ' ') {
-        // Skip empty spaces
-        start++;
-      } else {
-        start = addNextLogEntry(logEvent, start, parts);
-      }
-    }
-    return parts;
-  }
-
-  // addNextLogEntry and return the start position of next entry.
-  private int addNextLogEntry(String data, int start, List<String> parts) {
-    int end = -1;
-    if (data.charAt(start) == '"') {
-      // Find the closing '"' and extract values within
-      start = start + 1;
-      end = findNext(data, start, '"');
-    } else if (data.charAt(start) == '[') {
-      // find the closing ']' and extract values
-      start = start + 1;
-      end = findNext(data, start, ']');
-    } else {
-      // find the next ' ' and extract values
-      end = findNext(data, start + 1, ' ');
-    }
-
-    if (end == -1) {
-      throw new UnexpectedFormatException(String.format("Could not parse data in CLF format. Entry %s", data));
-    }
-
-    parts.add(data.substring(start, end));
-    return end + 1;
-  }
-
-  // Find the next character matching the "entry". Skip the entry that is escaped.
-  private int findNext(String data, int startPosition, char entry) {
+  // Find the next byte matching the "entry". Skip the entry that is escaped.
+  private int findNext(byte[] data, int startPosition, int limit, byte entry) {
     int position = startPosition;
-    int length = data.length();
-    while (position < length) {
-      if (data.charAt(position) == entry && (position == 0 || data.charAt(position - 1) != '\\')) {
+    while (position < limit) {
+      if (data[position] == entry && data[position - 1] != ESCAPE) {
         return position;
       }
       position++;
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An {@link Iterator} over the delimited fields of an encoded string. It scans the delimiter directly on the
+ * encoded bytes and only decodes the fields returned by {@link #next()}, while fields passed over with
+ * {@link #skip()} are never decoded. It produces the same fields as
+ * {@link com.google.common.base.Splitter#on(String)}.
+ *
+ * Scanning on the encoded bytes is only correct for charsets in which the encoding of the delimiter cannot
+ * appear inside the encoding of other characters, which is checked by {@link #isSupported(Charset)}.
+ */
+final class DelimitedFieldIterator implements Iterator<String> {
+
+  private static final Set<Charset> SUPPORTED_CHARSETS = ImmutableSet.of(Charsets.UTF_8, Charsets.US_ASCII,
+                                                                         Charsets.ISO_8859_1);
+
+  private final byte[] delimiter;
+  private final Charset charset;
+  private final byte[] bytes;
+  private final int limit;
+  private int position;
+  private boolean hasNext;
+
+  /**
+   * Returns {@code true} if delimiters can be scanned on bytes encoded with the given charset.
+   */
+  static boolean isSupported(Charset charset) {
+    return SUPPORTED_CHARSETS.contains(charset);
+  }
+
+  /**
+   * Creates an iterator over the remaining bytes of the given buffer. The position of the buffer is not modified.
+   *
+   * @param buffer the encoded string
+   * @param delimiter the delimiter encoded with the given charset; must not be empty
+   * @param charset charset for decoding fields
+   */
+  DelimitedFieldIterator(ByteBuffer buffer, byte[] delimiter, Charset charset) {
+    this.delimiter = delimiter;
+    this.charset = charset;
+    if (buffer.hasArray()) {
+      this.bytes = buffer.array();
+      this.position = buffer.arrayOffset() + buffer.position();
+    } else {
+      this.bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      this.position = 0;
+    }
+    this.limit = position + buffer.remaining();
+    this.hasNext = true;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return hasNext;
+  }
+
+  @Override
+  public String next() {
+    int start = position;
+    int end = advance();
+    return new String(bytes, start, end - start, charset);
+  }
+
+  /**
+   * Moves past the next field without decoding it.
+   *
+   * @throws NoSuchElementException if there is no more field
+   */
+  void skip() {
+    advance();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("Remove not supported");
+  }
+
+  /**
+   * Advances to the start of the next field.
+   *
+   * @return the exclusive end position of the current field
+   */
+  private int advance() {
+    if (!hasNext) {
+      throw new NoSuchElementException();
+    }
+    int end = indexOfDelimiter(position);
+    if (end < 0) {
+      // Last field
+      hasNext = false;
+      end = limit;
+      position = limit;
+    } else {
+      position = end + delimiter.length;
+    }
+    return end;
+  }
+
+  private int indexOfDelimiter(int from) {
+    byte first = delimiter[0];
+    int last = limit - delimiter.length;
+    for (int i = from; i <= last; i++) {
+      if (bytes[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < delimiter.length && bytes[i + j] == delimiter[j]) {
+        j++;
+      }
+      if (j == delimiter.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
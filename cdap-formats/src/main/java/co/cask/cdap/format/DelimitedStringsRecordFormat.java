@@ -26,12 +26,11 @@ import co.cask.cdap.spi.stream.AbstractStreamEventRecordFormat;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import java.nio.charset.Charset;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -60,13 +59,20 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   public static final String MAPPING = "mapping";
   private Charset charset = Charsets.UTF_8;
   private String delimiter = ",";
+  // Encoded delimiter for scanning fields directly on the event body. It is null if the charset doesn't support it.
+  private byte[] delimiterBytes = delimiter.getBytes(charset);
   private RecordMaker recordMaker = new DefaultRecordMaker();
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody(), charset);
-    Iterator<String> bodyFields = Splitter.on(delimiter).split(bodyAsStr).iterator();
-    return recordMaker.make(schema, bodyFields);
+    Iterator<String> bodyFields;
+    if (delimiterBytes != null) {
+      bodyFields = new DelimitedFieldIterator(event.getBody(), delimiterBytes, charset);
+    } else {
+      String bodyAsStr = Bytes.toString(event.getBody(), charset);
+      bodyFields = Splitter.on(delimiter).split(bodyAsStr).iterator();
+    }
+    return recordMaker.make(getRecordSchema(), bodyFields);
   }
 
   @Override
@@ -107,6 +113,8 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     if (delimiter != null) {
       this.delimiter = delimiter;
     }
+    boolean scanBytes = DelimitedFieldIterator.isSupported(this.charset) && !this.delimiter.isEmpty();
+    this.delimiterBytes = scanBytes ? this.delimiter.getBytes(this.charset) : null;
 
     if (!getDefaultSchema().equals(schema)) {
       String mapping = settings.get(MAPPING);
@@ -141,6 +149,15 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     return false;
   }
 
+  // moves past the next field without decoding it if possible.
+  private static void skipField(Iterator<String> bodyFields) {
+    if (bodyFields instanceof DelimitedFieldIterator) {
+      ((DelimitedFieldIterator) bodyFields).skip();
+    } else {
+      bodyFields.next();
+    }
+  }
+
   private static String parseBodyValue(String val, Schema fieldSchema) {
     // if the body field is an empty string and the column is not a string type, interpret it as a null.
     if (val != null && val.isEmpty() && (fieldSchema.getType() != Schema.Type.STRING)) {
@@ -199,9 +216,9 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   }
 
   /**
-   * {@link RecordMaker} that uses a schema.
+   * {@link RecordMaker} that uses a schema. Only fields that are projected get decoded.
    */
-  private static class SchemaRecordMaker implements RecordMaker {
+  private class SchemaRecordMaker implements RecordMaker {
 
     @Override
     public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
@@ -214,12 +231,18 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
         if (isStringArray(fieldSchema)) {
           if (!fieldsIterator.hasNext()) {
             // only do varargs-style string array parsing on bodyField if it's the last field
-            List<String> fields = Lists.newArrayList(bodyFields);
-            builder.set(fieldName, fields.toArray(new String[fields.size()]));
+            if (isProjected(fieldName)) {
+              List<String> fields = Lists.newArrayList(bodyFields);
+              builder.set(fieldName, fields.toArray(new String[fields.size()]));
+            }
           } else {
             throw new UnexpectedFormatException(
               String.format("string array type field '%s' must be the last schema field", fieldName));
           }
+        } else if (!isProjected(fieldName)) {
+          if (bodyFields.hasNext()) {
+            skipField(bodyFields);
+          }
         } else {
           // simple type (not string array)
           String bodyField = bodyFields.hasNext() ? bodyFields.next() : null;
@@ -232,32 +255,54 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   }
 
   /**
-   * {@link RecordMaker} that uses the "mapping" setting and a schema.
+   * {@link RecordMaker} that uses the "mapping" setting and a schema. The body is only scanned up to the
+   * last mapped index, and only fields that are mapped and projected get decoded.
    */
-  private static class MappedSchemaRecordMaker implements RecordMaker {
+  private class MappedSchemaRecordMaker implements RecordMaker {
     private final Map<String, Integer> mapping;
-    private final int lastMappingIndex;
 
     private MappedSchemaRecordMaker(Map<String, Integer> mapping) {
       this.mapping = mapping;
-      this.lastMappingIndex = Collections.max(mapping.values());
     }
 
     @Override
     public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-      // TODO: only read what's necessary from event.getBody() (e.g. if mapping is "0:f0", then only read first entry)
-      List<String> fields = Lists.newArrayList(Iterators.limit(bodyFields, lastMappingIndex + 1));
+
+      // Decodes body fields up to the last one needed, skipping the ones that are not needed
+      BitSet neededIndices = getNeededIndices();
+      String[] fields = new String[neededIndices.length()];
+      int size = 0;
+      while (size < fields.length && bodyFields.hasNext()) {
+        if (neededIndices.get(size)) {
+          fields[size] = bodyFields.next();
+        } else {
+          skipField(bodyFields);
+        }
+        size++;
+      }
+
       for (Schema.Field field : schema.getFields()) {
         Schema fieldSchema = field.getSchema();
         String fieldName = field.getName();
         int index = mapping.get(fieldName);
-        if (index < fields.size()) {
-          String val = parseBodyValue(fields.get(index), fieldSchema);
+        if (index < size && isProjected(fieldName)) {
+          String val = parseBodyValue(fields[index], fieldSchema);
           builder.convertAndSet(fieldName, val);
         }
       }
       return builder.build();
     }
+
+    // returns the indices of body fields that are mapped to projected fields
+    private BitSet getNeededIndices() {
+      BitSet indices = new BitSet();
+      for (Map.Entry<String, Integer> entry : mapping.entrySet()) {
+        if (isProjected(entry.getKey())) {
+          indices.set(entry.getValue());
+        }
+      }
+      return indices;
+    }
   }
 }
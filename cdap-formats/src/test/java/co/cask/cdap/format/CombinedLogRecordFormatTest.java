@@ -23,10 +23,13 @@ import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
 /**
  * CombinedLogFormat tests.
@@ -106,4 +109,68 @@ public class CombinedLogRecordFormatTest {
     String data = "10.10.10.10[01/Feb/2015:06:47:10 +0000";
     StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data))));
   }
+
+  @Test
+  public void testCLFLogWithProjection() throws UnsupportedTypeException, UnexpectedFormatException {
+    CombinedLogRecordFormat format = new CombinedLogRecordFormat();
+    FormatSpecification spec = new FormatSpecification(CombinedLogRecordFormat.class.getCanonicalName(),
+                                                       null, ImmutableMap.<String, String>of());
+    format.initialize(spec);
+    format.setProjection(ImmutableSet.of("date", "status"));
+    String data = "10.10.10.10 - - [01/Feb/2015:06:47:10 +0000] \"GET /browse/COOP-DBT-JOB1-238/artifact HTTP/1.1\"" +
+      " 301 256 \"-\" \"Mozilla/5.0 (compatible; AhrefsBot/5.0; +http://ahrefs.com/robot/)\"";
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data))));
+
+    Assert.assertNull(output.get("remote_host"));
+    Assert.assertEquals("01/Feb/2015:06:47:10 +0000", output.get("date"));
+    Assert.assertNull(output.get("request"));
+    Assert.assertEquals(301, output.get("status"));
+    Assert.assertNull(output.get("content_length"));
+    Assert.assertNull(output.get("user_agent"));
+  }
+
+  @Test
+  public void testCLFLogWithMissingEntries() throws UnsupportedTypeException, UnexpectedFormatException {
+    CombinedLogRecordFormat format = new CombinedLogRecordFormat();
+    FormatSpecification spec = new FormatSpecification(CombinedLogRecordFormat.class.getCanonicalName(),
+                                                       null, ImmutableMap.<String, String>of());
+    format.initialize(spec);
+    String data = "10.10.10.10 - - [01/Feb/2015:06:47:10 +0000] \"GET / HTTP/1.1\" ";
+    StructuredRecord output = format.read(new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data))));
+
+    Assert.assertEquals("10.10.10.10", output.get("remote_host"));
+    Assert.assertEquals("GET / HTTP/1.1", output.get("request"));
+    Assert.assertNull(output.get("status"));
+    Assert.assertNull(output.get("user_agent"));
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws UnsupportedTypeException, UnexpectedFormatException {
+    CombinedLogRecordFormat format = new CombinedLogRecordFormat();
+    FormatSpecification spec = new FormatSpecification(CombinedLogRecordFormat.class.getCanonicalName(),
+                                                       null, ImmutableMap.<String, String>of());
+    format.initialize(spec);
+    String data = "10.10.10.10 - - [01/Feb/2015:06:47:10 +0000] \"GET /browse/COOP-DBT-JOB1-238/artifact HTTP/1.1\"" +
+      " 301 256 \"-\" \"Mozilla/5.0 (compatible; AhrefsBot/5.0; +http://ahrefs.com/robot/)\"";
+    StreamEvent event = new StreamEvent(ByteBuffer.wrap(Bytes.toBytes(data)));
+
+    int count = 1000000;
+    long startTime = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      format.read(event);
+    }
+    long endTime = System.nanoTime();
+    System.out.println("All fields, records per second: " +
+                         count * TimeUnit.SECONDS.toNanos(1) / (endTime - startTime));
+
+    format.setProjection(ImmutableSet.of("status"));
+    startTime = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      format.read(event);
+    }
+    endTime = System.nanoTime();
+    System.out.println("One field, records per second: " +
+                         count * TimeUnit.SECONDS.toNanos(1) / (endTime - startTime));
+  }
 }
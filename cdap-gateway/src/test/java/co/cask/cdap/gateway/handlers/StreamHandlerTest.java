@@ -21,6 +21,9 @@ import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventBinaryCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -36,8 +39,11 @@ import co.cask.common.http.HttpRequest;
 import co.cask.common.http.HttpRequests;
 import co.cask.common.http.HttpResponse;
 import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
@@ -45,14 +51,22 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.ArrayUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -60,11 +74,14 @@ import java.net.URL;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Test stream handler. This is not part of GatewayFastTestsSuite because it needs to start the gateway multiple times.
  */
 public class StreamHandlerTest extends GatewayTestBase {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamHandlerTest.class);
   private static final String API_KEY = GatewayTestBase.getAuthHeader().getValue();
 
   private static final Gson GSON = StreamEventTypeAdapter.register(
@@ -163,6 +180,129 @@ public class StreamHandlerTest extends GatewayTestBase {
     urlConn.disconnect();
   }
 
+  @Test
+  public void testBinaryFetch() throws Exception {
+    // Create new stream.
+    HttpURLConnection urlConn = openURL(createURL("streams/test_stream_binary"), HttpMethod.PUT);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Enqueue 10 entries
+    for (int i = 0; i < 10; ++i) {
+      urlConn = openURL(createURL("streams/test_stream_binary"), HttpMethod.POST);
+      urlConn.setDoOutput(true);
+      urlConn.addRequestProperty("test_stream_binary.header1", Integer.toString(i));
+      urlConn.getOutputStream().write(Integer.toString(i).getBytes(Charsets.UTF_8));
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+      urlConn.disconnect();
+    }
+
+    // Fetch 4 entries at a time, resuming with the cursor returned by each response
+    List<StreamEvent> events = Lists.newArrayList();
+    String cursor = null;
+    for (int i = 0; i < 3; i++) {
+      cursor = fetchBinaryEvents("test_stream_binary", cursor, 4, events);
+      Assert.assertNotNull(cursor);
+    }
+    Assert.assertEquals(10, events.size());
+    for (int i = 0; i < 10; i++) {
+      StreamEvent event = events.get(i);
+      Assert.assertEquals(i, Integer.parseInt(Charsets.UTF_8.decode(event.getBody()).toString()));
+      Assert.assertEquals(Integer.toString(i), event.getHeaders().get("header1"));
+    }
+
+    // No more event after the last cursor
+    urlConn = openURL(createURL("streams/test_stream_binary/events?cursor=" + cursor), HttpMethod.GET);
+    urlConn.setRequestProperty(HttpHeaders.Names.ACCEPT, StreamEventBinaryCodec.CONTENT_TYPE);
+    Assert.assertEquals(HttpResponseStatus.NO_CONTENT.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Events written after the last fetch are read when resuming with its cursor
+    for (int i = 10; i < 15; ++i) {
+      urlConn = openURL(createURL("streams/test_stream_binary"), HttpMethod.POST);
+      urlConn.setDoOutput(true);
+      urlConn.addRequestProperty("test_stream_binary.header1", Integer.toString(i));
+      urlConn.getOutputStream().write(Integer.toString(i).getBytes(Charsets.UTF_8));
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+      urlConn.disconnect();
+    }
+    events.clear();
+    cursor = fetchBinaryEvents("test_stream_binary", cursor, 10, events);
+    Assert.assertNotNull(cursor);
+    Assert.assertEquals(5, events.size());
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(i + 10, Integer.parseInt(Charsets.UTF_8.decode(events.get(i).getBody()).toString()));
+    }
+
+    // Invalid cursor
+    urlConn = openURL(createURL("streams/test_stream_binary/events?cursor=invalid"), HttpMethod.GET);
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Cursor with a file prefix that is not one of the stream file prefixes
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    output.writeInt(1);
+    output.writeInt(0);
+    output.writeLong(0L);
+    output.writeLong(TimeUnit.HOURS.toMillis(1));
+    output.writeUTF("../../other_stream/0000000000.03600/file.0");
+    output.writeInt(0);
+    output.writeLong(0L);
+    String invalidCursor = Base64.encodeBase64URLSafeString(output.toByteArray());
+    urlConn = openURL(createURL("streams/test_stream_binary/events?cursor=" + invalidCursor), HttpMethod.GET);
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Cursor is no longer valid after truncate
+    urlConn = openURL(createURL("streams/test_stream_binary/truncate"), HttpMethod.POST);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+    urlConn = openURL(createURL("streams/test_stream_binary/events?cursor=" + cursor), HttpMethod.GET);
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+  }
+
+  @Ignore
+  @Test
+  public void testFetchThroughput() throws Exception {
+    String streamName = "test_stream_fetch_throughput";
+    HttpURLConnection urlConn = openURL(createURL("streams/" + streamName), HttpMethod.PUT);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Batch write events with 256 bytes body each
+    int events = 50000;
+    StringBuilder batch = new StringBuilder();
+    String body = Strings.repeat("0123456789abcdef", 16);
+    for (int i = 0; i < events; i++) {
+      batch.append(body).append('\n');
+    }
+    urlConn = openURL(createURL("streams/" + streamName + "/batch"), HttpMethod.POST);
+    urlConn.setDoOutput(true);
+    urlConn.setRequestProperty(HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+    urlConn.getOutputStream().write(batch.toString().getBytes(Charsets.UTF_8));
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+
+    // Warm up both paths before measuring
+    fetchJsonEvents(streamName);
+    fetchBinaryEvents(streamName, null, Integer.MAX_VALUE, Lists.<StreamEvent>newArrayList());
+
+    Stopwatch stopwatch = new Stopwatch().start();
+    Assert.assertEquals(events, fetchJsonEvents(streamName).size());
+    long jsonTime = stopwatch.elapsedMillis();
+
+    List<StreamEvent> binaryEvents = Lists.newArrayList();
+    stopwatch.reset().start();
+    fetchBinaryEvents(streamName, null, Integer.MAX_VALUE, binaryEvents);
+    long binaryTime = stopwatch.elapsedMillis();
+    Assert.assertEquals(events, binaryEvents.size());
+
+    LOG.info("Fetched {} events: JSON {} ms ({} events/sec), binary {} ms ({} events/sec)",
+             events, jsonTime, events * 1000L / Math.max(1L, jsonTime),
+             binaryTime, events * 1000L / Math.max(1L, binaryTime));
+  }
+
   @Test
   public void testStreamInfo() throws Exception {
     // Now, create the new stream.
@@ -385,6 +525,45 @@ public class StreamHandlerTest extends GatewayTestBase {
     return events;
   }
 
+  private List<StreamEvent> fetchJsonEvents(String streamName) throws Exception {
+    HttpURLConnection urlConn = openURL(createURL("streams/" + streamName + "/events"), HttpMethod.GET);
+    try {
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+      Reader reader = new InputStreamReader(urlConn.getInputStream(), Charsets.UTF_8);
+      return GSON.fromJson(reader, new TypeToken<List<StreamEvent>>() { }.getType());
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  /**
+   * Fetches events in binary format and returns the cursor in the response.
+   */
+  private String fetchBinaryEvents(String streamName, @Nullable String cursor,
+                                   int limit, List<StreamEvent> events) throws Exception {
+    String path = "streams/" + streamName + "/events?limit=" + limit;
+    if (cursor != null) {
+      path += "&cursor=" + cursor;
+    }
+    HttpURLConnection urlConn = openURL(createURL(path), HttpMethod.GET);
+    urlConn.setRequestProperty(HttpHeaders.Names.ACCEPT, StreamEventBinaryCodec.CONTENT_TYPE);
+    try {
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+      Assert.assertEquals(StreamEventBinaryCodec.CONTENT_TYPE, urlConn.getContentType());
+      Decoder decoder = new BinaryDecoder(new BufferedInputStream(urlConn.getInputStream()));
+      int count = decoder.readInt();
+      while (count > 0) {
+        for (int i = 0; i < count; i++) {
+          events.add(StreamEventBinaryCodec.decode(decoder));
+        }
+        count = decoder.readInt();
+      }
+      return decoder.readString();
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
   private void checkEventsProcessed(final Id.Stream streamId, long expectedCount, int retries) throws Exception {
     Tasks.waitFor(expectedCount, new Callable<Long>() {
       @Override
@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.transaction.queue.coprocessor.hbase96;
 
 import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.transaction.queue.QueueEntryChunk;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.hbase.DequeueScanAttributes;
 import co.cask.tephra.Transaction;
@@ -107,9 +108,12 @@ public class DequeueFilter extends FilterBase {
     byte[] dataBytes = null;
     byte[] metaBytes = null;
     byte[] stateBytes = null;
+    byte[] chunkBytes = null;
     // list is very short so it is ok to loop thru to find columns
     for (Cell cell : cells) {
-      if (CellUtil.matchingQualifier(cell, QueueEntryRow.DATA_COLUMN)) {
+      if (CellUtil.matchingQualifier(cell, QueueEntryRow.CHUNK_COLUMN)) {
+        chunkBytes = CellUtil.cloneValue(cell);
+      } else if (CellUtil.matchingQualifier(cell, QueueEntryRow.DATA_COLUMN)) {
         dataBytes = CellUtil.cloneValue(cell);
       } else if (CellUtil.matchingQualifier(cell, QueueEntryRow.META_COLUMN)) {
         metaBytes = CellUtil.cloneValue(cell);
@@ -118,6 +122,11 @@ public class DequeueFilter extends FilterBase {
       }
     }
 
+    if (chunkBytes != null) {
+      skipRow = canConsumeChunk(chunkBytes, cells) == QueueEntryRow.CanConsume.NO;
+      return;
+    }
+
     if (dataBytes == null || metaBytes == null) {
       skipRow = true;
       return;
@@ -136,6 +145,22 @@ public class DequeueFilter extends FilterBase {
     return skipRow;
   }
 
+  /**
+   * Determines if any entry of a chunk row can be consumed, using the per entry state columns of the row.
+   */
+  private QueueEntryRow.CanConsume canConsumeChunk(byte[] chunkBytes, List<Cell> cells) {
+    QueueEntryChunk chunk = new QueueEntryChunk(chunkBytes);
+    byte[][] states = new byte[chunk.size()][];
+    for (Cell cell : cells) {
+      int index = QueueEntryRow.getChunkStateIndex(stateColumnName, cell.getQualifierArray(),
+                                                   cell.getQualifierOffset(), cell.getQualifierLength());
+      if (index >= 0 && index < states.length) {
+        states[index] = CellUtil.cloneValue(cell);
+      }
+    }
+    return chunk.canConsume(consumerConfig, transaction, writePointer, states);
+  }
+
   /* Writable implementation for HBase 0.94 */
 
   public void write(DataOutput out) throws IOException {
@@ -146,6 +171,8 @@ public class DequeueFilter extends FilterBase {
   public void readFields(DataInput in) throws IOException {
     this.consumerConfig = DequeueScanAttributes.readConsumerConfig(in);
     this.transaction = DequeueScanAttributes.readTx(in);
+    this.stateColumnName = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX,
+                                     Bytes.toBytes(consumerConfig.getGroupId()));
   }
 
   /* Serialization support for HBase 0.96+ */
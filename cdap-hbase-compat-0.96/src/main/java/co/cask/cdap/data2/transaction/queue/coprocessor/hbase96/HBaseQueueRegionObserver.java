@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.queue.coprocessor.hbase96;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.transaction.coprocessor.DefaultTransactionStateCacheSupplier;
 import co.cask.cdap.data2.transaction.queue.ConsumerEntryState;
+import co.cask.cdap.data2.transaction.queue.QueueEntryChunk;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.hbase.HBaseQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.hbase.SaltedHBaseQueueStrategy;
@@ -275,6 +276,11 @@ public final class HBaseQueueRegionObserver extends BaseRegionObserver {
       // This logic is not perfect as if flush happens after enqueue and before dequeue, that entry may never get
       // evicted (depends on when the next compaction happens, whether the queue configuration has been change or not).
 
+      Cell firstCell = result.get(0);
+      if (QueueEntryRow.isChunkColumn(firstCell.getQualifierArray(), firstCell.getQualifierOffset())) {
+        return canEvictChunk(consumerConfig, result);
+      }
+
       // There are two data columns, "d" and "m".
       // If the size == 2, it should not be evicted as well,
       // as state columns (dequeue) always happen after data columns (enqueue).
@@ -325,6 +331,41 @@ public final class HBaseQueueRegionObserver extends BaseRegionObserver {
         || compareRowKey(result.get(0), consumerConfig.getSmallestStartRow()) < 0;
     }
 
+    /**
+     * Determines if the given chunk row can be evicted. Same as for other rows, except that each consumer group has
+     * one state column per entry in the chunk, which all need to be processed.
+     */
+    private boolean canEvictChunk(QueueConsumerConfig consumerConfig, List<Cell> result) {
+      // The chunk column "c" always comes before the state columns. See canEvict for why there must be at least
+      // one state column.
+      if (result.size() <= 1) {
+        skippedIncomplete++;
+        return false;
+      }
+
+      Iterator<Cell> iterator = result.iterator();
+      Cell cell = iterator.next();
+      int entries = new QueueEntryChunk(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()).size();
+
+      int consumedStates = 0;
+      while (iterator.hasNext()) {
+        cell = iterator.next();
+        if (!QueueEntryRow.isStateColumn(cell.getQualifierArray(), cell.getQualifierOffset())) {
+          continue;
+        }
+        if (!isProcessed(cell, consumerInstance)) {
+          break;
+        }
+        byte[] startRow = consumerConfig.getStartRow(consumerInstance);
+        if (startRow != null && compareRowKey(cell, startRow) < 0) {
+          consumedStates++;
+        }
+      }
+
+      return consumedStates == consumerConfig.getNumGroups() * entries
+        || compareRowKey(result.get(0), consumerConfig.getSmallestStartRow()) < 0;
+    }
+
     private int compareRowKey(Cell cell, byte[] row) {
       return Bytes.compareTo(cell.getRowArray(), cell.getRowOffset() + prefixBytes,
                              cell.getRowLength() - prefixBytes, row, 0, row.length);
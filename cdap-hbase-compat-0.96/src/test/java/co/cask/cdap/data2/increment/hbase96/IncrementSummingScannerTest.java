@@ -496,6 +496,82 @@ public class IncrementSummingScannerTest {
     assertFalse(hasMore);
   }
 
+  @Test
+  public void testPresumming() throws Exception {
+    TableId tableId = TableId.from(Id.Namespace.DEFAULT, "TestPresumming");
+    byte[] familyBytes = Bytes.toBytes("f");
+    byte[] columnBytes = Bytes.toBytes("c");
+    byte[] row = Bytes.toBytes("r1");
+    HRegion region = createRegion(tableId, familyBytes);
+    try {
+      region.initialize();
+
+      // a total sum, followed by five increments
+      Put p = new Put(row);
+      p.add(familyBytes, columnBytes, 1L, Bytes.toBytes(10L));
+      region.put(p);
+
+      p = new Put(row);
+      for (long ts = 2; ts <= 6; ts++) {
+        p.add(familyBytes, columnBytes, ts, Bytes.toBytes(1L));
+      }
+      p.setAttribute(HBaseTable.DELTA_WRITE, TRUE);
+      region.put(p);
+
+      // four increments are below the pre-sum upper bound, which is above the threshold
+      Scan scan = new Scan(row);
+      scan.setMaxVersions();
+      scan.setFilter(new IncrementFilter());
+      IncrementSummingScanner scanner = new IncrementSummingScanner(region, -1, region.getScanner(scan), null, 5L, 3);
+      List<Cell> results = Lists.newArrayList();
+      scanner.next(results);
+      scanner.close();
+
+      assertEquals(1, results.size());
+      assertEquals(15L, Bytes.toLong(results.get(0).getValue()));
+
+      // the pre-summed cell replaces the newest increment below the upper bound with a full value
+      List<Cell> presummed = scanner.getPresummedCells();
+      assertEquals(1, presummed.size());
+      Cell cell = presummed.get(0);
+      assertEquals(5L, cell.getTimestamp());
+      assertEquals(Bytes.SIZEOF_LONG, cell.getValueLength());
+      assertEquals(14L, Bytes.toLong(cell.getValue()));
+
+      p = new Put(row);
+      p.add(cell);
+      p.setAttribute(IncrementHandlerState.PRESUM_WRITE, TRUE);
+      region.put(p);
+
+      // reading again gives the same sum, and nothing more to pre-sum
+      scanner = new IncrementSummingScanner(region, -1, region.getScanner(scan), null, 5L, 3);
+      results = Lists.newArrayList();
+      scanner.next(results);
+      scanner.close();
+
+      assertEquals(1, results.size());
+      assertEquals(15L, Bytes.toLong(results.get(0).getValue()));
+      assertTrue(scanner.getPresummedCells().isEmpty());
+
+      // the pre-summed value is kept as a full value on flush
+      scan = new Scan(row);
+      scan.setMaxVersions();
+      scan.setRaw(true);
+      scanner = new IncrementSummingScanner(region, -1, region.getScanner(scan), ScanType.COMPACT_RETAIN_DELETES,
+                                            Long.MAX_VALUE, -1);
+      results = Lists.newArrayList();
+      scanner.next(results);
+      scanner.close();
+
+      cell = results.get(0);
+      assertEquals(6L, cell.getTimestamp());
+      assertEquals(Bytes.SIZEOF_LONG, cell.getValueLength());
+      assertEquals(15L, Bytes.toLong(cell.getValue()));
+    } finally {
+      region.close();
+    }
+  }
+
   private HRegion createRegion(TableId tableId, byte[] family) throws Exception {
     return createRegion(conf, cConf, tableId, new HColumnDescriptor(family));
   }
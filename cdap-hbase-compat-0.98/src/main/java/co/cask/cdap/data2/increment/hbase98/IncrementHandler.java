@@ -20,9 +20,14 @@ import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
 import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
 import co.cask.cdap.data2.increment.hbase.TimestampOracle;
 import co.cask.cdap.data2.util.hbase.HTable98NameConverter;
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TxConstants;
 import co.cask.tephra.hbase98.Filters;
+import co.cask.tephra.hbase98.coprocessor.TransactionVisibilityFilter;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
@@ -36,7 +41,9 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
@@ -66,10 +73,15 @@ import java.util.TreeMap;
  *
  * <p>To mitigate the performance impact on reading, this coprocessor also overrides the scanner used in flush and
  * compaction operations, using {@link IncrementSummingScanner} to generate a new "full" value aggregated from
- * all the successfully committed delta values.</p>
+ * all the successfully committed delta values.  If a transactional column family has a pre-sum threshold configured
+ * through {@link IncrementHandlerState#PROPERTY_PRESUM_THRESHOLD}, a transactional {@code Get} that has to sum up more
+ * delta values than the threshold for a column also writes the sum back as a "full" value, without waiting for the
+ * next flush or compaction.</p>
  */
 public class IncrementHandler extends BaseRegionObserver {
 
+  private static final Log LOG = LogFactory.getLog(IncrementHandler.class);
+
   private HRegion region;
   private IncrementHandlerState state;
 
@@ -87,6 +99,14 @@ public class IncrementHandler extends BaseRegionObserver {
       for (HColumnDescriptor columnDesc : tableDesc.getFamilies()) {
         state.initFamily(columnDesc.getName(), convertFamilyValues(columnDesc.getValues()));
       }
+      state.registerMBean(region.getRegionInfo().getEncodedName());
+    }
+  }
+
+  @Override
+  public void stop(CoprocessorEnvironment e) throws IOException {
+    if (state != null) {
+      state.unregisterMBean();
     }
   }
 
@@ -106,14 +126,27 @@ public class IncrementHandler extends BaseRegionObserver {
   @Override
   public void preGetOp(ObserverContext<RegionCoprocessorEnvironment> ctx, Get get, List<Cell> results)
     throws IOException {
+    // Pre-summing is only done for a single family, which is the case for all CDAP tables. The bound is
+    // computed from the Get before the increment filter is added.
+    long presumUpperBound = 0;
+    int presumThreshold = 0;
+    if (get.numFamilies() == 1) {
+      byte[] family = get.familySet().iterator().next();
+      presumThreshold = state.getPresumThreshold(family);
+      if (presumThreshold > 0) {
+        presumUpperBound = getPresumUpperBound(get, family);
+      }
+    }
     Scan scan = new Scan(get);
     scan.setMaxVersions();
     scan.setFilter(Filters.combine(new IncrementFilter(), scan.getFilter()));
-    RegionScanner scanner = null;
+    IncrementSummingScanner scanner = null;
     try {
-      scanner = new IncrementSummingScanner(region, scan.getBatch(), region.getScanner(scan), ScanType.USER_SCAN);
+      scanner = new IncrementSummingScanner(region, scan.getBatch(), region.getScanner(scan), state,
+                                            presumUpperBound, presumThreshold);
       scanner.next(results);
       ctx.bypass();
+      writePresummed(get.getRow(), scanner.getPresummedCells());
     } finally {
       if (scanner != null) {
         scanner.close();
@@ -121,14 +154,52 @@ public class IncrementHandler extends BaseRegionObserver {
     }
   }
 
+  /**
+   * Returns the largest timestamp of the cells that the given Get can pre-sum, or {@code 0} if it cannot pre-sum.
+   * A Get can only pre-sum if it sees every cell that is visible to its transaction, hence Gets with a filter other
+   * than the transaction visibility filter set by the transaction processor are not pre-summed.
+   */
+  private long getPresumUpperBound(Get get, byte[] family) throws IOException {
+    Transaction tx = state.decodeTransaction(get.getAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY));
+    Filter filter = get.getFilter();
+    if (tx == null ? filter != null : !(filter instanceof TransactionVisibilityFilter)) {
+      return 0;
+    }
+    TimeRange timeRange = get.getTimeRange();
+    return state.getPresumUpperBound(family, tx, timeRange.getMin(), timeRange.getMax());
+  }
+
+  /**
+   * Writes the given pre-summed cells to the region. Each of them replaces the delta increment with the same
+   * timestamp, which is always visible to all transactions.
+   */
+  private void writePresummed(byte[] row, List<Cell> cells) {
+    if (cells.isEmpty()) {
+      return;
+    }
+    try {
+      Put put = new Put(row);
+      for (Cell cell : cells) {
+        put.add(cell);
+      }
+      put.setAttribute(IncrementHandlerState.PRESUM_WRITE, new byte[0]);
+      region.put(put);
+      state.recordPresummed(cells.size());
+    } catch (IOException e) {
+      // It doesn't affect the correctness of reads, hence just log and continue
+      LOG.warn("Failed to write pre-summed increments for row " + Bytes.toStringBinary(row), e);
+    }
+  }
+
   @Override
   public void prePut(ObserverContext<RegionCoprocessorEnvironment> ctx, Put put, WALEdit edit, Durability durability)
     throws IOException {
     // we assume that if any of the column families written to are transactional, the entire write is transactional
     boolean transactional = state.containsTransactionalFamily(put.getFamilyCellMap().keySet());
     boolean isIncrement = put.getAttribute(HBaseTable.DELTA_WRITE) != null;
+    boolean isPresummed = put.getAttribute(IncrementHandlerState.PRESUM_WRITE) != null;
 
-    if (isIncrement || !transactional) {
+    if (!isPresummed && (isIncrement || !transactional)) {
       // incremental write
       NavigableMap<byte[], List<Cell>> newFamilyMap = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
@@ -194,7 +265,7 @@ public class IncrementHandler extends BaseRegionObserver {
   public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> ctx, Scan scan,
                                        RegionScanner scanner)
     throws IOException {
-    return new IncrementSummingScanner(region, scan.getBatch(), scanner, ScanType.USER_SCAN);
+    return new IncrementSummingScanner(region, scan.getBatch(), scanner, state, 0, 0);
   }
 
   @Override
@@ -24,6 +24,12 @@ import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtilFactory;
 import co.cask.cdap.data2.util.hbase.HTableDescriptorBuilder;
 import co.cask.cdap.test.SlowTests;
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionCodec;
+import co.cask.tephra.TxConstants;
+import co.cask.tephra.hbase10.coprocessor.TransactionVisibilityFilter;
+import co.cask.tephra.util.TxUtils;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.Coprocessor;
@@ -37,6 +43,7 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.experimental.categories.Category;
 
@@ -44,6 +51,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -180,6 +188,23 @@ public class IncrementHandlerTest extends AbstractIncrementHandlerTest {
       }
     }
 
+    @Override
+    public long get(byte[] row, byte[] column, @Nullable Transaction tx) throws IOException {
+      Get get = new Get(row);
+      get.addColumn(FAMILY, column);
+      if (tx != null) {
+        get.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, new TransactionCodec().encode(tx));
+        get.setMaxVersions();
+        get.setTimeRange(0, TxUtils.getMaxVisibleTimestamp(tx));
+        get.setFilter(new TransactionVisibilityFilter(tx, Maps.<byte[], Long>newTreeMap(Bytes.BYTES_COMPARATOR),
+                                                      false, ScanType.USER_SCAN, new IncrementFilter()));
+      }
+      Result result = region.get(get);
+      Cell cell = result.getColumnLatestCell(FAMILY, column);
+      assertNotNull(cell);
+      return Bytes.toLong(CellUtil.cloneValue(cell));
+    }
+
     @Override
     public boolean flush() throws IOException {
       HRegion.FlushResult result = region.flushcache();
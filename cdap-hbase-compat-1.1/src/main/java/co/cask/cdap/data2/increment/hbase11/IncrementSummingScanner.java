@@ -38,9 +38,15 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Transforms reads of the stored delta increments into calculated sums for each column.
+ *
+ * <p>For reads, it can also generate pre-summed cells for columns with many delta increments. A pre-summed cell
+ * has the timestamp of the newest delta increment that is not newer than the pre-sum upper bound, and has the sum of
+ * that delta increment and all older visible values of the column as a full value. Writing it back to the region
+ * replaces that delta increment, so that subsequent reads can stop there, just as after a compaction.</p>
  */
 class IncrementSummingScanner implements RegionScanner {
   private static final Log LOG = LogFactory.getLog(IncrementSummingScanner.class);
@@ -73,6 +79,17 @@ class IncrementSummingScanner implements RegionScanner {
   private final long compactionUpperBound;
   // scan start time to use in computing TTL
   private final long oldestTsByTTL;
+  // Highest timestamp of the cells that can be included in pre-summed cells
+  private final long presumUpperBound;
+  // Number of delta increments below the presumUpperBound required for a column to be pre-summed, 0 to disable
+  private final int presumThreshold;
+  private final IncrementHandlerState state;
+  private final List<Cell> presummedCells = new ArrayList<>();
+
+  // newest delta increment of the current column that can be pre-summed, with the sum and count below it
+  private Cell presumIncrement;
+  private long presumSum;
+  private int presumDeltas;
 
   IncrementSummingScanner(Region region, int batchSize, InternalScanner internalScanner, ScanType scanType) {
     this(region, batchSize, internalScanner, scanType, Long.MAX_VALUE, -1);
@@ -80,6 +97,22 @@ class IncrementSummingScanner implements RegionScanner {
 
   IncrementSummingScanner(Region region, int batchSize, InternalScanner internalScanner, ScanType scanType,
                           long compationUpperBound, long oldestTsByTTL) {
+    this(region, batchSize, internalScanner, scanType, compationUpperBound, oldestTsByTTL, null, 0, 0);
+  }
+
+  /**
+   * Creates a scanner for reads, which records the read statistics in the given state and generates pre-summed
+   * cells for columns with at least {@code presumThreshold} delta increments below {@code presumUpperBound}.
+   */
+  IncrementSummingScanner(Region region, int batchSize, InternalScanner internalScanner,
+                          @Nullable IncrementHandlerState state, long presumUpperBound, int presumThreshold) {
+    this(region, batchSize, internalScanner, ScanType.USER_SCAN, Long.MAX_VALUE, -1,
+         state, presumUpperBound, presumThreshold);
+  }
+
+  private IncrementSummingScanner(Region region, int batchSize, InternalScanner internalScanner, ScanType scanType,
+                                  long compationUpperBound, long oldestTsByTTL, @Nullable IncrementHandlerState state,
+                                  long presumUpperBound, int presumThreshold) {
     this.region = region;
     this.batchSize = batchSize;
     this.baseScanner = new WrappedScanner(internalScanner);
@@ -89,6 +122,16 @@ class IncrementSummingScanner implements RegionScanner {
     this.scanType = scanType;
     this.compactionUpperBound = compationUpperBound;
     this.oldestTsByTTL = oldestTsByTTL;
+    this.state = state;
+    this.presumUpperBound = presumUpperBound;
+    this.presumThreshold = presumThreshold;
+  }
+
+  /**
+   * Returns the pre-summed cells generated by the reads of this scanner so far.
+   */
+  List<Cell> getPresummedCells() {
+    return presummedCells;
   }
 
   @Override
@@ -169,6 +212,7 @@ class IncrementSummingScanner implements RegionScanner {
     Cell previousIncrement = null;
     long runningSum = 0;
     int addedCnt = 0;
+    int deltasSummed = 0;
     baseScanner.startNext();
     Cell cell;
     int limit = getBatchLimit(scannerContext);
@@ -187,7 +231,7 @@ class IncrementSummingScanner implements RegionScanner {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Including increment: sum=" + runningSum + ", cell=" + previousIncrement);
           }
-          cells.add(newCell(previousIncrement, runningSum));
+          addSum(cells, previousIncrement, runningSum, false);
           addedCnt++;
           previousIncrement = null;
           runningSum = 0;
@@ -216,7 +260,7 @@ class IncrementSummingScanner implements RegionScanner {
             if (LOG.isTraceEnabled()) {
               LOG.trace("Including increment: sum=" + runningSum + ", cell=" + previousIncrement);
             }
-            cells.add(newCell(previousIncrement, runningSum));
+            addSum(cells, previousIncrement, runningSum, false);
             previousIncrement = null;
             addedCnt++;
             // continue without advancing, current cell will be consumed on the next iteration
@@ -226,14 +270,28 @@ class IncrementSummingScanner implements RegionScanner {
           runningSum = 0;
         }
         // add this increment to the tally
-        runningSum += Bytes.toLong(cell.getValueArray(),
+        long delta = Bytes.toLong(cell.getValueArray(),
             cell.getValueOffset() + IncrementHandlerState.DELTA_MAGIC_PREFIX.length);
+        runningSum += delta;
+        deltasSummed++;
+        if (presumThreshold > 0 && cell.getTimestamp() <= presumUpperBound) {
+          if (presumIncrement == null) {
+            presumIncrement = cell;
+          }
+          presumSum += delta;
+          presumDeltas++;
+        }
       } else {
         // otherwise (not an increment)
         if (previousIncrement != null) {
+          boolean fullValue = false;
           if (sameCell(previousIncrement, cell) && !CellUtil.isDelete(cell)) {
             // if qualifier matches previous and this is a long, add to running sum, emit
-            runningSum += Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+            long value = Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+            runningSum += value;
+            presumSum += value;
+            // the sum includes a full value, so it is a full value too
+            fullValue = true;
             // this cell already processed as part of the previous increment's sum, so consume it
             baseScanner.nextCell(scannerContext);
           }
@@ -243,7 +301,7 @@ class IncrementSummingScanner implements RegionScanner {
           // if this put is a different cell from the previous increment, then
           // we only emit the previous increment, reset it, and continue.
           // the current cell will be consumed on the next iteration, if we have not yet reached the limit
-          cells.add(newCell(previousIncrement, runningSum));
+          addSum(cells, previousIncrement, runningSum, fullValue);
           addedCnt++;
           previousIncrement = null;
           runningSum = 0;
@@ -271,7 +329,10 @@ class IncrementSummingScanner implements RegionScanner {
       if (LOG.isTraceEnabled()) {
         LOG.trace("Including leftover increment: sum=" + runningSum + ", cell=" + previousIncrement);
       }
-      cells.add(newCell(previousIncrement, runningSum));
+      addSum(cells, previousIncrement, runningSum, false);
+    }
+    if (state != null) {
+      state.recordRead(deltasSummed);
     }
 
     boolean hasMore = baseScanner.hasMore();
@@ -310,9 +371,29 @@ class IncrementSummingScanner implements RegionScanner {
       CellUtil.matchingQualifier(first, second);
   }
 
-  private Cell newCell(Cell toCopy, long value) {
+  /**
+   * Adds the sum of a column to the results, and generates the pre-summed cell for the column if needed.
+   *
+   * @param fullValue whether the sum includes a full value, in which case it is never written as a delta
+   */
+  private void addSum(List<Cell> cells, Cell increment, long sum, boolean fullValue) {
+    cells.add(newCell(increment, sum, fullValue));
+    if (presumIncrement != null) {
+      if (presumDeltas >= presumThreshold) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("Pre-summing " + presumDeltas + " increments: sum=" + presumSum + ", cell=" + presumIncrement);
+        }
+        presummedCells.add(newCell(presumIncrement, presumSum, true));
+      }
+      presumIncrement = null;
+    }
+    presumSum = 0;
+    presumDeltas = 0;
+  }
+
+  private Cell newCell(Cell toCopy, long value, boolean fullValue) {
     byte[] newValue = Bytes.toBytes(value);
-    if (scanType == ScanType.COMPACT_RETAIN_DELETES) {
+    if (scanType == ScanType.COMPACT_RETAIN_DELETES && !fullValue) {
       newValue = Bytes.add(IncrementHandlerState.DELTA_MAGIC_PREFIX, newValue);
     }
     return CellUtil.createCell(CellUtil.cloneRow(toCopy), CellUtil.cloneFamily(toCopy),
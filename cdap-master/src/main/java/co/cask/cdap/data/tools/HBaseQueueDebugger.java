@@ -270,7 +270,7 @@ public class HBaseQueueDebugger extends AbstractIdleService {
     final byte[] stateColumnName = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX,
                                              Bytes.toBytes(groupConfig.getGroupId()));
 
-    int distributorBuckets = queueClientFactory.getDistributorBuckets(hTable.getTableDescriptor());
+    int distributorBuckets = HBaseQueueClientFactory.getDistributorBuckets(hTable.getTableDescriptor());
     ShardedHBaseQueueStrategy queueStrategy = new ShardedHBaseQueueStrategy(tableUtil, distributorBuckets);
 
     ScanBuilder scan = tableUtil.buildScan();
@@ -81,13 +81,27 @@ public abstract class AbstractNotificationService extends AbstractIdleService im
     synchronized (subscribers) {
       callers = ImmutableList.copyOf(callers);
     }
+    if (callers.isEmpty()) {
+      return;
+    }
+
+    // Each subscriber gets its own decoded copy of the notification, since notification objects can be mutable
+    Gson gson = createGson();
+    Id.Namespace namespaceId = Id.Namespace.from(feed.getNamespaceId());
     for (NotificationCaller caller : callers) {
-      Object notification = createGson().fromJson(notificationJson, caller.getNotificationType());
-      Id.Namespace namespaceId = Id.Namespace.from(feed.getNamespaceId());
+      Object notification = gson.fromJson(notificationJson, caller.getNotificationType());
       caller.received(notification, new BasicNotificationContext(namespaceId, dsFramework, transactionSystemClient));
     }
   }
 
+  /**
+   * Returns {@code true} if there is at least one handler in this process that subscribed to the given feed.
+   * It can be used to avoid decoding notifications that nobody is interested in.
+   */
+  protected boolean hasSubscribers(Id.NotificationFeed feed) {
+    return subscribers.containsKey(feed);
+  }
+
   @Override
   public <N> ListenableFuture<N> publish(Id.NotificationFeed feed, N notification)
     throws NotificationException {
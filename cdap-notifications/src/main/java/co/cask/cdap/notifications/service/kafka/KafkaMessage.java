@@ -17,17 +17,24 @@
 package co.cask.cdap.notifications.service.kafka;
 
 import com.google.common.base.Objects;
-import com.google.gson.JsonElement;
 
 /**
  * Message sent to Kafka that contains a serialized notification.
  */
 class KafkaMessage {
   private final String messageKey;
-  private final JsonElement notificationJson;
+  private final long publishTimestamp;
+  private final String notificationJson;
 
-  public KafkaMessage(String messageKey, JsonElement notificationJson) {
+  /**
+   * @param messageKey key of the message, identifying the feed of the notification
+   * @param publishTimestamp time in milliseconds at which the notification was published,
+   *                         or {@code -1} if unknown
+   * @param notificationJson notification serialized as json
+   */
+  public KafkaMessage(String messageKey, long publishTimestamp, String notificationJson) {
     this.messageKey = messageKey;
+    this.publishTimestamp = publishTimestamp;
     this.notificationJson = notificationJson;
   }
 
@@ -35,7 +42,11 @@ class KafkaMessage {
     return messageKey;
   }
 
-  public JsonElement getNotificationJson() {
+  public long getPublishTimestamp() {
+    return publishTimestamp;
+  }
+
+  public String getNotificationJson() {
     return notificationJson;
   }
 
@@ -43,6 +54,7 @@ class KafkaMessage {
   public String toString() {
     return Objects.toStringHelper(this)
       .add("messageKey", messageKey)
+      .add("publishTimestamp", publishTimestamp)
       .add("notificationJson", notificationJson)
       .toString();
   }
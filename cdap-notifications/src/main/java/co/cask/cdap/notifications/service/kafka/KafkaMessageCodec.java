@@ -18,28 +18,102 @@ package co.cask.cdap.notifications.service.kafka;
 
 import com.google.common.base.Charsets;
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
 /**
  * Encoder/decoder of Notifications to Kafka messages.
+ *
+ * A message is encoded as:
+ *
+ * <pre>
+ * {@code
+ *
+ * message = <version> <publish_timestamp> <key_length> <key> <notification_json>
+ * version = 1 byte, currently 1
+ * publish_timestamp = 8 bytes long value of the publish time in milliseconds
+ * key_length = 4 bytes int value of the length of the key
+ * key = UTF-8 bytes of the message key
+ * notification_json = UTF-8 bytes of the notification serialized as json, till the end of the message
+ * }
+ * </pre>
+ *
+ * The key can be decoded without decoding the notification. Messages written as a json object by older
+ * versions can still be decoded.
+ *
+ * Older versions cannot decode this format, and drop such messages as undecodable. When upgrading, all processes
+ * that subscribe to notifications have to be upgraded before any process that publishes them. Otherwise the
+ * notifications published by upgraded processes are lost for the subscribers that are not upgraded yet.
  */
 public final class KafkaMessageCodec {
   private static final Gson GSON = new Gson();
+  private static final byte VERSION = 1;
+  // First byte of messages encoded as a json object
+  private static final byte JSON_OBJECT_START = '{';
 
   public static ByteBuffer encode(KafkaMessage message) throws IOException {
-    return Charsets.UTF_8.encode(GSON.toJson(message));
+    byte[] key = message.getMessageKey().getBytes(Charsets.UTF_8);
+    byte[] json = message.getNotificationJson().getBytes(Charsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + key.length + json.length);
+    buffer.put(VERSION)
+      .putLong(message.getPublishTimestamp())
+      .putInt(key.length)
+      .put(key)
+      .put(json)
+      .flip();
+    return buffer;
+  }
+
+  public static KafkaMessage decode(ByteBuffer byteBuffer) throws IOException {
+    if (!byteBuffer.hasRemaining()) {
+      throw new IOException("Empty notification message");
+    }
+    ByteBuffer buffer = byteBuffer.slice();
+    byte version = buffer.get();
+    if (version == JSON_OBJECT_START) {
+      return decodeJson(byteBuffer.slice());
+    }
+    if (version != VERSION) {
+      throw new IOException("Unsupported notification message version " + version);
+    }
+
+    try {
+      long publishTimestamp = buffer.getLong();
+      int keyLength = buffer.getInt();
+      if (keyLength < 0 || keyLength > buffer.remaining()) {
+        throw new IOException("Invalid notification message key length " + keyLength);
+      }
+      byte[] key = new byte[keyLength];
+      buffer.get(key);
+      return new KafkaMessage(new String(key, Charsets.UTF_8), publishTimestamp,
+                              Charsets.UTF_8.decode(buffer).toString());
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated notification message", e);
+    }
   }
 
-  public static KafkaMessage decode(ByteBuffer byteBuffer)
-    throws IOException {
+  /**
+   * Decodes a message written as a json object, with the notification as a nested json element.
+   */
+  private static KafkaMessage decodeJson(ByteBuffer byteBuffer) throws IOException {
+    JsonObject object;
     try {
-      return GSON.fromJson(Charsets.UTF_8.decode(byteBuffer).toString(), KafkaMessage.class);
-    } catch (JsonSyntaxException e) {
+      object = new JsonParser().parse(Charsets.UTF_8.decode(byteBuffer).toString()).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
       throw new IOException(e);
     }
+    JsonElement messageKey = object.get("messageKey");
+    JsonElement notificationJson = object.get("notificationJson");
+    if (messageKey == null || !messageKey.isJsonPrimitive() || notificationJson == null) {
+      throw new IOException("Invalid notification message " + object);
+    }
+    return new KafkaMessage(messageKey.getAsString(), -1L, GSON.toJson(notificationJson));
   }
 
   private KafkaMessageCodec() {
@@ -16,7 +16,11 @@
 
 package co.cask.cdap.notifications.service.kafka;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.notifications.feeds.NotificationFeedException;
 import co.cask.cdap.notifications.feeds.NotificationFeedManager;
@@ -27,10 +31,13 @@ import co.cask.cdap.notifications.service.NotificationHandler;
 import co.cask.cdap.notifications.service.NotificationService;
 import co.cask.cdap.proto.Id;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.JsonParser;
 import com.google.inject.Inject;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.common.Threads;
@@ -47,17 +54,27 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Kafka implementation of the {@link NotificationService}.
+ *
+ * Notifications are published by a single thread, which sends all the notifications published in the meantime,
+ * up to a maximum batch size, together. It waits a short linger time for more notifications before sending.
+ * The messages are encoded by {@link KafkaMessageCodec}, which older versions cannot decode, see there for the
+ * upgrade order.
  */
 public class KafkaNotificationService extends AbstractNotificationService {
   private static final Logger LOG = LoggerFactory.getLogger(KafkaNotificationService.class);
+  private static final JsonParser JSON_PARSER = new JsonParser();
 
   private final KafkaClient kafkaClient;
   private final NotificationFeedManager feedManager;
@@ -66,9 +83,15 @@ public class KafkaNotificationService extends AbstractNotificationService {
   private final Map<TopicPartition, KafkaNotificationsCallback> kafkaCallbacks;
   private KafkaPublisher kafkaPublisher;
   private final int nbPartitions;
+  private final long lingerMillis;
+  private final int batchSize;
+
+  // Notifications waiting to be sent to Kafka
+  private final BlockingQueue<PendingNotification<?>> pendingNotifications;
+  private MetricsContext metricsContext;
 
   // Executor to publish notifications to Kafka
-  private ListeningExecutorService publishingExecutor;
+  private ExecutorService publishingExecutor;
 
   @Inject
   public KafkaNotificationService(CConfiguration cConf, KafkaClient kafkaClient, DatasetFramework dsFramework,
@@ -79,20 +102,43 @@ public class KafkaNotificationService extends AbstractNotificationService {
     this.feedManager = feedManager;
     this.ack = KafkaPublisher.Ack.LEADER_RECEIVED;
     this.nbPartitions = cConf.getInt("kafka.num.partitions");
+    this.lingerMillis = cConf.getLong(Constants.Notification.PUBLISH_LINGER_MS,
+                                      Constants.Notification.DEFAULT_PUBLISH_LINGER_MS);
+    this.batchSize = Math.max(1, cConf.getInt(Constants.Notification.PUBLISH_BATCH_SIZE,
+                                              Constants.Notification.DEFAULT_PUBLISH_BATCH_SIZE));
 
     this.kafkaCallbacks = Maps.newHashMap();
+    this.pendingNotifications = new LinkedBlockingQueue<>();
+    this.metricsContext = new NoOpMetricsCollectionService().getContext(ImmutableMap.<String, String>of());
+  }
+
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Optional injection since not all processes using notifications emit metrics
+    this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+      Constants.Metrics.Tag.COMPONENT, "notifications"));
   }
 
   @Override
   protected void startUp() throws Exception {
     kafkaPublisher = kafkaClient.getPublisher(ack, Compression.SNAPPY);
-    publishingExecutor = MoreExecutors.listeningDecorator(
-      Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("notification-publisher-%d")));
+    publishingExecutor = Executors.newSingleThreadExecutor(
+      Threads.createDaemonThreadFactory("notification-publisher-%d"));
+    publishingExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        publishPendingNotifications();
+      }
+    });
   }
 
   @Override
   protected void shutDown() throws Exception {
     publishingExecutor.shutdownNow();
+    publishingExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    failPendingNotifications();
   }
 
   @Override
@@ -100,29 +146,110 @@ public class KafkaNotificationService extends AbstractNotificationService {
                                          final Type notificationType)
     throws NotificationException {
     LOG.trace("Publishing on notification feed [{}]: {}", feed, notification);
-    return publishingExecutor.submit(new Callable<N>() {
-      @Override
-      public N call() throws Exception {
-        try {
-          KafkaMessage message = new KafkaMessage(KafkaNotificationUtils.getMessageKey(feed),
-                                                  createGson().toJsonTree(notification, notificationType));
-          ByteBuffer bb = KafkaMessageCodec.encode(message);
-
-          TopicPartition topicPartition = KafkaNotificationUtils.getKafkaTopicPartition(feed);
-          KafkaPublisher.Preparer preparer = kafkaPublisher.prepare(topicPartition.getTopic());
-          preparer.add(bb, message.getMessageKey());
-
-          try {
-            preparer.send().get();
-            return notification;
-          } catch (ExecutionException e) {
-            throw new NotificationException(e.getCause());
+    if (!isRunning()) {
+      return Futures.immediateFailedFuture(new NotificationException("Notification service is not running"));
+    }
+    try {
+      KafkaMessage message = new KafkaMessage(KafkaNotificationUtils.getMessageKey(feed), System.currentTimeMillis(),
+                                              createGson().toJson(notification, notificationType));
+      PendingNotification<N> pending = new PendingNotification<>(
+        KafkaNotificationUtils.getKafkaTopicPartition(feed).getTopic(), message, KafkaMessageCodec.encode(message),
+        notification);
+      pendingNotifications.add(pending);
+      return pending.future;
+    } catch (IOException e) {
+      return Futures.immediateFailedFuture(new NotificationException(e));
+    }
+  }
+
+  /**
+   * Sends the pending notifications to Kafka in batches, until the publishing thread is interrupted.
+   */
+  private void publishPendingNotifications() {
+    List<PendingNotification<?>> batch = Lists.newArrayListWithCapacity(batchSize);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        batch.add(pendingNotifications.take());
+        // Wait a little for more notifications, so that they are sent together
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < batchSize) {
+          PendingNotification<?> next = pendingNotifications.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
           }
-        } catch (IOException e) {
-          throw new NotificationException(e);
+          batch.add(next);
         }
+        send(batch);
+        batch.clear();
       }
-    });
+    } catch (InterruptedException e) {
+      // Service is stopping
+      Thread.currentThread().interrupt();
+    } finally {
+      for (PendingNotification<?> pending : batch) {
+        pending.failed(new NotificationException("Notification service stopped"));
+      }
+    }
+  }
+
+  /**
+   * Sends the given notifications to Kafka, with one request per topic.
+   */
+  private void send(List<PendingNotification<?>> batch) throws InterruptedException {
+    Map<String, List<PendingNotification<?>>> topicNotifications = Maps.newLinkedHashMap();
+    for (PendingNotification<?> pending : batch) {
+      List<PendingNotification<?>> notifications = topicNotifications.get(pending.topic);
+      if (notifications == null) {
+        notifications = Lists.newArrayList();
+        topicNotifications.put(pending.topic, notifications);
+      }
+      notifications.add(pending);
+    }
+
+    for (Map.Entry<String, List<PendingNotification<?>>> entry : topicNotifications.entrySet()) {
+      List<PendingNotification<?>> notifications = entry.getValue();
+      try {
+        KafkaPublisher.Preparer preparer = kafkaPublisher.prepare(entry.getKey());
+        for (PendingNotification<?> pending : notifications) {
+          preparer.add(pending.payload, pending.message.getMessageKey());
+        }
+        preparer.send().get();
+      } catch (ExecutionException e) {
+        failed(notifications, new NotificationException(e.getCause()));
+        continue;
+      } catch (InterruptedException e) {
+        failed(notifications, new NotificationException("Notification service stopped"));
+        throw e;
+      } catch (Throwable t) {
+        failed(notifications, new NotificationException(t));
+        continue;
+      }
+
+      long now = System.currentTimeMillis();
+      for (PendingNotification<?> pending : notifications) {
+        pending.completed();
+      }
+      metricsContext.increment("notification.published", notifications.size());
+      // Publish lag of the oldest notification of the batch
+      metricsContext.gauge("notification.publish.lag.ms",
+                           now - notifications.get(0).message.getPublishTimestamp());
+      LOG.trace("Published {} notifications to topic {}", notifications.size(), entry.getKey());
+    }
+  }
+
+  private void failed(List<PendingNotification<?>> notifications, NotificationException e) {
+    LOG.debug("Failed to publish {} notifications", notifications.size(), e);
+    for (PendingNotification<?> pending : notifications) {
+      pending.failed(e);
+    }
+  }
+
+  private void failPendingNotifications() {
+    PendingNotification<?> pending = pendingNotifications.poll();
+    while (pending != null) {
+      pending.failed(new NotificationException("Notification service stopped"));
+      pending = pendingNotifications.poll();
+    }
   }
 
   @Override
@@ -204,26 +331,44 @@ public class KafkaNotificationService extends AbstractNotificationService {
     @Override
     public void onReceived(Iterator<FetchedMessage> messages) {
       int count = 0;
+      int skipped = 0;
+      long lastPublishTimestamp = -1L;
       while (messages.hasNext()) {
-        count++;
         FetchedMessage message = messages.next();
         ByteBuffer payload = message.getPayload();
 
+        KafkaMessage decodedMessage;
         try {
-          KafkaMessage decodedMessage = KafkaMessageCodec.decode(payload);
-          try {
-            LOG.trace("Decoded notification from Kafka: {}", decodedMessage);
-            notificationReceived(KafkaNotificationUtils.getMessageFeed(decodedMessage.getMessageKey()),
-                                 decodedMessage.getNotificationJson());
-          } catch (Throwable t) {
-            LOG.warn("Error while processing notification {} with handler {}",
-                     decodedMessage.getNotificationJson(), t);
-          }
+          decodedMessage = KafkaMessageCodec.decode(payload);
         } catch (IOException e) {
-          LOG.error("Could not decode Kafka message {} using Gson.", message, e);
+          LOG.error("Could not decode Kafka message {}.", message, e);
+          continue;
+        }
+        count++;
+        if (decodedMessage.getPublishTimestamp() >= 0) {
+          lastPublishTimestamp = decodedMessage.getPublishTimestamp();
+        }
+
+        try {
+          Id.NotificationFeed feed = KafkaNotificationUtils.getMessageFeed(decodedMessage.getMessageKey());
+          // All the feeds of a category share the same topic. Only decode the notifications of the feeds
+          // that have subscribers in this process.
+          if (!hasSubscribers(feed)) {
+            skipped++;
+            continue;
+          }
+          LOG.trace("Decoded notification from Kafka: {}", decodedMessage);
+          notificationReceived(feed, JSON_PARSER.parse(decodedMessage.getNotificationJson()));
+        } catch (Throwable t) {
+          LOG.warn("Error while processing notification {}", decodedMessage, t);
         }
       }
-      LOG.trace("Handled {} messages from kafka", count);
+
+      metricsContext.increment("notification.received", count);
+      if (lastPublishTimestamp >= 0) {
+        metricsContext.gauge("notification.consume.lag.ms", System.currentTimeMillis() - lastPublishTimestamp);
+      }
+      LOG.trace("Handled {} messages from kafka, {} without subscribers", count, skipped);
     }
 
     @Override
@@ -231,4 +376,33 @@ public class KafkaNotificationService extends AbstractNotificationService {
       LOG.info("Subscription to topic partition {} finished.", topicPartition);
     }
   }
+
+  /**
+   * A notification waiting to be sent to Kafka.
+   *
+   * @param <N> Type of the notification
+   */
+  private static final class PendingNotification<N> {
+    private final String topic;
+    private final KafkaMessage message;
+    private final ByteBuffer payload;
+    private final N notification;
+    private final SettableFuture<N> future;
+
+    private PendingNotification(String topic, KafkaMessage message, ByteBuffer payload, N notification) {
+      this.topic = topic;
+      this.message = message;
+      this.payload = payload;
+      this.notification = notification;
+      this.future = SettableFuture.create();
+    }
+
+    private void completed() {
+      future.set(notification);
+    }
+
+    private void failed(Throwable t) {
+      future.setException(t);
+    }
+  }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.notifications.service.kafka;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests for {@link KafkaMessageCodec}.
+ */
+public class KafkaMessageCodecTest {
+
+  private static final Gson GSON = new Gson();
+
+  @Test
+  public void testEncodeDecode() throws IOException {
+    String json = GSON.toJson(ImmutableMap.of("size", 1024L, "timestamp", 10L));
+    KafkaMessage message = new KafkaMessage("ns.stream.streamSize", 1234L, json);
+
+    ByteBuffer encoded = KafkaMessageCodec.encode(message);
+    // Decoding should not depend on the buffer being array backed
+    ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining());
+    direct.put(encoded.duplicate()).flip();
+
+    for (ByteBuffer buffer : new ByteBuffer[] { encoded, direct.asReadOnlyBuffer() }) {
+      KafkaMessage decoded = KafkaMessageCodec.decode(buffer);
+      Assert.assertEquals(message.getMessageKey(), decoded.getMessageKey());
+      Assert.assertEquals(message.getPublishTimestamp(), decoded.getPublishTimestamp());
+      Assert.assertEquals(json, decoded.getNotificationJson());
+    }
+  }
+
+  @Test
+  public void testDecodeJsonMessage() throws IOException {
+    // Messages published as a json object should still be decoded
+    JsonObject notification = new JsonObject();
+    notification.addProperty("size", 1024L);
+    JsonObject message = new JsonObject();
+    message.addProperty("messageKey", "ns.stream.streamSize");
+    message.add("notificationJson", notification);
+
+    KafkaMessage decoded = KafkaMessageCodec.decode(Charsets.UTF_8.encode(GSON.toJson(message)));
+    Assert.assertEquals("ns.stream.streamSize", decoded.getMessageKey());
+    Assert.assertEquals(-1L, decoded.getPublishTimestamp());
+    Assert.assertEquals(notification, new JsonParser().parse(decoded.getNotificationJson()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testDecodeTruncated() throws IOException {
+    ByteBuffer encoded = KafkaMessageCodec.encode(new KafkaMessage("ns.stream.streamSize", 1234L, "{}"));
+    encoded.limit(10);
+    KafkaMessageCodec.decode(encoded);
+  }
+}
@@ -17,8 +17,16 @@
 package co.cask.cdap.spi.stream;
 
 import co.cask.cdap.api.data.format.RecordFormat;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
 /**
  * Format for a record contained in a {@link StreamEvent}.
  *
@@ -26,4 +34,51 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
  */
 public abstract class AbstractStreamEventRecordFormat<T> extends RecordFormat<StreamEvent, T> {
 
+  private Set<String> projection;
+  private Schema recordSchema;
+
+  /**
+   * Sets the names of the schema fields that callers of {@link #read(Object)} are interested in. Formats may
+   * use it to avoid materializing other fields, which will be left as {@code null} in the records returned.
+   * Formats that don't support projection will ignore it and always read all fields.
+   * This method must be called after the format is initialized.
+   *
+   * @param fieldNames names of fields to read or {@code null} to read all fields
+   */
+  public void setProjection(@Nullable Set<String> fieldNames) {
+    if (fieldNames == null) {
+      this.projection = null;
+      this.recordSchema = null;
+      return;
+    }
+
+    this.projection = Collections.unmodifiableSet(new HashSet<>(fieldNames));
+
+    // Fields not projected are turned to nullable, so that records can be built without them
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      Schema fieldSchema = field.getSchema();
+      if (projection.contains(field.getName()) || fieldSchema.isNullable()) {
+        fields.add(field);
+      } else {
+        fields.add(Schema.Field.of(field.getName(), Schema.nullableOf(fieldSchema)));
+      }
+    }
+    this.recordSchema = Schema.recordOf(schema.getRecordName(), fields);
+  }
+
+  /**
+   * Returns the schema for records returned by {@link #read(Object)}. It is the same as the format schema,
+   * except that fields not projected are nullable.
+   */
+  protected Schema getRecordSchema() {
+    return recordSchema == null ? schema : recordSchema;
+  }
+
+  /**
+   * Returns {@code true} if the given field needs to be materialized by {@link #read(Object)}.
+   */
+  protected boolean isProjected(String fieldName) {
+    return projection == null || projection.contains(fieldName);
+  }
 }
@@ -17,8 +17,7 @@ package co.cask.cdap.metrics.collect;
 
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.common.conf.Constants;
-import co.cask.cdap.common.io.BinaryEncoder;
-import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.io.ByteBufferEncoder;
 import co.cask.cdap.internal.io.DatumWriter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -29,9 +28,7 @@ import org.apache.twill.kafka.client.KafkaPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -46,8 +43,7 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
   private final String topicPrefix;
   private final KafkaPublisher.Ack ack;
   private final DatumWriter<MetricValues> recordWriter;
-  private final ByteArrayOutputStream encoderOutputStream;
-  private final Encoder encoder;
+  private final ByteBufferEncoder encoder;
 
   private KafkaPublisher publisher;
 
@@ -66,8 +62,7 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
     this.recordWriter = recordWriter;
 
     // Parent guarantees the publish method would not get called concurrently, hence safe to reuse the same instances.
-    this.encoderOutputStream = new ByteArrayOutputStream(1024);
-    this.encoder = new BinaryEncoder(encoderOutputStream);
+    this.encoder = new ByteBufferEncoder();
   }
 
   @Override
@@ -82,7 +77,7 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
       LOG.warn("Unable to get kafka publisher, will not be able to publish metrics.");
       return;
     }
-    encoderOutputStream.reset();
+    encoder.reset();
 
     KafkaPublisher.Preparer preparer = publisher.prepare(topicPrefix);
     while (metrics.hasNext()) {
@@ -95,10 +90,12 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
   }
 
   private void publishMetric(KafkaPublisher.Preparer preparer, MetricValues value) throws IOException {
+    // All records of the same message set are encoded into the same buffer, with each message being a view of
+    // the encoded bytes of one record. The buffer is only reset after the message set is sent.
+    int offset = encoder.size();
     recordWriter.encode(value, encoder);
     // partitioning by the context
-    preparer.add(ByteBuffer.wrap(encoderOutputStream.toByteArray()), getPartitionKey(value));
-    encoderOutputStream.reset();
+    preparer.add(encoder.slice(offset), getPartitionKey(value));
   }
 
   private Integer getPartitionKey(MetricValues value) {